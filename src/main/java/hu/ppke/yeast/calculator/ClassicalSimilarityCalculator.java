@@ -1,8 +1,6 @@
 package hu.ppke.yeast.calculator;
 
 import hu.ppke.yeast.enumeration.SimiliarityMeasure;
-import org.apache.commons.math3.linear.ArrayRealVector;
-import org.apache.commons.math3.linear.RealVector;
 
 import java.util.List;
 
@@ -13,63 +11,170 @@ import static hu.ppke.yeast.enumeration.SimiliarityMeasure.*;
  */
 public class ClassicalSimilarityCalculator {
 
+    private static final int LOOKUP_RATIO = 8;
+
     public static double calculateSimilarity(List<Double> queryWeights,
                                              List<Double> documentWeights, SimiliarityMeasure measure) {
 
-        RealVector queryVec = new ArrayRealVector(queryWeights.stream().mapToDouble(d -> d).toArray());
-        RealVector documentVec = new ArrayRealVector(documentWeights.stream().mapToDouble(d -> d).toArray());
+        return calculateSimilarity(toArray(queryWeights), toArray(documentWeights), measure);
+    }
+
+    /**
+     * Calculates the similarity of two dense vectors. Every quantity needed by the measures (dot product,
+     * squared norms, coordinate sums) is accumulated in a single pass without allocating intermediate vectors.
+     */
+    public static double calculateSimilarity(double[] queryVec, double[] documentVec, SimiliarityMeasure measure) {
+        if (queryVec.length != documentVec.length) {
+            throw new IllegalArgumentException("The dimension of the query (" + queryVec.length +
+                ") and the document (" + documentVec.length + ") vectors must be equal!");
+        }
+
+        double dotProduct = 0;
+        double querySquares = 0;
+        double documentSquares = 0;
+        double coordinateSum = 0;
+        double jaccardSum = 0;
+        boolean jaccard = JACCARD.equals(measure);
+
+        for (int i = 0; i < queryVec.length; i++) {
+            double queryWeight = queryVec[i];
+            double documentWeight = documentVec[i];
+
+            dotProduct += queryWeight * documentWeight;
+            querySquares += queryWeight * queryWeight;
+            documentSquares += documentWeight * documentWeight;
+            coordinateSum += queryWeight + documentWeight;
+            if (jaccard) {
+                jaccardSum += (queryWeight + documentWeight) / (2 * queryWeight * documentWeight);
+            }
+        }
 
         if (COSINE.equals(measure)) {
-            return calculateCosineMeasure(queryVec, documentVec);
+            return divide(dotProduct, Math.sqrt(querySquares) * Math.sqrt(documentSquares));
         } else if (DOT_PRODUCT.equals(measure)) {
-            return queryVec.dotProduct(documentVec);
+            return dotProduct;
         } else if (DICE.equals(measure)) {
-            return calculateDice(queryVec, documentVec);
+            return divide(2 * dotProduct, coordinateSum);
         } else if (JACCARD.equals(measure)) {
-            return calculateJaccard(queryVec, documentVec);
+            return divide(dotProduct, jaccardSum);
         } else {
             throw new UnsupportedOperationException("Similarity measure calculation for " +
                 measure + " measure is not yet supported!");
         }
     }
 
-    private static double calculateCosineMeasure(RealVector queryVec, RealVector documentVec) {
-
-        double numerator = queryVec.dotProduct(documentVec);
-        double denominator = Math.sqrt(queryVec.dotProduct(queryVec)) * Math.sqrt(documentVec.dotProduct(documentVec));
+    /**
+     * Calculates the similarity of two sparse vectors, coordinates missing from a vector are treated as zero.
+     * The coordinates are visited in the order of their index ids, so the result equals the one calculated
+     * on the corresponding dense vectors.
+     */
+    public static double calculateSimilarity(WeightVector queryVec, WeightVector documentVec,
+                                             SimiliarityMeasure measure) {
 
-        if (denominator == 0.0) {
-            return 0.0;
+        if (JACCARD.equals(measure)) {
+            return calculateJaccard(queryVec, documentVec);
         } else {
-            return numerator / denominator;
+            return calculateSimilarity(queryVec, dotProduct(queryVec, documentVec), documentVec.getNorm(),
+                documentVec.getSum(), measure);
         }
     }
 
-    private static double calculateDice(RealVector queryVec, RealVector documentVec) {
-
-        double numerator = 2 * queryVec.dotProduct(documentVec);
-        double denominator = sumCoordinates(queryVec.add(documentVec));
+    /**
+     * Calculates the cosine, the dot product or the Dice similarity from the dot product of the two vectors,
+     * the norm and the sum of the coordinates of the document vector
+     */
+    public static double calculateSimilarity(WeightVector queryVec, double dotProduct, double documentNorm,
+                                             double documentSum, SimiliarityMeasure measure) {
 
-        if (denominator == 0.0) {
-            return 0.0;
+        if (COSINE.equals(measure)) {
+            return divide(dotProduct, queryVec.getNorm() * documentNorm);
+        } else if (DOT_PRODUCT.equals(measure)) {
+            return dotProduct;
+        } else if (DICE.equals(measure)) {
+            return divide(2 * dotProduct, queryVec.getSum() + documentSum);
         } else {
-            return numerator / denominator;
+            throw new UnsupportedOperationException("Similarity measure calculation for " +
+                measure + " measure is not yet supported!");
         }
     }
 
-    private static double calculateJaccard(RealVector queryVec, RealVector documentVec) {
+    /**
+     * The coordinate term of the denominator is summed over the coordinates of both vectors, like in the dense
+     * calculation, so a coordinate missing from one of the vectors makes the denominator infinite
+     */
+    private static double calculateJaccard(WeightVector queryVec, WeightVector documentVec) {
+
+        double numerator = 0;
+        double denominator = 0;
+        int i = 0;
+        int j = 0;
+
+        while (i < queryVec.size() || j < documentVec.size()) {
+            long queryIndexId = i < queryVec.size() ? queryVec.getIndexId(i) : Long.MAX_VALUE;
+            long documentIndexId = j < documentVec.size() ? documentVec.getIndexId(j) : Long.MAX_VALUE;
+            double queryWeight = 0.0;
+            double documentWeight = 0.0;
+
+            if (queryIndexId <= documentIndexId) {
+                queryWeight = queryVec.getWeight(i++);
+            }
+            if (documentIndexId <= queryIndexId) {
+                documentWeight = documentVec.getWeight(j++);
+            }
+            numerator += queryWeight * documentWeight;
+            denominator += (queryWeight + documentWeight) / (2 * queryWeight * documentWeight);
+        }
+
+        return divide(numerator, denominator);
+    }
+
+    /**
+     * A query usually has far fewer coordinates than a document, in that case the coordinates of the query
+     * are looked up in the document vector instead of merging the two vectors
+     */
+    private static double dotProduct(WeightVector queryVec, WeightVector documentVec) {
+        if (queryVec.size() * LOOKUP_RATIO < documentVec.size()) {
+            return lookupDotProduct(queryVec, documentVec);
+        }
 
-        double numerator = queryVec.dotProduct(documentVec);
-        double[] queryArray = queryVec.toArray();
-        double[] docArray = documentVec.toArray();
-        double[] coordinatesAfterCalc = new double[queryArray.length];
+        double sum = 0;
+        int i = 0;
+        int j = 0;
+
+        while (i < queryVec.size() && j < documentVec.size()) {
+            long queryIndexId = queryVec.getIndexId(i);
+            long documentIndexId = documentVec.getIndexId(j);
+
+            if (queryIndexId == documentIndexId) {
+                sum += queryVec.getWeight(i++) * documentVec.getWeight(j++);
+            } else if (queryIndexId < documentIndexId) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+
+        return sum;
+    }
 
-        for (int i = 0; i < queryArray.length; i++) {
-            coordinatesAfterCalc[i] = ((queryArray[i] + docArray[i]) / (2 * queryArray[i] * docArray[i]));
+    private static double lookupDotProduct(WeightVector queryVec, WeightVector documentVec) {
+        double sum = 0;
+        int from = 0;
+
+        for (int i = 0; i < queryVec.size() && from < documentVec.size(); i++) {
+            int position = documentVec.indexOf(queryVec.getIndexId(i), from);
+            if (position >= 0) {
+                sum += queryVec.getWeight(i) * documentVec.getWeight(position);
+                from = position + 1;
+            } else {
+                from = -position - 1;
+            }
         }
 
-        double denominator = sumCoordinates(coordinatesAfterCalc);
+        return sum;
+    }
 
+    private static double divide(double numerator, double denominator) {
         if (denominator == 0.0) {
             return 0.0;
         } else {
@@ -77,18 +182,12 @@ public class ClassicalSimilarityCalculator {
         }
     }
 
-    private static double sumCoordinates(RealVector vector) {
-        return sumCoordinates(vector.toArray());
-    }
-
-    private static double sumCoordinates(double[] coordinates) {
-        double sum = 0;
-
-        for (double i : coordinates) {
-            sum += i;
+    static double[] toArray(List<Double> weights) {
+        double[] array = new double[weights.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = weights.get(i);
         }
 
-        return sum;
+        return array;
     }
-
 }
@@ -1,10 +1,9 @@
 package hu.ppke.yeast.calculator;
 
-import org.apache.commons.math3.linear.ArrayRealVector;
-import org.apache.commons.math3.linear.RealVector;
-
 import java.util.List;
 
+import static hu.ppke.yeast.enumeration.SimiliarityMeasure.DOT_PRODUCT;
+
 /**
  * This class is responsible for calculating the hyperbolic similarity
  */
@@ -13,10 +12,73 @@ public class HyperbolicSimilarityCalculator {
     public static double calculateEuclideanDistance(List<Double> queryWeights,
                                                     List<Double> documentWeights) {
 
-        RealVector queryVec = new ArrayRealVector(queryWeights.stream().mapToDouble(d -> d).toArray());
-        RealVector documentVec = new ArrayRealVector(documentWeights.stream().mapToDouble(d -> d).toArray());
+        return calculateEuclideanDistance(ClassicalSimilarityCalculator.toArray(queryWeights),
+            ClassicalSimilarityCalculator.toArray(documentWeights));
+    }
+
+    public static double calculateEuclideanDistance(double[] queryVec, double[] documentVec) {
+        if (queryVec.length != documentVec.length) {
+            throw new IllegalArgumentException("The dimension of the query (" + queryVec.length +
+                ") and the document (" + documentVec.length + ") vectors must be equal!");
+        }
+
+        double sum = 0;
+        for (int i = 0; i < queryVec.length; i++) {
+            double delta = queryVec[i] - documentVec[i];
+            sum += delta * delta;
+        }
+
+        return Math.sqrt(sum);
+    }
+
+    /**
+     * Calculates the euclidean distance of two sparse vectors, coordinates missing from a vector are treated as zero
+     */
+    public static double calculateEuclideanDistance(WeightVector queryVec, WeightVector documentVec) {
+        double sum = 0;
+        int i = 0;
+        int j = 0;
+
+        while (i < queryVec.size() || j < documentVec.size()) {
+            long queryIndexId = i < queryVec.size() ? queryVec.getIndexId(i) : Long.MAX_VALUE;
+            long documentIndexId = j < documentVec.size() ? documentVec.getIndexId(j) : Long.MAX_VALUE;
+            double delta;
+
+            if (queryIndexId == documentIndexId) {
+                delta = queryVec.getWeight(i++) - documentVec.getWeight(j++);
+            } else if (queryIndexId < documentIndexId) {
+                delta = queryVec.getWeight(i++);
+            } else {
+                delta = documentVec.getWeight(j++);
+            }
+            sum += delta * delta;
+        }
+
+        return Math.sqrt(sum);
+    }
+
+    /**
+     * Calculates the euclidean distance from the norms and the dot product of the vectors. Only the common
+     * coordinates are visited, so the document vector may hold only the coordinates of the query indices,
+     * see {@link SparseVector#of(java.util.Map, double, double)}.
+     */
+    public static double calculateEuclideanDistanceFromNorms(WeightVector queryVec, WeightVector documentVec) {
+        return calculateEuclideanDistance(queryVec.getNorm() * queryVec.getNorm(),
+            documentVec.getNorm() * documentVec.getNorm(),
+            ClassicalSimilarityCalculator.calculateSimilarity(queryVec, documentVec, DOT_PRODUCT));
+    }
 
-        return queryVec.getDistance(documentVec);
+    /**
+     * Calculates the euclidean distance using |q - d|^2 = |q|^2 + |d|^2 - 2 q.d
+     *
+     * @param querySquares    the squared norm of the query vector
+     * @param documentSquares the squared norm of the document vector
+     * @param dotProduct      the dot product of the vectors
+     * @return the euclidean distance of the vectors
+     */
+    public static double calculateEuclideanDistance(double querySquares, double documentSquares, double dotProduct) {
+        // The rounding errors may turn the squared distance of (nearly) equal vectors negative
+        return Math.sqrt(Math.max(0.0, querySquares + documentSquares - 2 * dotProduct));
     }
 
     public static double calculateHyperbolicMeasure(double euclideanDistance, double r) {
@@ -0,0 +1,159 @@
+package hu.ppke.yeast.calculator;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * This class represents a weight vector where only the non-zero coordinates are stored.
+ * The coordinates are identified by the id of the corresponding index and are ordered by it,
+ * so two vectors can be combined with a single merge pass. The norm and the sum of the coordinates
+ * are calculated once, when the vector is created.
+ * <p>
+ * A vector may also hold only a part of the coordinates of a longer vector together with the norm and the sum
+ * of the whole, see {@link #of(Map, double, double)}.
+ */
+public class SparseVector implements WeightVector {
+
+    private final long[] indexIds;
+    private final double[] weights;
+    private final double norm;
+    private final double sum;
+
+    /**
+     * @param indexIds the ids of the indices in ascending order
+     * @param weights  the weights belonging to the indices
+     */
+    public SparseVector(long[] indexIds, double[] weights) {
+        if (indexIds.length != weights.length) {
+            throw new IllegalArgumentException("The number of index ids (" + indexIds.length +
+                ") and weights (" + weights.length + ") must be equal!");
+        }
+        this.indexIds = indexIds;
+        this.weights = weights;
+
+        double squares = 0;
+        double coordinateSum = 0;
+        for (double weight : weights) {
+            squares += weight * weight;
+            coordinateSum += weight;
+        }
+        this.norm = Math.sqrt(squares);
+        this.sum = coordinateSum;
+    }
+
+    private SparseVector(long[] indexIds, double[] weights, double norm, double sum) {
+        this.indexIds = indexIds;
+        this.weights = weights;
+        this.norm = norm;
+        this.sum = sum;
+    }
+
+    /**
+     * Creates a sparse vector from index id - weight pairs, zero weights are left out
+     *
+     * @param weights index id - weight pairs in any order
+     * @return the sparse vector
+     */
+    public static SparseVector of(Map<Long, Double> weights) {
+        SortedMap<Long, Double> sortedWeights = sort(weights);
+
+        return new SparseVector(getIndexIds(sortedWeights), getWeights(sortedWeights));
+    }
+
+    /**
+     * Creates a vector holding some of the coordinates of a longer vector, for example the coordinates of a document
+     * belonging to the indices of a query. The measures only combining the common coordinates of the two vectors
+     * with the norms and the sums give the same result as with the whole vector, the distances do not.
+     *
+     * @param weights index id - weight pairs in any order, zero weights are left out
+     * @param norm    the euclidean norm of the whole vector
+     * @param sum     the sum of the coordinates of the whole vector
+     * @return the partial vector
+     */
+    public static SparseVector of(Map<Long, Double> weights, double norm, double sum) {
+        SortedMap<Long, Double> sortedWeights = sort(weights);
+
+        return new SparseVector(getIndexIds(sortedWeights), getWeights(sortedWeights), norm, sum);
+    }
+
+    private static SortedMap<Long, Double> sort(Map<Long, Double> weights) {
+        SortedMap<Long, Double> sortedWeights = new TreeMap<>();
+        for (Map.Entry<Long, Double> entry : weights.entrySet()) {
+            if (entry.getValue() != 0.0) {
+                sortedWeights.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        return sortedWeights;
+    }
+
+    private static long[] getIndexIds(SortedMap<Long, Double> sortedWeights) {
+        long[] indexIds = new long[sortedWeights.size()];
+        int i = 0;
+        for (Long indexId : sortedWeights.keySet()) {
+            indexIds[i++] = indexId;
+        }
+
+        return indexIds;
+    }
+
+    private static double[] getWeights(SortedMap<Long, Double> sortedWeights) {
+        double[] values = new double[sortedWeights.size()];
+        int i = 0;
+        for (Double weight : sortedWeights.values()) {
+            values[i++] = weight;
+        }
+
+        return values;
+    }
+
+    @Override
+    public int size() {
+        return indexIds.length;
+    }
+
+    @Override
+    public long getIndexId(int position) {
+        return indexIds[position];
+    }
+
+    @Override
+    public double getWeight(int position) {
+        return weights[position];
+    }
+
+    @Override
+    public double getNorm() {
+        return norm;
+    }
+
+    @Override
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * @param indexId id of the index
+     * @return the weight of the index, or 0.0 if the vector has no such coordinate
+     */
+    public double getWeightForIndex(long indexId) {
+        int position = indexOf(indexId, 0);
+
+        return position < 0 ? 0.0 : weights[position];
+    }
+
+    @Override
+    public int indexOf(long indexId, int from) {
+        return Arrays.binarySearch(indexIds, from, indexIds.length, indexId);
+    }
+
+    @Override
+    public String toString() {
+        return "SparseVector{" +
+            "indexIds=" + Arrays.toString(indexIds) +
+            ", weights=" + Arrays.toString(weights) +
+            "}";
+    }
+}
@@ -0,0 +1,43 @@
+package hu.ppke.yeast.calculator;
+
+/**
+ * A weight vector where only the non-zero coordinates are visited, ordered by the id of the corresponding index.
+ * The calculators only read the vectors through this interface, so the coordinates may be stored on the heap,
+ * like in {@link SparseVector}, or anywhere else.
+ */
+public interface WeightVector {
+
+    /**
+     * @return the number of the stored coordinates
+     */
+    int size();
+
+    /**
+     * @param position position of the coordinate, between 0 and {@link #size()} - 1
+     * @return the id of the index of the coordinate
+     */
+    long getIndexId(int position);
+
+    /**
+     * @param position position of the coordinate, between 0 and {@link #size()} - 1
+     * @return the weight of the coordinate
+     */
+    double getWeight(int position);
+
+    /**
+     * @return the euclidean norm of the vector
+     */
+    double getNorm();
+
+    /**
+     * @return the sum of the coordinates
+     */
+    double getSum();
+
+    /**
+     * @param indexId id of the index
+     * @param from    the first position to search from
+     * @return the position of the index, or (-(insertion point) - 1) if the vector has no such coordinate
+     */
+    int indexOf(long indexId, int from);
+}
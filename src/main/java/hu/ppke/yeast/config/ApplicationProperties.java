@@ -1,5 +1,8 @@
 package hu.ppke.yeast.config;
 
+import hu.ppke.yeast.enumeration.HyperbolicScoring;
+import hu.ppke.yeast.enumeration.SearchEngine;
+import hu.ppke.yeast.enumeration.WeightStorage;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 /**
@@ -11,4 +14,346 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
 public class ApplicationProperties {
 
+    private final Search search = new Search();
+
+    private final Weights weights = new Weights();
+
+    private final Stemming stemming = new Stemming();
+
+    private final Bulk bulk = new Bulk();
+
+    private final Index index = new Index();
+
+    private final Ingestion ingestion = new Ingestion();
+
+    private final Cache cache = new Cache();
+
+    public Search getSearch() {
+        return search;
+    }
+
+    public Weights getWeights() {
+        return weights;
+    }
+
+    public Stemming getStemming() {
+        return stemming;
+    }
+
+    public Bulk getBulk() {
+        return bulk;
+    }
+
+    public Index getIndex() {
+        return index;
+    }
+
+    public Ingestion getIngestion() {
+        return ingestion;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public static class Search {
+
+        private SearchEngine engine = SearchEngine.INVERTED_INDEX;
+
+        private int parallelism = 0;
+
+        private int maxParallelism = 0;
+
+        private int minDocumentsPerTask = 10_000;
+
+        private int cacheSize = 1000;
+
+        private int snippetLength = 200;
+
+        private HyperbolicScoring hyperbolicScoring = HyperbolicScoring.SPARSE;
+
+        public SearchEngine getEngine() {
+            return engine;
+        }
+
+        public void setEngine(SearchEngine engine) {
+            this.engine = engine;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+        public int getMaxParallelism() {
+            return maxParallelism;
+        }
+
+        public void setMaxParallelism(int maxParallelism) {
+            this.maxParallelism = maxParallelism;
+        }
+
+        public int getMinDocumentsPerTask() {
+            return minDocumentsPerTask;
+        }
+
+        public void setMinDocumentsPerTask(int minDocumentsPerTask) {
+            this.minDocumentsPerTask = minDocumentsPerTask;
+        }
+
+        public int getCacheSize() {
+            return cacheSize;
+        }
+
+        public void setCacheSize(int cacheSize) {
+            this.cacheSize = cacheSize;
+        }
+
+        public int getSnippetLength() {
+            return snippetLength;
+        }
+
+        public void setSnippetLength(int snippetLength) {
+            this.snippetLength = snippetLength;
+        }
+
+        public HyperbolicScoring getHyperbolicScoring() {
+            return hyperbolicScoring;
+        }
+
+        public void setHyperbolicScoring(HyperbolicScoring hyperbolicScoring) {
+            this.hyperbolicScoring = hyperbolicScoring;
+        }
+    }
+
+    public static class Weights {
+
+        private WeightStorage storage = WeightStorage.SPARSE;
+
+        private boolean incremental = true;
+
+        public WeightStorage getStorage() {
+            return storage;
+        }
+
+        public void setStorage(WeightStorage storage) {
+            this.storage = storage;
+        }
+
+        public boolean isIncremental() {
+            return incremental;
+        }
+
+        public void setIncremental(boolean incremental) {
+            this.incremental = incremental;
+        }
+    }
+
+    public static class Stemming {
+
+        private int cacheSize = 100_000;
+
+        public int getCacheSize() {
+            return cacheSize;
+        }
+
+        public void setCacheSize(int cacheSize) {
+            this.cacheSize = cacheSize;
+        }
+    }
+
+    public static class Bulk {
+
+        private int batchSize = 1000;
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+    }
+
+    public static class Index {
+
+        private String directory;
+
+        private int flushThreshold = 10_000;
+
+        private int mergeFactor = 10;
+
+        private long refreshInterval;
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public int getFlushThreshold() {
+            return flushThreshold;
+        }
+
+        public void setFlushThreshold(int flushThreshold) {
+            this.flushThreshold = flushThreshold;
+        }
+
+        public int getMergeFactor() {
+            return mergeFactor;
+        }
+
+        public void setMergeFactor(int mergeFactor) {
+            this.mergeFactor = mergeFactor;
+        }
+
+        public long getRefreshInterval() {
+            return refreshInterval;
+        }
+
+        public void setRefreshInterval(long refreshInterval) {
+            this.refreshInterval = refreshInterval;
+        }
+    }
+
+    public static class Ingestion {
+
+        private int queueCapacity = 100_000;
+
+        private int workers = 1;
+
+        private int batchSize = 100;
+
+        private long pollInterval = 1000;
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        public void setWorkers(int workers) {
+            this.workers = workers;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public long getPollInterval() {
+            return pollInterval;
+        }
+
+        public void setPollInterval(long pollInterval) {
+            this.pollInterval = pollInterval;
+        }
+    }
+
+    /**
+     * The regions of the second-level cache of the index entities and their collections
+     */
+    public static class Cache {
+
+        private final CacheRegion document = new CacheRegion();
+
+        private final CacheRegion index = new CacheRegion();
+
+        private final CacheRegion documentIndex = new CacheRegion();
+
+        private final CacheRegion documentIndexWeight = new CacheRegion();
+
+        private final CacheRegion documentDocumentIndices = new CacheRegion();
+
+        private final CacheRegion documentDocumentIndexWeights = new CacheRegion();
+
+        private final CacheRegion indexDocumentIndices = new CacheRegion();
+
+        public CacheRegion getDocument() {
+            return document;
+        }
+
+        public CacheRegion getIndex() {
+            return index;
+        }
+
+        public CacheRegion getDocumentIndex() {
+            return documentIndex;
+        }
+
+        public CacheRegion getDocumentIndexWeight() {
+            return documentIndexWeight;
+        }
+
+        /**
+         * @return the region of the Document.documentIndices collections
+         */
+        public CacheRegion getDocumentDocumentIndices() {
+            return documentDocumentIndices;
+        }
+
+        /**
+         * @return the region of the Document.documentIndexWeights collections
+         */
+        public CacheRegion getDocumentDocumentIndexWeights() {
+            return documentDocumentIndexWeights;
+        }
+
+        /**
+         * @return the region of the Index.documentIndices collections
+         */
+        public CacheRegion getIndexDocumentIndices() {
+            return indexDocumentIndices;
+        }
+    }
+
+    /**
+     * The size of a cache region, the unset values are taken from the "jhipster.cache.ehcache" properties
+     */
+    public static class CacheRegion {
+
+        private long heapEntries;
+
+        private long offHeapMegabytes;
+
+        private long timeToLiveSeconds;
+
+        public long getHeapEntries() {
+            return heapEntries;
+        }
+
+        public void setHeapEntries(long heapEntries) {
+            this.heapEntries = heapEntries;
+        }
+
+        public long getOffHeapMegabytes() {
+            return offHeapMegabytes;
+        }
+
+        public void setOffHeapMegabytes(long offHeapMegabytes) {
+            this.offHeapMegabytes = offHeapMegabytes;
+        }
+
+        public long getTimeToLiveSeconds() {
+            return timeToLiveSeconds;
+        }
+
+        public void setTimeToLiveSeconds(long timeToLiveSeconds) {
+            this.timeToLiveSeconds = timeToLiveSeconds;
+        }
+    }
 }
@@ -1,8 +1,11 @@
 package hu.ppke.yeast.config;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import io.github.jhipster.config.JHipsterProperties;
 import org.ehcache.config.builders.CacheConfigurationBuilder;
 import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.config.units.MemoryUnit;
 import org.ehcache.expiry.Duration;
 import org.ehcache.expiry.Expirations;
 import org.ehcache.jsr107.Eh107Configuration;
@@ -13,6 +16,11 @@ import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import javax.cache.CacheManager;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.util.concurrent.TimeUnit;
 
 @Configuration
@@ -21,17 +29,46 @@ import java.util.concurrent.TimeUnit;
 @AutoConfigureBefore(value = { WebConfigurer.class, DatabaseConfiguration.class })
 public class CacheConfiguration {
 
+    /**
+     * Prefix of the hit, miss and eviction gauges of the cache regions of the index entities
+     */
+    public static final String REGION_METRICS_PREFIX = "cache.regions";
+
+    /**
+     * Metric name - attribute of the JCache statistics bean pairs
+     */
+    private static final String[][] REGION_STATISTICS = {
+        {"hits", "CacheHits"}, {"misses", "CacheMisses"}, {"evictions", "CacheEvictions"}, {"hit-percentage", "CacheHitPercentage"}};
+
     private final javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration;
 
-    public CacheConfiguration(JHipsterProperties jHipsterProperties) {
-        JHipsterProperties.Cache.Ehcache ehcache =
-            jHipsterProperties.getCache().getEhcache();
+    private final javax.cache.configuration.Configuration<Object, Object> searchResultsConfiguration;
+
+    private final JHipsterProperties.Cache.Ehcache ehcache;
+
+    private final ApplicationProperties.Cache regions;
+
+    private final MetricRegistry metricRegistry;
+
+    public CacheConfiguration(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties,
+                              MetricRegistry metricRegistry) {
+        this.ehcache = jHipsterProperties.getCache().getEhcache();
+        this.regions = applicationProperties.getCache();
+        this.metricRegistry = metricRegistry;
 
         jcacheConfiguration = Eh107Configuration.fromEhcacheCacheConfiguration(
             CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
                 ResourcePoolsBuilder.heap(ehcache.getMaxEntries()))
                 .withExpiry(Expirations.timeToLiveExpiration(Duration.of(ehcache.getTimeToLiveSeconds(), TimeUnit.SECONDS)))
                 .build());
+
+        // The search results are outdated by the index generation in their keys, so they do not expire,
+        // only the least recently used ones are evicted
+        searchResultsConfiguration = applicationProperties.getSearch().getCacheSize() > 0 ?
+            Eh107Configuration.fromEhcacheCacheConfiguration(
+                CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                    ResourcePoolsBuilder.heap(applicationProperties.getSearch().getCacheSize()))
+                    .build()) : null;
     }
 
     @Bean
@@ -44,11 +81,67 @@ public class CacheConfiguration {
             cm.createCache(hu.ppke.yeast.domain.User.class.getName() + ".authorities", jcacheConfiguration);
             cm.createCache(hu.ppke.yeast.domain.PersistentToken.class.getName(), jcacheConfiguration);
             cm.createCache(hu.ppke.yeast.domain.User.class.getName() + ".persistentTokens", jcacheConfiguration);
-            cm.createCache(hu.ppke.yeast.domain.Document.class.getName(), jcacheConfiguration);
-            cm.createCache(hu.ppke.yeast.domain.Index.class.getName(), jcacheConfiguration);
-            cm.createCache(hu.ppke.yeast.domain.DocumentIndex.class.getName(), jcacheConfiguration);
-            cm.createCache(hu.ppke.yeast.domain.DocumentIndexWeight.class.getName(), jcacheConfiguration);
+            createRegion(cm, hu.ppke.yeast.domain.Document.class.getName(), regions.getDocument());
+            createRegion(cm, hu.ppke.yeast.domain.Document.class.getName() + ".documentIndices", regions.getDocumentDocumentIndices());
+            createRegion(cm, hu.ppke.yeast.domain.Document.class.getName() + ".documentIndexWeights", regions.getDocumentDocumentIndexWeights());
+            createRegion(cm, hu.ppke.yeast.domain.Index.class.getName(), regions.getIndex());
+            createRegion(cm, hu.ppke.yeast.domain.Index.class.getName() + ".documentIndices", regions.getIndexDocumentIndices());
+            createRegion(cm, hu.ppke.yeast.domain.DocumentIndex.class.getName(), regions.getDocumentIndex());
+            createRegion(cm, hu.ppke.yeast.domain.DocumentIndexWeight.class.getName(), regions.getDocumentIndexWeight());
+            if (searchResultsConfiguration != null) {
+                cm.createCache(hu.ppke.yeast.service.SearchResultCache.CACHE_NAME, searchResultsConfiguration);
+                cm.enableStatistics(hu.ppke.yeast.service.SearchResultCache.CACHE_NAME, true);
+            }
             // jhipster-needle-ehcache-add-entry
         };
     }
+
+    /**
+     * Creates an individually sized region, with an off-heap tier if it is configured. The off-heap entries are
+     * stored serialized, so they do not add to the garbage collected heap. The statistics of the region are
+     * published as "cache.regions.[region].*" gauges.
+     */
+    private void createRegion(CacheManager cm, String name, ApplicationProperties.CacheRegion region) {
+        ResourcePoolsBuilder resourcePools = ResourcePoolsBuilder.heap(
+            region.getHeapEntries() > 0 ? region.getHeapEntries() : ehcache.getMaxEntries());
+        if (region.getOffHeapMegabytes() > 0) {
+            resourcePools = resourcePools.offheap(region.getOffHeapMegabytes(), MemoryUnit.MB);
+        }
+        long timeToLiveSeconds = region.getTimeToLiveSeconds() > 0 ? region.getTimeToLiveSeconds() : ehcache.getTimeToLiveSeconds();
+
+        cm.createCache(name, Eh107Configuration.fromEhcacheCacheConfiguration(
+            CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class, resourcePools)
+                .withExpiry(Expirations.timeToLiveExpiration(Duration.of(timeToLiveSeconds, TimeUnit.SECONDS)))
+                .build()));
+        cm.enableStatistics(name, true);
+
+        ObjectName statistics = getStatisticsName(cm, name);
+        for (String[] statistic : REGION_STATISTICS) {
+            String metricName = MetricRegistry.name(REGION_METRICS_PREFIX, name, statistic[0]);
+            metricRegistry.remove(metricName);
+            metricRegistry.register(metricName, (Gauge<Object>) () -> getStatistic(statistics, statistic[1]));
+        }
+    }
+
+    /**
+     * @return the name of the standard statistics bean of the cache, sanitized the same way as by Ehcache
+     */
+    private static ObjectName getStatisticsName(CacheManager cm, String name) {
+        try {
+            return new ObjectName("javax.cache:type=CacheStatistics" +
+                ",CacheManager=" + String.valueOf(cm.getURI()).replaceAll(",|:|=|\n", ".") +
+                ",Cache=" + name.replaceAll(",|:|=|\n", "."));
+        } catch (JMException e) {
+            throw new IllegalStateException("Invalid cache name " + name, e);
+        }
+    }
+
+    private static Object getStatistic(ObjectName statistics, String attribute) {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            return mBeanServer.isRegistered(statistics) ? mBeanServer.getAttribute(statistics, attribute) : null;
+        } catch (JMException e) {
+            return null;
+        }
+    }
 }
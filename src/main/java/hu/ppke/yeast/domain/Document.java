@@ -36,10 +36,26 @@ public class Document implements Serializable {
     @Column(name = "evaluation_id")
     private Long evaluationId;
 
+    /**
+     * The euclidean norm of the persisted weights, null until the weight matrix is calculated and once the indices
+     * of the document change
+     */
+    @Column(name = "weight_norm")
+    private Double weightNorm;
+
+    /**
+     * The sum of the persisted weights, null until the weight matrix is calculated and once the indices
+     * of the document change
+     */
+    @Column(name = "weight_sum")
+    private Double weightSum;
+
     @OneToMany(mappedBy = "document")
+    @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
     private Set<DocumentIndex> documentIndices = new HashSet<>();
 
     @OneToMany(mappedBy = "document")
+    @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
     private Set<DocumentIndexWeight> documentIndexWeights = new HashSet<>();
 
     // jhipster-needle-entity-add-field - JHipster will add fields here, do not remove
@@ -79,6 +95,24 @@ public class Document implements Serializable {
         return this;
     }
 
+    public Double getWeightNorm() {
+        return weightNorm;
+    }
+
+    public Document setWeightNorm(Double weightNorm) {
+        this.weightNorm = weightNorm;
+        return this;
+    }
+
+    public Double getWeightSum() {
+        return weightSum;
+    }
+
+    public Document setWeightSum(Double weightSum) {
+        this.weightSum = weightSum;
+        return this;
+    }
+
     public Set<DocumentIndex> getDocumentIndices() {
         return documentIndices;
     }
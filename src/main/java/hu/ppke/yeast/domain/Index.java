@@ -26,7 +26,7 @@ public class Index implements Serializable {
     private Long id;
 
     @NotNull
-    @Column(name = "name", nullable = false)
+    @Column(name = "name", nullable = false, unique = true)
     private String name;
 
     @Min(value = 0L)
@@ -34,6 +34,7 @@ public class Index implements Serializable {
     private Long documentCount;
 
     @OneToMany(mappedBy = "index")
+    @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
     private Set<DocumentIndex> documentIndices = new HashSet<>();
 
     @OneToMany(mappedBy = "index")
@@ -0,0 +1,171 @@
+package hu.ppke.yeast.domain;
+
+import hu.ppke.yeast.enumeration.IngestionStatus;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * A document waiting for the asynchronous ingestion, or the outcome of its ingestion.
+ */
+@Entity
+@Table(name = "ingestion_job")
+public class IngestionJob implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int MAX_ERROR_LENGTH = 255;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private IngestionStatus status;
+
+    @NotNull
+    @Column(name = "creation_date", nullable = false)
+    private LocalDate creationDate;
+
+    /**
+     * The content of the document, cleared once the document is saved
+     */
+    @Lob
+    @Column(name = "content")
+    private String content;
+
+    @Column(name = "evaluation_id")
+    private Long evaluationId;
+
+    /**
+     * The id of the saved document, null until the job is done
+     */
+    @Column(name = "document_id")
+    private Long documentId;
+
+    @Column(name = "error", length = MAX_ERROR_LENGTH)
+    private String error;
+
+    @NotNull
+    @Column(name = "enqueued_at", nullable = false)
+    private Instant enqueuedAt;
+
+    @Column(name = "finished_at")
+    private Instant finishedAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public IngestionJob setId(Long id) {
+        this.id = id;
+        return this;
+    }
+
+    public IngestionStatus getStatus() {
+        return status;
+    }
+
+    public IngestionJob setStatus(IngestionStatus status) {
+        this.status = status;
+        return this;
+    }
+
+    public LocalDate getCreationDate() {
+        return creationDate;
+    }
+
+    public IngestionJob setCreationDate(LocalDate creationDate) {
+        this.creationDate = creationDate;
+        return this;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public IngestionJob setContent(String content) {
+        this.content = content;
+        return this;
+    }
+
+    public Long getEvaluationId() {
+        return evaluationId;
+    }
+
+    public IngestionJob setEvaluationId(Long evaluationId) {
+        this.evaluationId = evaluationId;
+        return this;
+    }
+
+    public Long getDocumentId() {
+        return documentId;
+    }
+
+    public IngestionJob setDocumentId(Long documentId) {
+        this.documentId = documentId;
+        return this;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public IngestionJob setError(String error) {
+        this.error = error;
+        return this;
+    }
+
+    public Instant getEnqueuedAt() {
+        return enqueuedAt;
+    }
+
+    public IngestionJob setEnqueuedAt(Instant enqueuedAt) {
+        this.enqueuedAt = enqueuedAt;
+        return this;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public IngestionJob setFinishedAt(Instant finishedAt) {
+        this.finishedAt = finishedAt;
+        return this;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        IngestionJob ingestionJob = (IngestionJob) o;
+        if (ingestionJob.getId() == null || getId() == null) {
+            return false;
+        }
+        return Objects.equals(getId(), ingestionJob.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getId());
+    }
+
+    @Override
+    public String toString() {
+        return "IngestionJob{" +
+            "id=" + getId() +
+            ", status='" + getStatus() + "'" +
+            ", documentId=" + getDocumentId() +
+            "}";
+    }
+}
@@ -0,0 +1,15 @@
+package hu.ppke.yeast.enumeration;
+
+public enum HyperbolicScoring {
+
+    /**
+     * The euclidean distances are calculated by merging the query vector with every document vector
+     */
+    EXACT,
+
+    /**
+     * The euclidean distances are calculated from the norms and the dot products, only the weights of the query
+     * indices are read. The similarities may differ from the exact ones in the last digits.
+     */
+    SPARSE
+}
@@ -0,0 +1,24 @@
+package hu.ppke.yeast.enumeration;
+
+public enum IngestionStatus {
+
+    /**
+     * The document is waiting in the queue
+     */
+    QUEUED,
+
+    /**
+     * The document is claimed by an ingestion worker, it is queued again if the application stops meanwhile
+     */
+    PROCESSING,
+
+    /**
+     * The document is saved and indexed
+     */
+    DONE,
+
+    /**
+     * The document could not be saved, the reason is stored with the job
+     */
+    FAILED
+}
@@ -0,0 +1,14 @@
+package hu.ppke.yeast.enumeration;
+
+public enum SearchEngine {
+
+    /**
+     * Scores the documents matching the query using the in-memory inverted index
+     */
+    INVERTED_INDEX,
+
+    /**
+     * Scores every document using the persisted document-index weights
+     */
+    WEIGHT_MATRIX
+}
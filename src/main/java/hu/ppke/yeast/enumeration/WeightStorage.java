@@ -0,0 +1,14 @@
+package hu.ppke.yeast.enumeration;
+
+public enum WeightStorage {
+
+    /**
+     * A weight is persisted for every possible document-index pair, including the zero ones
+     */
+    DENSE,
+
+    /**
+     * Only the non-zero weights are persisted, missing document-index pairs are treated as zero
+     */
+    SPARSE
+}
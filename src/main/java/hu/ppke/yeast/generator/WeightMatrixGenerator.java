@@ -1,9 +1,12 @@
 package hu.ppke.yeast.generator;
 
+import hu.ppke.yeast.calculator.SparseVector;
+import hu.ppke.yeast.config.ApplicationProperties;
 import hu.ppke.yeast.domain.Document;
 import hu.ppke.yeast.domain.DocumentIndex;
 import hu.ppke.yeast.domain.DocumentIndexWeight;
 import hu.ppke.yeast.domain.Index;
+import hu.ppke.yeast.index.IndexGeneration;
 import hu.ppke.yeast.repository.DocumentIndexWeightRepository;
 import hu.ppke.yeast.repository.DocumentRepository;
 import hu.ppke.yeast.repository.IndexRepository;
@@ -16,14 +19,19 @@ import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import static hu.ppke.yeast.calculator.WeightCalculator.calculateWeight;
+import static hu.ppke.yeast.enumeration.WeightStorage.SPARSE;
 
 
 /**
- * This class is responsible for generating the weight for each possible Document-Index pair
+ * This class is responsible for generating the weight for each possible Document-Index pair.
+ * With sparse weight storage only the non-zero weights are persisted. The norm and the sum of the weights
+ * are persisted with the documents, so the similarities can be normalized without reading all the weights.
  */
 @Component
 @Transactional
@@ -35,6 +43,8 @@ public class WeightMatrixGenerator {
     private final DocumentRepository documentRepository;
     private final DocumentIndexWeightRepository documentIndexWeightRepository;
     private final DocumentIndexWeightService documentIndexWeightService;
+    private final IndexGeneration indexGeneration;
+    private final ApplicationProperties applicationProperties;
 
     private int nrOfAllDocuments;
 
@@ -42,17 +52,22 @@ public class WeightMatrixGenerator {
     public WeightMatrixGenerator(IndexRepository indexRepository,
                                  DocumentRepository documentRepository,
                                  DocumentIndexWeightRepository documentIndexWeightRepository,
-                                 DocumentIndexWeightService documentIndexWeightService) {
+                                 DocumentIndexWeightService documentIndexWeightService,
+                                 IndexGeneration indexGeneration,
+                                 ApplicationProperties applicationProperties) {
         this.indexRepository = indexRepository;
         this.documentRepository = documentRepository;
         this.documentIndexWeightRepository = documentIndexWeightRepository;
         this.documentIndexWeightService = documentIndexWeightService;
+        this.indexGeneration = indexGeneration;
+        this.applicationProperties = applicationProperties;
     }
 
     public void calculateAndPersistWeights() {
 
+        final boolean sparse = SPARSE.equals(applicationProperties.getWeights().getStorage());
         final List<Document> allDocuments = documentRepository.findAll();
-        final List<Index> allIndices = indexRepository.findAll();
+        final List<Index> allIndices = sparse ? new ArrayList<>() : indexRepository.findAll();
         documentIndexWeightRepository.deleteAll();
         nrOfAllDocuments = allDocuments.size();
 
@@ -62,24 +77,33 @@ public class WeightMatrixGenerator {
 
             final List<DocumentIndex> documentIndices = new ArrayList<>(currentDoc.getDocumentIndices());
             final List<DocumentIndexWeight> weightsForOwnIndices =
-                getWeightsForOwnIndices(documentIndices);
-            final List<DocumentIndexWeight> weightsForOtherIndices =
-                getWeightsForOtherIndices(getOtherIndices(documentIndices, allIndices), currentDoc);
+                getWeightsForOwnIndices(documentIndices, sparse);
 
             List<DocumentIndexWeight> allWeights = new ArrayList<>();
             allWeights.addAll(weightsForOwnIndices);
-            allWeights.addAll(weightsForOtherIndices);
+
+            if (!sparse) {
+                allWeights.addAll(getWeightsForOtherIndices(getOtherIndices(documentIndices, allIndices), currentDoc));
+            }
+
+            SparseVector weightVector = toVector(weightsForOwnIndices);
+            currentDoc.setWeightNorm(weightVector.getNorm())
+                .setWeightSum(weightVector.getSum());
 
             documentIndexWeightService.save(currentDoc, allWeights);
         }
+        indexGeneration.increment();
     }
 
-    private List<DocumentIndexWeight> getWeightsForOwnIndices(final List<DocumentIndex> documentIndices) {
+    private List<DocumentIndexWeight> getWeightsForOwnIndices(final List<DocumentIndex> documentIndices, boolean sparse) {
 
         List<DocumentIndexWeight> documentIndexWeights = new ArrayList<>();
 
         for (DocumentIndex documentIndex : documentIndices) {
             double weight = calculateWeight(documentIndex.getCount(), nrOfAllDocuments, documentIndex.getIndex().getDocumentCount());
+            if (sparse && weight == 0.0) {
+                continue;
+            }
             documentIndexWeights.add(new DocumentIndexWeight()
                 .setDocument(documentIndex.getDocument())
                 .setIndex(documentIndex.getIndex())
@@ -88,6 +112,19 @@ public class WeightMatrixGenerator {
         return documentIndexWeights;
     }
 
+    /**
+     * The vector is built the same way as at query time, so the statistics are exactly the ones
+     * calculated from the persisted weights
+     */
+    private SparseVector toVector(List<DocumentIndexWeight> documentIndexWeights) {
+        Map<Long, Double> weights = new HashMap<>();
+        for (DocumentIndexWeight documentIndexWeight : documentIndexWeights) {
+            weights.put(documentIndexWeight.getIndex().getId(), documentIndexWeight.getWeight());
+        }
+
+        return SparseVector.of(weights);
+    }
+
     @SuppressWarnings("unchecked")
     private List<Index> getOtherIndices(List<DocumentIndex> documentIndices, List<Index> allIndices) {
 
@@ -0,0 +1,25 @@
+package hu.ppke.yeast.index;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.function.Supplier;
+
+/**
+ * This class is responsible for reading the committed state of the DB for the in-memory structures, like the
+ * {@link InvertedIndex} and the {@link TermDictionary}, in a new transaction, so the uncommitted changes of the
+ * surrounding transaction are not loaded into them.
+ */
+@Component
+public class CommittedReader {
+
+    /**
+     * @param reader reads the DB, all of its queries run in the same transaction
+     * @return the result of the reader
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public <T> T read(Supplier<T> reader) {
+        return reader.get();
+    }
+}
@@ -0,0 +1,118 @@
+package hu.ppke.yeast.index;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class is responsible for reading and writing the commit file of an index directory. The commit lists the
+ * segment files making up the index together with the segment-local ids of their deleted documents, and it is
+ * stamped with a checkpoint identifying the state of the DB the index belongs to.
+ * <p>
+ * Like the segments, the commit file is written next to its final place and moved there once it is complete.
+ */
+public class IndexCommit {
+
+    static final String FILE_NAME = "segments";
+
+    private static final int MAGIC = 0x59434d54;
+    private static final int FORMAT_VERSION = 1;
+
+    private final long[] checkpoint;
+    private final List<String> fileNames;
+    private final List<BitSet> deletedDocuments;
+
+    /**
+     * @param checkpoint       values identifying the state of the DB
+     * @param fileNames        names of the segment files, relative to the index directory
+     * @param deletedDocuments the segment-local ids of the deleted documents for every segment
+     */
+    public IndexCommit(long[] checkpoint, List<String> fileNames, List<BitSet> deletedDocuments) {
+        this.checkpoint = checkpoint;
+        this.fileNames = Collections.unmodifiableList(fileNames);
+        this.deletedDocuments = Collections.unmodifiableList(deletedDocuments);
+    }
+
+    /**
+     * @param directory the index directory
+     * @return the commit of the directory, or null if the directory has no commit
+     * @throws IOException if the commit could not be read
+     */
+    public static IndexCommit read(Path directory) throws IOException {
+        Path path = directory.resolve(FILE_NAME);
+        if (!Files.exists(path)) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not a supported index commit: " + path);
+            }
+            long[] checkpoint = readLongs(in);
+            int numberOfSegments = in.readInt();
+            List<String> fileNames = new ArrayList<>(numberOfSegments);
+            List<BitSet> deletedDocuments = new ArrayList<>(numberOfSegments);
+            for (int i = 0; i < numberOfSegments; i++) {
+                fileNames.add(in.readUTF());
+                deletedDocuments.add(BitSet.valueOf(readLongs(in)));
+            }
+
+            return new IndexCommit(checkpoint, fileNames, deletedDocuments);
+        }
+    }
+
+    /**
+     * @param directory the index directory, an existing commit is replaced
+     * @throws IOException if the commit could not be written
+     */
+    public void write(Path directory) throws IOException {
+        Path path = directory.resolve(FILE_NAME);
+        Path temporaryPath = directory.resolve(FILE_NAME + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryPath)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeLongs(out, checkpoint);
+            out.writeInt(fileNames.size());
+            for (int i = 0; i < fileNames.size(); i++) {
+                out.writeUTF(fileNames.get(i));
+                writeLongs(out, deletedDocuments.get(i).toLongArray());
+            }
+        }
+
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public long[] getCheckpoint() {
+        return checkpoint.clone();
+    }
+
+    public List<String> getFileNames() {
+        return fileNames;
+    }
+
+    public List<BitSet> getDeletedDocuments() {
+        return deletedDocuments;
+    }
+
+    private static long[] readLongs(DataInput in) throws IOException {
+        long[] values = new long[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readLong();
+        }
+
+        return values;
+    }
+
+    private static void writeLongs(DataOutput out, long[] values) throws IOException {
+        out.writeInt(values.length);
+        for (long value : values) {
+            out.writeLong(value);
+        }
+    }
+}
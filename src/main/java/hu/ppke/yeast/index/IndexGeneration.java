@@ -0,0 +1,152 @@
+package hu.ppke.yeast.index;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * This class is responsible for counting the changes of the indices, the document counts and the weights.
+ * <p>
+ * Everything calculated from the index, like the cached search results, is outdated once the generation
+ * is incremented. The documents changed by a transaction are reported once it is committed.
+ */
+@Component
+public class IndexGeneration {
+
+    private final AtomicLong generation = new AtomicLong();
+    private final List<Consumer<Changes>> listeners = new CopyOnWriteArrayList<>();
+
+    public long get() {
+        return generation.get();
+    }
+
+    /**
+     * Called after the index was changed in a way that may affect every document, like recalculating the weights
+     */
+    public void increment() {
+        increment(null);
+    }
+
+    /**
+     * Called after documents were added, changed or deleted
+     *
+     * @param documentIds ids of the changed documents, null if every document may have been changed
+     */
+    public void increment(Collection<Long> documentIds) {
+        generation.incrementAndGet();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            getOrBindChanges().add(documentIds);
+        } else {
+            notifyListeners(new Changes().add(documentIds));
+        }
+    }
+
+    /**
+     * Called after the changes of the index were published to the searches with a delay
+     */
+    public void publish() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * @return true if the index was changed in the current transaction, these changes are not visible
+     * to the other transactions yet
+     */
+    public boolean isChangedInTransaction() {
+        return TransactionSynchronizationManager.hasResource(this);
+    }
+
+    /**
+     * @return the changes of the current transaction, or null if it has not changed the index
+     */
+    public Changes getChangesInTransaction() {
+        return (Changes) TransactionSynchronizationManager.getResource(this);
+    }
+
+    /**
+     * @param listener notified of the changes of every committed transaction before the generation is incremented,
+     *                 and of the changes made outside of transactions immediately
+     */
+    public void addListener(Consumer<Changes> listener) {
+        listeners.add(listener);
+    }
+
+    private Changes getOrBindChanges() {
+        Changes changes = getChangesInTransaction();
+        if (changes == null) {
+            Changes bound = new Changes();
+            TransactionSynchronizationManager.bindResource(this, bound);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(IndexGeneration.this);
+                    if (status == STATUS_COMMITTED) {
+                        notifyListeners(bound);
+                    }
+                    generation.incrementAndGet();
+                }
+            });
+            changes = bound;
+        }
+
+        return changes;
+    }
+
+    private void notifyListeners(Changes changes) {
+        for (Consumer<Changes> listener : listeners) {
+            listener.accept(changes);
+        }
+    }
+
+    /**
+     * The documents changed by a transaction. Once every document may have been changed, the ids are not collected
+     * anymore. The version is incremented by every change, so anything calculated from the changes can tell whether
+     * it is still up to date.
+     */
+    public static class Changes {
+
+        private final Set<Long> documentIds = new HashSet<>();
+        private boolean all;
+        private int version;
+
+        private Changes add(Collection<Long> changedDocumentIds) {
+            if (changedDocumentIds == null) {
+                all = true;
+                documentIds.clear();
+            } else if (!all) {
+                documentIds.addAll(changedDocumentIds);
+            }
+            version++;
+
+            return this;
+        }
+
+        /**
+         * @return true if every document may have been changed
+         */
+        public boolean isAll() {
+            return all;
+        }
+
+        /**
+         * @return the ids of the changed documents, empty if every document may have been changed
+         */
+        public Set<Long> getDocumentIds() {
+            return Collections.unmodifiableSet(documentIds);
+        }
+
+        public int getVersion() {
+            return version;
+        }
+    }
+}
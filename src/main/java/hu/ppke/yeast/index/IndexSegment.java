@@ -0,0 +1,69 @@
+package hu.ppke.yeast.index;
+
+/**
+ * An immutable part of the inverted index. The documents of a segment have consecutive segment-local ids
+ * assigned in ascending document id order, the postings refer to the documents by these ids.
+ * The indices are stored in a term dictionary ordered by the index id.
+ */
+public interface IndexSegment {
+
+    int getNumberOfDocuments();
+
+    /**
+     * @param localId segment-local id of the document
+     * @return the id of the document
+     */
+    long getDocumentId(int localId);
+
+    /**
+     * @param documentId id of the document
+     * @return the segment-local id of the document, or -1 if the segment does not contain it
+     */
+    int findDocument(long documentId);
+
+    /**
+     * @param localId segment-local id of the document
+     * @return the indices of the document together with their frequencies
+     */
+    TermVector getTermVector(int localId);
+
+    int getNumberOfIndices();
+
+    /**
+     * @param indexId id of the index
+     * @return the position of the index in the term dictionary, or -1 if no document of the segment contains it
+     */
+    int findIndex(long indexId);
+
+    /**
+     * @param position position of the index in the term dictionary
+     * @return the id of the index
+     */
+    long getIndexId(int position);
+
+    /**
+     * @param position position of the index in the term dictionary
+     * @return the number of documents of the segment containing the index
+     */
+    int getDocumentFrequency(int position);
+
+    /**
+     * @param position position of the index in the term dictionary
+     * @return the highest frequency of the index in any of the documents of the segment
+     */
+    long getMaxFrequency(int position);
+
+    /**
+     * @param position position of the index in the term dictionary
+     * @return the postings of the index, the document ids are segment-local
+     */
+    PostingIterator getPostings(int position);
+
+    /**
+     * @param position position of the index in the term dictionary
+     * @param fromLocalId segment-local id of the first document needed
+     * @return the postings of the index starting before the first document with at least the given id,
+     * the skipped postings all belong to lower ids
+     */
+    PostingIterator getPostings(int position, int fromLocalId);
+}
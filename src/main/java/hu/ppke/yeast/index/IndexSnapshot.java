@@ -0,0 +1,731 @@
+package hu.ppke.yeast.index;
+
+import hu.ppke.yeast.calculator.SparseVector;
+import hu.ppke.yeast.enumeration.SimiliarityMeasure;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+import static hu.ppke.yeast.calculator.ClassicalSimilarityCalculator.calculateSimilarity;
+import static hu.ppke.yeast.calculator.HyperbolicSimilarityCalculator.calculateEuclideanDistance;
+import static hu.ppke.yeast.calculator.HyperbolicSimilarityCalculator.calculateHyperbolicMeasure;
+import static hu.ppke.yeast.calculator.WeightCalculator.calculateWeight;
+import static hu.ppke.yeast.enumeration.SimiliarityMeasure.*;
+
+/**
+ * This class is responsible for scoring the documents of a fixed state of the {@link InvertedIndex}.
+ * <p>
+ * A snapshot consists of immutable segments, the documents deleted from them and the collection statistics
+ * belonging to them, so it can be searched without locking while the index is changed. The weights are
+ * calculated from the postings at query time, only the norms of the documents are kept, see {@link SegmentNorms}.
+ */
+public class IndexSnapshot {
+
+    private static final double UPPER_BOUND_TOLERANCE = 1e-9;
+
+    private final long generation;
+    private final List<IndexSegment> segments;
+    private final List<SegmentNorms> segmentNorms;
+    private final List<BitSet> deletedDocuments;
+    private final Map<Long, Integer> documentFrequencies;
+    private final int numberOfDocuments;
+    private final IndexSnapshot base;
+
+    /**
+     * @param generation          the state of the index the snapshot belongs to
+     * @param segments            the segments of the index
+     * @param segmentNorms        the norms of the documents for every segment
+     * @param deletedDocuments    the segment-local ids of the deleted documents for every segment, not modified later
+     * @param documentFrequencies index id - number of (not deleted) documents containing the index pairs
+     * @param numberOfDocuments   the number of (not deleted) documents
+     */
+    IndexSnapshot(long generation, List<IndexSegment> segments, List<SegmentNorms> segmentNorms,
+                  List<BitSet> deletedDocuments, Map<Long, Integer> documentFrequencies, int numberOfDocuments) {
+        this(generation, segments, segmentNorms, deletedDocuments, documentFrequencies, numberOfDocuments, null);
+    }
+
+    /**
+     * @param base the snapshot the norms of the first segments belong to, or null if every segment has its own
+     */
+    private IndexSnapshot(long generation, List<IndexSegment> segments, List<SegmentNorms> segmentNorms,
+                          List<BitSet> deletedDocuments, Map<Long, Integer> documentFrequencies, int numberOfDocuments,
+                          IndexSnapshot base) {
+        this.generation = generation;
+        this.segments = segments;
+        this.segmentNorms = segmentNorms;
+        this.deletedDocuments = deletedDocuments;
+        this.documentFrequencies = documentFrequencies;
+        this.numberOfDocuments = numberOfDocuments;
+        this.base = base;
+    }
+
+    /**
+     * Creates the snapshot seen by a transaction that changed the index. The changed documents are added as a new
+     * segment and deleted from the segments of this snapshot. The norms of these segments are kept, they are
+     * calculated with the statistics of this snapshot.
+     *
+     * @param added   id - term vector pairs of the added or replaced documents
+     * @param removed ids of the replaced and deleted documents
+     * @param cleared true if every document of this snapshot was deleted
+     * @return the snapshot with the changes
+     */
+    IndexSnapshot withChanges(SortedMap<Long, TermVector> added, Set<Long> removed, boolean cleared) {
+        List<IndexSegment> changedSegments = new ArrayList<>();
+        List<SegmentNorms> changedNorms = new ArrayList<>();
+        List<BitSet> changedDeletions = new ArrayList<>();
+        Map<Long, Integer> changedFrequencies = cleared ? new HashMap<>() : new HashMap<>(documentFrequencies);
+        int changedNumberOfDocuments = cleared ? 0 : numberOfDocuments;
+
+        for (int s = 0; !cleared && s < segments.size(); s++) {
+            IndexSegment segment = segments.get(s);
+            BitSet deleted = deletedDocuments.get(s);
+            for (Long documentId : removed) {
+                int localId = segment.findDocument(documentId);
+                if (localId >= 0 && !deleted.get(localId)) {
+                    if (deleted == deletedDocuments.get(s)) {
+                        deleted = (BitSet) deleted.clone();
+                    }
+                    deleted.set(localId);
+                    TermVector termVector = segment.getTermVector(localId);
+                    for (int i = 0; i < termVector.size(); i++) {
+                        changedFrequencies.computeIfPresent(termVector.getIndexId(i), (k, count) -> count > 1 ? count - 1 : null);
+                    }
+                    changedNumberOfDocuments--;
+                }
+            }
+            changedSegments.add(segment);
+            changedNorms.add(segmentNorms.get(s));
+            changedDeletions.add(deleted);
+        }
+        if (!added.isEmpty()) {
+            MemorySegment segment = new MemorySegment(added);
+            for (TermVector termVector : added.values()) {
+                for (int i = 0; i < termVector.size(); i++) {
+                    changedFrequencies.merge(termVector.getIndexId(i), 1, Integer::sum);
+                }
+                changedNumberOfDocuments++;
+            }
+            changedSegments.add(segment);
+            changedNorms.add(new SegmentNorms(segment));
+            changedDeletions.add(new BitSet());
+        }
+
+        return new IndexSnapshot(generation, changedSegments, changedNorms, changedDeletions, changedFrequencies,
+            changedNumberOfDocuments, cleared ? null : this);
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+    public int getNumberOfDocuments() {
+        return numberOfDocuments;
+    }
+
+    public int getNumberOfSegments() {
+        return segments.size();
+    }
+
+    /**
+     * Scores the documents against the query on the calling thread and keeps the best ones
+     *
+     * @param queryFrequencies index id - frequency pairs of the query
+     * @param measure          the chosen measure
+     * @param limit            the maximum number of documents to return
+     * @return the best scoring documents in descending similarity order, documents with equal similarity
+     * are ordered by their id, documents with zero similarity are left out
+     */
+    public List<ScoredDocument> search(Map<Long, Long> queryFrequencies, SimiliarityMeasure measure, int limit) {
+        return search(queryFrequencies, measure, limit, null, 1);
+    }
+
+    /**
+     * Scores the documents against the query and keeps the best ones. The documents are split into chunks of
+     * consecutive segment-local ids, the chunks are scored in parallel tasks, each keeping its own best documents,
+     * which are merged at the end. The result is the same as with a single task.
+     *
+     * @param queryFrequencies index id - frequency pairs of the query
+     * @param measure          the chosen measure
+     * @param limit            the maximum number of documents to return
+     * @param scoringPool      the pool running the tasks, or null to score on the calling thread
+     * @param parallelism      the requested number of tasks, or 0 for the default of the pool
+     * @return the best scoring documents in descending similarity order, documents with equal similarity
+     * are ordered by their id, documents with zero similarity are left out
+     */
+    public List<ScoredDocument> search(Map<Long, Long> queryFrequencies, SimiliarityMeasure measure, int limit,
+                                       ScoringPool scoringPool, int parallelism) {
+        return search(queryFrequencies, measure, limit, scoringPool, parallelism, null);
+    }
+
+    /**
+     * Scores the documents against the query and keeps the best ones ranked after a given document,
+     * used to page through the results
+     *
+     * @param after the last document of the previous page, or null for the first page
+     * @see #search(Map, SimiliarityMeasure, int, ScoringPool, int)
+     */
+    public List<ScoredDocument> search(Map<Long, Long> queryFrequencies, SimiliarityMeasure measure, int limit,
+                                       ScoringPool scoringPool, int parallelism, ScoredDocument after) {
+        SparseVector queryVector = getQueryVector(queryFrequencies);
+        int numberOfTasks = scoringPool == null ? 1 : scoringPool.getNumberOfTasks(parallelism, numberOfDocuments);
+        List<List<Chunk>> tasks = split(numberOfTasks);
+
+        List<TopDocumentsCollector> collectors;
+        if (HYPERBOLIC.equals(measure)) {
+            collectors = searchHyperbolic(queryVector, tasks, limit, after, scoringPool);
+        } else {
+            collectors = run(scoringPool, tasks, chunks -> {
+                TopDocumentsCollector collector = new TopDocumentsCollector(limit, after);
+                for (Chunk chunk : chunks) {
+                    searchClassical(chunk, queryVector, measure, collector);
+                }
+                return collector;
+            });
+        }
+
+        return merge(collectors, limit);
+    }
+
+    /**
+     * Scores the documents against the query with the hyperbolic measure, calculating the euclidean distances from
+     * the norms and the dot products. Only the postings of the query indices are read: the other documents have
+     * zero dot product, so their distance only depends on their norm. They are visited in the order of their norms,
+     * the closest first, until no further document can reach the threshold of the full collector, the farthest
+     * one gives the maximum distance.
+     * <p>
+     * The tasks first calculate the dot products of their chunks in parallel. Once the maximum distance is known,
+     * every task scores the matching documents of its chunks, and visits the same ranges of the documents of
+     * the segments ordered by their norms, so each document is scored by exactly one task.
+     *
+     * @param queryFrequencies index id - frequency pairs of the query
+     * @param limit            the maximum number of documents to return
+     * @param scoringPool      the pool running the tasks, or null to score on the calling thread
+     * @param parallelism      the requested number of tasks, or 0 for the default of the pool
+     * @param after            the last document of the previous page, or null for the first page
+     * @return the best scoring documents in descending similarity order, documents with equal similarity
+     * are ordered by their id
+     */
+    public List<ScoredDocument> searchHyperbolic(Map<Long, Long> queryFrequencies, int limit, ScoringPool scoringPool,
+                                                 int parallelism, ScoredDocument after) {
+        SparseVector queryVector = getQueryVector(queryFrequencies);
+        double querySquares = queryVector.getNorm() * queryVector.getNorm();
+        int numberOfTasks = scoringPool == null ? 1 : scoringPool.getNumberOfTasks(parallelism, numberOfDocuments);
+        List<List<Chunk>> tasks = split(numberOfTasks);
+
+        List<List<Matches>> matches = run(scoringPool, tasks, chunks -> {
+            List<Matches> taskMatches = new ArrayList<>(chunks.size());
+            for (Chunk chunk : chunks) {
+                taskMatches.add(new Matches(chunk.segment, getDotProducts(chunk, queryVector)));
+            }
+            return taskMatches;
+        });
+
+        List<BitSet> matchingDocuments = new ArrayList<>(segments.size());
+        for (int s = 0; s < segments.size(); s++) {
+            matchingDocuments.add(new BitSet());
+        }
+        double maxD = 0;
+        for (List<Matches> taskMatches : matches) {
+            for (Matches chunkMatches : taskMatches) {
+                SegmentNorms.Norms norms = getNorms(chunkMatches.segment);
+                for (Map.Entry<Integer, Double> entry : chunkMatches.dotProducts.entrySet()) {
+                    matchingDocuments.get(chunkMatches.segment).set(entry.getKey());
+                    double norm = norms.getNorm(entry.getKey());
+                    double distance = calculateEuclideanDistance(querySquares, norm * norm, entry.getValue());
+                    maxD = distance > maxD ? distance : maxD;
+                }
+            }
+        }
+        for (int s = 0; s < segments.size(); s++) {
+            SegmentNorms.Norms norms = getNorms(s);
+            int[] byNorm = norms.getDocumentsByNorm();
+            for (int i = byNorm.length - 1; i >= 0; i--) {
+                int localId = byNorm[i];
+                if (!deletedDocuments.get(s).get(localId) && !matchingDocuments.get(s).get(localId)) {
+                    double norm = norms.getNorm(localId);
+                    double distance = calculateEuclideanDistance(querySquares, norm * norm, 0.0);
+                    maxD = distance > maxD ? distance : maxD;
+                    break;
+                }
+            }
+        }
+        double r = maxD * 1.1;
+
+        List<Integer> taskNumbers = new ArrayList<>(tasks.size());
+        for (int t = 0; t < tasks.size(); t++) {
+            taskNumbers.add(t);
+        }
+        List<TopDocumentsCollector> collectors = run(scoringPool, taskNumbers, t -> {
+            TopDocumentsCollector collector = new TopDocumentsCollector(limit, after);
+            for (Matches chunkMatches : matches.get(t)) {
+                IndexSegment segment = segments.get(chunkMatches.segment);
+                SegmentNorms.Norms norms = getNorms(chunkMatches.segment);
+                for (Map.Entry<Integer, Double> entry : chunkMatches.dotProducts.entrySet()) {
+                    double norm = norms.getNorm(entry.getKey());
+                    double similarity = calculateHyperbolicMeasure(
+                        calculateEuclideanDistance(querySquares, norm * norm, entry.getValue()), r);
+                    if (similarity != 0.0) {
+                        collector.collect(segment.getDocumentId(entry.getKey()), similarity);
+                    }
+                }
+            }
+            for (Chunk chunk : tasks.get(t)) {
+                collectByNorm(chunk, querySquares, r, matchingDocuments.get(chunk.segment), collector);
+            }
+            return collector;
+        });
+
+        return merge(collectors, limit);
+    }
+
+    /**
+     * Scores the documents not containing any of the query indices in the range of the chunk within the documents
+     * of the segment ordered by their norms
+     */
+    private void collectByNorm(Chunk chunk, double querySquares, double r, BitSet matching,
+                               TopDocumentsCollector collector) {
+        IndexSegment segment = segments.get(chunk.segment);
+        SegmentNorms.Norms norms = getNorms(chunk.segment);
+        BitSet deleted = deletedDocuments.get(chunk.segment);
+        int[] byNorm = norms.getDocumentsByNorm();
+
+        for (int i = chunk.from; i < chunk.to; i++) {
+            int localId = byNorm[i];
+            if (deleted.get(localId) || matching.get(localId)) {
+                continue;
+            }
+            double norm = norms.getNorm(localId);
+            double similarity = calculateHyperbolicMeasure(calculateEuclideanDistance(querySquares, norm * norm, 0.0), r);
+            // The similarity does not increase with the norm
+            if (collector.isFull() && similarity < collector.getThreshold()) {
+                break;
+            }
+            if (similarity != 0.0) {
+                collector.collect(segment.getDocumentId(localId), similarity);
+            }
+        }
+    }
+
+    /**
+     * @return segment-local document id - dot product pairs of the documents of the chunk containing any of
+     * the query indices
+     */
+    private Map<Integer, Double> getDotProducts(Chunk chunk, SparseVector queryVector) {
+        Map<Integer, Double> dotProducts = new HashMap<>();
+        IndexSegment segment = segments.get(chunk.segment);
+        BitSet deleted = deletedDocuments.get(chunk.segment);
+
+        for (int i = 0; i < queryVector.size(); i++) {
+            int position = segment.findIndex(queryVector.getIndexId(i));
+            if (position < 0) {
+                continue;
+            }
+            long documentFrequency = documentFrequencies.get(queryVector.getIndexId(i));
+            for (PostingIterator iterator = segment.getPostings(position, chunk.from); iterator.next(); ) {
+                int localId = (int) iterator.documentId();
+                if (localId >= chunk.to) {
+                    break;
+                }
+                if (localId < chunk.from || deleted.get(localId)) {
+                    continue;
+                }
+                double weight = calculateWeight(iterator.frequency(), numberOfDocuments, documentFrequency);
+                if (weight != 0.0) {
+                    dotProducts.merge(localId, queryVector.getWeight(i) * weight, Double::sum);
+                }
+            }
+        }
+
+        return dotProducts;
+    }
+
+    /**
+     * Splits the documents of the segments into chunks of nearly equal size, a task may get chunks of
+     * more than one segment
+     */
+    private List<List<Chunk>> split(int numberOfTasks) {
+        int totalSize = 0;
+        for (IndexSegment segment : segments) {
+            totalSize += segment.getNumberOfDocuments();
+        }
+        int taskSize = Math.max(1, (totalSize + numberOfTasks - 1) / numberOfTasks);
+
+        List<List<Chunk>> tasks = new ArrayList<>();
+        List<Chunk> current = new ArrayList<>();
+        int currentSize = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            int size = segments.get(i).getNumberOfDocuments();
+            for (int from = 0; from < size; ) {
+                int to = Math.min(size, from + taskSize - currentSize);
+                current.add(new Chunk(i, from, to));
+                currentSize += to - from;
+                from = to;
+                if (currentSize == taskSize) {
+                    tasks.add(current);
+                    current = new ArrayList<>();
+                    currentSize = 0;
+                }
+            }
+        }
+        if (!current.isEmpty() || tasks.isEmpty()) {
+            tasks.add(current);
+        }
+
+        return tasks;
+    }
+
+    /**
+     * @return the results of the task for every input, calculated in parallel if there is a pool
+     */
+    private static <I, T> List<T> run(ScoringPool scoringPool, List<I> inputs, Function<I, T> task) {
+        if (scoringPool == null || inputs.size() == 1) {
+            List<T> results = new ArrayList<>(inputs.size());
+            for (I input : inputs) {
+                results.add(task.apply(input));
+            }
+            return results;
+        }
+
+        List<Callable<T>> callables = new ArrayList<>(inputs.size());
+        for (I input : inputs) {
+            callables.add(() -> task.apply(input));
+        }
+
+        return scoringPool.invokeAll(callables);
+    }
+
+    private static List<ScoredDocument> merge(List<TopDocumentsCollector> collectors, int limit) {
+        if (collectors.size() == 1) {
+            return collectors.get(0).getTopDocuments();
+        }
+
+        TopDocumentsCollector merged = new TopDocumentsCollector(limit);
+        for (TopDocumentsCollector collector : collectors) {
+            merged.collectAll(collector);
+        }
+
+        return merged.getTopDocuments();
+    }
+
+    /**
+     * Scores the documents of a segment document-at-a-time using the MaxScore algorithm. The query indices are
+     * ordered by the upper bound of their contribution to the similarity. Once the collector is full, the indices
+     * whose summed upper bounds can not beat its threshold become non-essential: documents containing only those
+     * indices are never visited, and a visited document is only scored if its upper bound beats the threshold.
+     * The postings of the non-essential indices are only advanced to the scored documents.
+     * The collector is shared by the chunks of a task, so the threshold reached in a chunk prunes the next ones.
+     * The postings before the chunk are skipped using the skip entries, the ones after it are never read.
+     */
+    private void searchClassical(Chunk chunk, SparseVector queryVector, SimiliarityMeasure measure,
+                                 TopDocumentsCollector collector) {
+        IndexSegment segment = segments.get(chunk.segment);
+        // Only the cosine and the Dice measures use the norms and the sums
+        SegmentNorms.Norms norms = COSINE.equals(measure) || DICE.equals(measure) ? getNorms(chunk.segment) : null;
+        BitSet deleted = deletedDocuments.get(chunk.segment);
+        int n = queryVector.size();
+        int[] positions = new int[n];
+        long[] queryDocumentFrequencies = new long[n];
+        for (int i = 0; i < n; i++) {
+            positions[i] = segment.findIndex(queryVector.getIndexId(i));
+            queryDocumentFrequencies[i] = documentFrequencies.get(queryVector.getIndexId(i));
+        }
+        double[] upperBounds = getUpperBounds(segment, norms, positions, queryVector, measure);
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(i -> upperBounds[i]));
+
+        double[] cumulativeUpperBounds = new double[n];
+        PostingIterator[] iterators = new PostingIterator[n];
+        long[] currentDocumentIds = new long[n];
+        // The contributions are summed in the order of the query indices, regardless of the segment
+        double[] contributions = new double[n];
+
+        for (int i = 0; i < n; i++) {
+            cumulativeUpperBounds[i] = (i > 0 ? cumulativeUpperBounds[i - 1] : 0) + upperBounds[order[i]];
+            int position = positions[order[i]];
+            iterators[i] = position < 0 ? null : segment.getPostings(position, chunk.from);
+            currentDocumentIds[i] = Long.MAX_VALUE;
+            if (iterators[i] != null) {
+                do {
+                    currentDocumentIds[i] = nextDocument(iterators[i], chunk.to);
+                } while (currentDocumentIds[i] < chunk.from);
+            }
+        }
+
+        int firstEssential = 0;
+        while (true) {
+            while (firstEssential < n && collector.isFull() &&
+                withTolerance(cumulativeUpperBounds[firstEssential]) <= collector.getThreshold()) {
+                firstEssential++;
+            }
+
+            long localId = Long.MAX_VALUE;
+            for (int i = firstEssential; i < n; i++) {
+                localId = Math.min(localId, currentDocumentIds[i]);
+            }
+            if (localId == Long.MAX_VALUE) {
+                break;
+            }
+
+            Arrays.fill(contributions, 0.0);
+            double upperBound = firstEssential > 0 ? cumulativeUpperBounds[firstEssential - 1] : 0;
+            for (int i = firstEssential; i < n; i++) {
+                if (currentDocumentIds[i] == localId) {
+                    upperBound += upperBounds[order[i]];
+                    contributions[order[i]] = getContribution(queryVector, queryDocumentFrequencies, order[i], iterators[i]);
+                    currentDocumentIds[i] = nextDocument(iterators[i], chunk.to);
+                }
+            }
+
+            if (!deleted.get((int) localId) && (!collector.isFull() || withTolerance(upperBound) > collector.getThreshold())) {
+                for (int i = 0; i < firstEssential; i++) {
+                    while (currentDocumentIds[i] < localId) {
+                        currentDocumentIds[i] = nextDocument(iterators[i], chunk.to);
+                    }
+                    if (currentDocumentIds[i] == localId) {
+                        contributions[order[i]] = getContribution(queryVector, queryDocumentFrequencies, order[i], iterators[i]);
+                        currentDocumentIds[i] = nextDocument(iterators[i], chunk.to);
+                    }
+                }
+
+                double similarity = score(segment, norms, (int) localId, queryVector, contributions, measure);
+                if (similarity != 0.0) {
+                    collector.collect(segment.getDocumentId((int) localId), similarity);
+                }
+            }
+        }
+    }
+
+    private double getContribution(SparseVector queryVector, long[] queryDocumentFrequencies, int i,
+                                   PostingIterator iterator) {
+        return queryVector.getWeight(i) * calculateWeight(iterator.frequency(), numberOfDocuments, queryDocumentFrequencies[i]);
+    }
+
+    /**
+     * The Jaccard measure is only non-zero if the document has exactly the indices of the query,
+     * so the vector of the document is only calculated if it contains all of them
+     */
+    private double score(IndexSegment segment, SegmentNorms.Norms norms, int localId, SparseVector queryVector,
+                         double[] contributions, SimiliarityMeasure measure) {
+        double dotProduct = 0;
+        int nrOfCommonIndices = 0;
+        for (double contribution : contributions) {
+            dotProduct += contribution;
+            nrOfCommonIndices += contribution != 0.0 ? 1 : 0;
+        }
+
+        if (DOT_PRODUCT.equals(measure)) {
+            return dotProduct;
+        }
+        if (JACCARD.equals(measure)) {
+            return nrOfCommonIndices == queryVector.size() ?
+                calculateSimilarity(queryVector, getDocumentVector(segment.getTermVector(localId)), JACCARD) : 0.0;
+        }
+
+        return calculateSimilarity(queryVector, dotProduct, norms.getNorm(localId), norms.getSum(localId), measure);
+    }
+
+    /**
+     * @return the next segment-local document id of the postings, or Long.MAX_VALUE if there is none before the end
+     */
+    private static long nextDocument(PostingIterator iterator, int to) {
+        return iterator.next() && iterator.documentId() < to ? iterator.documentId() : Long.MAX_VALUE;
+    }
+
+    /**
+     * The weights are never negative, so a document can contribute to the similarity through a query index
+     * at most by the highest weight of the index in the segment. For the cosine measure the document weight
+     * normalized with the norm is at most 1, or the ratio of the current and the former inverse document
+     * frequency if the norms were calculated with other statistics. The Jaccard measure has no such bound,
+     * so every matching document is scored. Indices missing from the segment contribute nothing.
+     */
+    private double[] getUpperBounds(IndexSegment segment, SegmentNorms.Norms norms, int[] positions,
+                                    SparseVector queryVector, SimiliarityMeasure measure) {
+        double[] upperBounds = new double[queryVector.size()];
+        double querySum = 0;
+        double queryNorm = 0;
+
+        for (int i = 0; i < queryVector.size(); i++) {
+            querySum += queryVector.getWeight(i);
+            queryNorm += queryVector.getWeight(i) * queryVector.getWeight(i);
+        }
+        queryNorm = Math.sqrt(queryNorm);
+
+        for (int i = 0; i < queryVector.size(); i++) {
+            if (positions[i] < 0) {
+                continue;
+            }
+            long documentFrequency = documentFrequencies.get(queryVector.getIndexId(i));
+
+            if (DOT_PRODUCT.equals(measure)) {
+                upperBounds[i] = queryVector.getWeight(i) *
+                    calculateWeight(segment.getMaxFrequency(positions[i]), numberOfDocuments, documentFrequency);
+            } else if (COSINE.equals(measure)) {
+                double inverseDocumentFrequency = calculateWeight(1L, numberOfDocuments, documentFrequency);
+                double normInverseDocumentFrequency = norms.getInverseDocumentFrequency(positions[i]);
+                upperBounds[i] = inverseDocumentFrequency == normInverseDocumentFrequency ?
+                    queryVector.getWeight(i) / queryNorm :
+                    queryVector.getWeight(i) / queryNorm * (inverseDocumentFrequency / normInverseDocumentFrequency);
+            } else if (DICE.equals(measure)) {
+                upperBounds[i] = 2 * queryVector.getWeight(i) *
+                    calculateWeight(segment.getMaxFrequency(positions[i]), numberOfDocuments, documentFrequency) / querySum;
+            } else {
+                upperBounds[i] = Double.POSITIVE_INFINITY;
+            }
+        }
+
+        return upperBounds;
+    }
+
+    /**
+     * The bounds and the similarities are summed in different orders, so the bounds are loosened
+     * to cover the rounding errors
+     */
+    private static double withTolerance(double upperBound) {
+        return upperBound * (1 + UPPER_BOUND_TOLERANCE);
+    }
+
+    /**
+     * The distances of the documents are calculated by the tasks in parallel, together with their maximum
+     * within the chunks of the task. The radius depends on the maximum of all distances, so the similarities
+     * are calculated by the same tasks once the maximum of the task results is known.
+     */
+    private List<TopDocumentsCollector> searchHyperbolic(SparseVector queryVector, List<List<Chunk>> tasks, int limit,
+                                                         ScoredDocument after, ScoringPool scoringPool) {
+        List<Distances> distances = run(scoringPool, tasks, chunks -> {
+            Distances taskDistances = new Distances(chunks);
+            for (Chunk chunk : chunks) {
+                IndexSegment segment = segments.get(chunk.segment);
+                BitSet deleted = deletedDocuments.get(chunk.segment);
+                for (int localId = deleted.nextClearBit(chunk.from); localId < chunk.to;
+                     localId = deleted.nextClearBit(localId + 1)) {
+
+                    SparseVector documentVector = getDocumentVector(segment.getTermVector(localId));
+                    taskDistances.add(segment.getDocumentId(localId), calculateEuclideanDistance(queryVector, documentVector));
+                }
+            }
+            return taskDistances;
+        });
+
+        double maxD = 0;
+        for (Distances taskDistances : distances) {
+            maxD = taskDistances.maxD > maxD ? taskDistances.maxD : maxD;
+        }
+        double r = maxD * 1.1;
+
+        return run(scoringPool, distances, taskDistances -> {
+            TopDocumentsCollector collector = new TopDocumentsCollector(limit, after);
+            for (int i = 0; i < taskDistances.size; i++) {
+                double similarity = calculateHyperbolicMeasure(taskDistances.distances[i], r);
+                if (similarity != 0.0) {
+                    collector.collect(taskDistances.documentIds[i], similarity);
+                }
+            }
+            return collector;
+        });
+    }
+
+    private SparseVector getQueryVector(Map<Long, Long> queryFrequencies) {
+        Map<Long, Double> queryWeights = new HashMap<>();
+
+        for (Map.Entry<Long, Long> entry : queryFrequencies.entrySet()) {
+            Integer documentFrequency = documentFrequencies.get(entry.getKey());
+            if (documentFrequency != null && documentFrequency > 0) {
+                queryWeights.put(entry.getKey(), calculateWeight(entry.getValue(), numberOfDocuments, (long) documentFrequency));
+            }
+        }
+
+        return SparseVector.of(queryWeights);
+    }
+
+    private SegmentNorms.Norms getNorms(int s) {
+        if (base != null && s < base.segments.size()) {
+            return base.getNorms(s);
+        }
+        return segmentNorms.get(s).get(documentFrequencies, numberOfDocuments);
+    }
+
+    /**
+     * The term vector is already ordered by the index id, so the weights can be written directly,
+     * only the zero weights of the indices present in every document are left out
+     */
+    private SparseVector getDocumentVector(TermVector termVector) {
+        long[] indexIds = new long[termVector.size()];
+        double[] weights = new double[termVector.size()];
+        int size = 0;
+
+        for (int i = 0; i < termVector.size(); i++) {
+            long indexId = termVector.getIndexId(i);
+            double weight = calculateWeight(termVector.getFrequency(i), numberOfDocuments, (long) documentFrequencies.get(indexId));
+            if (weight != 0.0) {
+                indexIds[size] = indexId;
+                weights[size] = weight;
+                size++;
+            }
+        }
+
+        return new SparseVector(Arrays.copyOf(indexIds, size), Arrays.copyOf(weights, size));
+    }
+
+    /**
+     * Consecutive segment-local document ids of a segment, from inclusive, to exclusive. The sparse hyperbolic
+     * scoring uses the same range of the documents ordered by their norms as well.
+     */
+    private static class Chunk {
+
+        private final int segment;
+        private final int from;
+        private final int to;
+
+        private Chunk(int segment, int from, int to) {
+            this.segment = segment;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    /**
+     * The dot products of the documents of a chunk containing any of the query indices
+     */
+    private static class Matches {
+
+        private final int segment;
+        private final Map<Integer, Double> dotProducts;
+
+        private Matches(int segment, Map<Integer, Double> dotProducts) {
+            this.segment = segment;
+            this.dotProducts = dotProducts;
+        }
+    }
+
+    /**
+     * The euclidean distances of the documents of a task together with their maximum
+     */
+    private static class Distances {
+
+        private final long[] documentIds;
+        private final double[] distances;
+        private int size;
+        private double maxD;
+
+        private Distances(List<Chunk> chunks) {
+            int capacity = 0;
+            for (Chunk chunk : chunks) {
+                capacity += chunk.to - chunk.from;
+            }
+            this.documentIds = new long[capacity];
+            this.distances = new double[capacity];
+        }
+
+        private void add(long documentId, double euclideanDistance) {
+            maxD = euclideanDistance > maxD ? euclideanDistance : maxD;
+            documentIds[size] = documentId;
+            distances[size] = euclideanDistance;
+            size++;
+        }
+    }
+}
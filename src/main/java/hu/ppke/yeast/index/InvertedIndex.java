@@ -0,0 +1,871 @@
+package hu.ppke.yeast.index;
+
+import hu.ppke.yeast.config.ApplicationProperties;
+import hu.ppke.yeast.enumeration.HyperbolicScoring;
+import hu.ppke.yeast.enumeration.SimiliarityMeasure;
+import hu.ppke.yeast.repository.DocumentIndexRepository;
+import hu.ppke.yeast.repository.DocumentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import static hu.ppke.yeast.enumeration.SimiliarityMeasure.HYPERBOLIC;
+
+/**
+ * This class is responsible for keeping an inverted index of the persisted document-index pairs
+ * and for scoring the documents against a query using it.
+ * <p>
+ * The index is made of immutable segments merged in the background, searches run on an {@link IndexSnapshot}.
+ * The changes of a transaction are only seen by itself until it is committed. If an index directory is configured,
+ * the index is committed there and reused on the next start while the DB is unchanged.
+ */
+@Component
+public class InvertedIndex {
+
+    private static final String SEGMENT_FILE_EXTENSION = ".seg";
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final DocumentRepository documentRepository;
+    private final DocumentIndexRepository documentIndexRepository;
+    private final CommittedReader committedReader;
+    private final ApplicationProperties applicationProperties;
+    private final Executor executor;
+    private final IndexGeneration indexGeneration;
+    private final TieredMergePolicy mergePolicy;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final List<SegmentState> segments = new ArrayList<>();
+    private final Map<Long, Integer> documentFrequencies = new HashMap<>();
+    private final Set<Path> committedFiles = new HashSet<>();
+    private final Set<Path> obsoleteFiles = new HashSet<>();
+    private SortedMap<Long, TermVector> buffer = new TreeMap<>();
+
+    private int numberOfDocuments;
+    private volatile long generation;
+    private long committedGeneration = -1;
+    private long epoch;
+    private long segmentCounter;
+    private boolean closed;
+
+    private volatile IndexSnapshot snapshot;
+    private volatile long snapshotTime;
+    private volatile boolean loaded;
+
+    @Autowired
+    public InvertedIndex(DocumentRepository documentRepository,
+                         DocumentIndexRepository documentIndexRepository,
+                         CommittedReader committedReader,
+                         ApplicationProperties applicationProperties,
+                         @Qualifier("taskExecutor") Executor executor,
+                         IndexGeneration indexGeneration) {
+        this.documentRepository = documentRepository;
+        this.documentIndexRepository = documentIndexRepository;
+        this.committedReader = committedReader;
+        this.applicationProperties = applicationProperties;
+        this.executor = executor;
+        this.indexGeneration = indexGeneration;
+        this.mergePolicy = new TieredMergePolicy(applicationProperties.getIndex().getMergeFactor());
+    }
+
+    /**
+     * Adds a document to the index, if the document is already indexed its previous version is replaced
+     *
+     * @param documentId       id of the document
+     * @param indexFrequencies index id - frequency pairs of the document
+     */
+    public void addDocument(long documentId, Map<Long, Long> indexFrequencies) {
+        ensureLoaded();
+        TermVector termVector = new TermVector(indexFrequencies);
+        stage(changes -> changes.add(documentId, termVector));
+    }
+
+    /**
+     * Deletes a document from the index. The document is only marked as deleted in its segment, it is left out
+     * of the scoring and of the collection statistics immediately, and its space is reclaimed by the next merge
+     * of the segment.
+     *
+     * @param documentId id of the document
+     * @return true if the index contained the document
+     */
+    public boolean deleteDocument(long documentId) {
+        ensureLoaded();
+        boolean contained = containsDocument(documentId);
+        stage(changes -> changes.delete(documentId));
+
+        return contained;
+    }
+
+    /**
+     * Removes all documents from the index
+     */
+    public void clear() {
+        stage(StagedChanges::clear);
+    }
+
+    /**
+     * Scores the indexed documents against the query and keeps the best ones
+     *
+     * @param queryFrequencies index id - frequency pairs of the query
+     * @param measure          the chosen measure
+     * @param limit            the maximum number of documents to return
+     * @return the best scoring documents in descending similarity order, documents with equal similarity
+     * are ordered by their id, documents with zero similarity are left out
+     */
+    public List<ScoredDocument> search(Map<Long, Long> queryFrequencies, SimiliarityMeasure measure, int limit) {
+        return search(queryFrequencies, measure, limit, null, 1);
+    }
+
+    /**
+     * Scores the indexed documents against the query in parallel, see {@link IndexSnapshot}
+     *
+     * @param scoringPool the pool running the scoring tasks, or null to score on the calling thread
+     * @param parallelism the requested number of scoring tasks, or 0 for the default of the pool
+     */
+    public List<ScoredDocument> search(Map<Long, Long> queryFrequencies, SimiliarityMeasure measure, int limit,
+                                       ScoringPool scoringPool, int parallelism) {
+        return search(queryFrequencies, measure, limit, scoringPool, parallelism, null);
+    }
+
+    /**
+     * Scores the indexed documents against the query and keeps the best ones ranked after a given document.
+     * With {@link HyperbolicScoring#SPARSE} the hyperbolic measure only reads the postings of the query indices,
+     * see {@link IndexSnapshot#searchHyperbolic(Map, int, ScoringPool, int, ScoredDocument)}.
+     *
+     * @param after the last document of the previous page, or null for the first page
+     */
+    public List<ScoredDocument> search(Map<Long, Long> queryFrequencies, SimiliarityMeasure measure, int limit,
+                                       ScoringPool scoringPool, int parallelism, ScoredDocument after) {
+        ensureLoaded();
+
+        IndexSnapshot snapshot = acquireSnapshot();
+        if (HYPERBOLIC.equals(measure) &&
+            HyperbolicScoring.SPARSE.equals(applicationProperties.getSearch().getHyperbolicScoring())) {
+            return snapshot.searchHyperbolic(queryFrequencies, limit, scoringPool, parallelism, after);
+        }
+
+        return snapshot.search(queryFrequencies, measure, limit, scoringPool, parallelism, after);
+    }
+
+    public int getNumberOfDocuments() {
+        ensureLoaded();
+
+        return acquireSnapshot().getNumberOfDocuments();
+    }
+
+    /**
+     * @return the snapshot of the current state of the index, a new one is only created if the index was changed
+     * and the current one is older than the refresh interval. A transaction that changed the index sees its changes
+     * on top of it.
+     */
+    public IndexSnapshot acquireSnapshot() {
+        ensureLoaded();
+        IndexSnapshot current = snapshot;
+        if (current == null || (current.getGeneration() != generation && isRefreshDue())) {
+            current = refresh();
+        }
+
+        StagedChanges changes = TransactionChanges.get(this);
+        return changes != null ? changes.getSnapshot(current) : current;
+    }
+
+    /**
+     * Publishes the committed changes of the index to the searches regardless of the refresh interval
+     *
+     * @return the snapshot of the committed state of the index
+     */
+    public IndexSnapshot refresh() {
+        ensureLoaded();
+        lock.lock();
+        try {
+            IndexSnapshot current = snapshot;
+            if (current != null && current.getGeneration() == generation) {
+                return current;
+            }
+
+            freezeBuffer();
+            List<IndexSegment> snapshotSegments = new ArrayList<>(segments.size());
+            List<SegmentNorms> snapshotNorms = new ArrayList<>(segments.size());
+            List<BitSet> snapshotDeletions = new ArrayList<>(segments.size());
+            for (SegmentState state : segments) {
+                snapshotSegments.add(state.segment);
+                snapshotNorms.add(state.norms);
+                snapshotDeletions.add(state.getPublishedDeletions());
+            }
+            snapshot = new IndexSnapshot(generation, snapshotSegments, snapshotNorms, snapshotDeletions,
+                new HashMap<>(documentFrequencies), numberOfDocuments);
+            snapshotTime = System.nanoTime();
+            if (current != null && applicationProperties.getIndex().getRefreshInterval() > 0) {
+                // The results calculated from the previous snapshot may have been cached after the changes
+                indexGeneration.publish();
+            }
+
+            maybeMerge();
+
+            return snapshot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isRefreshDue() {
+        long refreshInterval = applicationProperties.getIndex().getRefreshInterval();
+        return refreshInterval <= 0 || System.nanoTime() - snapshotTime >= TimeUnit.MILLISECONDS.toNanos(refreshInterval);
+    }
+
+    /**
+     * @return true if the current transaction sees the document in the index
+     */
+    private boolean containsDocument(long documentId) {
+        StagedChanges changes = TransactionChanges.get(this);
+        if (changes != null && changes.added.containsKey(documentId)) {
+            return true;
+        }
+        if (changes != null && (changes.cleared || changes.removed.contains(documentId))) {
+            return false;
+        }
+
+        lock.lock();
+        try {
+            if (buffer.containsKey(documentId)) {
+                return true;
+            }
+            for (SegmentState state : segments) {
+                int localId = state.segment.findDocument(documentId);
+                if (localId >= 0 && !state.deletedDocuments.get(localId)) {
+                    return true;
+                }
+            }
+
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the removed version of the document, or null if the index did not contain it
+     */
+    private TermVector removeDocument(long documentId) {
+        TermVector previous = buffer.remove(documentId);
+
+        for (int i = 0; previous == null && i < segments.size(); i++) {
+            SegmentState state = segments.get(i);
+            int localId = state.segment.findDocument(documentId);
+            if (localId >= 0 && !state.deletedDocuments.get(localId)) {
+                state.delete(localId);
+                previous = state.segment.getTermVector(localId);
+            }
+        }
+
+        if (previous != null) {
+            removeStatistics(previous);
+        }
+
+        return previous;
+    }
+
+    private void addStatistics(TermVector termVector) {
+        for (int i = 0; i < termVector.size(); i++) {
+            documentFrequencies.merge(termVector.getIndexId(i), 1, Integer::sum);
+        }
+        numberOfDocuments++;
+    }
+
+    private void removeStatistics(TermVector termVector) {
+        for (int i = 0; i < termVector.size(); i++) {
+            documentFrequencies.computeIfPresent(termVector.getIndexId(i), (k, count) -> count > 1 ? count - 1 : null);
+        }
+        numberOfDocuments--;
+    }
+
+    private void addStatistics(SegmentState state) {
+        IndexSegment segment = state.segment;
+        for (int position = 0; position < segment.getNumberOfIndices(); position++) {
+            documentFrequencies.merge(segment.getIndexId(position), segment.getDocumentFrequency(position), Integer::sum);
+        }
+        numberOfDocuments += segment.getNumberOfDocuments();
+
+        BitSet deleted = state.deletedDocuments;
+        for (int localId = deleted.nextSetBit(0); localId >= 0; localId = deleted.nextSetBit(localId + 1)) {
+            removeStatistics(segment.getTermVector(localId));
+        }
+    }
+
+    private void freezeBuffer() {
+        if (!buffer.isEmpty()) {
+            segments.add(new SegmentState(new MemorySegment(buffer), null));
+            buffer = new TreeMap<>();
+        }
+    }
+
+    /**
+     * Starts the flush of the memory segments and the merges chosen by the merge policy. The segments already
+     * being merged are left out, and all chosen segments are marked before the first merge is started.
+     */
+    private void maybeMerge() {
+        if (closed) {
+            return;
+        }
+        Path directory = getDirectory();
+        List<List<SegmentState>> merges = new ArrayList<>();
+        List<Path> targetDirectories = new ArrayList<>();
+
+        if (directory != null) {
+            List<SegmentState> memorySegments = new ArrayList<>();
+            int nrOfDocumentsInMemory = 0;
+            for (SegmentState state : segments) {
+                if (!state.merging && state.path == null) {
+                    memorySegments.add(state);
+                    nrOfDocumentsInMemory += state.getNumberOfLiveDocuments();
+                }
+            }
+            if (nrOfDocumentsInMemory >= applicationProperties.getIndex().getFlushThreshold()) {
+                memorySegments.forEach(state -> state.merging = true);
+                merges.add(memorySegments);
+                targetDirectories.add(directory);
+            }
+        }
+
+        List<SegmentState> candidates = new ArrayList<>();
+        List<Integer> sizes = new ArrayList<>();
+        List<Integer> deletions = new ArrayList<>();
+        for (SegmentState state : segments) {
+            if (!state.merging) {
+                candidates.add(state);
+                sizes.add(state.getNumberOfLiveDocuments());
+                deletions.add(state.deletedDocuments.cardinality());
+            }
+        }
+        for (List<Integer> merge : mergePolicy.findMerges(sizes, deletions)) {
+            List<SegmentState> sources = new ArrayList<>();
+            boolean onDisk = false;
+            for (Integer position : merge) {
+                SegmentState state = candidates.get(position);
+                state.merging = true;
+                sources.add(state);
+                onDisk |= state.path != null;
+            }
+            merges.add(sources);
+            targetDirectories.add(onDisk ? directory : null);
+        }
+
+        for (int i = 0; i < merges.size(); i++) {
+            startMerge(merges.get(i), targetDirectories.get(i));
+        }
+    }
+
+    /**
+     * @param directory the directory to write the merged segment to, or null to keep it in memory
+     */
+    private void startMerge(List<SegmentState> sources, Path directory) {
+        List<BitSet> deletionsAtStart = new ArrayList<>();
+        for (SegmentState source : sources) {
+            deletionsAtStart.add((BitSet) source.deletedDocuments.clone());
+        }
+        Path path = directory != null ? directory.resolve(nextSegmentFileName()) : null;
+        long mergeEpoch = epoch;
+
+        try {
+            executor.execute(() -> merge(sources, deletionsAtStart, path, mergeEpoch));
+        } catch (RejectedExecutionException e) {
+            log.warn("Could not start merging " + sources.size() + " segments: " + e.getMessage());
+            for (SegmentState source : sources) {
+                source.merging = false;
+            }
+        }
+    }
+
+    /**
+     * Merges the documents not deleted at the start of the merge into a new segment, then replaces the source
+     * segments with it. The documents deleted during the merge are deleted from the new segment as well.
+     * If the index was reloaded or the sources were replaced in the meantime, the result is dropped.
+     */
+    private void merge(List<SegmentState> sources, List<BitSet> deletionsAtStart, Path path, long mergeEpoch) {
+        IndexSegment merged = null;
+        try {
+            merged = createSegment(getLiveDocuments(sources, deletionsAtStart), path);
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not merge " + sources.size() + " segments", e);
+        }
+
+        lock.lock();
+        try {
+            for (SegmentState source : sources) {
+                source.merging = false;
+            }
+            if (merged == null || mergeEpoch != epoch || !segments.containsAll(sources)) {
+                deleteQuietly(path);
+                return;
+            }
+
+            SegmentState state = new SegmentState(merged, path);
+            for (int i = 0; i < sources.size(); i++) {
+                SegmentState source = sources.get(i);
+                BitSet deletedDuringMerge = (BitSet) source.deletedDocuments.clone();
+                deletedDuringMerge.andNot(deletionsAtStart.get(i));
+                for (int localId = deletedDuringMerge.nextSetBit(0); localId >= 0;
+                     localId = deletedDuringMerge.nextSetBit(localId + 1)) {
+                    state.delete(merged.findDocument(source.segment.getDocumentId(localId)));
+                }
+            }
+            if (merged.getNumberOfDocuments() > 0) {
+                replaceSegments(sources, state);
+            } else {
+                replaceSegments(sources, null);
+                deleteQuietly(path);
+            }
+            log.debug("Merged " + sources.size() + " segments into one with " + merged.getNumberOfDocuments() + " documents");
+
+            maybeMerge();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param replacement the segment replacing the sources, or null if none of their documents is left
+     */
+    private void replaceSegments(List<SegmentState> sources, SegmentState replacement) {
+        int position = segments.indexOf(sources.get(0));
+        segments.removeAll(sources);
+        if (replacement != null) {
+            segments.add(Math.min(position, segments.size()), replacement);
+        }
+        generation++;
+
+        for (SegmentState source : sources) {
+            if (source.path != null) {
+                obsoleteFiles.add(source.path);
+            }
+        }
+        deleteObsoleteFiles();
+    }
+
+    /**
+     * The files of the last commit are kept until the next one, so the index can be opened after a crash
+     */
+    private void deleteObsoleteFiles() {
+        for (Iterator<Path> iterator = obsoleteFiles.iterator(); iterator.hasNext(); ) {
+            Path path = iterator.next();
+            if (!committedFiles.contains(path)) {
+                deleteQuietly(path);
+                iterator.remove();
+            }
+        }
+    }
+
+    private static SortedMap<Long, TermVector> getLiveDocuments(List<SegmentState> sources, List<BitSet> deletedDocuments) {
+        SortedMap<Long, TermVector> documents = new TreeMap<>();
+
+        for (int i = 0; i < sources.size(); i++) {
+            IndexSegment segment = sources.get(i).segment;
+            BitSet deleted = deletedDocuments.get(i);
+            for (int localId = deleted.nextClearBit(0); localId < segment.getNumberOfDocuments();
+                 localId = deleted.nextClearBit(localId + 1)) {
+                documents.put(segment.getDocumentId(localId), segment.getTermVector(localId));
+            }
+        }
+
+        return documents;
+    }
+
+    private static IndexSegment createSegment(SortedMap<Long, TermVector> documents, Path path) throws IOException {
+        if (path == null) {
+            return new MemorySegment(documents);
+        }
+
+        Files.createDirectories(path.getParent());
+        SegmentWriter.write(path, documents, new long[0]);
+
+        return Segment.open(path);
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            lock.lock();
+            try {
+                if (!loaded) {
+                    load();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Only the committed state of the DB is read, the surrounding transaction may be rolled back. The checkpoint
+     * is read in the same transaction as the documents, so it belongs to them.
+     */
+    private void load() {
+        reset();
+        committedReader.read(this::loadCommitted);
+
+        loaded = true;
+        log.info("Loaded " + numberOfDocuments + " documents and " + documentFrequencies.size() + " indices in " +
+            segments.size() + " segments into the inverted index");
+    }
+
+    /**
+     * @return true if the index was loaded from the commit in the index directory
+     */
+    private boolean loadCommitted() {
+        Path directory = getDirectory();
+        long[] checkpoint = directory != null ? getCheckpoint() : null;
+
+        boolean loadedFromCommit = directory != null && loadFromCommit(directory, checkpoint);
+        if (!loadedFromCommit) {
+            segments.add(new SegmentState(new MemorySegment(loadFromDB()), null));
+        }
+        for (SegmentState state : segments) {
+            addStatistics(state);
+        }
+        generation++;
+
+        if (loadedFromCommit) {
+            committedGeneration = generation;
+        } else if (directory != null && commit(directory, checkpoint)) {
+            deleteUncommittedFiles(directory);
+        }
+
+        return loadedFromCommit;
+    }
+
+    private SortedMap<Long, TermVector> loadFromDB() {
+        log.info("Loading the inverted index from the DB");
+
+        SortedMap<Long, Map<Long, Long>> documentToFrequencies = new TreeMap<>();
+        for (Long documentId : documentRepository.findAllIds()) {
+            documentToFrequencies.put(documentId, new HashMap<>());
+        }
+        for (Object[] row : documentIndexRepository.findAllFrequencies()) {
+            documentToFrequencies.computeIfAbsent((Long) row[0], k -> new HashMap<>())
+                .merge((Long) row[1], (Long) row[2], Long::sum);
+        }
+
+        SortedMap<Long, TermVector> documents = new TreeMap<>();
+        for (Map.Entry<Long, Map<Long, Long>> entry : documentToFrequencies.entrySet()) {
+            documents.put(entry.getKey(), new TermVector(entry.getValue()));
+        }
+
+        return documents;
+    }
+
+    /**
+     * @return true if the directory has a commit belonging to the current state of the DB
+     * and all of its segments could be opened
+     */
+    private boolean loadFromCommit(Path directory, long[] checkpoint) {
+        try {
+            IndexCommit commit = IndexCommit.read(directory);
+            if (commit == null) {
+                return false;
+            }
+            if (!Arrays.equals(commit.getCheckpoint(), checkpoint)) {
+                log.info("The index in " + directory + " is outdated");
+                return false;
+            }
+
+            log.info("Loading the inverted index from " + directory);
+            for (int i = 0; i < commit.getFileNames().size(); i++) {
+                Path path = directory.resolve(commit.getFileNames().get(i));
+                SegmentState state = new SegmentState(Segment.open(path), path);
+                state.deletedDocuments.or(commit.getDeletedDocuments().get(i));
+                segments.add(state);
+                committedFiles.add(path);
+            }
+            segmentCounter = getHighestSegmentNumber(directory) + 1;
+            deleteUncommittedFiles(directory);
+
+            return true;
+        } catch (IOException e) {
+            log.warn("Could not open the index in " + directory + ": " + e.getMessage());
+            segments.clear();
+            committedFiles.clear();
+
+            return false;
+        }
+    }
+
+    /**
+     * Writes the memory segments to the directory and commits all segments
+     *
+     * @return true if the index was committed
+     */
+    private boolean commit(Path directory, long[] checkpoint) {
+        try {
+            freezeBuffer();
+            List<SegmentState> memorySegments = new ArrayList<>();
+            List<BitSet> deletedDocuments = new ArrayList<>();
+            for (SegmentState state : segments) {
+                if (state.path == null) {
+                    memorySegments.add(state);
+                    deletedDocuments.add(state.deletedDocuments);
+                }
+            }
+            SortedMap<Long, TermVector> documents = getLiveDocuments(memorySegments, deletedDocuments);
+            if (!documents.isEmpty()) {
+                segmentCounter = Math.max(segmentCounter, getHighestSegmentNumber(directory) + 1);
+                Path path = directory.resolve(nextSegmentFileName());
+                replaceSegments(memorySegments, new SegmentState(createSegment(documents, path), path));
+            } else if (!memorySegments.isEmpty()) {
+                replaceSegments(memorySegments, null);
+            }
+
+            List<String> fileNames = new ArrayList<>();
+            List<BitSet> deletions = new ArrayList<>();
+            for (SegmentState state : segments) {
+                fileNames.add(state.path.getFileName().toString());
+                deletions.add(state.deletedDocuments);
+            }
+            new IndexCommit(checkpoint, fileNames, deletions).write(directory);
+
+            committedFiles.clear();
+            for (SegmentState state : segments) {
+                committedFiles.add(state.path);
+            }
+            deleteObsoleteFiles();
+            committedGeneration = generation;
+            log.info("Committed the inverted index to " + directory);
+
+            return true;
+        } catch (IOException e) {
+            log.warn("Could not commit the index to " + directory + ": " + e.getMessage());
+
+            return false;
+        }
+    }
+
+    /**
+     * Commits the index if it was changed since it was last loaded or committed, no merges are started afterwards
+     */
+    @PreDestroy
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            Path directory = getDirectory();
+            if (directory != null && loaded && committedGeneration != generation) {
+                commit(directory, committedReader.read(this::getCheckpoint));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void reset() {
+        epoch++;
+        segments.clear();
+        buffer = new TreeMap<>();
+        documentFrequencies.clear();
+        numberOfDocuments = 0;
+        committedFiles.clear();
+        obsoleteFiles.clear();
+        snapshot = null;
+    }
+
+    private Path getDirectory() {
+        String directory = applicationProperties.getIndex().getDirectory();
+
+        return directory == null || directory.isEmpty() ? null : Paths.get(directory).toAbsolutePath();
+    }
+
+    private String nextSegmentFileName() {
+        return "_" + (segmentCounter++) + SEGMENT_FILE_EXTENSION;
+    }
+
+    private static long getHighestSegmentNumber(Path directory) throws IOException {
+        long highest = -1;
+        if (!Files.isDirectory(directory)) {
+            return highest;
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "_*" + SEGMENT_FILE_EXTENSION)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    highest = Math.max(highest, Long.parseLong(name.substring(1, name.length() - SEGMENT_FILE_EXTENSION.length())));
+                } catch (NumberFormatException e) {
+                    // Not a segment file of the index
+                }
+            }
+        }
+
+        return highest;
+    }
+
+    /**
+     * Removes the segment files left behind by merges running when the application was stopped
+     */
+    private void deleteUncommittedFiles(Path directory) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_FILE_EXTENSION)) {
+            for (Path file : files) {
+                if (!committedFiles.contains(file)) {
+                    deleteQuietly(file);
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Could not list the files of " + directory + ": " + e.getMessage());
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path != null) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.debug("Could not delete " + path + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Every change of the document-index pairs either inserts new rows or deletes existing ones,
+     * so together with the number of documents these values identify the state of the DB
+     */
+    private long[] getCheckpoint() {
+        Object[] row = documentIndexRepository.findCountAndMaxId().get(0);
+
+        return new long[]{documentRepository.count(), (Long) row[0], row[1] == null ? 0L : (Long) row[1]};
+    }
+
+    /**
+     * Within a transaction the change is kept until it is committed, otherwise it is applied immediately
+     */
+    private void stage(Consumer<StagedChanges> change) {
+        StagedChanges changes = TransactionChanges.current(this, StagedChanges::new, this::publish);
+        if (changes != null) {
+            change.accept(changes);
+        } else {
+            changes = new StagedChanges();
+            change.accept(changes);
+            publish(changes);
+        }
+    }
+
+    /**
+     * Applies the changes of a committed transaction. The changed documents are replaced as a whole, so the result
+     * does not depend on the order of the concurrent transactions changing different documents.
+     */
+    private void publish(StagedChanges changes) {
+        lock.lock();
+        try {
+            if (changes.cleared) {
+                reset();
+                loaded = true;
+            } else if (!loaded) {
+                // The changes are read from the DB when the index is loaded
+                return;
+            }
+
+            for (Long documentId : changes.removed) {
+                removeDocument(documentId);
+            }
+            for (Map.Entry<Long, TermVector> entry : changes.added.entrySet()) {
+                removeDocument(entry.getKey());
+                buffer.put(entry.getKey(), entry.getValue());
+                addStatistics(entry.getValue());
+            }
+            generation++;
+
+            if (buffer.size() >= applicationProperties.getIndex().getFlushThreshold()) {
+                freezeBuffer();
+            }
+            maybeMerge();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The documents added, replaced and deleted by a transaction. The snapshot seen by the transaction is kept
+     * until the transaction or the index changes.
+     */
+    private static class StagedChanges {
+
+        private final SortedMap<Long, TermVector> added = new TreeMap<>();
+        private final Set<Long> removed = new HashSet<>();
+        private boolean cleared;
+        private IndexSnapshot base;
+        private IndexSnapshot snapshot;
+
+        private void add(long documentId, TermVector termVector) {
+            removed.add(documentId);
+            added.put(documentId, termVector);
+            snapshot = null;
+        }
+
+        private void delete(long documentId) {
+            added.remove(documentId);
+            removed.add(documentId);
+            snapshot = null;
+        }
+
+        private void clear() {
+            added.clear();
+            removed.clear();
+            cleared = true;
+            snapshot = null;
+        }
+
+        private IndexSnapshot getSnapshot(IndexSnapshot current) {
+            if (snapshot == null || base != current) {
+                base = current;
+                snapshot = current.withChanges(added, removed, cleared);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * A segment of the index together with the norms and the deleted documents. The deletions are only copied
+     * for a new snapshot if they changed since the previous one.
+     */
+    private static class SegmentState {
+
+        private final IndexSegment segment;
+        private final SegmentNorms norms;
+        private final Path path;
+        private final BitSet deletedDocuments = new BitSet();
+        private BitSet publishedDeletions;
+        private boolean merging;
+
+        private SegmentState(IndexSegment segment, Path path) {
+            this.segment = segment;
+            this.norms = new SegmentNorms(segment);
+            this.path = path;
+        }
+
+        private void delete(int localId) {
+            deletedDocuments.set(localId);
+            publishedDeletions = null;
+        }
+
+        private BitSet getPublishedDeletions() {
+            if (publishedDeletions == null) {
+                publishedDeletions = (BitSet) deletedDocuments.clone();
+            }
+            return publishedDeletions;
+        }
+
+        private int getNumberOfLiveDocuments() {
+            return segment.getNumberOfDocuments() - deletedDocuments.cardinality();
+        }
+    }
+}
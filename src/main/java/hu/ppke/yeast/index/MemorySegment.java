@@ -0,0 +1,107 @@
+package hu.ppke.yeast.index;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * This class is responsible for keeping an immutable segment on the Java heap, it holds the recently added
+ * documents until they are merged into a larger segment
+ */
+public class MemorySegment implements IndexSegment {
+
+    private final long[] documentIds;
+    private final TermVector[] termVectors;
+    private final long[] indexIds;
+    private final PostingList[] postings;
+
+    /**
+     * @param documents document id - term vector pairs of the documents
+     */
+    public MemorySegment(SortedMap<Long, TermVector> documents) {
+        this.documentIds = new long[documents.size()];
+        this.termVectors = new TermVector[documents.size()];
+        SortedMap<Long, PostingList> postingLists = new TreeMap<>();
+
+        int localId = 0;
+        for (Map.Entry<Long, TermVector> entry : documents.entrySet()) {
+            TermVector termVector = entry.getValue();
+            documentIds[localId] = entry.getKey();
+            termVectors[localId] = termVector;
+            for (int i = 0; i < termVector.size(); i++) {
+                postingLists.computeIfAbsent(termVector.getIndexId(i), k -> new PostingList())
+                    .add(localId, termVector.getFrequency(i));
+            }
+            localId++;
+        }
+
+        this.indexIds = new long[postingLists.size()];
+        this.postings = new PostingList[postingLists.size()];
+        int position = 0;
+        for (Map.Entry<Long, PostingList> entry : postingLists.entrySet()) {
+            indexIds[position] = entry.getKey();
+            postings[position] = entry.getValue();
+            position++;
+        }
+    }
+
+    @Override
+    public int getNumberOfDocuments() {
+        return documentIds.length;
+    }
+
+    @Override
+    public long getDocumentId(int localId) {
+        return documentIds[localId];
+    }
+
+    @Override
+    public int findDocument(long documentId) {
+        int localId = Arrays.binarySearch(documentIds, documentId);
+
+        return localId < 0 ? -1 : localId;
+    }
+
+    @Override
+    public TermVector getTermVector(int localId) {
+        return termVectors[localId];
+    }
+
+    @Override
+    public int getNumberOfIndices() {
+        return indexIds.length;
+    }
+
+    @Override
+    public int findIndex(long indexId) {
+        int position = Arrays.binarySearch(indexIds, indexId);
+
+        return position < 0 ? -1 : position;
+    }
+
+    @Override
+    public long getIndexId(int position) {
+        return indexIds[position];
+    }
+
+    @Override
+    public int getDocumentFrequency(int position) {
+        return postings[position].size();
+    }
+
+    @Override
+    public long getMaxFrequency(int position) {
+        return postings[position].getMaxFrequency();
+    }
+
+    @Override
+    public PostingIterator getPostings(int position) {
+        return postings[position].iterator();
+    }
+
+    @Override
+    public PostingIterator getPostings(int position, int fromLocalId) {
+        return postings[position].iterator(fromLocalId);
+    }
+}
@@ -0,0 +1,311 @@
+package hu.ppke.yeast.index;
+
+import hu.ppke.yeast.calculator.WeightVector;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * This class is responsible for storing the weight matrix of the documents outside of the Java heap.
+ * <p>
+ * The non-zero weights are stored in columns of direct buffer blocks in ascending document and index id order.
+ * The matrix is filled with a {@link Builder} and is immutable afterwards, its weights are read through
+ * a reusable {@link DocumentVector}.
+ */
+public class OffHeapWeightMatrix {
+
+    static final int DEFAULT_BLOCK_SIZE = 1 << 16;
+
+    private final int numberOfDocuments;
+    private final Column documentIds;
+    private final Column firstWeights;
+    private final Column norms;
+    private final Column sums;
+    private final Column indexIds;
+    private final Column weights;
+
+    private OffHeapWeightMatrix(Builder builder) {
+        this.numberOfDocuments = (int) builder.documentIds.size;
+        this.documentIds = builder.documentIds;
+        this.firstWeights = builder.firstWeights;
+        this.norms = builder.norms;
+        this.sums = builder.sums;
+        this.indexIds = builder.indexIds;
+        this.weights = builder.weights;
+    }
+
+    public int getNumberOfDocuments() {
+        return numberOfDocuments;
+    }
+
+    public long getNumberOfWeights() {
+        return weights.size;
+    }
+
+    /**
+     * @param document position of the document, between 0 and {@link #getNumberOfDocuments()} - 1
+     * @return the id of the document
+     */
+    public long getDocumentId(int document) {
+        return documentIds.getLong(document);
+    }
+
+    /**
+     * @param documentId id of a document
+     * @return the position of the document, or -1 if the matrix does not contain it
+     */
+    public int indexOf(long documentId) {
+        int low = 0;
+        int high = numberOfDocuments - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleDocumentId = documentIds.getLong(middle);
+
+            if (middleDocumentId < documentId) {
+                low = middle + 1;
+            } else if (middleDocumentId > documentId) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return the number of bytes allocated outside of the heap
+     */
+    public long sizeInBytes() {
+        return documentIds.sizeInBytes() + firstWeights.sizeInBytes() + norms.sizeInBytes() + sums.sizeInBytes() +
+            indexIds.sizeInBytes() + weights.sizeInBytes();
+    }
+
+    /**
+     * @return a new view of the weights, positioned on the first document
+     */
+    public DocumentVector newVector() {
+        return new DocumentVector();
+    }
+
+    /**
+     * A view of the weights of a single document, it can be moved to any document of the matrix
+     * instead of creating a new view for every document
+     */
+    public class DocumentVector implements WeightVector {
+
+        private long first;
+        private int size;
+        private double norm;
+        private double sum;
+
+        private DocumentVector() {
+            if (numberOfDocuments > 0) {
+                moveTo(0);
+            }
+        }
+
+        /**
+         * @param document position of the document, between 0 and {@link #getNumberOfDocuments()} - 1
+         * @return this view
+         */
+        public DocumentVector moveTo(int document) {
+            first = firstWeights.getLong(document);
+            size = (int) (firstWeights.getLong(document + 1) - first);
+            norm = norms.getDouble(document);
+            sum = sums.getDouble(document);
+
+            return this;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public long getIndexId(int position) {
+            return indexIds.getLong(first + position);
+        }
+
+        @Override
+        public double getWeight(int position) {
+            return weights.getDouble(first + position);
+        }
+
+        @Override
+        public double getNorm() {
+            return norm;
+        }
+
+        @Override
+        public double getSum() {
+            return sum;
+        }
+
+        @Override
+        public int indexOf(long indexId, int from) {
+            int low = from;
+            int high = size - 1;
+
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                long middleIndexId = getIndexId(middle);
+
+                if (middleIndexId < indexId) {
+                    low = middle + 1;
+                } else if (middleIndexId > indexId) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+
+            return -(low + 1);
+        }
+    }
+
+    /**
+     * Fills the matrix document by document. A builder can only build a single matrix.
+     */
+    public static class Builder {
+
+        private final Column documentIds;
+        private final Column firstWeights;
+        private final Column norms;
+        private final Column sums;
+        private final Column indexIds;
+        private final Column weights;
+        private boolean built;
+
+        public Builder() {
+            this(DEFAULT_BLOCK_SIZE);
+        }
+
+        /**
+         * @param blockSize the number of values in a block of a column, a power of two
+         */
+        Builder(int blockSize) {
+            if (blockSize <= 0 || Integer.bitCount(blockSize) != 1) {
+                throw new IllegalArgumentException("The block size must be a power of two, but was " + blockSize);
+            }
+            this.documentIds = new Column(blockSize);
+            this.firstWeights = new Column(blockSize);
+            this.norms = new Column(blockSize);
+            this.sums = new Column(blockSize);
+            this.indexIds = new Column(blockSize);
+            this.weights = new Column(blockSize);
+        }
+
+        /**
+         * Adds the next document, the documents have to be added in ascending id order
+         *
+         * @param documentId id of the document
+         * @param vector     the weights of the document, the norm and the sum of the vector are stored as they are
+         * @return this builder
+         */
+        public Builder add(long documentId, WeightVector vector) {
+            if (built) {
+                throw new IllegalStateException("The matrix is already built");
+            }
+            if (documentIds.size > 0 && documentId <= documentIds.getLong(documentIds.size - 1)) {
+                throw new IllegalArgumentException("The documents must be added in ascending id order, but " +
+                    documentId + " was added after " + documentIds.getLong(documentIds.size - 1));
+            }
+            if (documentIds.size == Integer.MAX_VALUE - 1) {
+                throw new IllegalStateException("The matrix can not hold more documents");
+            }
+
+            documentIds.addLong(documentId);
+            firstWeights.addLong(weights.size);
+            norms.addDouble(vector.getNorm());
+            sums.addDouble(vector.getSum());
+            for (int i = 0; i < vector.size(); i++) {
+                indexIds.addLong(vector.getIndexId(i));
+                weights.addDouble(vector.getWeight(i));
+            }
+
+            return this;
+        }
+
+        public OffHeapWeightMatrix build() {
+            if (built) {
+                throw new IllegalStateException("The matrix is already built");
+            }
+            built = true;
+            // The end of the weights of the last document
+            firstWeights.addLong(weights.size);
+
+            return new OffHeapWeightMatrix(this);
+        }
+    }
+
+    /**
+     * A column of 8 byte values stored in direct buffers of a fixed number of values. Only the last block may be
+     * smaller, it grows by doubling, so small matrices do not allocate whole blocks.
+     */
+    private static final class Column {
+
+        private static final int VALUE_SIZE = 8;
+        private static final int INITIAL_CAPACITY = 64;
+
+        private final int blockShift;
+        private final int blockMask;
+        private ByteBuffer[] blocks = new ByteBuffer[0];
+        private long size;
+
+        private Column(int blockSize) {
+            this.blockShift = Integer.numberOfTrailingZeros(blockSize);
+            this.blockMask = blockSize - 1;
+        }
+
+        private long getLong(long position) {
+            return blocks[(int) (position >>> blockShift)].getLong(offset(position));
+        }
+
+        private double getDouble(long position) {
+            return blocks[(int) (position >>> blockShift)].getDouble(offset(position));
+        }
+
+        private void addLong(long value) {
+            nextBlock().putLong(offset(size++), value);
+        }
+
+        private void addDouble(double value) {
+            nextBlock().putDouble(offset(size++), value);
+        }
+
+        private ByteBuffer nextBlock() {
+            int block = (int) (size >>> blockShift);
+            if (block == blocks.length) {
+                blocks = Arrays.copyOf(blocks, block + 1);
+                blocks[block] = allocate(Math.min(INITIAL_CAPACITY, blockMask + 1));
+            } else if (offset(size) == blocks[block].capacity()) {
+                ByteBuffer values = blocks[block].duplicate();
+                values.clear();
+                blocks[block] = allocate(Math.min(2 * values.capacity() / VALUE_SIZE, blockMask + 1)).put(values);
+            }
+
+            return blocks[block];
+        }
+
+        private int offset(long position) {
+            return (int) (position & blockMask) * VALUE_SIZE;
+        }
+
+        private long sizeInBytes() {
+            long bytes = 0;
+            for (ByteBuffer block : blocks) {
+                bytes += block.capacity();
+            }
+
+            return bytes;
+        }
+
+        private static ByteBuffer allocate(int numberOfValues) {
+            return ByteBuffer.allocateDirect(numberOfValues * VALUE_SIZE).order(ByteOrder.nativeOrder());
+        }
+    }
+}
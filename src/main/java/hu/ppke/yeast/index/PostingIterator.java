@@ -0,0 +1,16 @@
+package hu.ppke.yeast.index;
+
+/**
+ * Iterates over postings, document id - frequency pairs, in ascending document id order
+ */
+public interface PostingIterator {
+
+    /**
+     * @return true if the iterator was moved to the next posting, false if there are no more postings
+     */
+    boolean next();
+
+    long documentId();
+
+    long frequency();
+}
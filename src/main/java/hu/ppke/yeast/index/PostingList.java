@@ -0,0 +1,252 @@
+package hu.ppke.yeast.index;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * This class stores the documents containing a given index together with the frequency of the index in them.
+ * The postings are delta-encoded with skip entries every {@link #SKIP_INTERVAL} postings. Instances are not
+ * thread-safe, the {@link InvertedIndex} guards them.
+ */
+public class PostingList {
+
+    static final int SKIP_INTERVAL = 128;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private long[] skipDocumentIds = new long[0];
+    private int[] skipOffsets = new int[0];
+    private int length;
+    private int size;
+    private long lastDocumentId;
+    private long maxFrequency;
+
+    /**
+     * Adds a posting to the list. Postings are expected to arrive in ascending document id order,
+     * out of order postings are supported but require the list to be re-encoded.
+     *
+     * @param documentId id of the document containing the index
+     * @param frequency  frequency of the index in the document
+     */
+    public void add(long documentId, long frequency) {
+        if (size > 0 && documentId <= lastDocumentId) {
+            insert(documentId, frequency);
+        } else {
+            append(documentId, frequency);
+        }
+    }
+
+    /**
+     * @param documentId id of the document to remove
+     * @return true if the list contained the document
+     */
+    public boolean remove(long documentId) {
+        PostingList rewritten = new PostingList();
+        boolean found = false;
+
+        for (PostingIterator iterator = iterator(); iterator.next(); ) {
+            if (iterator.documentId() == documentId) {
+                found = true;
+            } else {
+                rewritten.append(iterator.documentId(), iterator.frequency());
+            }
+        }
+
+        if (found) {
+            replaceWith(rewritten);
+        }
+
+        return found;
+    }
+
+    /**
+     * @return the number of documents containing the index
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the highest frequency of the index in any of the documents, used to bound the scores
+     */
+    public long getMaxFrequency() {
+        return maxFrequency;
+    }
+
+    /**
+     * @return the number of bytes used by the encoded postings
+     */
+    public int sizeInBytes() {
+        return length;
+    }
+
+    /**
+     * Writes the encoded postings, this is the format of the postings in the {@link Segment} files as well
+     *
+     * @param out the output to write to
+     * @throws IOException if the postings could not be written
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.write(buffer, 0, length);
+    }
+
+    /**
+     * Writes the skip entries, the preceding document id and the offset of every {@link #SKIP_INTERVAL}th posting,
+     * this is the format of the skip entries in the {@link Segment} files as well
+     *
+     * @param out the output to write to
+     * @throws IOException if the skip entries could not be written
+     */
+    void writeSkipsTo(DataOutput out) throws IOException {
+        for (int i = 0; i < getNumberOfSkips(); i++) {
+            out.writeLong(skipDocumentIds[i]);
+            out.writeInt(skipOffsets[i]);
+        }
+    }
+
+    int getNumberOfSkips() {
+        return (size - 1) / SKIP_INTERVAL;
+    }
+
+    public PostingIterator iterator() {
+        return new BufferIterator(0, 0L);
+    }
+
+    /**
+     * @param documentId the id of the first document needed
+     * @return an iterator starting at a posting before the first document with at least the given id,
+     * the skipped postings all belong to lower document ids
+     */
+    public PostingIterator iterator(long documentId) {
+        int low = 0;
+        int high = getNumberOfSkips() - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (skipDocumentIds[middle] < documentId) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        return high < 0 ? iterator() : new BufferIterator(skipOffsets[high], skipDocumentIds[high]);
+    }
+
+    private void append(long documentId, long frequency) {
+        if (size > 0 && size % SKIP_INTERVAL == 0) {
+            int skip = size / SKIP_INTERVAL - 1;
+            if (skip == skipOffsets.length) {
+                skipDocumentIds = Arrays.copyOf(skipDocumentIds, Math.max(4, skip * 2));
+                skipOffsets = Arrays.copyOf(skipOffsets, Math.max(4, skip * 2));
+            }
+            skipDocumentIds[skip] = lastDocumentId;
+            skipOffsets[skip] = length;
+        }
+        writeVLong(documentId - lastDocumentId);
+        writeVLong(frequency);
+        lastDocumentId = documentId;
+        maxFrequency = Math.max(maxFrequency, frequency);
+        size++;
+    }
+
+    private void insert(long documentId, long frequency) {
+        PostingList rewritten = new PostingList();
+        boolean inserted = false;
+
+        for (PostingIterator iterator = iterator(); iterator.next(); ) {
+            if (!inserted && documentId <= iterator.documentId()) {
+                rewritten.append(documentId, frequency);
+                inserted = true;
+                if (documentId == iterator.documentId()) {
+                    continue;
+                }
+            }
+            rewritten.append(iterator.documentId(), iterator.frequency());
+        }
+
+        if (!inserted) {
+            rewritten.append(documentId, frequency);
+        }
+
+        replaceWith(rewritten);
+    }
+
+    private void replaceWith(PostingList other) {
+        this.buffer = other.buffer;
+        this.skipDocumentIds = other.skipDocumentIds;
+        this.skipOffsets = other.skipOffsets;
+        this.length = other.length;
+        this.size = other.size;
+        this.lastDocumentId = other.lastDocumentId;
+        this.maxFrequency = other.maxFrequency;
+    }
+
+    private void writeVLong(long value) {
+        ensureCapacity(length + 10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[length++] = (byte) value;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+        }
+    }
+
+    private class BufferIterator implements PostingIterator {
+
+        private int position;
+        private long documentId;
+        private long frequency;
+
+        private BufferIterator(int position, long documentId) {
+            this.position = position;
+            this.documentId = documentId;
+        }
+
+        @Override
+        public boolean next() {
+            if (position >= length) {
+                return false;
+            }
+            documentId += readVLong();
+            frequency = readVLong();
+
+            return true;
+        }
+
+        @Override
+        public long documentId() {
+            return documentId;
+        }
+
+        @Override
+        public long frequency() {
+            return frequency;
+        }
+
+        private long readVLong() {
+            long value = 0;
+            int shift = 0;
+            byte current;
+
+            do {
+                current = buffer[position++];
+                value |= (current & 0x7FL) << shift;
+                shift += 7;
+            } while ((current & 0x80) != 0);
+
+            return value;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package hu.ppke.yeast.index;
+
+/**
+ * A document id together with its similarity to the query
+ */
+public class ScoredDocument {
+
+    private final long documentId;
+    private final double score;
+
+    public ScoredDocument(long documentId, double score) {
+        this.documentId = documentId;
+        this.score = score;
+    }
+
+    public long getDocumentId() {
+        return documentId;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return "ScoredDocument{" +
+            "documentId=" + documentId +
+            ", score=" + score +
+            "}";
+    }
+}
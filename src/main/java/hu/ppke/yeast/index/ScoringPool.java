@@ -0,0 +1,82 @@
+package hu.ppke.yeast.index;
+
+import hu.ppke.yeast.config.ApplicationProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * This class is responsible for running the scoring of a single query on multiple threads.
+ * The pool is shared by the queries, its size is the global limit of the scoring threads.
+ */
+@Component
+public class ScoringPool {
+
+    private final ApplicationProperties applicationProperties;
+    private final int maxParallelism;
+    private final ForkJoinPool pool;
+
+    @Autowired
+    public ScoringPool(ApplicationProperties applicationProperties) {
+        this.applicationProperties = applicationProperties;
+        int configuredParallelism = applicationProperties.getSearch().getMaxParallelism();
+        this.maxParallelism = configuredParallelism > 0 ? configuredParallelism : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(maxParallelism);
+    }
+
+    /**
+     * @param parallelism       the requested number of threads, or 0 for the default
+     * @param numberOfDocuments the number of documents to score
+     * @return the number of tasks to split the scoring into, at least 1
+     */
+    public int getNumberOfTasks(int parallelism, int numberOfDocuments) {
+        ApplicationProperties.Search search = applicationProperties.getSearch();
+        int threads = parallelism > 0 ? parallelism : search.getParallelism() > 0 ? search.getParallelism() : maxParallelism;
+        int minDocumentsPerTask = Math.max(1, search.getMinDocumentsPerTask());
+
+        return Math.max(1, Math.min(Math.min(threads, maxParallelism), numberOfDocuments / minDocumentsPerTask));
+    }
+
+    /**
+     * Runs the tasks on the pool and waits for all of them, a single task is run on the calling thread
+     *
+     * @param tasks the tasks to run
+     * @return the results of the tasks in the order of the tasks
+     */
+    public <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            if (tasks.size() == 1) {
+                results.add(tasks.get(0).call());
+            } else {
+                for (Future<T> future : pool.invokeAll(tasks)) {
+                    results.add(future.get());
+                }
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() :
+                new IllegalStateException("Scoring failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Scoring was interrupted", e);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Scoring failed", e);
+        }
+
+        return results;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,252 @@
+package hu.ppke.yeast.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class is responsible for reading an immutable index segment written by the {@link SegmentWriter}.
+ * <p>
+ * The file is memory-mapped and read with absolute positions, so a segment can be read by several threads.
+ * It consists of a header, the document table, the term dictionary, the postings with their skip entries
+ * and the term vectors.
+ */
+public class Segment implements IndexSegment {
+
+    static final int MAGIC = 0x59534547;
+    static final int FORMAT_VERSION = 2;
+    static final int DOCUMENT_ENTRY_SIZE = 8 + 8 + 4 + 8;
+    static final int TERM_ENTRY_SIZE = 8 + 4 + 8 + 8 + 8;
+    static final int SKIP_ENTRY_SIZE = 8 + 4;
+
+    private static final int FIXED_HEADER_SIZE = 5 * 4;
+
+    private final ByteBuffer buffer;
+    private final int numberOfDocuments;
+    private final int numberOfIndices;
+    private final long[] commitData;
+    private final int documentTableOffset;
+    private final int termDictionaryOffset;
+
+    private Segment(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < FIXED_HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an index segment");
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Unsupported index segment format version: " + buffer.getInt(4));
+        }
+        this.numberOfDocuments = buffer.getInt(8);
+        this.numberOfIndices = buffer.getInt(12);
+        this.commitData = new long[buffer.getInt(16)];
+        for (int i = 0; i < commitData.length; i++) {
+            commitData[i] = buffer.getLong(FIXED_HEADER_SIZE + i * 8);
+        }
+        this.documentTableOffset = (int) getHeaderSize(commitData.length);
+        this.termDictionaryOffset = documentTableOffset + numberOfDocuments * DOCUMENT_ENTRY_SIZE;
+    }
+
+    /**
+     * @param path the path of the segment file
+     * @return the memory-mapped segment
+     * @throws IOException if the file could not be mapped or it is not a segment
+     */
+    public static Segment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("The index segment " + path + " is too large to be mapped: " + channel.size());
+            }
+            return new Segment(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    static long getHeaderSize(int commitDataLength) {
+        return FIXED_HEADER_SIZE + commitDataLength * 8L;
+    }
+
+    /**
+     * @return the values given to the {@link SegmentWriter} when the segment was written
+     */
+    public long[] getCommitData() {
+        return commitData.clone();
+    }
+
+    @Override
+    public int getNumberOfDocuments() {
+        return numberOfDocuments;
+    }
+
+    @Override
+    public long getDocumentId(int localId) {
+        return buffer.getLong(documentTableOffset + localId * DOCUMENT_ENTRY_SIZE);
+    }
+
+    @Override
+    public int findDocument(long documentId) {
+        int low = 0;
+        int high = numberOfDocuments - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long current = getDocumentId(middle);
+            if (current < documentId) {
+                low = middle + 1;
+            } else if (current > documentId) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @param localId segment-local id of the document
+     * @return the norm of the document weights, calculated from the statistics of this segment
+     */
+    public double getNorm(int localId) {
+        return buffer.getDouble(documentTableOffset + localId * DOCUMENT_ENTRY_SIZE + 8);
+    }
+
+    @Override
+    public TermVector getTermVector(int localId) {
+        int entry = documentTableOffset + localId * DOCUMENT_ENTRY_SIZE;
+        int size = buffer.getInt(entry + 16);
+        long[] indexIds = new long[size];
+        long[] frequencies = new long[size];
+
+        PostingIterator iterator = new MappedIterator((int) buffer.getLong(entry + 20), size, 0L);
+        for (int i = 0; iterator.next(); i++) {
+            indexIds[i] = iterator.documentId();
+            frequencies[i] = iterator.frequency();
+        }
+
+        return new TermVector(indexIds, frequencies);
+    }
+
+    @Override
+    public int getNumberOfIndices() {
+        return numberOfIndices;
+    }
+
+    @Override
+    public int findIndex(long indexId) {
+        int low = 0;
+        int high = numberOfIndices - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long current = getIndexId(middle);
+            if (current < indexId) {
+                low = middle + 1;
+            } else if (current > indexId) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    public long getIndexId(int position) {
+        return buffer.getLong(termDictionaryOffset + position * TERM_ENTRY_SIZE);
+    }
+
+    @Override
+    public int getDocumentFrequency(int position) {
+        return buffer.getInt(termDictionaryOffset + position * TERM_ENTRY_SIZE + 8);
+    }
+
+    @Override
+    public long getMaxFrequency(int position) {
+        return buffer.getLong(termDictionaryOffset + position * TERM_ENTRY_SIZE + 12);
+    }
+
+    @Override
+    public PostingIterator getPostings(int position) {
+        int entry = termDictionaryOffset + position * TERM_ENTRY_SIZE;
+
+        return new MappedIterator((int) buffer.getLong(entry + 20), buffer.getInt(entry + 8), 0L);
+    }
+
+    @Override
+    public PostingIterator getPostings(int position, int fromLocalId) {
+        int entry = termDictionaryOffset + position * TERM_ENTRY_SIZE;
+        int postingsOffset = (int) buffer.getLong(entry + 20);
+        int skipsOffset = (int) buffer.getLong(entry + 28);
+        int size = buffer.getInt(entry + 8);
+        int low = 0;
+        int high = (size - 1) / PostingList.SKIP_INTERVAL - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (buffer.getLong(skipsOffset + middle * SKIP_ENTRY_SIZE) < fromLocalId) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        if (high < 0) {
+            return new MappedIterator(postingsOffset, size, 0L);
+        }
+
+        int skip = skipsOffset + high * SKIP_ENTRY_SIZE;
+        return new MappedIterator(postingsOffset + buffer.getInt(skip + 8),
+            size - (high + 1) * PostingList.SKIP_INTERVAL, buffer.getLong(skip));
+    }
+
+    private class MappedIterator implements PostingIterator {
+
+        private int position;
+        private int remaining;
+        private long documentId;
+        private long frequency;
+
+        private MappedIterator(int position, int size, long documentId) {
+            this.position = position;
+            this.remaining = size;
+            this.documentId = documentId;
+        }
+
+        @Override
+        public boolean next() {
+            if (remaining == 0) {
+                return false;
+            }
+            documentId += readVLong();
+            frequency = readVLong();
+            remaining--;
+
+            return true;
+        }
+
+        @Override
+        public long documentId() {
+            return documentId;
+        }
+
+        @Override
+        public long frequency() {
+            return frequency;
+        }
+
+        private long readVLong() {
+            long value = 0;
+            int shift = 0;
+            byte current;
+
+            do {
+                current = buffer.get(position++);
+                value |= (current & 0x7FL) << shift;
+                shift += 7;
+            } while ((current & 0x80) != 0);
+
+            return value;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package hu.ppke.yeast.index;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+
+import static hu.ppke.yeast.calculator.WeightCalculator.calculateWeight;
+
+/**
+ * This class is responsible for keeping the norms and the coordinate sums of the weighted document vectors
+ * of a segment. They are only calculated again once the number of documents changed by more than a tenth.
+ */
+class SegmentNorms {
+
+    private static final double MAX_DRIFT = 0.1;
+
+    private final IndexSegment segment;
+    private volatile Norms norms;
+
+    SegmentNorms(IndexSegment segment) {
+        this.segment = segment;
+    }
+
+    /**
+     * @param documentFrequencies index id - number of documents containing the index pairs
+     * @param numberOfDocuments   the number of documents
+     * @return the norms of the documents of the segment
+     */
+    Norms get(Map<Long, Integer> documentFrequencies, int numberOfDocuments) {
+        Norms current = norms;
+        if (current == null || current.isOutdated(numberOfDocuments)) {
+            synchronized (this) {
+                current = norms;
+                if (current == null || current.isOutdated(numberOfDocuments)) {
+                    current = new Norms(segment, documentFrequencies, numberOfDocuments);
+                    norms = current;
+                }
+            }
+        }
+
+        return current;
+    }
+
+    /**
+     * The norms and the sums by segment-local document id, calculated with the given statistics
+     */
+    static class Norms {
+
+        private final int numberOfDocuments;
+        private final double[] norms;
+        private final double[] sums;
+        private final double[] inverseDocumentFrequencies;
+        private volatile int[] byNorm;
+
+        private Norms(IndexSegment segment, Map<Long, Integer> documentFrequencies, int numberOfDocuments) {
+            this.numberOfDocuments = numberOfDocuments;
+            this.norms = new double[segment.getNumberOfDocuments()];
+            this.sums = new double[segment.getNumberOfDocuments()];
+            this.inverseDocumentFrequencies = new double[segment.getNumberOfIndices()];
+
+            for (int position = 0; position < inverseDocumentFrequencies.length; position++) {
+                Integer documentFrequency = documentFrequencies.get(segment.getIndexId(position));
+                inverseDocumentFrequencies[position] = documentFrequency == null ? 0.0 :
+                    calculateWeight(1L, numberOfDocuments, (long) documentFrequency);
+            }
+            for (int localId = 0; localId < norms.length; localId++) {
+                TermVector termVector = segment.getTermVector(localId);
+                double squares = 0;
+                double sum = 0;
+                for (int i = 0; i < termVector.size(); i++) {
+                    // Only the documents deleted since have indices missing from the statistics
+                    Integer documentFrequency = documentFrequencies.get(termVector.getIndexId(i));
+                    if (documentFrequency != null) {
+                        double weight = calculateWeight(termVector.getFrequency(i), numberOfDocuments, (long) documentFrequency);
+                        squares += weight * weight;
+                        sum += weight;
+                    }
+                }
+                norms[localId] = Math.sqrt(squares);
+                sums[localId] = sum;
+            }
+        }
+
+        private boolean isOutdated(int numberOfDocuments) {
+            return Math.abs(numberOfDocuments - this.numberOfDocuments) > this.numberOfDocuments * MAX_DRIFT;
+        }
+
+        double getNorm(int localId) {
+            return norms[localId];
+        }
+
+        double getSum(int localId) {
+            return sums[localId];
+        }
+
+        /**
+         * @param position position of the index in the term dictionary of the segment
+         * @return the inverse document frequency of the index the norms were calculated with
+         */
+        double getInverseDocumentFrequency(int position) {
+            return inverseDocumentFrequencies[position];
+        }
+
+        /**
+         * @return the segment-local ids of the documents in ascending order of their norms,
+         * documents with equal norms in the order of their ids
+         */
+        int[] getDocumentsByNorm() {
+            int[] documents = byNorm;
+            if (documents == null) {
+                synchronized (this) {
+                    documents = byNorm;
+                    if (documents == null) {
+                        Integer[] localIds = new Integer[norms.length];
+                        for (int i = 0; i < localIds.length; i++) {
+                            localIds[i] = i;
+                        }
+                        Arrays.sort(localIds, Comparator.comparingDouble(localId -> norms[localId]));
+                        documents = new int[localIds.length];
+                        for (int i = 0; i < localIds.length; i++) {
+                            documents[i] = localIds[i];
+                        }
+                        byNorm = documents;
+                    }
+                }
+            }
+
+            return documents;
+        }
+    }
+}
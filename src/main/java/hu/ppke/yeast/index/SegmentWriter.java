@@ -0,0 +1,119 @@
+package hu.ppke.yeast.index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static hu.ppke.yeast.calculator.WeightCalculator.calculateWeight;
+
+/**
+ * This class is responsible for writing a set of documents into an immutable {@link Segment} file.
+ * <p>
+ * The documents get consecutive segment-local ids in ascending document id order. The postings and the
+ * term vectors are encoded the same way as in the {@link PostingList}. The file is written next to its
+ * final place and moved there once it is complete, so readers never see a partially written segment.
+ */
+public final class SegmentWriter {
+
+    private SegmentWriter() {
+    }
+
+    /**
+     * @param path       the path of the segment file, an existing file is replaced
+     * @param documents  document id - term vector pairs of the documents
+     * @param commitData arbitrary values stored in the header of the segment, see {@link Segment#getCommitData()}
+     * @throws IOException if the segment could not be written
+     */
+    public static void write(Path path, SortedMap<Long, TermVector> documents, long[] commitData) throws IOException {
+        SortedMap<Long, PostingList> postings = new TreeMap<>();
+        PostingList[] vectors = new PostingList[documents.size()];
+
+        int localId = 0;
+        for (TermVector termVector : documents.values()) {
+            vectors[localId] = new PostingList();
+            for (int i = 0; i < termVector.size(); i++) {
+                postings.computeIfAbsent(termVector.getIndexId(i), k -> new PostingList())
+                    .add(localId, termVector.getFrequency(i));
+                vectors[localId].add(termVector.getIndexId(i), termVector.getFrequency(i));
+            }
+            localId++;
+        }
+
+        long postingsOffset = Segment.getHeaderSize(commitData.length) +
+            (long) documents.size() * Segment.DOCUMENT_ENTRY_SIZE + (long) postings.size() * Segment.TERM_ENTRY_SIZE;
+        long skipsOffset = postingsOffset;
+        for (PostingList postingList : postings.values()) {
+            skipsOffset += postingList.sizeInBytes();
+        }
+        long vectorsOffset = skipsOffset;
+        for (PostingList postingList : postings.values()) {
+            vectorsOffset += (long) postingList.getNumberOfSkips() * Segment.SKIP_ENTRY_SIZE;
+        }
+
+        Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryPath)))) {
+            out.writeInt(Segment.MAGIC);
+            out.writeInt(Segment.FORMAT_VERSION);
+            out.writeInt(documents.size());
+            out.writeInt(postings.size());
+            out.writeInt(commitData.length);
+            for (long value : commitData) {
+                out.writeLong(value);
+            }
+
+            long offset = vectorsOffset;
+            localId = 0;
+            for (Map.Entry<Long, TermVector> entry : documents.entrySet()) {
+                out.writeLong(entry.getKey());
+                out.writeDouble(calculateNorm(entry.getValue(), documents.size(), postings));
+                out.writeInt(entry.getValue().size());
+                out.writeLong(offset);
+                offset += vectors[localId++].sizeInBytes();
+            }
+
+            offset = postingsOffset;
+            long skipOffset = skipsOffset;
+            for (Map.Entry<Long, PostingList> entry : postings.entrySet()) {
+                out.writeLong(entry.getKey());
+                out.writeInt(entry.getValue().size());
+                out.writeLong(entry.getValue().getMaxFrequency());
+                out.writeLong(offset);
+                out.writeLong(skipOffset);
+                offset += entry.getValue().sizeInBytes();
+                skipOffset += (long) entry.getValue().getNumberOfSkips() * Segment.SKIP_ENTRY_SIZE;
+            }
+
+            for (PostingList postingList : postings.values()) {
+                postingList.writeTo(out);
+            }
+            for (PostingList postingList : postings.values()) {
+                postingList.writeSkipsTo(out);
+            }
+            for (PostingList vector : vectors) {
+                vector.writeTo(out);
+            }
+        }
+
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * The norm of the document weights calculated from the statistics of the segment
+     */
+    private static double calculateNorm(TermVector termVector, int nrOfAllDocuments, Map<Long, PostingList> postings) {
+        double squares = 0;
+        for (int i = 0; i < termVector.size(); i++) {
+            double weight = calculateWeight(termVector.getFrequency(i), nrOfAllDocuments,
+                (long) postings.get(termVector.getIndexId(i)).size());
+            squares += weight * weight;
+        }
+
+        return Math.sqrt(squares);
+    }
+}
@@ -0,0 +1,273 @@
+package hu.ppke.yeast.index;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import hu.ppke.yeast.repository.IndexRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * This class is responsible for keeping the id and the document count of every index in memory,
+ * so the index names can be resolved without querying the jhi_index table.
+ * The changes of a transaction are only seen by itself until it is committed.
+ */
+@Component
+public class TermDictionary {
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final IndexRepository indexRepository;
+    private final CommittedReader committedReader;
+    private final Meter hits;
+    private final Meter misses;
+
+    private volatile Map<String, Term> terms = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    @Autowired
+    public TermDictionary(IndexRepository indexRepository, CommittedReader committedReader, MetricRegistry metricRegistry) {
+        this.indexRepository = indexRepository;
+        this.committedReader = committedReader;
+        this.hits = metricRegistry.meter(MetricRegistry.name(TermDictionary.class, "hits"));
+        this.misses = metricRegistry.meter(MetricRegistry.name(TermDictionary.class, "misses"));
+        metricRegistry.register(MetricRegistry.name(TermDictionary.class, "hit-ratio"), new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                return Ratio.of(hits.getCount(), hits.getCount() + misses.getCount());
+            }
+        });
+        metricRegistry.register(MetricRegistry.name(TermDictionary.class, "size"), (Gauge<Integer>) () -> terms.size());
+    }
+
+    /**
+     * @param name name of the index
+     * @return the id and the document count of the index, or null if there is no such index
+     */
+    public Term get(String name) {
+        ensureLoaded();
+        StagedTerms stagedTerms = TransactionChanges.get(this);
+        Term term = stagedTerms != null ? stagedTerms.get(name, terms) : terms.get(name);
+        if (term != null) {
+            hits.mark();
+        } else {
+            misses.mark();
+        }
+
+        return term;
+    }
+
+    /**
+     * Adds a new index or replaces the document count of an existing one
+     *
+     * @param name          name of the index
+     * @param id            id of the index
+     * @param documentCount number of documents containing the index
+     */
+    public void put(String name, long id, long documentCount) {
+        ensureLoaded();
+        stage(stagedTerms -> stagedTerms.put(name, new Term(id, documentCount), true));
+    }
+
+    /**
+     * Adds a new index unless the dictionary already knows it, so the document count of the known index is kept
+     *
+     * @param name          name of the index
+     * @param id            id of the index
+     * @param documentCount number of documents containing the index
+     */
+    public void putIfAbsent(String name, long id, long documentCount) {
+        ensureLoaded();
+        stage(stagedTerms -> {
+            if (stagedTerms.get(name, terms) == null) {
+                stagedTerms.put(name, new Term(id, documentCount), false);
+            }
+        });
+    }
+
+    /**
+     * @param name      name of an existing index
+     * @param increment the number of new documents containing the index, negative for deleted documents
+     */
+    public void incrementDocumentCount(String name, long increment) {
+        ensureLoaded();
+        stage(stagedTerms -> {
+            if (stagedTerms.get(name, terms) != null) {
+                stagedTerms.increment(name, increment);
+            }
+        });
+    }
+
+    /**
+     * Removes all indices from the dictionary
+     */
+    public void clear() {
+        StagedTerms stagedTerms = TransactionChanges.current(this, StagedTerms::new, this::publish);
+        if (stagedTerms != null) {
+            stagedTerms.clear();
+            return;
+        }
+
+        synchronized (this) {
+            terms = new ConcurrentHashMap<>();
+            loaded = true;
+        }
+    }
+
+    public int size() {
+        ensureLoaded();
+        return terms.size();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        ensureLoaded();
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    load();
+                }
+            }
+        }
+    }
+
+    /**
+     * Only the committed indices are loaded, the surrounding transaction may be rolled back
+     */
+    private void load() {
+        log.info("Loading the term dictionary from the DB");
+
+        Map<String, Term> loadedTerms = new ConcurrentHashMap<>();
+        for (Object[] row : committedReader.read(indexRepository::findAllTerms)) {
+            loadedTerms.put((String) row[0], new Term((Long) row[1], row[2] == null ? 0L : (Long) row[2]));
+        }
+
+        terms = loadedTerms;
+        loaded = true;
+        log.info("Loaded " + loadedTerms.size() + " indices into the term dictionary");
+    }
+
+    /**
+     * Within a transaction the change is kept until it is committed, otherwise it is applied immediately
+     */
+    private void stage(Consumer<StagedTerms> change) {
+        StagedTerms stagedTerms = TransactionChanges.current(this, StagedTerms::new, this::publish);
+        if (stagedTerms != null) {
+            change.accept(stagedTerms);
+        } else {
+            stagedTerms = new StagedTerms();
+            change.accept(stagedTerms);
+            publish(stagedTerms);
+        }
+    }
+
+    /**
+     * Applies the changes of a committed transaction. The document count increments are added to the current
+     * counts, so the increments of the concurrent transactions are kept.
+     */
+    private synchronized void publish(StagedTerms stagedTerms) {
+        if (stagedTerms.cleared) {
+            terms = new ConcurrentHashMap<>();
+            loaded = true;
+        }
+
+        for (Map.Entry<String, StagedTerm> entry : stagedTerms.terms.entrySet()) {
+            StagedTerm stagedTerm = entry.getValue();
+            if (stagedTerm.replace) {
+                terms.put(entry.getKey(), stagedTerm.added);
+            } else if (stagedTerm.added != null) {
+                terms.putIfAbsent(entry.getKey(), stagedTerm.added);
+            }
+            if (stagedTerm.increment != 0) {
+                terms.computeIfPresent(entry.getKey(),
+                    (k, term) -> new Term(term.getId(), term.getDocumentCount() + stagedTerm.increment));
+            }
+        }
+    }
+
+    /**
+     * The changes of the indices made in a transaction
+     */
+    private static class StagedTerms {
+
+        private final Map<String, StagedTerm> terms = new HashMap<>();
+        private boolean cleared;
+
+        /**
+         * @return the index as seen by the transaction
+         */
+        private Term get(String name, Map<String, Term> committedTerms) {
+            StagedTerm stagedTerm = terms.get(name);
+            Term term = cleared ? null : committedTerms.get(name);
+            if (stagedTerm == null) {
+                return term;
+            }
+            if (stagedTerm.added != null && (stagedTerm.replace || term == null)) {
+                term = stagedTerm.added;
+            }
+
+            return term == null ? null : new Term(term.getId(), term.getDocumentCount() + stagedTerm.increment);
+        }
+
+        private void put(String name, Term term, boolean replace) {
+            StagedTerm stagedTerm = terms.computeIfAbsent(name, k -> new StagedTerm());
+            stagedTerm.added = term;
+            stagedTerm.replace |= replace;
+            stagedTerm.increment = 0;
+        }
+
+        private void increment(String name, long increment) {
+            terms.computeIfAbsent(name, k -> new StagedTerm()).increment += increment;
+        }
+
+        private void clear() {
+            terms.clear();
+            cleared = true;
+        }
+    }
+
+    /**
+     * An index added or replaced in a transaction, together with its document count increment
+     */
+    private static class StagedTerm {
+
+        private Term added;
+        private boolean replace;
+        private long increment;
+    }
+
+    /**
+     * The id and the document count of an index
+     */
+    public static class Term {
+
+        private final long id;
+        private final long documentCount;
+
+        public Term(long id, long documentCount) {
+            this.id = id;
+            this.documentCount = documentCount;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public long getDocumentCount() {
+            return documentCount;
+        }
+    }
+}
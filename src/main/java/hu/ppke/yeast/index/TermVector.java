@@ -0,0 +1,48 @@
+package hu.ppke.yeast.index;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * This class stores the indices of a single document together with their frequencies, ordered by the index id
+ */
+public class TermVector {
+
+    private final long[] indexIds;
+    private final long[] frequencies;
+
+    public TermVector(Map<Long, Long> indexFrequencies) {
+        SortedMap<Long, Long> sortedFrequencies = new TreeMap<>(indexFrequencies);
+        this.indexIds = new long[sortedFrequencies.size()];
+        this.frequencies = new long[sortedFrequencies.size()];
+
+        int i = 0;
+        for (Map.Entry<Long, Long> entry : sortedFrequencies.entrySet()) {
+            indexIds[i] = entry.getKey();
+            frequencies[i] = entry.getValue();
+            i++;
+        }
+    }
+
+    /**
+     * @param indexIds    the ids of the indices in ascending order
+     * @param frequencies the frequencies belonging to the indices
+     */
+    TermVector(long[] indexIds, long[] frequencies) {
+        this.indexIds = indexIds;
+        this.frequencies = frequencies;
+    }
+
+    public int size() {
+        return indexIds.length;
+    }
+
+    public long getIndexId(int position) {
+        return indexIds[position];
+    }
+
+    public long getFrequency(int position) {
+        return frequencies[position];
+    }
+}
@@ -0,0 +1,59 @@
+package hu.ppke.yeast.index;
+
+import java.util.*;
+
+/**
+ * This class is responsible for choosing the segments to merge.
+ * <p>
+ * Once a tier of similarly sized segments has merge factor segments, they are merged into a single segment
+ * of the next tier. A segment having more deleted than live documents is rewritten alone.
+ */
+public class TieredMergePolicy {
+
+    private final int mergeFactor;
+
+    /**
+     * @param mergeFactor the number of segments merged together, at least 2
+     */
+    public TieredMergePolicy(int mergeFactor) {
+        if (mergeFactor < 2) {
+            throw new IllegalArgumentException("The merge factor must be at least 2, but was " + mergeFactor);
+        }
+        this.mergeFactor = mergeFactor;
+    }
+
+    /**
+     * @param sizes     the number of live documents of the segments that can be merged
+     * @param deletions the number of deleted documents of the same segments
+     * @return the positions of the segments to merge together, the merges do not overlap
+     */
+    public List<List<Integer>> findMerges(List<Integer> sizes, List<Integer> deletions) {
+        List<List<Integer>> merges = new ArrayList<>();
+        SortedMap<Integer, List<Integer>> tiers = new TreeMap<>();
+        for (int i = 0; i < sizes.size(); i++) {
+            if (deletions.get(i) > sizes.get(i)) {
+                merges.add(Collections.singletonList(i));
+            } else {
+                tiers.computeIfAbsent(getTier(sizes.get(i)), k -> new ArrayList<>()).add(i);
+            }
+        }
+
+        for (List<Integer> tier : tiers.values()) {
+            tier.sort(Comparator.comparingInt(sizes::get));
+            for (int from = 0; from + mergeFactor <= tier.size(); from += mergeFactor) {
+                merges.add(new ArrayList<>(tier.subList(from, from + mergeFactor)));
+            }
+        }
+
+        return merges;
+    }
+
+    private int getTier(int size) {
+        int tier = 0;
+        for (long limit = mergeFactor; size >= limit; limit *= mergeFactor) {
+            tier++;
+        }
+
+        return tier;
+    }
+}
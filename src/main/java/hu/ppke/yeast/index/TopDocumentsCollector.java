@@ -0,0 +1,87 @@
+package hu.ppke.yeast.index;
+
+import java.util.*;
+
+/**
+ * This class collects the best scoring documents using a min-heap bounded to the requested number of documents.
+ * Documents with equal scores are ranked by ascending document id, so the results can be paged with a search-after
+ * cursor.
+ */
+public class TopDocumentsCollector {
+
+    private static final Comparator<ScoredDocument> WORST_FIRST = Comparator
+        .comparingDouble(ScoredDocument::getScore)
+        .thenComparing(Comparator.comparingLong(ScoredDocument::getDocumentId).reversed());
+
+    private final int limit;
+    private final ScoredDocument after;
+    private final PriorityQueue<ScoredDocument> heap = new PriorityQueue<>(WORST_FIRST);
+
+    /**
+     * @param limit the maximum number of documents to collect
+     */
+    public TopDocumentsCollector(int limit) {
+        this(limit, null);
+    }
+
+    /**
+     * @param limit the maximum number of documents to collect
+     * @param after the last document of the previous page, only the documents ranked after it are collected,
+     *              or null to collect from the best document
+     */
+    public TopDocumentsCollector(int limit, ScoredDocument after) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("The limit must be positive, but was " + limit);
+        }
+        this.limit = limit;
+        this.after = after;
+    }
+
+    public void collect(long documentId, double score) {
+        if (after != null && (score > after.getScore() ||
+            score == after.getScore() && documentId <= after.getDocumentId())) {
+            return;
+        }
+        if (heap.size() < limit) {
+            heap.add(new ScoredDocument(documentId, score));
+        } else {
+            ScoredDocument worst = heap.peek();
+            if (score > worst.getScore() || score == worst.getScore() && documentId < worst.getDocumentId()) {
+                heap.poll();
+                heap.add(new ScoredDocument(documentId, score));
+            }
+        }
+    }
+
+    /**
+     * Collects the documents of another collector, used to merge the results of collectors filled in parallel
+     *
+     * @param other the other collector
+     */
+    public void collectAll(TopDocumentsCollector other) {
+        for (ScoredDocument document : other.heap) {
+            collect(document.getDocumentId(), document.getScore());
+        }
+    }
+
+    public boolean isFull() {
+        return heap.size() >= limit;
+    }
+
+    /**
+     * @return the score a document has to reach to get into a full collector
+     */
+    public double getThreshold() {
+        return isFull() ? heap.peek().getScore() : Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * @return the collected documents, the best scoring first
+     */
+    public List<ScoredDocument> getTopDocuments() {
+        List<ScoredDocument> topDocuments = new ArrayList<>(heap);
+        topDocuments.sort(WORST_FIRST.reversed());
+
+        return topDocuments;
+    }
+}
@@ -0,0 +1,58 @@
+package hu.ppke.yeast.index;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * This class is responsible for keeping the changes a transaction made to an in-memory structure which is not
+ * transactional, like the {@link InvertedIndex} or the {@link TermDictionary}, apart from its shared state until
+ * the transaction is committed. The changes of a rolled back transaction are simply dropped.
+ */
+final class TransactionChanges {
+
+    private TransactionChanges() {
+    }
+
+    /**
+     * @param key      the structure the changes belong to
+     * @param create   creates the changes of a transaction
+     * @param onCommit called with the changes on the thread of the transaction once it is committed
+     * @return the changes of the current transaction, or null if there is no transaction
+     */
+    @SuppressWarnings("unchecked")
+    static <C> C current(Object key, Supplier<C> create, Consumer<C> onCommit) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+
+        C changes = (C) TransactionSynchronizationManager.getResource(key);
+        if (changes == null) {
+            C created = create.get();
+            TransactionSynchronizationManager.bindResource(key, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(key);
+                    if (status == STATUS_COMMITTED) {
+                        onCommit.accept(created);
+                    }
+                }
+            });
+            changes = created;
+        }
+
+        return changes;
+    }
+
+    /**
+     * @param key the structure the changes belong to
+     * @return the changes of the current transaction, or null if it has not changed the structure
+     */
+    @SuppressWarnings("unchecked")
+    static <C> C get(Object key) {
+        return (C) TransactionSynchronizationManager.getResource(key);
+    }
+}
@@ -0,0 +1,159 @@
+package hu.ppke.yeast.index;
+
+import hu.ppke.yeast.calculator.SparseVector;
+import hu.ppke.yeast.repository.DocumentIndexRepository;
+import hu.ppke.yeast.repository.DocumentIndexWeightRepository;
+import hu.ppke.yeast.repository.DocumentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static hu.ppke.yeast.calculator.WeightCalculator.calculateWeight;
+
+/**
+ * This class is responsible for reading the weights of the documents from the DB for the {@link WeightMatrixStore}.
+ * <p>
+ * The documents are read in chunks of their ids. In incremental mode the weights are calculated from the persisted
+ * index frequencies, otherwise the persisted weights are read together with their norms and sums.
+ */
+@Component
+public class WeightMatrixLoader {
+
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
+    private final DocumentRepository documentRepository;
+    private final DocumentIndexRepository documentIndexRepository;
+    private final DocumentIndexWeightRepository documentIndexWeightRepository;
+
+    @Autowired
+    public WeightMatrixLoader(DocumentRepository documentRepository,
+                              DocumentIndexRepository documentIndexRepository,
+                              DocumentIndexWeightRepository documentIndexWeightRepository) {
+        this.documentRepository = documentRepository;
+        this.documentIndexRepository = documentIndexRepository;
+        this.documentIndexWeightRepository = documentIndexWeightRepository;
+    }
+
+    /**
+     * @param incremental true to calculate the weights from the index frequencies
+     * @return the committed weights of all documents
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public OffHeapWeightMatrix loadCommitted(boolean incremental) {
+        return loadWeightMatrix(incremental);
+    }
+
+    /**
+     * @param documentIds ids of the documents
+     * @param incremental true to calculate the weights from the index frequencies
+     * @return id - committed weights pairs of the documents, the weights are null for the deleted documents
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public Map<Long, SparseVector> loadCommitted(Collection<Long> documentIds, boolean incremental) {
+        return loadDocuments(documentIds, incremental);
+    }
+
+    /**
+     * @param incremental true to calculate the weights from the index frequencies
+     * @return the weights of all documents seen by the current transaction
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public OffHeapWeightMatrix load(boolean incremental) {
+        return loadWeightMatrix(incremental);
+    }
+
+    /**
+     * @param documentIds ids of the documents
+     * @param incremental true to calculate the weights from the index frequencies
+     * @return id - weights pairs of the documents seen by the current transaction, the weights are null for the
+     * deleted documents
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Map<Long, SparseVector> load(Collection<Long> documentIds, boolean incremental) {
+        return loadDocuments(documentIds, incremental);
+    }
+
+    /**
+     * The statistics are read in chunks as well, the next chunk starting after the last id of the previous one,
+     * so the matrix is filled in ascending id order
+     */
+    private OffHeapWeightMatrix loadWeightMatrix(boolean incremental) {
+        int nrOfAllDocuments = (int) documentRepository.count();
+        OffHeapWeightMatrix.Builder builder = new OffHeapWeightMatrix.Builder();
+        long afterId = Long.MIN_VALUE;
+        List<Object[]> statistics;
+
+        do {
+            statistics = documentRepository.findWeightStatistics(afterId, new PageRequest(0, MAX_IDS_PER_QUERY));
+            Map<Long, Map<Long, Double>> weights = getDocumentWeights(
+                statistics.stream().map(row -> (Long) row[0]).collect(Collectors.toList()), nrOfAllDocuments, incremental);
+
+            for (Object[] row : statistics) {
+                Long documentId = (Long) row[0];
+                builder.add(documentId, toVector(row, weights.getOrDefault(documentId, Collections.emptyMap()), incremental));
+                afterId = documentId;
+            }
+        } while (statistics.size() == MAX_IDS_PER_QUERY);
+
+        return builder.build();
+    }
+
+    private Map<Long, SparseVector> loadDocuments(Collection<Long> documentIds, boolean incremental) {
+        int nrOfAllDocuments = (int) documentRepository.count();
+        Map<Long, SparseVector> documents = new HashMap<>();
+        List<Long> ids = new ArrayList<>(documentIds);
+
+        for (int from = 0; from < ids.size(); from += MAX_IDS_PER_QUERY) {
+            List<Long> chunk = ids.subList(from, Math.min(from + MAX_IDS_PER_QUERY, ids.size()));
+            Map<Long, Map<Long, Double>> weights = getDocumentWeights(chunk, nrOfAllDocuments, incremental);
+
+            for (Long documentId : chunk) {
+                documents.put(documentId, null);
+            }
+            for (Object[] row : documentRepository.findWeightStatisticsByIdIn(chunk)) {
+                Long documentId = (Long) row[0];
+                documents.put(documentId, toVector(row, weights.getOrDefault(documentId, Collections.emptyMap()), incremental));
+            }
+        }
+
+        return documents;
+    }
+
+    private SparseVector toVector(Object[] statistics, Map<Long, Double> weights, boolean incremental) {
+        Double norm = (Double) statistics[1];
+        Double sum = (Double) statistics[2];
+
+        return !incremental && norm != null && sum != null ? SparseVector.of(weights, norm, sum) : SparseVector.of(weights);
+    }
+
+    /**
+     * @param documentIds      ids of the documents
+     * @param nrOfAllDocuments the number of documents, used by the incremental weights
+     * @return document id - index id - weight maps of the documents
+     */
+    private Map<Long, Map<Long, Double>> getDocumentWeights(List<Long> documentIds, int nrOfAllDocuments,
+                                                            boolean incremental) {
+        Map<Long, Map<Long, Double>> documentWeights = new HashMap<>();
+        if (documentIds.isEmpty()) {
+            return documentWeights;
+        }
+
+        if (incremental) {
+            for (Object[] row : documentIndexRepository.findFrequenciesAndDocumentCountsByDocumentIdIn(documentIds)) {
+                documentWeights.computeIfAbsent((Long) row[0], documentId -> new HashMap<>())
+                    .put((Long) row[1], calculateWeight((Long) row[2], nrOfAllDocuments, (Long) row[3]));
+            }
+        } else {
+            for (Object[] row : documentIndexWeightRepository.findWeightsByDocumentIdIn(documentIds)) {
+                documentWeights.computeIfAbsent((Long) row[0], documentId -> new HashMap<>()).put((Long) row[1], (Double) row[2]);
+            }
+        }
+
+        return documentWeights;
+    }
+}
@@ -0,0 +1,142 @@
+package hu.ppke.yeast.index;
+
+import hu.ppke.yeast.calculator.SparseVector;
+import hu.ppke.yeast.calculator.WeightVector;
+
+import java.util.BitSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * This class is responsible for representing the weights of the documents at a given moment: an
+ * {@link OffHeapWeightMatrix} and an overlay of the documents changed since it was built.
+ */
+public final class WeightMatrixSnapshot {
+
+    private final OffHeapWeightMatrix weightMatrix;
+    private final boolean incremental;
+    private final BitSet removed;
+    private final long[] overlayDocumentIds;
+    private final SparseVector[] overlayVectors;
+    private final int numberOfDocuments;
+
+    /**
+     * @param weightMatrix the matrix
+     * @param incremental  true if the weights are calculated from the index frequencies
+     */
+    public WeightMatrixSnapshot(OffHeapWeightMatrix weightMatrix, boolean incremental) {
+        this(weightMatrix, incremental, new BitSet(), new long[0], new SparseVector[0]);
+    }
+
+    private WeightMatrixSnapshot(OffHeapWeightMatrix weightMatrix, boolean incremental, BitSet removed,
+                                 long[] overlayDocumentIds, SparseVector[] overlayVectors) {
+        this.weightMatrix = weightMatrix;
+        this.incremental = incremental;
+        this.removed = removed;
+        this.overlayDocumentIds = overlayDocumentIds;
+        this.overlayVectors = overlayVectors;
+        this.numberOfDocuments = weightMatrix.getNumberOfDocuments() - removed.cardinality() + overlayDocumentIds.length;
+    }
+
+    /**
+     * @param documents id - weights pairs of the changed documents, the weights are null for deleted documents
+     * @return a new snapshot sharing the matrix of this one
+     */
+    public WeightMatrixSnapshot withChanges(Map<Long, SparseVector> documents) {
+        BitSet changedRemoved = (BitSet) removed.clone();
+        TreeMap<Long, SparseVector> overlay = new TreeMap<>();
+        for (int i = 0; i < overlayDocumentIds.length; i++) {
+            overlay.put(overlayDocumentIds[i], overlayVectors[i]);
+        }
+
+        for (Map.Entry<Long, SparseVector> document : documents.entrySet()) {
+            int position = weightMatrix.indexOf(document.getKey());
+            if (position >= 0) {
+                changedRemoved.set(position);
+            }
+            overlay.remove(document.getKey());
+            if (document.getValue() != null) {
+                overlay.put(document.getKey(), document.getValue());
+            }
+        }
+
+        long[] changedDocumentIds = new long[overlay.size()];
+        SparseVector[] changedVectors = new SparseVector[overlay.size()];
+        int i = 0;
+        for (Map.Entry<Long, SparseVector> document : overlay.entrySet()) {
+            changedDocumentIds[i] = document.getKey();
+            changedVectors[i++] = document.getValue();
+        }
+
+        return new WeightMatrixSnapshot(weightMatrix, incremental, changedRemoved, changedDocumentIds, changedVectors);
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * @return the number of the live documents
+     */
+    public int getNumberOfDocuments() {
+        return numberOfDocuments;
+    }
+
+    /**
+     * @return the number of documents changed since the matrix was built, including the deleted ones
+     */
+    public int getNumberOfChanges() {
+        return removed.cardinality() + overlayDocumentIds.length;
+    }
+
+    /**
+     * @return the number of slots, including the removed ones
+     */
+    public int size() {
+        return weightMatrix.getNumberOfDocuments() + overlayDocumentIds.length;
+    }
+
+    /**
+     * @param slot between 0 and {@link #size()} - 1
+     * @return false if the document of the slot was changed or deleted since
+     */
+    public boolean isLive(int slot) {
+        return slot >= weightMatrix.getNumberOfDocuments() || !removed.get(slot);
+    }
+
+    /**
+     * @param slot between 0 and {@link #size()} - 1
+     * @return the id of the document of the slot
+     */
+    public long getDocumentId(int slot) {
+        int matrixSize = weightMatrix.getNumberOfDocuments();
+        return slot < matrixSize ? weightMatrix.getDocumentId(slot) : overlayDocumentIds[slot - matrixSize];
+    }
+
+    /**
+     * @return a new reader of the weights
+     */
+    public Cursor newCursor() {
+        return new Cursor();
+    }
+
+    /**
+     * A reader of the weights of the slots, it reuses a single view of the matrix, so it is not thread-safe
+     */
+    public class Cursor {
+
+        private final OffHeapWeightMatrix.DocumentVector matrixVector = weightMatrix.newVector();
+
+        private Cursor() {
+        }
+
+        /**
+         * @param slot between 0 and {@link #size()} - 1
+         * @return the weights of the document of the slot, valid until the next move
+         */
+        public WeightVector moveTo(int slot) {
+            int matrixSize = weightMatrix.getNumberOfDocuments();
+            return slot < matrixSize ? matrixVector.moveTo(slot) : overlayVectors[slot - matrixSize];
+        }
+    }
+}
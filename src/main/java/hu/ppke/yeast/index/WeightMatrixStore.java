@@ -0,0 +1,317 @@
+package hu.ppke.yeast.index;
+
+import hu.ppke.yeast.calculator.SparseVector;
+import hu.ppke.yeast.config.ApplicationProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class is responsible for keeping the weights of the documents in a {@link WeightMatrixSnapshot} shared by
+ * the searches of the weight matrix engine.
+ * <p>
+ * The committed changes reported by the {@link IndexGeneration} are applied to the snapshot, or the matrix is built
+ * again in the background when there are too many of them or the weights are incremental. A transaction that changed
+ * the index uses its own snapshot until it completes.
+ */
+@Component
+public class WeightMatrixStore {
+
+    private static final int MIN_REBUILD_THRESHOLD = 1024;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final WeightMatrixLoader loader;
+    private final IndexGeneration indexGeneration;
+    private final ApplicationProperties applicationProperties;
+    private final Executor executor;
+
+    private final Object pendingLock = new Object();
+    private Set<Long> pendingDocumentIds = new HashSet<>();
+    private boolean pendingAll;
+
+    private final ReentrantLock updateLock = new ReentrantLock();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private volatile WeightMatrixSnapshot current;
+    private volatile boolean servedOutdated;
+    private boolean closed;
+
+    @Autowired
+    public WeightMatrixStore(WeightMatrixLoader loader,
+                             IndexGeneration indexGeneration,
+                             ApplicationProperties applicationProperties,
+                             @Qualifier("taskExecutor") Executor executor) {
+        this.loader = loader;
+        this.indexGeneration = indexGeneration;
+        this.applicationProperties = applicationProperties;
+        this.executor = executor;
+        indexGeneration.addListener(this::addPendingChanges);
+    }
+
+    /**
+     * @return the weights seen by the current transaction
+     */
+    public WeightMatrixSnapshot acquire() {
+        IndexGeneration.Changes changes = indexGeneration.getChangesInTransaction();
+        if (changes == null) {
+            return acquireShared();
+        }
+
+        boolean incremental = applicationProperties.getWeights().isIncremental();
+        TransactionSnapshot transactionSnapshot = (TransactionSnapshot) TransactionSynchronizationManager.getResource(this);
+        if (transactionSnapshot == null) {
+            transactionSnapshot = bindTransactionSnapshot();
+        }
+        if (!transactionSnapshot.isValid(changes.getVersion(), incremental)) {
+            transactionSnapshot.replace(buildTransactionSnapshot(changes, incremental), changes.getVersion(), incremental);
+        }
+
+        return transactionSnapshot.snapshot;
+    }
+
+    /**
+     * @return the committed weights
+     * @throws IllegalStateException if the store is closed
+     */
+    public WeightMatrixSnapshot acquireShared() {
+        boolean incremental = applicationProperties.getWeights().isIncremental();
+        WeightMatrixSnapshot snapshot = current;
+        if (snapshot == null || snapshot.isIncremental() != incremental) {
+            updateLock.lock();
+            try {
+                snapshot = current;
+                if (closed) {
+                    throw new IllegalStateException("The weight matrix store is closed");
+                }
+                if (snapshot == null || snapshot.isIncremental() != incremental) {
+                    takePendingChanges();
+                    current = new WeightMatrixSnapshot(loader.loadCommitted(incremental), incremental);
+                }
+            } finally {
+                updateLock.unlock();
+            }
+        } else {
+            applyPendingChanges(snapshot);
+        }
+
+        snapshot = current;
+        if (snapshot == null) {
+            throw new IllegalStateException("The weight matrix store is closed");
+        }
+        return snapshot;
+    }
+
+    @PreDestroy
+    public void close() {
+        updateLock.lock();
+        try {
+            closed = true;
+            current = null;
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    private void addPendingChanges(IndexGeneration.Changes changes) {
+        WeightMatrixSnapshot snapshot = current;
+        synchronized (pendingLock) {
+            if (changes.isAll()) {
+                pendingAll = true;
+            } else if (!pendingAll) {
+                pendingDocumentIds.addAll(changes.getDocumentIds());
+                // Too many changes are not applied one by one, so they are not kept either
+                pendingAll = snapshot != null && pendingDocumentIds.size() > getRebuildThreshold(snapshot);
+            }
+            if (pendingAll) {
+                pendingDocumentIds = new HashSet<>();
+            }
+        }
+    }
+
+    /**
+     * The changes committed after this point are left pending, so they are applied to the result of the update
+     * even if it does not contain them
+     *
+     * @return the ids of the pending documents, or null if every document may have been changed
+     */
+    private Set<Long> takePendingChanges() {
+        synchronized (pendingLock) {
+            Set<Long> documentIds = pendingAll ? null : pendingDocumentIds;
+            pendingDocumentIds = new HashSet<>();
+            pendingAll = false;
+
+            return documentIds;
+        }
+    }
+
+    private void restorePendingChanges(Set<Long> documentIds) {
+        synchronized (pendingLock) {
+            if (documentIds == null) {
+                pendingAll = true;
+                pendingDocumentIds = new HashSet<>();
+            } else if (!pendingAll) {
+                pendingDocumentIds.addAll(documentIds);
+            }
+        }
+    }
+
+    private void applyPendingChanges(WeightMatrixSnapshot snapshot) {
+        boolean rebuild;
+        synchronized (pendingLock) {
+            if (!pendingAll && pendingDocumentIds.isEmpty()) {
+                return;
+            }
+            rebuild = pendingAll || snapshot.isIncremental() ||
+                snapshot.getNumberOfChanges() + pendingDocumentIds.size() > getRebuildThreshold(snapshot);
+        }
+
+        // While the matrix is built again the changes are left pending, they are applied to the new snapshot
+        if (rebuild || rebuilding.get()) {
+            servedOutdated = true;
+            if (rebuild) {
+                startRebuild(snapshot.isIncremental());
+            }
+            return;
+        }
+        if (!updateLock.tryLock()) {
+            servedOutdated = true;
+            return;
+        }
+
+        try {
+            if (rebuilding.get() || current != snapshot) {
+                servedOutdated = true;
+                return;
+            }
+            Set<Long> documentIds = takePendingChanges();
+            if (documentIds == null) {
+                restorePendingChanges(null);
+                servedOutdated = true;
+                startRebuild(snapshot.isIncremental());
+                return;
+            }
+
+            Map<Long, SparseVector> documents;
+            try {
+                documents = loader.loadCommitted(documentIds, snapshot.isIncremental());
+            } catch (RuntimeException e) {
+                restorePendingChanges(documentIds);
+                throw e;
+            }
+            current = snapshot.withChanges(documents);
+        } finally {
+            updateLock.unlock();
+        }
+        publishIfServedOutdated();
+    }
+
+    private void startRebuild(boolean incremental) {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> rebuild(incremental));
+        } catch (RejectedExecutionException e) {
+            rebuilding.set(false);
+            log.warn("Could not start building the weight matrix: " + e.getMessage());
+        }
+    }
+
+    private void rebuild(boolean incremental) {
+        try {
+            Set<Long> documentIds = takePendingChanges();
+            WeightMatrixSnapshot snapshot;
+            try {
+                snapshot = new WeightMatrixSnapshot(loader.loadCommitted(incremental), incremental);
+            } catch (RuntimeException e) {
+                restorePendingChanges(documentIds);
+                throw e;
+            }
+
+            updateLock.lock();
+            try {
+                if (current != null && current.isIncremental() == incremental) {
+                    current = snapshot;
+                }
+            } finally {
+                updateLock.unlock();
+            }
+            log.debug("Built the weight matrix of " + snapshot.getNumberOfDocuments() + " documents");
+        } catch (RuntimeException e) {
+            log.error("Could not build the weight matrix", e);
+        } finally {
+            rebuilding.set(false);
+        }
+        publishIfServedOutdated();
+    }
+
+    private void publishIfServedOutdated() {
+        if (servedOutdated) {
+            servedOutdated = false;
+            indexGeneration.publish();
+        }
+    }
+
+    private int getRebuildThreshold(WeightMatrixSnapshot snapshot) {
+        return Math.max(MIN_REBUILD_THRESHOLD, snapshot.getNumberOfDocuments() / 8);
+    }
+
+    private WeightMatrixSnapshot buildTransactionSnapshot(IndexGeneration.Changes changes, boolean incremental) {
+        if (!changes.isAll() && !incremental) {
+            WeightMatrixSnapshot shared = acquireShared();
+            if (shared.getNumberOfChanges() + changes.getDocumentIds().size() <= getRebuildThreshold(shared)) {
+                return shared.withChanges(loader.load(changes.getDocumentIds(), incremental));
+            }
+        }
+
+        return new WeightMatrixSnapshot(loader.load(incremental), incremental);
+    }
+
+    private TransactionSnapshot bindTransactionSnapshot() {
+        TransactionSnapshot transactionSnapshot = new TransactionSnapshot();
+        TransactionSynchronizationManager.bindResource(this, transactionSnapshot);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(WeightMatrixStore.this);
+                transactionSnapshot.replace(null, 0, false);
+            }
+        });
+
+        return transactionSnapshot;
+    }
+
+    /**
+     * The snapshot of a transaction that changed the index, together with the version of the changes it contains
+     */
+    private static class TransactionSnapshot {
+
+        private WeightMatrixSnapshot snapshot;
+        private int version;
+        private boolean incremental;
+
+        private boolean isValid(int version, boolean incremental) {
+            return snapshot != null && this.version == version && this.incremental == incremental;
+        }
+
+        private void replace(WeightMatrixSnapshot snapshot, int version, boolean incremental) {
+            this.snapshot = snapshot;
+            this.version = version;
+            this.incremental = incremental;
+        }
+    }
+}
@@ -2,7 +2,6 @@ package hu.ppke.yeast.processor;
 
 import com.opencsv.CSVReaderBuilder;
 import hu.ppke.yeast.repository.IndexRepository;
-import opennlp.tools.stemmer.PorterStemmer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,8 +10,11 @@ import org.springframework.core.io.ResourceLoader;
 
 import javax.annotation.PostConstruct;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public abstract class AbstractProcessor {
@@ -21,13 +23,15 @@ public abstract class AbstractProcessor {
 
     private final ResourceLoader resourceLoader;
     protected final IndexRepository indexRepository;
+    private final Stemmer stemmer;
 
-    private List<String> stopWords;
+    private Set<String> stopWords;
 
     @Autowired
-    public AbstractProcessor(ResourceLoader resourceLoader, IndexRepository indexRepository) {
+    public AbstractProcessor(ResourceLoader resourceLoader, IndexRepository indexRepository, Stemmer stemmer) {
         this.resourceLoader = resourceLoader;
         this.indexRepository = indexRepository;
+        this.stemmer = stemmer;
     }
 
     @PostConstruct
@@ -35,18 +39,14 @@ public abstract class AbstractProcessor {
         Resource resource = resourceLoader.getResource("classpath:" + "txt_processing/stop_words.csv");
         log.debug("Loading stopwords from stop_words.csv file");
         String[] stopWordsArray = new CSVReaderBuilder(new InputStreamReader(resource.getInputStream())).build().readNext();
-        stopWords = Arrays.asList(stopWordsArray);
+        stopWords = new HashSet<>(Arrays.asList(stopWordsArray));
     }
 
     protected List<String> getWords(String documentContent) {
-        // We get the first version of the words by splitting the document at the commas
-        String[] words = documentContent.split("\\s+");
-        for (int i = 0; i < words.length; i++) {
-            // We replace all characters apart from [a-zA-Z] with an empty character
-            words[i] = words[i].replaceAll("[^a-zA-Z]", "").toLowerCase();
-        }
+        List<String> words = new ArrayList<>();
+        Tokenizer.tokenize(documentContent, words::add);
 
-        return Arrays.asList(words);
+        return words;
     }
 
     protected List<String> filterWords(List<String> words) {
@@ -55,12 +55,29 @@ public abstract class AbstractProcessor {
     }
 
     protected List<String> stemWords(List<String> words) {
-        PorterStemmer stemmer = new PorterStemmer();
-
         for (int i = 0; i < words.size(); i++) {
             words.set(i, stemmer.stem(words.get(i)));
         }
 
         return words;
     }
+
+    /**
+     * Gets the words of the text, applies the stoplist and the stemmer in a single pass,
+     * without building the intermediate lists of {@link #getWords}, {@link #filterWords} and {@link #stemWords}
+     *
+     * @param text the text to process
+     * @return the stemmed indices in the order of their occurrence
+     */
+    protected List<String> getIndices(String text) {
+        List<String> indices = new ArrayList<>();
+
+        Tokenizer.tokenize(text, word -> {
+            if (!stopWords.contains(word)) {
+                indices.add(stemmer.stem(word));
+            }
+        });
+
+        return indices;
+    }
 }
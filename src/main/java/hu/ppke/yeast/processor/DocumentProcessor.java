@@ -1,18 +1,27 @@
 package hu.ppke.yeast.processor;
 
 import hu.ppke.yeast.domain.Document;
+import hu.ppke.yeast.domain.DocumentIndex;
+import hu.ppke.yeast.domain.DocumentIndexWeight;
 import hu.ppke.yeast.domain.Index;
+import hu.ppke.yeast.index.IndexGeneration;
+import hu.ppke.yeast.index.InvertedIndex;
+import hu.ppke.yeast.index.TermDictionary;
+import hu.ppke.yeast.repository.DocumentIndexRepository;
+import hu.ppke.yeast.repository.IndexBatchRepository;
 import hu.ppke.yeast.repository.IndexRepository;
-import hu.ppke.yeast.service.DocumentIndexService;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import javax.persistence.EntityManager;
+import java.util.*;
+import java.util.function.Function;
 
 /**
  * This class is responsible for the following steps in the text processing:
@@ -20,41 +29,231 @@ import java.util.Set;
  * 2. Apply the stoplist on the list of words (remove those ones which are on the stoplist)
  * 3. Apply the stemmer algorithm on the remaining words
  * 4. Persist the indices
+ * 5. Add the document to the inverted index
+ * <p>
+ * Deleted documents are removed the other way around. The documents are processed in batches written with JDBC,
+ * so the touched cache regions are evicted, once more after the commit.
  */
 @Component
 @Transactional
 public class DocumentProcessor extends AbstractProcessor {
 
 
-    private final DocumentIndexService docIndexService;
+    private static final int MAX_NAMES_PER_QUERY = 1000;
+
+    private final InvertedIndex invertedIndex;
+    private final TermDictionary termDictionary;
+    private final IndexGeneration indexGeneration;
+    private final IndexBatchRepository indexBatchRepository;
+    private final DocumentIndexRepository documentIndexRepository;
+    private final EntityManager entityManager;
 
     @Autowired
     public DocumentProcessor(ResourceLoader resourceLoader,
                              IndexRepository indexRepository,
-                             DocumentIndexService docIndexService) {
-        super(resourceLoader, indexRepository);
-        this.docIndexService = docIndexService;
+                             Stemmer stemmer,
+                             InvertedIndex invertedIndex,
+                             TermDictionary termDictionary,
+                             IndexGeneration indexGeneration,
+                             IndexBatchRepository indexBatchRepository,
+                             DocumentIndexRepository documentIndexRepository,
+                             EntityManager entityManager) {
+        super(resourceLoader, indexRepository, stemmer);
+        this.invertedIndex = invertedIndex;
+        this.termDictionary = termDictionary;
+        this.indexGeneration = indexGeneration;
+        this.indexBatchRepository = indexBatchRepository;
+        this.documentIndexRepository = documentIndexRepository;
+        this.entityManager = entityManager;
     }
 
+    /**
+     * Processes a persisted document like a batch of a single document, so it becomes detached as well
+     *
+     * @param document the persisted document
+     */
     public void processDocument(Document document) {
-        List<String> rawIndeces = stemWords(filterWords(getWords(document.getContent())));
-        persistIndices(document, rawIndeces);
+        processDocuments(Collections.singletonList(document));
+    }
+
+    /**
+     * Processes a batch of persisted documents. The indices of the updated documents are removed first.
+     * The indices are written past the persistence context, so it is cleared afterwards and the documents
+     * become detached.
+     *
+     * @param documents the persisted documents
+     */
+    public void processDocuments(List<Document> documents) {
+        List<Long> documentIds = new ArrayList<>();
+        for (Document document : documents) {
+            documentIds.add(document.getId());
+        }
+        entityManager.flush();
+        Set<Long> touchedIndexIds = new HashSet<>();
+        List<Long> indexedDocumentIds = documentIndexRepository.findIndexedDocumentIdsIn(documentIds);
+        if (!indexedDocumentIds.isEmpty()) {
+            touchedIndexIds.addAll(removeIndices(indexedDocumentIds));
+        }
+
+        Map<Long, Map<String, Long>> documentToRawIndexFrequencies = new LinkedHashMap<>();
+        Map<String, Long> rawIndexDocumentCounts = new LinkedHashMap<>();
+
+        for (Document document : documents) {
+            Map<String, Long> rawIndexFrequencies = new LinkedHashMap<>();
+            for (String rawIndex : getIndices(document.getContent())) {
+                rawIndexFrequencies.merge(rawIndex, 1L, Long::sum);
+            }
+            for (String rawIndex : rawIndexFrequencies.keySet()) {
+                rawIndexDocumentCounts.merge(rawIndex, 1L, Long::sum);
+            }
+            documentToRawIndexFrequencies.put(document.getId(), rawIndexFrequencies);
+        }
+
+        entityManager.flush();
+        Map<String, TermDictionary.Term> terms = findTerms(rawIndexDocumentCounts.keySet());
+
+        Set<String> newNames = new TreeSet<>();
+        for (String name : rawIndexDocumentCounts.keySet()) {
+            if (!terms.containsKey(name)) {
+                newNames.add(name);
+            }
+        }
+        if (!newNames.isEmpty()) {
+            // A concurrent transaction may insert the same names, those are skipped, so all of them are resolved again
+            indexBatchRepository.insertIndices(newNames);
+            terms.putAll(findTermsInDB(newNames, indexRepository::findLockedByNameIn));
+        }
+
+        // The rows are updated in id order, so concurrent batches lock them in the same order
+        Map<Long, Long> documentCountIncrements = new TreeMap<>();
+        for (Map.Entry<String, Long> entry : rawIndexDocumentCounts.entrySet()) {
+            TermDictionary.Term term = terms.get(entry.getKey());
+            documentCountIncrements.put(term.getId(), entry.getValue());
+            // The count is incremented instead of replaced, so the increments of concurrent batches are kept. An index
+            // missing from the dictionary is added with no documents, the batches that added it apply their increments.
+            termDictionary.putIfAbsent(entry.getKey(), term.getId(), 0L);
+            termDictionary.incrementDocumentCount(entry.getKey(), entry.getValue());
+        }
+        indexBatchRepository.incrementDocumentCounts(documentCountIncrements);
+        touchedIndexIds.addAll(documentCountIncrements.keySet());
+
+        Map<Long, Map<Long, Long>> documentToIndexFrequencies = new LinkedHashMap<>();
+        for (Map.Entry<Long, Map<String, Long>> document : documentToRawIndexFrequencies.entrySet()) {
+            Map<Long, Long> indexFrequencies = new HashMap<>();
+            for (Map.Entry<String, Long> rawIndex : document.getValue().entrySet()) {
+                indexFrequencies.put(terms.get(rawIndex.getKey()).getId(), rawIndex.getValue());
+            }
+            documentToIndexFrequencies.put(document.getKey(), indexFrequencies);
+        }
+        indexBatchRepository.insertDocumentIndices(documentToIndexFrequencies);
+
+        for (Map.Entry<Long, Map<Long, Long>> entry : documentToIndexFrequencies.entrySet()) {
+            invertedIndex.addDocument(entry.getKey(), entry.getValue());
+        }
+        indexGeneration.increment(documentToIndexFrequencies.keySet());
+
+        entityManager.clear();
+        evictCaches(documentIds, touchedIndexIds, !indexedDocumentIds.isEmpty());
     }
 
-    private void persistIndices(Document document, List<String> rawIndeces) {
-        Set<String> uniqueIndices = new HashSet<String>(rawIndeces);
-        for (String key : uniqueIndices) {
-            Index index;
-            index = indexRepository.findByName(key);
-            if (index == null) {
-                index = indexRepository.save(new Index().setName(key).setDocumentCount(1L));
+    /**
+     * Removes the indices of documents about to be deleted. The rows are deleted past the persistence context,
+     * so it is cleared afterwards and the managed entities become detached.
+     *
+     * @param documentIds ids of the documents
+     */
+    public void removeDocuments(Collection<Long> documentIds) {
+        entityManager.flush();
+        Set<Long> touchedIndexIds = removeIndices(documentIds);
+
+        entityManager.clear();
+        evictCaches(documentIds, touchedIndexIds, true);
+    }
+
+    /**
+     * @return ids of the indices of the documents
+     */
+    private Set<Long> removeIndices(Collection<Long> documentIds) {
+        Set<Long> indexIds = new HashSet<>();
+        Map<String, Long> documentCountDecrements = new HashMap<>();
+        for (Object[] index : documentIndexRepository.findIndicesByDocumentIdIn(documentIds)) {
+            indexIds.add((Long) index[0]);
+            documentCountDecrements.merge((String) index[1], -1L, Long::sum);
+        }
+
+        indexBatchRepository.deleteDocumentIndices(documentIds);
+        for (Map.Entry<String, Long> entry : documentCountDecrements.entrySet()) {
+            termDictionary.incrementDocumentCount(entry.getKey(), entry.getValue());
+        }
+        for (Long documentId : documentIds) {
+            invertedIndex.deleteDocument(documentId);
+        }
+        indexGeneration.increment(documentIds);
+
+        return indexIds;
+    }
+
+    private void evictCaches(Collection<Long> documentIds, Collection<Long> indexIds, boolean removed) {
+        Cache cache = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getCache();
+        Runnable eviction = () -> {
+            cache.evictEntityRegion(Index.class);
+            if (removed) {
+                for (Long documentId : documentIds) {
+                    cache.evictEntity(Document.class, documentId);
+                }
+                cache.evictEntityRegion(DocumentIndex.class);
+                cache.evictEntityRegion(DocumentIndexWeight.class);
+            }
+            for (Long documentId : documentIds) {
+                cache.evictCollection(Document.class.getName() + ".documentIndices", documentId);
+                cache.evictCollection(Document.class.getName() + ".documentIndexWeights", documentId);
+            }
+            for (Long indexId : indexIds) {
+                cache.evictCollection(Index.class.getName() + ".documentIndices", indexId);
+            }
+        };
+
+        eviction.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    eviction.run();
+                }
+            });
+        }
+    }
+
+    private Map<String, TermDictionary.Term> findTerms(Collection<String> names) {
+        Map<String, TermDictionary.Term> terms = new HashMap<>();
+        List<String> missingNames = new ArrayList<>();
+
+        for (String name : names) {
+            TermDictionary.Term term = termDictionary.get(name);
+            if (term != null) {
+                terms.put(name, term);
             } else {
-                index.setDocumentCount(index.getDocumentCount() + 1);
+                missingNames.add(name);
             }
-            int freq = Collections.frequency(rawIndeces, key);
+        }
+        terms.putAll(findTermsInDB(missingNames, indexRepository::findByNameIn));
 
-            docIndexService.save(document, index, freq);
+        return terms;
+    }
+
+    private Map<String, TermDictionary.Term> findTermsInDB(Collection<String> names,
+                                                          Function<Collection<String>, List<Index>> finder) {
+        Map<String, TermDictionary.Term> terms = new HashMap<>();
+        List<String> remainingNames = new ArrayList<>(names);
+
+        for (int from = 0; from < remainingNames.size(); from += MAX_NAMES_PER_QUERY) {
+            List<String> chunk = remainingNames.subList(from, Math.min(from + MAX_NAMES_PER_QUERY, remainingNames.size()));
+            for (Index index : finder.apply(chunk)) {
+                terms.put(index.getName(), new TermDictionary.Term(index.getId(), index.getDocumentCount()));
+            }
         }
+
+        return terms;
     }
 
 }
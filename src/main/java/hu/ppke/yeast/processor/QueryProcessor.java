@@ -1,12 +1,21 @@
 package hu.ppke.yeast.processor;
 
+import hu.ppke.yeast.calculator.SparseVector;
+import hu.ppke.yeast.calculator.WeightVector;
+import hu.ppke.yeast.config.ApplicationProperties;
 import hu.ppke.yeast.domain.Document;
-import hu.ppke.yeast.domain.DocumentIndexWeight;
-import hu.ppke.yeast.domain.Index;
+import hu.ppke.yeast.enumeration.HyperbolicScoring;
 import hu.ppke.yeast.enumeration.SimiliarityMeasure;
-import hu.ppke.yeast.repository.DocumentIndexWeightRepository;
+import hu.ppke.yeast.index.InvertedIndex;
+import hu.ppke.yeast.index.ScoredDocument;
+import hu.ppke.yeast.index.ScoringPool;
+import hu.ppke.yeast.index.TermDictionary;
+import hu.ppke.yeast.index.TopDocumentsCollector;
+import hu.ppke.yeast.index.WeightMatrixSnapshot;
+import hu.ppke.yeast.index.WeightMatrixStore;
 import hu.ppke.yeast.repository.DocumentRepository;
 import hu.ppke.yeast.repository.IndexRepository;
+import hu.ppke.yeast.service.dto.DocumentSearchHitDTO;
 import hu.ppke.yeast.service.dto.DocumentSearchResultDTO;
 import hu.ppke.yeast.service.mapper.DocumentMapper;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,128 +23,345 @@ import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static hu.ppke.yeast.calculator.ClassicalSimilarityCalculator.calculateSimilarity;
 import static hu.ppke.yeast.calculator.HyperbolicSimilarityCalculator.calculateEuclideanDistance;
+import static hu.ppke.yeast.calculator.HyperbolicSimilarityCalculator.calculateEuclideanDistanceFromNorms;
 import static hu.ppke.yeast.calculator.HyperbolicSimilarityCalculator.calculateHyperbolicMeasure;
 import static hu.ppke.yeast.calculator.WeightCalculator.calculateWeight;
+import static hu.ppke.yeast.enumeration.SearchEngine.WEIGHT_MATRIX;
 import static hu.ppke.yeast.enumeration.SimiliarityMeasure.HYPERBOLIC;
 
 /**
- * This class is responsible for giving back the relevant documents for a given query
+ * This class is responsible for giving back the relevant documents for a given query.
+ * <p>
+ * The documents are scored in parallel chunks on the {@link ScoringPool}.
  */
 @Component
 @Transactional
 public class QueryProcessor extends AbstractProcessor {
 
+    private static final int MAX_IDS_PER_QUERY = 1000;
+    private static final int LOAD_BATCH_SIZE = 100;
+
     private final DocumentRepository documentRepository;
-    private final DocumentIndexWeightRepository documentIndexWeightRepository;
     private final DocumentMapper documentMapper;
+    private final InvertedIndex invertedIndex;
+    private final TermDictionary termDictionary;
+    private final ScoringPool scoringPool;
+    private final WeightMatrixStore weightMatrixStore;
+    private final ApplicationProperties applicationProperties;
+    private final EntityManager entityManager;
 
     @Autowired
     public QueryProcessor(ResourceLoader resourceLoader,
                           IndexRepository indexRepository,
+                          Stemmer stemmer,
                           DocumentRepository documentRepository,
-                          DocumentIndexWeightRepository documentIndexWeightRepository,
-                          DocumentMapper documentMapper) {
-        super(resourceLoader, indexRepository);
+                          DocumentMapper documentMapper,
+                          InvertedIndex invertedIndex,
+                          TermDictionary termDictionary,
+                          ScoringPool scoringPool,
+                          WeightMatrixStore weightMatrixStore,
+                          ApplicationProperties applicationProperties,
+                          EntityManager entityManager) {
+        super(resourceLoader, indexRepository, stemmer);
         this.documentRepository = documentRepository;
-        this.documentIndexWeightRepository = documentIndexWeightRepository;
         this.documentMapper = documentMapper;
+        this.invertedIndex = invertedIndex;
+        this.termDictionary = termDictionary;
+        this.scoringPool = scoringPool;
+        this.weightMatrixStore = weightMatrixStore;
+        this.applicationProperties = applicationProperties;
+        this.entityManager = entityManager;
     }
 
-    public List<DocumentSearchResultDTO> getRelevantDocuments(String query, SimiliarityMeasure measure) {
-        List<Document> documents = documentRepository.findAll();
-        List<Double> queryWeights = calculateQueryWeights(getRawIndices(query), documents.size());
+    /**
+     * @param query   the search query
+     * @param measure the chosen measure
+     * @param limit   the maximum number of documents to return
+     * @return the most relevant documents in descending similarity order
+     */
+    public List<DocumentSearchResultDTO> getRelevantDocuments(String query, SimiliarityMeasure measure, int limit) {
+        return getRelevantDocuments(query, measure, limit, 0);
+    }
 
-        return getRelevantDocuments(queryWeights, documents, measure);
+    /**
+     * @param query       the search query
+     * @param measure     the chosen measure
+     * @param limit       the maximum number of documents to return
+     * @param parallelism the number of threads scoring the documents, 0 for the default of the scoring pool
+     * @return the most relevant documents in descending similarity order
+     */
+    public List<DocumentSearchResultDTO> getRelevantDocuments(String query, SimiliarityMeasure measure, int limit,
+                                                              int parallelism) {
+        return getRelevantDocuments(getQueryTerms(query), measure, limit, parallelism);
     }
 
-    private List<Double> calculateQueryWeights(List<String> queryIndices, int nrOfAllDocuments) {
-        List<Double> queryWeights = new ArrayList<>();
-        List<Index> allIndices = indexRepository.findAll();
+    /**
+     * @param query the search query
+     * @return the stemmed terms of the query without the stop words, together with their frequencies
+     */
+    public Map<String, Long> getQueryTerms(String query) {
+        return countIndices(getIndices(query));
+    }
 
-        for (Index currentIndex : allIndices) {
-            if (queryIndices.contains(currentIndex.getName())) {
+    /**
+     * @param queryTerms  the terms of the query together with their frequencies, see {@link #getQueryTerms(String)}
+     * @param measure     the chosen measure
+     * @param limit       the maximum number of documents to return
+     * @param parallelism the number of threads scoring the documents, 0 for the default of the scoring pool
+     * @return the most relevant documents in descending similarity order
+     */
+    public List<DocumentSearchResultDTO> getRelevantDocuments(Map<String, Long> queryTerms, SimiliarityMeasure measure,
+                                                              int limit, int parallelism) {
+        List<ScoredDocument> topDocuments = getTopDocuments(queryTerms, measure, limit, parallelism, null);
+        Map<Long, Document> documents = topDocuments.isEmpty() ? Collections.emptyMap() :
+            documentRepository.findAll(topDocuments.stream().map(ScoredDocument::getDocumentId).collect(Collectors.toList()))
+                .stream().collect(Collectors.toMap(Document::getId, p -> p));
 
-                Long freq = queryIndices.stream().filter(p -> p.equals(currentIndex.getName())).count();
-                queryWeights.add(calculateWeight(freq, nrOfAllDocuments, currentIndex.getDocumentCount()));
+        List<DocumentSearchResultDTO> resultList = new ArrayList<>();
+        for (ScoredDocument scoredDocument : topDocuments) {
+            addElementToResultList(scoredDocument.getScore(), documents.get(scoredDocument.getDocumentId()), resultList);
+        }
+
+        return resultList;
+    }
 
-            } else {
-                queryWeights.add(0.0);
+    /**
+     * @param queryTerms    the terms of the query together with their frequencies, see {@link #getQueryTerms(String)}
+     * @param measure       the chosen measure
+     * @param limit         the maximum number of documents to return
+     * @param parallelism   the number of threads scoring the documents, 0 for the default of the scoring pool
+     * @param snippetLength the maximum length of the snippets, 0 to leave them out
+     * @return the most relevant documents in descending similarity order
+     */
+    public List<DocumentSearchHitDTO> getSearchHits(Map<String, Long> queryTerms, SimiliarityMeasure measure,
+                                                    int limit, int parallelism, int snippetLength) {
+        List<ScoredDocument> topDocuments = getTopDocuments(queryTerms, measure, limit, parallelism, null);
+
+        List<Long> documentIds = topDocuments.stream().map(ScoredDocument::getDocumentId).collect(Collectors.toList());
+        Map<Long, Object[]> rows = new HashMap<>();
+        for (int from = 0; from < documentIds.size(); from += MAX_IDS_PER_QUERY) {
+            List<Long> chunk = documentIds.subList(from, Math.min(from + MAX_IDS_PER_QUERY, documentIds.size()));
+            List<Object[]> chunkRows = snippetLength > 0 ?
+                documentRepository.findEvaluationIdsAndSnippets(chunk, snippetLength) : documentRepository.findEvaluationIds(chunk);
+            for (Object[] row : chunkRows) {
+                rows.put((Long) row[0], row);
+            }
+        }
+
+        List<DocumentSearchHitDTO> hits = new ArrayList<>(topDocuments.size());
+        for (ScoredDocument scoredDocument : topDocuments) {
+            Object[] row = rows.get(scoredDocument.getDocumentId());
+            if (row != null) {
+                hits.add(new DocumentSearchHitDTO(scoredDocument.getDocumentId(), (Long) row[1], scoredDocument.getScore(),
+                    snippetLength > 0 ? (String) row[2] : null));
             }
         }
 
-        return queryWeights;
+        return hits;
     }
 
-    private List<String> getRawIndices(String query) {
-        return stemWords(filterWords(getWords(query)));
+    /**
+     * Ranks the documents without loading them, used to page through the results
+     *
+     * @param queryTerms  the terms of the query together with their frequencies, see {@link #getQueryTerms(String)}
+     * @param measure     the chosen measure
+     * @param limit       the maximum number of documents to return
+     * @param parallelism the number of threads scoring the documents, 0 for the default of the scoring pool
+     * @param after       the last document of the previous page, or null for the first page
+     * @return the ids and the scores of the most relevant documents ranked after the given document
+     */
+    public List<ScoredDocument> getTopDocuments(Map<String, Long> queryTerms, SimiliarityMeasure measure,
+                                                int limit, int parallelism, ScoredDocument after) {
+        if (WEIGHT_MATRIX.equals(applicationProperties.getSearch().getEngine())) {
+            WeightMatrixSnapshot snapshot = weightMatrixStore.acquire();
+            SparseVector queryWeights = calculateQueryWeights(queryTerms, snapshot.getNumberOfDocuments());
+
+            return getTopDocuments(queryWeights, snapshot, measure, limit, parallelism, after);
+        }
+
+        return invertedIndex.search(getQueryFrequencies(queryTerms), measure, limit, scoringPool, parallelism, after);
     }
 
-    private List<DocumentSearchResultDTO> getRelevantDocuments(List<Double> queryWeights,
-                                                               List<Document> documents,
-                                                               SimiliarityMeasure measure) {
+    /**
+     * Loads the ranked documents in batches and passes them to the consumer in the order of the ranking.
+     * The loaded documents are detached after every batch, so the number of documents held in memory
+     * does not depend on the number of ranked documents.
+     *
+     * @param topDocuments the ranked documents, see {@link #getTopDocuments(Map, SimiliarityMeasure, int, int, ScoredDocument)}
+     * @param consumer     receives the documents one by one
+     */
+    public void loadDocuments(List<ScoredDocument> topDocuments, Consumer<DocumentSearchResultDTO> consumer) {
+        for (int from = 0; from < topDocuments.size(); from += LOAD_BATCH_SIZE) {
+            List<ScoredDocument> batch = topDocuments.subList(from, Math.min(from + LOAD_BATCH_SIZE, topDocuments.size()));
+            Map<Long, Document> documents = documentRepository
+                .findAll(batch.stream().map(ScoredDocument::getDocumentId).collect(Collectors.toList()))
+                .stream().collect(Collectors.toMap(Document::getId, p -> p));
 
-        List<DocumentSearchResultDTO> resultList = new ArrayList<>();
+            for (ScoredDocument scoredDocument : batch) {
+                Document document = documents.get(scoredDocument.getDocumentId());
+                if (document != null) {
+                    consumer.accept(new DocumentSearchResultDTO(documentMapper.toDto(document), scoredDocument.getScore()));
+                    entityManager.detach(document);
+                }
+            }
+        }
+    }
 
-        if (HYPERBOLIC.equals(measure)) {
-            Map<Document, Double> documentToDistance = new HashMap<>();
-            double maxD = 0;
+    private Map<Long, Long> getQueryFrequencies(Map<String, Long> queryTerms) {
+        Map<Long, Long> queryFrequencies = new HashMap<>();
+
+        for (Map.Entry<String, Long> entry : queryTerms.entrySet()) {
+            TermDictionary.Term term = termDictionary.get(entry.getKey());
+            if (term != null) {
+                queryFrequencies.put(term.getId(), entry.getValue());
+            }
+        }
+
+        return queryFrequencies;
+    }
 
-            for (Document currentDoc : documents) {
-                List<Double> documentWeights = getDocumentWeights(currentDoc);
-                double euclideanDistance = calculateEuclideanDistance(queryWeights, documentWeights);
-                maxD = euclideanDistance > maxD ? euclideanDistance : maxD;
+    /**
+     * Only the indices of the query are resolved, so the query vector is built in time proportional
+     * to the length of the query, independently of the size of the vocabulary. Indices of deleted documents
+     * may remain without any document, they are left out like the unknown ones.
+     */
+    private SparseVector calculateQueryWeights(Map<String, Long> queryTerms, int nrOfAllDocuments) {
+        Map<Long, Double> queryWeights = new HashMap<>();
 
-                documentToDistance.put(currentDoc, euclideanDistance);
+        for (Map.Entry<String, Long> entry : queryTerms.entrySet()) {
+            TermDictionary.Term term = termDictionary.get(entry.getKey());
+            if (term != null && term.getDocumentCount() > 0) {
+                queryWeights.put(term.getId(), calculateWeight(entry.getValue(), nrOfAllDocuments, term.getDocumentCount()));
             }
+        }
 
-            double r = maxD * 1.1;
+        return SparseVector.of(queryWeights);
+    }
+
+    private Map<String, Long> countIndices(List<String> queryIndices) {
+        Map<String, Long> frequencies = new HashMap<>();
+        for (String queryIndex : queryIndices) {
+            frequencies.merge(queryIndex, 1L, Long::sum);
+        }
+
+        return frequencies;
+    }
+
+    /**
+     * The documents are read from the weight matrix through reusable views, so the scoring does not allocate
+     * per document and the weights never get onto the heap. The slots of the changed and deleted documents
+     * of the matrix are skipped, their current weights are in the slots following the matrix.
+     */
+    private List<ScoredDocument> getTopDocuments(SparseVector queryWeights,
+                                                 WeightMatrixSnapshot snapshot,
+                                                 SimiliarityMeasure measure,
+                                                 int limit,
+                                                 int parallelism,
+                                                 ScoredDocument after) {
+
+        int size = snapshot.size();
+        List<TopDocumentsCollector> collectors;
 
-            for (Document currentDoc : documents) {
+        if (HYPERBOLIC.equals(measure)) {
+            boolean sparseDistances = isSparseHyperbolicScoring();
+            double[] distances = new double[size];
+            List<Double> maxDistances = runInTasks(size, parallelism, (from, to) -> {
+                WeightMatrixSnapshot.Cursor cursor = snapshot.newCursor();
+                double maxD = 0;
+                for (int i = from; i < to; i++) {
+                    if (!snapshot.isLive(i)) {
+                        continue;
+                    }
+                    WeightVector documentWeights = cursor.moveTo(i);
+                    distances[i] = sparseDistances ? calculateEuclideanDistanceFromNorms(queryWeights, documentWeights) :
+                        calculateEuclideanDistance(queryWeights, documentWeights);
+                    maxD = distances[i] > maxD ? distances[i] : maxD;
+                }
+                return maxD;
+            });
 
-                double similarityMeasure = calculateHyperbolicMeasure(documentToDistance.get(currentDoc), r);
-                addElementToResultList(similarityMeasure, currentDoc, resultList);
+            double maxD = 0;
+            for (double taskMaxD : maxDistances) {
+                maxD = taskMaxD > maxD ? taskMaxD : maxD;
             }
+            double r = maxD * 1.1;
 
-            return sortResultList(resultList);
+            collectors = runInTasks(size, parallelism, (from, to) -> {
+                TopDocumentsCollector collector = new TopDocumentsCollector(limit, after);
+                for (int i = from; i < to; i++) {
+                    if (snapshot.isLive(i)) {
+                        collectDocument(calculateHyperbolicMeasure(distances[i], r), snapshot.getDocumentId(i), collector);
+                    }
+                }
+                return collector;
+            });
 
         } else {
-            for (Document currentDoc : documents) {
-                List<Double> documentWeights = getDocumentWeights(currentDoc);
+            collectors = runInTasks(size, parallelism, (from, to) -> {
+                WeightMatrixSnapshot.Cursor cursor = snapshot.newCursor();
+                TopDocumentsCollector collector = new TopDocumentsCollector(limit, after);
+                for (int i = from; i < to; i++) {
+                    if (snapshot.isLive(i)) {
+                        collectDocument(calculateSimilarity(queryWeights, cursor.moveTo(i), measure),
+                            snapshot.getDocumentId(i), collector);
+                    }
+                }
+                return collector;
+            });
+        }
 
-                double similarityMeasure = calculateSimilarity(queryWeights, documentWeights, measure);
-                addElementToResultList(similarityMeasure, currentDoc, resultList);
-            }
+        TopDocumentsCollector collector = new TopDocumentsCollector(limit);
+        for (TopDocumentsCollector taskCollector : collectors) {
+            collector.collectAll(taskCollector);
+        }
 
-            return sortResultList(resultList);
+        return collector.getTopDocuments();
+    }
+
+    /**
+     * Splits the positions 0..size-1 into consecutive ranges of nearly equal size and runs the task on them
+     *
+     * @return the results of the task for the ranges in ascending order
+     */
+    private <T> List<T> runInTasks(int size, int parallelism, BiFunction<Integer, Integer, T> task) {
+        int numberOfTasks = scoringPool.getNumberOfTasks(parallelism, size);
+        List<Callable<T>> tasks = new ArrayList<>(numberOfTasks);
+        for (int i = 0; i < numberOfTasks; i++) {
+            int from = (int) ((long) size * i / numberOfTasks);
+            int to = (int) ((long) size * (i + 1) / numberOfTasks);
+            tasks.add(() -> task.apply(from, to));
         }
+
+        return scoringPool.invokeAll(tasks);
     }
 
-    private List<Double> getDocumentWeights(Document document) {
+    private boolean isSparseHyperbolicScoring() {
+        return HyperbolicScoring.SPARSE.equals(applicationProperties.getSearch().getHyperbolicScoring());
+    }
 
-        return document.getDocumentIndexWeights()
-            .stream().sorted(Comparator.comparingLong(p -> p.getIndex().getId()))
-            .map(DocumentIndexWeight::getWeight).collect(Collectors.toList());
+    private void collectDocument(double similarityMeasure, long documentId, TopDocumentsCollector collector) {
+        if (similarityMeasure != 0.0) {
+            collector.collect(documentId, similarityMeasure);
+        }
     }
 
     private void addElementToResultList(double similarityMeasure, Document document,
                                         List<DocumentSearchResultDTO> resultList) {
-        if (similarityMeasure != 0.0) {
+        // The document may have been deleted since the snapshot of the index was published
+        if (similarityMeasure != 0.0 && document != null) {
             DocumentSearchResultDTO documentSearchResultDTO =
                 new DocumentSearchResultDTO(documentMapper.toDto(document), similarityMeasure);
 
             resultList.add(documentSearchResultDTO);
         }
     }
-
-    private List<DocumentSearchResultDTO> sortResultList(List<DocumentSearchResultDTO> resultList) {
-        return resultList
-            .stream()
-            .sorted((p1, p2) -> Double.compare(p2.getSimilarityMeasure(), p1.getSimilarityMeasure()))
-            .collect(Collectors.toList());
-    }
 }
@@ -0,0 +1,85 @@
+package hu.ppke.yeast.processor;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import hu.ppke.yeast.config.ApplicationProperties;
+import opennlp.tools.stemmer.PorterStemmer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class is responsible for stemming the words, remembering the stems of the recently seen words.
+ * <p>
+ * The cache keeps two generations of stems, the stems found in the previous generation are moved to the current one.
+ */
+@Component
+public class Stemmer {
+
+    private static final ThreadLocal<PorterStemmer> STEMMER = ThreadLocal.withInitial(PorterStemmer::new);
+
+    private final int cacheSize;
+    private final Meter hits;
+    private final Meter misses;
+
+    private volatile Map<String, String> currentGeneration = new ConcurrentHashMap<>();
+    private volatile Map<String, String> previousGeneration = new ConcurrentHashMap<>();
+
+    @Autowired
+    public Stemmer(ApplicationProperties applicationProperties, MetricRegistry metricRegistry) {
+        this.cacheSize = applicationProperties.getStemming().getCacheSize();
+        this.hits = metricRegistry.meter(MetricRegistry.name(Stemmer.class, "cache", "hits"));
+        this.misses = metricRegistry.meter(MetricRegistry.name(Stemmer.class, "cache", "misses"));
+        metricRegistry.register(MetricRegistry.name(Stemmer.class, "cache", "hit-ratio"), new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                return Ratio.of(hits.getCount(), hits.getCount() + misses.getCount());
+            }
+        });
+    }
+
+    /**
+     * @param word a lowercase word
+     * @return the stem of the word
+     */
+    public String stem(String word) {
+        if (cacheSize <= 0) {
+            misses.mark();
+            return STEMMER.get().stem(word);
+        }
+
+        Map<String, String> current = currentGeneration;
+        String stem = current.get(word);
+        if (stem != null) {
+            hits.mark();
+            return stem;
+        }
+
+        stem = previousGeneration.get(word);
+        if (stem != null) {
+            hits.mark();
+        } else {
+            misses.mark();
+            stem = STEMMER.get().stem(word);
+        }
+        put(current, word, stem);
+
+        return stem;
+    }
+
+    private void put(Map<String, String> current, String word, String stem) {
+        if (current.size() >= cacheSize) {
+            synchronized (this) {
+                if (currentGeneration == current) {
+                    previousGeneration = current;
+                    currentGeneration = new ConcurrentHashMap<>();
+                }
+                current = currentGeneration;
+            }
+        }
+        current.put(word, stem);
+    }
+}
@@ -0,0 +1,53 @@
+package hu.ppke.yeast.processor;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * This class is responsible for splitting a text into normalized words in a single pass over its characters.
+ * <p>
+ * The words are separated by whitespace, every character apart from [a-zA-Z] is dropped and the letters are
+ * lowercased, so "8brown" becomes "brown" and "dog,999" becomes "dog". Words without any letter are skipped.
+ * The letters of the current word are collected in a reused buffer, only the emitted words are allocated.
+ */
+public class Tokenizer {
+
+    private static final int INITIAL_BUFFER_SIZE = 32;
+
+    private Tokenizer() {
+    }
+
+    /**
+     * @param text     the text to split
+     * @param consumer receives the normalized words in the order of their occurrence
+     */
+    public static void tokenize(String text, Consumer<String> consumer) {
+        char[] buffer = new char[INITIAL_BUFFER_SIZE];
+        int length = 0;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+
+            if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z') {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, length * 2);
+                }
+                buffer[length++] = (char) (c | 0x20);
+            } else if (isWhitespace(c) && length > 0) {
+                consumer.accept(new String(buffer, 0, length));
+                length = 0;
+            }
+        }
+
+        if (length > 0) {
+            consumer.accept(new String(buffer, 0, length));
+        }
+    }
+
+    /**
+     * The same characters the \s regular expression class matches
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
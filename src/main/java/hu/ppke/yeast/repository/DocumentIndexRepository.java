@@ -2,8 +2,12 @@ package hu.ppke.yeast.repository;
 
 import hu.ppke.yeast.domain.DocumentIndex;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 
 /**
  * Spring Data JPA repository for the DocumentIndex entity.
@@ -12,4 +16,41 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface DocumentIndexRepository extends JpaRepository<DocumentIndex, Long> {
 
+    /**
+     * @return document id - index id - count triples of all document-index pairs, ordered by the document id
+     */
+    @Query("select documentIndex.document.id, documentIndex.index.id, documentIndex.count from DocumentIndex documentIndex " +
+        "order by documentIndex.document.id, documentIndex.index.id")
+    List<Object[]> findAllFrequencies();
+
+    /**
+     * @param documentIds ids of the documents
+     * @return index id - index name pairs of the indices of the documents, once for every document containing them
+     */
+    @Query("select documentIndex.index.id, documentIndex.index.name from DocumentIndex documentIndex " +
+        "where documentIndex.document.id in ?1")
+    List<Object[]> findIndicesByDocumentIdIn(Collection<Long> documentIds);
+
+    /**
+     * @param documentIds ids of the documents
+     * @return the ids of the documents having document-index pairs
+     */
+    @Query("select distinct documentIndex.document.id from DocumentIndex documentIndex where documentIndex.document.id in ?1")
+    List<Long> findIndexedDocumentIdsIn(Collection<Long> documentIds);
+
+    /**
+     * @param documentIds ids of the documents
+     * @return document id - index id - count - document count of the index quadruples of the document-index pairs
+     * of the documents
+     */
+    @Query("select documentIndex.document.id, documentIndex.index.id, documentIndex.count, documentIndex.index.documentCount " +
+        "from DocumentIndex documentIndex where documentIndex.document.id in ?1")
+    List<Object[]> findFrequenciesAndDocumentCountsByDocumentIdIn(Collection<Long> documentIds);
+
+    /**
+     * @return a single row with the number and the highest id of the document-index pairs
+     */
+    @Query("select count(documentIndex), max(documentIndex.id) from DocumentIndex documentIndex")
+    List<Object[]> findCountAndMaxId();
+
 }
@@ -3,8 +3,10 @@ package hu.ppke.yeast.repository;
 
 import hu.ppke.yeast.domain.DocumentIndexWeight;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -15,4 +17,12 @@ import java.util.List;
 public interface DocumentIndexWeightRepository extends JpaRepository<DocumentIndexWeight, Long> {
 
     List<DocumentIndexWeight> findByDocumentIdOrderByIndexIdAsc(Long documentId);
+
+    /**
+     * @param documentIds ids of the documents
+     * @return document id - index id - weight triples of the persisted weights of the documents
+     */
+    @Query("select weight.document.id, weight.index.id, weight.weight from DocumentIndexWeight weight " +
+        "where weight.document.id in ?1")
+    List<Object[]> findWeightsByDocumentIdIn(Collection<Long> documentIds);
 }
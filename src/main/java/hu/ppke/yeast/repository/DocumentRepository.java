@@ -1,10 +1,14 @@
 package hu.ppke.yeast.repository;
 
 import hu.ppke.yeast.domain.Document;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Repository;
 
 import org.springframework.data.jpa.repository.*;
 
+import java.util.Collection;
+import java.util.List;
+
 
 /**
  * Spring Data JPA repository for the Document entity.
@@ -13,4 +17,41 @@ import org.springframework.data.jpa.repository.*;
 @Repository
 public interface DocumentRepository extends JpaRepository<Document, Long> {
 
+    @Query("select document.id from Document document")
+    List<Long> findAllIds();
+
+    /**
+     * @param ids ids of the documents
+     * @return id - evaluation id pairs of the documents, the content is not read
+     */
+    @Query("select document.id, document.evaluationId from Document document where document.id in ?1")
+    List<Object[]> findEvaluationIds(Collection<Long> ids);
+
+    /**
+     * @param ids           ids of the documents
+     * @param snippetLength the maximum length of the snippets
+     * @return id - evaluation id - beginning of the content triples of the documents
+     */
+    @Query("select document.id, document.evaluationId, substring(document.content, 1, ?2) from Document document " +
+        "where document.id in ?1")
+    List<Object[]> findEvaluationIdsAndSnippets(Collection<Long> ids, int snippetLength);
+
+    /**
+     * The documents are read in chunks: the next chunk starts after the last id of the previous one
+     *
+     * @param afterId  the documents with greater ids are returned
+     * @param pageable the size of the chunk, always the first page
+     * @return id - weight norm - weight sum triples of the documents in ascending id order
+     */
+    @Query("select document.id, document.weightNorm, document.weightSum from Document document " +
+        "where document.id > ?1 order by document.id")
+    List<Object[]> findWeightStatistics(long afterId, Pageable pageable);
+
+    /**
+     * @param ids ids of the documents
+     * @return id - weight norm - weight sum triples of the documents
+     */
+    @Query("select document.id, document.weightNorm, document.weightSum from Document document where document.id in ?1")
+    List<Object[]> findWeightStatisticsByIdIn(Collection<Long> ids);
+
 }
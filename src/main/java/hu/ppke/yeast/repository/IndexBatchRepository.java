@@ -0,0 +1,104 @@
+package hu.ppke.yeast.repository;
+
+import hu.ppke.yeast.config.ApplicationProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Repository writing the indices and the document-index pairs of a batch of documents with JDBC batch statements,
+ * and deleting them when the documents are deleted.
+ * <p>
+ * The rows are written past the persistence context, because Hibernate can not batch the inserts of entities
+ * with IDENTITY ids. Callers have to flush the persistence context before and clear it after using this repository.
+ */
+@Repository
+public class IndexBatchRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+
+    @Autowired
+    public IndexBatchRepository(JdbcTemplate jdbcTemplate, ApplicationProperties applicationProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = applicationProperties.getBulk().getBatchSize();
+    }
+
+    /**
+     * Inserts the new indices with a document count of 0. If a concurrent transaction has inserted one of them in
+     * the meantime, the unique name is violated: the indices are inserted one by one then, and the existing ones are
+     * skipped. Either way the callers have to resolve the ids of the names afterwards.
+     *
+     * @param names names of the new indices, concurrent callers have to pass them in the same order to avoid deadlocks
+     */
+    public void insertIndices(Collection<String> names) {
+        String sql = "insert into jhi_index (name, document_count) values (?, 0)";
+        try {
+            jdbcTemplate.batchUpdate(sql, names, batchSize, (ps, name) -> ps.setString(1, name));
+        } catch (DuplicateKeyException e) {
+            for (String name : names) {
+                try {
+                    jdbcTemplate.update(sql, name);
+                } catch (DuplicateKeyException duplicate) {
+                    // Inserted by a concurrent transaction or by the failed batch
+                }
+            }
+        }
+    }
+
+    /**
+     * @param increments index id - number of new documents containing the index pairs, concurrent callers have to
+     *                   pass them in the same order to avoid deadlocks
+     */
+    public void incrementDocumentCounts(Map<Long, Long> increments) {
+        jdbcTemplate.batchUpdate("update jhi_index set document_count = document_count + ? where id = ?",
+            increments.entrySet(), batchSize, (ps, entry) -> {
+                ps.setLong(1, entry.getValue());
+                ps.setLong(2, entry.getKey());
+            });
+    }
+
+    /**
+     * @param documentToIndexFrequencies document id - (index id - frequency) pairs
+     */
+    public void insertDocumentIndices(Map<Long, Map<Long, Long>> documentToIndexFrequencies) {
+        List<long[]> rows = new ArrayList<>();
+        for (Map.Entry<Long, Map<Long, Long>> document : documentToIndexFrequencies.entrySet()) {
+            for (Map.Entry<Long, Long> index : document.getValue().entrySet()) {
+                rows.add(new long[]{index.getValue(), document.getKey(), index.getKey()});
+            }
+        }
+
+        jdbcTemplate.batchUpdate("insert into document_index (count, document_id, index_id) values (?, ?, ?)",
+            rows, batchSize, (ps, row) -> {
+                ps.setLong(1, row[0]);
+                ps.setLong(2, row[1]);
+                ps.setLong(3, row[2]);
+            });
+    }
+
+    /**
+     * Decrements the document counts of the indices of the documents, then deletes their document-index pairs
+     * and weights, clearing the norms and the sums of the deleted weights. The indices themselves are kept,
+     * even if no document contains them anymore.
+     *
+     * @param documentIds ids of the documents to delete
+     */
+    public void deleteDocumentIndices(Collection<Long> documentIds) {
+        jdbcTemplate.batchUpdate("update jhi_index set document_count = document_count - 1 " +
+                "where id in (select index_id from document_index where document_id = ?)",
+            documentIds, batchSize, (ps, documentId) -> ps.setLong(1, documentId));
+        jdbcTemplate.batchUpdate("delete from document_index_weight where document_id = ?",
+            documentIds, batchSize, (ps, documentId) -> ps.setLong(1, documentId));
+        jdbcTemplate.batchUpdate("update document set weight_norm = null, weight_sum = null where id = ?",
+            documentIds, batchSize, (ps, documentId) -> ps.setLong(1, documentId));
+        jdbcTemplate.batchUpdate("delete from document_index where document_id = ?",
+            documentIds, batchSize, (ps, documentId) -> ps.setLong(1, documentId));
+    }
+}
@@ -2,8 +2,14 @@ package hu.ppke.yeast.repository;
 
 import hu.ppke.yeast.domain.Index;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
+
 
 /**
  * Spring Data JPA repository for the Index entity.
@@ -14,4 +20,19 @@ public interface IndexRepository extends JpaRepository<Index, Long> {
 
     Index findByName(String name);
 
+    List<Index> findByNameIn(Collection<String> names);
+
+    /**
+     * A locking read returns the latest committed rows instead of the snapshot of the transaction,
+     * so the indices inserted by a concurrent transaction are found as well
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<Index> findLockedByNameIn(Collection<String> names);
+
+    /**
+     * @return name - id - document count triples of all indices
+     */
+    @Query("select index.name, index.id, index.documentCount from Index index")
+    List<Object[]> findAllTerms();
+
 }
@@ -0,0 +1,39 @@
+package hu.ppke.yeast.repository;
+
+import hu.ppke.yeast.domain.IngestionJob;
+import hu.ppke.yeast.enumeration.IngestionStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Spring Data JPA repository for the IngestionJob entity.
+ */
+@Repository
+public interface IngestionJobRepository extends JpaRepository<IngestionJob, Long> {
+
+    /**
+     * The jobs are locked until the end of the transaction, so the workers never claim the same job
+     *
+     * @param status   the status of the jobs
+     * @param pageable the maximum number of jobs
+     * @return the oldest jobs with the given status
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<IngestionJob> findByStatusOrderByIdAsc(IngestionStatus status, Pageable pageable);
+
+    IngestionJob findFirstByStatusInOrderByIdAsc(Collection<IngestionStatus> statuses);
+
+    long countByStatus(IngestionStatus status);
+
+    @Modifying
+    @Query("update IngestionJob job set job.status = ?2 where job.status = ?1")
+    int updateStatus(IngestionStatus status, IngestionStatus newStatus);
+}
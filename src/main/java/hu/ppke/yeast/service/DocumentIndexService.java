@@ -17,7 +17,7 @@ public interface DocumentIndexService {
     DocumentIndex save(Document document, Index index, long count);
 
     /**
-     * This method deletes all documents, document-index pairs and indices from the db
+     * This method deletes all documents, document-index pairs and indices from the db and the inverted index
      */
     void clearDB();
 
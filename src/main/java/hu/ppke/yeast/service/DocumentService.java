@@ -1,12 +1,15 @@
 package hu.ppke.yeast.service;
 
 import hu.ppke.yeast.domain.Document;
+import hu.ppke.yeast.index.ScoredDocument;
 import hu.ppke.yeast.service.dto.DocumentDTO;
+import hu.ppke.yeast.service.dto.DocumentSearchHitDTO;
 import hu.ppke.yeast.service.dto.DocumentSearchResultDTO;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Service Interface for managing Document.
@@ -29,6 +32,14 @@ public interface DocumentService {
      */
     List<Document> saveMultiple(List<Document> documents);
 
+    /**
+     * Save a bulk of documents, processing them in batches.
+     *
+     * @param documentDTOs the entities to save
+     * @return the persisted entities
+     */
+    List<DocumentDTO> saveBulk(List<DocumentDTO> documentDTOs);
+
 
     /**
      * Get all the documents.
@@ -55,6 +66,56 @@ public interface DocumentService {
      */
     List<DocumentSearchResultDTO> search(String query, int measure);
 
+    /**
+     * Get the most relevant documents to the query.
+     *
+     * @param query   the search query
+     * @param measure the chosen metric
+     * @param limit   the maximum number of documents to return
+     * @return the list of entities
+     */
+    List<DocumentSearchResultDTO> search(String query, int measure, int limit);
+
+    /**
+     * Get the most relevant documents to the query, scoring the documents on multiple threads.
+     *
+     * @param query       the search query
+     * @param measure     the chosen metric
+     * @param limit       the maximum number of documents to return
+     * @param parallelism the number of threads scoring the documents, 0 for the default
+     * @return the list of entities
+     */
+    List<DocumentSearchResultDTO> search(String query, int measure, int limit, int parallelism);
+
+    /**
+     * Get the ids, the evaluation ids and the scores of the most relevant documents to the query,
+     * without reading the content of the documents unless the snippets are requested.
+     *
+     * @param query       the search query
+     * @param measure     the chosen metric
+     * @param limit       the maximum number of documents to return
+     * @param parallelism the number of threads scoring the documents, 0 for the default
+     * @param snippets    whether the beginning of the content should be returned as well
+     * @return the list of search hits
+     */
+    List<DocumentSearchHitDTO> searchHits(String query, int measure, int limit, int parallelism, boolean snippets);
+
+    /**
+     * Rank a page of documents to the query, then load them in batches in the same transaction,
+     * passing them to the consumer one by one.
+     *
+     * @param query       the search query
+     * @param measure     the chosen metric
+     * @param pageSize    the maximum number of documents to rank
+     * @param parallelism the number of threads scoring the documents, 0 for the default
+     * @param searchAfter the last document of the previous page, or null for the first page
+     * @param consumer    receives the documents in the order of the ranking, the ones deleted in the meantime
+     *                    are left out
+     * @return the ids and the scores of the most relevant documents ranked after the given one
+     */
+    List<ScoredDocument> rankAndLoad(String query, int measure, int pageSize, int parallelism, ScoredDocument searchAfter,
+                                     Consumer<DocumentSearchResultDTO> consumer);
+
     /**
      * Delete the "id" document.
      *
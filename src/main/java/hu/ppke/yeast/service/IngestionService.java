@@ -0,0 +1,69 @@
+package hu.ppke.yeast.service;
+
+import hu.ppke.yeast.service.dto.DocumentDTO;
+import hu.ppke.yeast.service.dto.IngestionJobDTO;
+import hu.ppke.yeast.service.dto.IngestionQueueDTO;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Service Interface for the asynchronous ingestion of the documents.
+ * <p>
+ * The documents are queued in the database, so they are not lost when the application is restarted, and they are
+ * saved in batches by the {@link IngestionWorkers}.
+ */
+public interface IngestionService {
+
+    /**
+     * Queue documents for saving.
+     *
+     * @param documentDTOs the documents to save
+     * @return the jobs of the documents in the order of the documents, or empty if the queue has no room for them
+     */
+    Optional<List<IngestionJobDTO>> enqueue(List<DocumentDTO> documentDTOs);
+
+    /**
+     * Get the "id" job.
+     *
+     * @param id the id of the job
+     * @return the job
+     */
+    IngestionJobDTO findOne(Long id);
+
+    /**
+     * @return the state of the queue and the indexing lag
+     */
+    IngestionQueueDTO getQueue();
+
+    /**
+     * Claim the oldest queued jobs for processing.
+     *
+     * @param limit the maximum number of jobs to claim
+     * @return the ids of the claimed jobs, empty if the queue is empty
+     */
+    List<Long> claim(int limit);
+
+    /**
+     * Save the documents of claimed jobs together.
+     *
+     * @param ids the ids of the claimed jobs
+     * @return the number of saved documents
+     */
+    int process(List<Long> ids);
+
+    /**
+     * Mark a claimed job as failed.
+     *
+     * @param id    the id of the job
+     * @param error the reason of the failure
+     */
+    void fail(Long id, String error);
+
+    /**
+     * Queue the jobs claimed before the last shutdown again.
+     *
+     * @return the number of queued jobs
+     */
+    int requeueClaimed();
+}
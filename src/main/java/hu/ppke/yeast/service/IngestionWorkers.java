@@ -0,0 +1,109 @@
+package hu.ppke.yeast.service;
+
+import hu.ppke.yeast.config.ApplicationProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is responsible for draining the ingestion queue on a pool of worker threads.
+ * If a batch fails, its documents are saved one by one, so only the failing documents are marked as failed.
+ */
+@Component
+public class IngestionWorkers {
+
+    private final Logger log = LoggerFactory.getLogger(IngestionWorkers.class);
+
+    private final IngestionService ingestionService;
+    private final ApplicationProperties applicationProperties;
+    private ScheduledExecutorService executor;
+
+    @Autowired
+    public IngestionWorkers(IngestionService ingestionService, ApplicationProperties applicationProperties) {
+        this.ingestionService = ingestionService;
+        this.applicationProperties = applicationProperties;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        ApplicationProperties.Ingestion ingestion = applicationProperties.getIngestion();
+        if (ingestion.getWorkers() <= 0 || executor != null) {
+            return;
+        }
+
+        int requeued = ingestionService.requeueClaimed();
+        if (requeued > 0) {
+            log.info("{} interrupted ingestion jobs are queued again", requeued);
+        }
+
+        executor = Executors.newScheduledThreadPool(ingestion.getWorkers(), new CustomizableThreadFactory("yeast-Ingestion-"));
+        for (int i = 0; i < ingestion.getWorkers(); i++) {
+            executor.scheduleWithFixedDelay(this::drainSafely, 0, ingestion.getPollInterval(), TimeUnit.MILLISECONDS);
+        }
+        log.info("Started {} ingestion workers", ingestion.getWorkers());
+    }
+
+    /**
+     * Saves the queued documents until the queue is empty
+     *
+     * @return the number of saved documents
+     */
+    public int drain() {
+        int batchSize = Math.max(1, applicationProperties.getIngestion().getBatchSize());
+        int processed = 0;
+
+        List<Long> ids;
+        while (!Thread.currentThread().isInterrupted() && !(ids = ingestionService.claim(batchSize)).isEmpty()) {
+            processed += process(ids);
+        }
+
+        return processed;
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private void drainSafely() {
+        try {
+            drain();
+        } catch (RuntimeException e) {
+            // The next run is cancelled if the task throws
+            log.error("Draining the ingestion queue failed", e);
+        }
+    }
+
+    private int process(List<Long> ids) {
+        try {
+            return ingestionService.process(ids);
+        } catch (RuntimeException e) {
+            if (ids.size() == 1) {
+                log.warn("Ingestion job {} failed: {}", ids.get(0), e.getMessage());
+                ingestionService.fail(ids.get(0), e.toString());
+                return 0;
+            }
+
+            log.warn("Ingestion batch of {} jobs failed, saving them one by one: {}", ids.size(), e.getMessage());
+            int processed = 0;
+            for (Long id : ids) {
+                processed += process(Collections.singletonList(id));
+            }
+            return processed;
+        }
+    }
+}
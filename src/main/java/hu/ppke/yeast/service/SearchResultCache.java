@@ -0,0 +1,140 @@
+package hu.ppke.yeast.service;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import hu.ppke.yeast.config.ApplicationProperties;
+import hu.ppke.yeast.enumeration.SearchEngine;
+import hu.ppke.yeast.enumeration.SimiliarityMeasure;
+import hu.ppke.yeast.index.IndexGeneration;
+import hu.ppke.yeast.service.dto.DocumentSearchResultDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Service caching the results of the searches.
+ * <p>
+ * The results are cached by the stemmed query terms, the search settings and the {@link IndexGeneration},
+ * so the entries of an outdated generation are never hit again.
+ */
+@Service
+public class SearchResultCache {
+
+    public static final String CACHE_NAME = "searchResults";
+
+    private final CacheManager cacheManager;
+    private final IndexGeneration indexGeneration;
+    private final ApplicationProperties applicationProperties;
+    private final Meter hits;
+    private final Meter misses;
+
+    @Autowired
+    public SearchResultCache(CacheManager cacheManager,
+                             IndexGeneration indexGeneration,
+                             ApplicationProperties applicationProperties,
+                             MetricRegistry metricRegistry) {
+        this.cacheManager = cacheManager;
+        this.indexGeneration = indexGeneration;
+        this.applicationProperties = applicationProperties;
+        this.hits = metricRegistry.meter(MetricRegistry.name(SearchResultCache.class, "hits"));
+        this.misses = metricRegistry.meter(MetricRegistry.name(SearchResultCache.class, "misses"));
+        metricRegistry.register(MetricRegistry.name(SearchResultCache.class, "hit-ratio"), new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                return Ratio.of(hits.getCount(), hits.getCount() + misses.getCount());
+            }
+        });
+    }
+
+    /**
+     * @param queryTerms the stemmed query terms without the stop words together with their frequencies
+     * @param measure    the chosen measure
+     * @param limit      the maximum number of documents to return
+     * @param view       the form of the results, like {@link DocumentSearchResultDTO}, part of the key
+     * @param search     runs the search if the results are not cached
+     * @return the cached or the calculated results, not modifiable
+     */
+    public <T> List<T> get(Map<String, Long> queryTerms, SimiliarityMeasure measure, int limit, Serializable view,
+                           Supplier<List<T>> search) {
+        Cache cache = applicationProperties.getSearch().getCacheSize() > 0 ? cacheManager.getCache(CACHE_NAME) : null;
+        // The results of a transaction which changed the index are private to it, they are neither cached nor
+        // taken from the cache
+        if (cache == null || indexGeneration.isChangedInTransaction()) {
+            return search.get();
+        }
+
+        Key key = new Key(queryTerms, measure, limit, view, applicationProperties, indexGeneration.get());
+        Cache.ValueWrapper cached = cache.get(key);
+        if (cached != null) {
+            hits.mark();
+            @SuppressWarnings("unchecked")
+            List<T> results = (List<T>) cached.get();
+            return results;
+        }
+
+        misses.mark();
+        List<T> results = Collections.unmodifiableList(new ArrayList<>(search.get()));
+        // The index may have been changed during the search, the results are only cached if it was not
+        if (key.generation == indexGeneration.get()) {
+            cache.put(key, results);
+        }
+
+        return results;
+    }
+
+    /**
+     * The key of the cached search results
+     */
+    private static class Key implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final SortedMap<String, Long> queryTerms;
+        private final SimiliarityMeasure measure;
+        private final int limit;
+        private final Serializable view;
+        private final SearchEngine engine;
+        private final boolean incrementalWeights;
+        private final long generation;
+
+        private Key(Map<String, Long> queryTerms, SimiliarityMeasure measure, int limit, Serializable view,
+                    ApplicationProperties applicationProperties, long generation) {
+            this.queryTerms = new TreeMap<>(queryTerms);
+            this.measure = measure;
+            this.limit = limit;
+            this.view = view;
+            this.engine = applicationProperties.getSearch().getEngine();
+            this.incrementalWeights = applicationProperties.getWeights().isIncremental();
+            this.generation = generation;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return limit == key.limit &&
+                incrementalWeights == key.incrementalWeights &&
+                generation == key.generation &&
+                measure == key.measure &&
+                engine == key.engine &&
+                view.equals(key.view) &&
+                queryTerms.equals(key.queryTerms);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(queryTerms, measure, limit, view, engine, incrementalWeights, generation);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package hu.ppke.yeast.service.dto;
+
+import java.io.Serializable;
+
+/**
+ * A DTO for a search result without the content of the document, only with its beginning if requested.
+ */
+public class DocumentSearchHitDTO implements Serializable {
+
+    private Long id;
+
+    private Long evaluationId;
+
+    private double similarityMeasure;
+
+    private String snippet;
+
+    public DocumentSearchHitDTO() {
+    }
+
+    public DocumentSearchHitDTO(Long id, Long evaluationId, double similarityMeasure, String snippet) {
+        this.id = id;
+        this.evaluationId = evaluationId;
+        this.similarityMeasure = similarityMeasure;
+        this.snippet = snippet;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getEvaluationId() {
+        return evaluationId;
+    }
+
+    public void setEvaluationId(Long evaluationId) {
+        this.evaluationId = evaluationId;
+    }
+
+    public double getSimilarityMeasure() {
+        return similarityMeasure;
+    }
+
+    public void setSimilarityMeasure(double similarityMeasure) {
+        this.similarityMeasure = similarityMeasure;
+    }
+
+    public String getSnippet() {
+        return snippet;
+    }
+
+    public void setSnippet(String snippet) {
+        this.snippet = snippet;
+    }
+
+    @Override
+    public String toString() {
+        return "DocumentSearchHitDTO{" +
+            "id=" + getId() +
+            ", evaluationId='" + getEvaluationId() + "'" +
+            ", similarityMeasure='" + getSimilarityMeasure() + "'" +
+            ", snippet='" + getSnippet() + "'" +
+            "}";
+    }
+}
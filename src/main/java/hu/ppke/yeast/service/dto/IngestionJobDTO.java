@@ -0,0 +1,95 @@
+package hu.ppke.yeast.service.dto;
+
+import hu.ppke.yeast.enumeration.IngestionStatus;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * A DTO for the IngestionJob entity, without the content of the document.
+ */
+public class IngestionJobDTO implements Serializable {
+
+    private Long id;
+
+    private IngestionStatus status;
+
+    private Long documentId;
+
+    private String error;
+
+    private Instant enqueuedAt;
+
+    private Instant finishedAt;
+
+    public IngestionJobDTO() {
+    }
+
+    public IngestionJobDTO(Long id, IngestionStatus status, Long documentId, String error, Instant enqueuedAt,
+                           Instant finishedAt) {
+        this.id = id;
+        this.status = status;
+        this.documentId = documentId;
+        this.error = error;
+        this.enqueuedAt = enqueuedAt;
+        this.finishedAt = finishedAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public IngestionStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(IngestionStatus status) {
+        this.status = status;
+    }
+
+    public Long getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(Long documentId) {
+        this.documentId = documentId;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public Instant getEnqueuedAt() {
+        return enqueuedAt;
+    }
+
+    public void setEnqueuedAt(Instant enqueuedAt) {
+        this.enqueuedAt = enqueuedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(Instant finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "IngestionJobDTO{" +
+            "id=" + getId() +
+            ", status='" + getStatus() + "'" +
+            ", documentId='" + getDocumentId() + "'" +
+            ", error='" + getError() + "'" +
+            "}";
+    }
+}
@@ -0,0 +1,90 @@
+package hu.ppke.yeast.service.dto;
+
+import java.io.Serializable;
+
+/**
+ * A DTO for the state of the ingestion queue and the indexing lag.
+ */
+public class IngestionQueueDTO implements Serializable {
+
+    private long queued;
+
+    private long processing;
+
+    private long failed;
+
+    private int capacity;
+
+    private long lagMillis;
+
+    public IngestionQueueDTO() {
+    }
+
+    public IngestionQueueDTO(long queued, long processing, long failed, int capacity, long lagMillis) {
+        this.queued = queued;
+        this.processing = processing;
+        this.failed = failed;
+        this.capacity = capacity;
+        this.lagMillis = lagMillis;
+    }
+
+    /**
+     * @return the number of documents waiting in the queue
+     */
+    public long getQueued() {
+        return queued;
+    }
+
+    public void setQueued(long queued) {
+        this.queued = queued;
+    }
+
+    /**
+     * @return the number of documents being saved by the workers
+     */
+    public long getProcessing() {
+        return processing;
+    }
+
+    public void setProcessing(long processing) {
+        this.processing = processing;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return the time the oldest unfinished document has been waiting for, 0 if the queue is empty
+     */
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    public void setLagMillis(long lagMillis) {
+        this.lagMillis = lagMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "IngestionQueueDTO{" +
+            "queued=" + getQueued() +
+            ", processing=" + getProcessing() +
+            ", failed=" + getFailed() +
+            ", capacity=" + getCapacity() +
+            ", lagMillis=" + getLagMillis() +
+            "}";
+    }
+}
@@ -3,6 +3,9 @@ package hu.ppke.yeast.service.impl;
 import hu.ppke.yeast.domain.Document;
 import hu.ppke.yeast.domain.DocumentIndex;
 import hu.ppke.yeast.domain.Index;
+import hu.ppke.yeast.index.IndexGeneration;
+import hu.ppke.yeast.index.InvertedIndex;
+import hu.ppke.yeast.index.TermDictionary;
 import hu.ppke.yeast.repository.DocumentIndexRepository;
 import hu.ppke.yeast.repository.DocumentIndexWeightRepository;
 import hu.ppke.yeast.repository.DocumentRepository;
@@ -20,16 +23,25 @@ public class DocumentIndexServiceImpl implements DocumentIndexService {
     private final DocumentRepository documentRepository;
     private final IndexRepository indexRepository;
     private final DocumentIndexWeightRepository documentIndexWeightRepository;
+    private final InvertedIndex invertedIndex;
+    private final TermDictionary termDictionary;
+    private final IndexGeneration indexGeneration;
 
     @Autowired
     public DocumentIndexServiceImpl(DocumentIndexRepository docIndexRepository,
                                     DocumentRepository documentRepository,
                                     IndexRepository indexRepository,
-                                    DocumentIndexWeightRepository documentIndexWeightRepository) {
+                                    DocumentIndexWeightRepository documentIndexWeightRepository,
+                                    InvertedIndex invertedIndex,
+                                    TermDictionary termDictionary,
+                                    IndexGeneration indexGeneration) {
         this.docIndexRepository = docIndexRepository;
         this.documentRepository = documentRepository;
         this.indexRepository = indexRepository;
         this.documentIndexWeightRepository = documentIndexWeightRepository;
+        this.invertedIndex = invertedIndex;
+        this.termDictionary = termDictionary;
+        this.indexGeneration = indexGeneration;
     }
 
     @Override
@@ -53,5 +65,8 @@ public class DocumentIndexServiceImpl implements DocumentIndexService {
         docIndexRepository.deleteAll();
         documentRepository.deleteAll();
         indexRepository.deleteAll();
+        invertedIndex.clear();
+        termDictionary.clear();
+        indexGeneration.increment();
     }
 }
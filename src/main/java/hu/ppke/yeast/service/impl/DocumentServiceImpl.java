@@ -1,13 +1,17 @@
 package hu.ppke.yeast.service.impl;
 
+import hu.ppke.yeast.config.ApplicationProperties;
 import hu.ppke.yeast.domain.Document;
 import hu.ppke.yeast.enumeration.SimiliarityMeasure;
 import hu.ppke.yeast.generator.WeightMatrixGenerator;
+import hu.ppke.yeast.index.ScoredDocument;
 import hu.ppke.yeast.processor.DocumentProcessor;
 import hu.ppke.yeast.processor.QueryProcessor;
 import hu.ppke.yeast.repository.DocumentRepository;
 import hu.ppke.yeast.service.DocumentService;
+import hu.ppke.yeast.service.SearchResultCache;
 import hu.ppke.yeast.service.dto.DocumentDTO;
+import hu.ppke.yeast.service.dto.DocumentSearchHitDTO;
 import hu.ppke.yeast.service.dto.DocumentSearchResultDTO;
 import hu.ppke.yeast.service.mapper.DocumentMapper;
 import org.slf4j.Logger;
@@ -19,7 +23,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 
 /**
@@ -36,40 +43,69 @@ public class DocumentServiceImpl implements DocumentService {
     private final DocumentProcessor documentProcessor;
     private final QueryProcessor queryProcessor;
     private final WeightMatrixGenerator weightMatrixGenerator;
+    private final SearchResultCache searchResultCache;
+    private final ApplicationProperties applicationProperties;
 
     @Autowired
     public DocumentServiceImpl(DocumentRepository documentRepository,
                                DocumentMapper documentMapper,
                                DocumentProcessor documentProcessor,
                                QueryProcessor queryProcessor,
-                               WeightMatrixGenerator weightMatrixGenerator) {
+                               WeightMatrixGenerator weightMatrixGenerator,
+                               SearchResultCache searchResultCache,
+                               ApplicationProperties applicationProperties) {
         this.documentRepository = documentRepository;
         this.documentMapper = documentMapper;
         this.documentProcessor = documentProcessor;
         this.queryProcessor = queryProcessor;
         this.weightMatrixGenerator = weightMatrixGenerator;
+        this.searchResultCache = searchResultCache;
+        this.applicationProperties = applicationProperties;
     }
 
     @Override
     public DocumentDTO save(DocumentDTO documentDTO) {
         Document document = documentMapper.toEntity(documentDTO);
         document = save(document);
-        weightMatrixGenerator.calculateAndPersistWeights();
+        updateWeights();
 
         return documentMapper.toDto(document);
     }
 
+    @Override
+    public List<DocumentDTO> saveBulk(List<DocumentDTO> documentDTOs) {
+        log.debug("Request to save a bulk of {} Documents", documentDTOs.size());
+        return documentMapper.toDto(saveMultiple(documentMapper.toEntity(documentDTOs)));
+    }
+
+    /**
+     * The documents are inserted and processed in batches, the weights are only updated once at the end
+     */
     @Override
     public List<Document> saveMultiple(List<Document> documents) {
         List<Document> persistedDocuments = new ArrayList<>();
-        for (Document document : documents) {
-            persistedDocuments.add(save(document));
+        int batchSize = applicationProperties.getBulk().getBatchSize();
+
+        for (int from = 0; from < documents.size(); from += batchSize) {
+            List<Document> batch = documentRepository.save(documents.subList(from, Math.min(from + batchSize, documents.size())));
+            documentProcessor.processDocuments(batch);
+            persistedDocuments.addAll(batch);
         }
-        weightMatrixGenerator.calculateAndPersistWeights();
+        updateWeights();
 
         return persistedDocuments;
     }
 
+    /**
+     * In incremental mode the index frequencies and document counts persisted by the document processor
+     * are all that is needed, the weights are calculated from them at query time
+     */
+    private void updateWeights() {
+        if (!applicationProperties.getWeights().isIncremental()) {
+            weightMatrixGenerator.calculateAndPersistWeights();
+        }
+    }
+
     private Document save(Document document) {
         log.debug("Request to save Document : {}", document.getId());
         document = documentRepository.save(document);
@@ -96,14 +132,59 @@ public class DocumentServiceImpl implements DocumentService {
 
     @Override
     public List<DocumentSearchResultDTO> search(String query, int measure) {
+        return search(query, measure, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<DocumentSearchResultDTO> search(String query, int measure, int limit) {
+        return search(query, measure, limit, 0);
+    }
+
+    @Override
+    public List<DocumentSearchResultDTO> search(String query, int measure, int limit, int parallelism) {
+        SimiliarityMeasure similiarityMeasure = SimiliarityMeasure.getMeasure(measure);
+        log.debug("Search with measure " + similiarityMeasure + ", limit " + limit + ", parallelism " + parallelism +
+            " and with query \"" + query + "\"");
+        Map<String, Long> queryTerms = queryProcessor.getQueryTerms(query);
+        return searchResultCache.get(queryTerms, similiarityMeasure, limit, DocumentSearchResultDTO.class.getName(),
+            () -> queryProcessor.getRelevantDocuments(queryTerms, similiarityMeasure, limit, parallelism));
+    }
+
+    @Override
+    public List<DocumentSearchHitDTO> searchHits(String query, int measure, int limit, int parallelism, boolean snippets) {
         SimiliarityMeasure similiarityMeasure = SimiliarityMeasure.getMeasure(measure);
-        log.debug("Search with measure " + similiarityMeasure + " and with query \"" + query + "\"");
-        return queryProcessor.getRelevantDocuments(query, similiarityMeasure);
+        log.debug("Search hits with measure " + similiarityMeasure + ", limit " + limit + ", parallelism " + parallelism +
+            ", snippets " + snippets + " and with query \"" + query + "\"");
+        Map<String, Long> queryTerms = queryProcessor.getQueryTerms(query);
+        int snippetLength = snippets ? applicationProperties.getSearch().getSnippetLength() : 0;
+        String view = DocumentSearchHitDTO.class.getName() + ":" + snippetLength;
+        return searchResultCache.get(queryTerms, similiarityMeasure, limit, view,
+            () -> queryProcessor.getSearchHits(queryTerms, similiarityMeasure, limit, parallelism, snippetLength));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ScoredDocument> rankAndLoad(String query, int measure, int pageSize, int parallelism,
+                                            ScoredDocument searchAfter, Consumer<DocumentSearchResultDTO> consumer) {
+        SimiliarityMeasure similiarityMeasure = SimiliarityMeasure.getMeasure(measure);
+        log.debug("Rank with measure " + similiarityMeasure + ", page size " + pageSize + ", parallelism " + parallelism +
+            ", after " + searchAfter + " and with query \"" + query + "\"");
+        List<ScoredDocument> ranking = queryProcessor.getTopDocuments(queryProcessor.getQueryTerms(query),
+            similiarityMeasure, pageSize, parallelism, searchAfter);
+        queryProcessor.loadDocuments(ranking, consumer);
+
+        return ranking;
     }
 
+    /**
+     * The indices of the document are removed first, the weights of the other documents are not recalculated:
+     * the inverted index and the incremental weights use the updated document counts immediately, a persisted
+     * weight matrix only on its next calculation
+     */
     @Override
     public void delete(Long id) {
         log.debug("Request to delete Document : {}", id);
+        documentProcessor.removeDocuments(Collections.singletonList(id));
         documentRepository.delete(id);
     }
 }
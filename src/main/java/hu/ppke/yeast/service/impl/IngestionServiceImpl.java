@@ -0,0 +1,171 @@
+package hu.ppke.yeast.service.impl;
+
+import hu.ppke.yeast.config.ApplicationProperties;
+import hu.ppke.yeast.domain.Document;
+import hu.ppke.yeast.domain.IngestionJob;
+import hu.ppke.yeast.enumeration.IngestionStatus;
+import hu.ppke.yeast.repository.IngestionJobRepository;
+import hu.ppke.yeast.service.DocumentService;
+import hu.ppke.yeast.service.IngestionService;
+import hu.ppke.yeast.service.dto.DocumentDTO;
+import hu.ppke.yeast.service.dto.IngestionJobDTO;
+import hu.ppke.yeast.service.dto.IngestionQueueDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Service Implementation for the asynchronous ingestion of the documents.
+ */
+@Service
+@Transactional
+public class IngestionServiceImpl implements IngestionService {
+
+    private static final List<IngestionStatus> UNFINISHED = Arrays.asList(IngestionStatus.QUEUED, IngestionStatus.PROCESSING);
+
+    private final Logger log = LoggerFactory.getLogger(IngestionServiceImpl.class);
+
+    private final IngestionJobRepository ingestionJobRepository;
+    private final DocumentService documentService;
+    private final ApplicationProperties applicationProperties;
+
+    @Autowired
+    public IngestionServiceImpl(IngestionJobRepository ingestionJobRepository,
+                                DocumentService documentService,
+                                ApplicationProperties applicationProperties) {
+        this.ingestionJobRepository = ingestionJobRepository;
+        this.documentService = documentService;
+        this.applicationProperties = applicationProperties;
+    }
+
+    /**
+     * The capacity is checked before the insert, so concurrent requests may overfill the queue by their own size
+     */
+    @Override
+    public Optional<List<IngestionJobDTO>> enqueue(List<DocumentDTO> documentDTOs) {
+        log.debug("Request to queue {} Documents", documentDTOs.size());
+        long unfinished = countUnfinished();
+        if (unfinished + documentDTOs.size() > applicationProperties.getIngestion().getQueueCapacity()) {
+            log.warn("The ingestion queue is full, {} documents are rejected", documentDTOs.size());
+            return Optional.empty();
+        }
+
+        Instant now = Instant.now();
+        List<IngestionJob> jobs = new ArrayList<>(documentDTOs.size());
+        for (DocumentDTO documentDTO : documentDTOs) {
+            jobs.add(new IngestionJob()
+                .setStatus(IngestionStatus.QUEUED)
+                .setCreationDate(documentDTO.getCreation_date())
+                .setContent(documentDTO.getContent())
+                .setEvaluationId(documentDTO.getEvaluationId())
+                .setEnqueuedAt(now));
+        }
+
+        return Optional.of(ingestionJobRepository.save(jobs).stream().map(this::toDto).collect(Collectors.toList()));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public IngestionJobDTO findOne(Long id) {
+        log.debug("Request to get IngestionJob : {}", id);
+        IngestionJob job = ingestionJobRepository.findOne(id);
+        return job == null ? null : toDto(job);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public IngestionQueueDTO getQueue() {
+        IngestionJob oldest = ingestionJobRepository.findFirstByStatusInOrderByIdAsc(UNFINISHED);
+        long lagMillis = oldest == null ? 0 : Math.max(0, Instant.now().toEpochMilli() - oldest.getEnqueuedAt().toEpochMilli());
+
+        return new IngestionQueueDTO(
+            ingestionJobRepository.countByStatus(IngestionStatus.QUEUED),
+            ingestionJobRepository.countByStatus(IngestionStatus.PROCESSING),
+            ingestionJobRepository.countByStatus(IngestionStatus.FAILED),
+            applicationProperties.getIngestion().getQueueCapacity(),
+            lagMillis);
+    }
+
+    @Override
+    public List<Long> claim(int limit) {
+        List<IngestionJob> jobs = ingestionJobRepository.findByStatusOrderByIdAsc(IngestionStatus.QUEUED, new PageRequest(0, limit));
+        List<Long> ids = new ArrayList<>(jobs.size());
+        for (IngestionJob job : jobs) {
+            job.setStatus(IngestionStatus.PROCESSING);
+            ids.add(job.getId());
+        }
+
+        return ids;
+    }
+
+    /**
+     * The documents are saved like a bulk, so the weights are only updated once for the whole batch. The
+     * processing of the documents clears the persistence context, so the jobs are loaded again to finish them.
+     */
+    @Override
+    public int process(List<Long> ids) {
+        List<IngestionJob> jobs = findClaimed(ids);
+        log.debug("Request to save the Documents of {} IngestionJobs", jobs.size());
+
+        List<Document> documents = new ArrayList<>(jobs.size());
+        for (IngestionJob job : jobs) {
+            documents.add(new Document()
+                .setCreation_date(job.getCreationDate())
+                .setContent(job.getContent())
+                .setEvaluationId(job.getEvaluationId()));
+        }
+
+        List<Document> persistedDocuments = documentService.saveMultiple(documents);
+        jobs = findClaimed(ids);
+        Instant now = Instant.now();
+        for (int i = 0; i < jobs.size(); i++) {
+            jobs.get(i)
+                .setStatus(IngestionStatus.DONE)
+                .setDocumentId(persistedDocuments.get(i).getId())
+                .setContent(null)
+                .setFinishedAt(now);
+        }
+
+        return jobs.size();
+    }
+
+    @Override
+    public void fail(Long id, String error) {
+        IngestionJob job = ingestionJobRepository.findOne(id);
+        if (job != null) {
+            job.setStatus(IngestionStatus.FAILED)
+                .setError(error != null && error.length() > IngestionJob.MAX_ERROR_LENGTH ?
+                    error.substring(0, IngestionJob.MAX_ERROR_LENGTH) : error)
+                .setFinishedAt(Instant.now());
+        }
+    }
+
+    @Override
+    public int requeueClaimed() {
+        return ingestionJobRepository.updateStatus(IngestionStatus.PROCESSING, IngestionStatus.QUEUED);
+    }
+
+    private List<IngestionJob> findClaimed(List<Long> ids) {
+        return ingestionJobRepository.findAll(ids).stream()
+            .filter(job -> job.getStatus() == IngestionStatus.PROCESSING)
+            .sorted(Comparator.comparing(IngestionJob::getId))
+            .collect(Collectors.toList());
+    }
+
+    private long countUnfinished() {
+        return ingestionJobRepository.countByStatus(IngestionStatus.QUEUED) +
+            ingestionJobRepository.countByStatus(IngestionStatus.PROCESSING);
+    }
+
+    private IngestionJobDTO toDto(IngestionJob job) {
+        return new IngestionJobDTO(job.getId(), job.getStatus(), job.getDocumentId(), job.getError(),
+            job.getEnqueuedAt(), job.getFinishedAt());
+    }
+}
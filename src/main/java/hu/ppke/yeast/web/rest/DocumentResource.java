@@ -1,8 +1,11 @@
 package hu.ppke.yeast.web.rest;
 
 import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hu.ppke.yeast.index.ScoredDocument;
 import hu.ppke.yeast.service.DocumentService;
 import hu.ppke.yeast.service.dto.DocumentDTO;
+import hu.ppke.yeast.service.dto.DocumentSearchHitDTO;
 import hu.ppke.yeast.service.dto.DocumentSearchResultDTO;
 import hu.ppke.yeast.web.rest.errors.BadRequestAlertException;
 import hu.ppke.yeast.web.rest.util.HeaderUtil;
@@ -18,7 +21,11 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
@@ -34,12 +41,18 @@ public class DocumentResource {
     private final Logger log = LoggerFactory.getLogger(DocumentResource.class);
 
     private static final String ENTITY_NAME = "document";
+    private static final int STREAM_PAGE_SIZE = 1000;
+
+    static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+
 
     private final DocumentService documentService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public DocumentResource(DocumentService documentService) {
+    public DocumentResource(DocumentService documentService, ObjectMapper objectMapper) {
         this.documentService = documentService;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -63,6 +76,31 @@ public class DocumentResource {
             .body(result);
     }
 
+    /**
+     * POST  /documents/bulk : Create multiple new documents at once.
+     *
+     * @param documentDTOs the documentDTOs to create
+     * @return the ResponseEntity with status 201 (Created) and with body the new documentDTOs,
+     * or with status 400 (Bad Request) if a document has already an ID or has no creation date
+     */
+    @PostMapping("/documents/bulk")
+    @Timed
+    public ResponseEntity<List<DocumentDTO>> createDocuments(@RequestBody List<DocumentDTO> documentDTOs) {
+        log.debug("REST request to save a bulk of {} Documents", documentDTOs.size());
+        for (DocumentDTO documentDTO : documentDTOs) {
+            if (documentDTO.getId() != null) {
+                throw new BadRequestAlertException("A new document cannot already have an ID", ENTITY_NAME, "idexists");
+            }
+            if (documentDTO.getCreation_date() == null) {
+                throw new BadRequestAlertException("A new document must have a creation date", ENTITY_NAME, "creationdatenull");
+            }
+        }
+        List<DocumentDTO> result = documentService.saveBulk(documentDTOs);
+        return ResponseEntity.status(HttpStatus.CREATED)
+            .headers(HeaderUtil.createAlert("A bulk of " + result.size() + " documents is created", String.valueOf(result.size())))
+            .body(result);
+    }
+
     /**
      * PUT  /documents : Updates an existing document.
      *
@@ -115,22 +153,149 @@ public class DocumentResource {
     }
 
     /**
-     * GET  /documents/search?query=searchquery&measure=x : get all the documents which are relevant to the search query
-     * using a specified measure
+     * GET  /documents/search?query=searchquery&measure=x&limit=k&parallelism=p : get the documents which are relevant
+     * to the search query using a specified measure, if a limit is given only the k most relevant documents are returned,
+     * if a parallelism is given the documents are scored on at most p threads
      *
-     * @param query  the search query
-     * @param measure the chosen measure
-     * @return the ResponseEntity with status 200 (OK) and the list of relevant documents in body
+     * @param query       the search query
+     * @param measure     the chosen measure
+     * @param limit       the maximum number of documents to return, optional
+     * @param parallelism the number of threads scoring the documents, optional
+     * @return the ResponseEntity with status 200 (OK) and the list of relevant documents in body,
+     * or with status 400 (Bad Request) if the limit or the parallelism is not positive
      */
     @RequestMapping(value = "/documents/search", method = RequestMethod.GET)
     @Timed
-    public ResponseEntity<List<DocumentSearchResultDTO>> searchDocuments(@RequestParam String query, @RequestParam int measure) {
+    public ResponseEntity<List<DocumentSearchResultDTO>> searchDocuments(@RequestParam String query, @RequestParam int measure,
+                                                                         @RequestParam(required = false) Integer limit,
+                                                                         @RequestParam(required = false) Integer parallelism) {
         log.debug("REST request to get a list of documents which are relevant for the query " + query);
-        List<DocumentSearchResultDTO> documentDTOs = documentService.search(query, measure);
+        if (limit != null && limit < 1) {
+            throw new BadRequestAlertException("The limit must be positive", ENTITY_NAME, "invalidlimit");
+        }
+        if (parallelism != null && parallelism < 1) {
+            throw new BadRequestAlertException("The parallelism must be positive", ENTITY_NAME, "invalidparallelism");
+        }
+        List<DocumentSearchResultDTO> documentDTOs = documentService.search(query, measure,
+            limit == null ? Integer.MAX_VALUE : limit, parallelism == null ? 0 : parallelism);
 
         return ResponseUtil.wrapOrNotFound(Optional.ofNullable(documentDTOs));
     }
 
+    /**
+     * GET  /documents/search/hits?query=searchquery&measure=x&limit=k&parallelism=p&snippet=true : get the ids,
+     * the evaluation ids and the scores of the documents which are relevant to the search query, the content of the
+     * documents is only read if the snippets are requested
+     *
+     * @param query       the search query
+     * @param measure     the chosen measure
+     * @param limit       the maximum number of documents to return, optional
+     * @param parallelism the number of threads scoring the documents, optional
+     * @param snippet     whether the beginning of the content should be returned as well, false by default
+     * @return the ResponseEntity with status 200 (OK) and the list of search hits in body,
+     * or with status 400 (Bad Request) if the limit or the parallelism is not positive
+     */
+    @RequestMapping(value = "/documents/search/hits", method = RequestMethod.GET)
+    @Timed
+    public ResponseEntity<List<DocumentSearchHitDTO>> searchDocumentHits(@RequestParam String query, @RequestParam int measure,
+                                                                         @RequestParam(required = false) Integer limit,
+                                                                         @RequestParam(required = false) Integer parallelism,
+                                                                         @RequestParam(defaultValue = "false") boolean snippet) {
+        log.debug("REST request to get the search hits which are relevant for the query " + query);
+        if (limit != null && limit < 1) {
+            throw new BadRequestAlertException("The limit must be positive", ENTITY_NAME, "invalidlimit");
+        }
+        if (parallelism != null && parallelism < 1) {
+            throw new BadRequestAlertException("The parallelism must be positive", ENTITY_NAME, "invalidparallelism");
+        }
+        List<DocumentSearchHitDTO> hits = documentService.searchHits(query, measure,
+            limit == null ? Integer.MAX_VALUE : limit, parallelism == null ? 0 : parallelism, snippet);
+
+        return ResponseUtil.wrapOrNotFound(Optional.ofNullable(hits));
+    }
+
+    /**
+     * GET  /documents/search/stream?query=searchquery&measure=x&limit=k&parallelism=p&searchAfter=s,id : stream the
+     * documents which are relevant to the search query as newline delimited JSON, one search result per line.
+     * The results are ranked, loaded and written in pages of at most 1000 documents, each page in a transaction of
+     * its own, so the whole result is never held in memory. A page missing documents deleted in the meantime is
+     * followed by the next one until the limit is reached. If the limit is reached, passing the similarity measure
+     * and the id of the last result separated by a comma as the searchAfter parameter returns the next results.
+     *
+     * @param query       the search query
+     * @param measure     the chosen measure
+     * @param limit       the maximum number of documents to return, optional
+     * @param parallelism the number of threads scoring the documents, optional
+     * @param searchAfter the cursor of the last document of the previous page, optional
+     * @param response    the response the search results are written to, with status 200 (OK),
+     *                    or with status 400 (Bad Request) if the limit, the parallelism or the cursor is not valid
+     * @throws IOException if the search results could not be written
+     */
+    @RequestMapping(value = "/documents/search/stream", method = RequestMethod.GET)
+    @Timed
+    public void streamSearchResults(@RequestParam String query, @RequestParam int measure,
+                                    @RequestParam(required = false) Integer limit,
+                                    @RequestParam(required = false) Integer parallelism,
+                                    @RequestParam(required = false) String searchAfter,
+                                    HttpServletResponse response) throws IOException {
+        log.debug("REST request to stream the documents which are relevant for the query " + query);
+        if (limit != null && limit < 1) {
+            throw new BadRequestAlertException("The limit must be positive", ENTITY_NAME, "invalidlimit");
+        }
+        if (parallelism != null && parallelism < 1) {
+            throw new BadRequestAlertException("The parallelism must be positive", ENTITY_NAME, "invalidparallelism");
+        }
+        ScoredDocument after = parseSearchAfter(searchAfter);
+        int remaining = limit == null ? Integer.MAX_VALUE : limit;
+
+        response.setContentType(NDJSON_CONTENT_TYPE);
+        response.setCharacterEncoding("UTF-8");
+        OutputStream out = response.getOutputStream();
+        int[] written = new int[1];
+        while (remaining > 0) {
+            int pageSize = Math.min(remaining, STREAM_PAGE_SIZE);
+            written[0] = 0;
+            List<ScoredDocument> ranking;
+            try {
+                ranking = documentService.rankAndLoad(query, measure, pageSize, parallelism == null ? 0 : parallelism,
+                    after, searchResult -> {
+                        try {
+                            out.write(objectMapper.writeValueAsBytes(searchResult));
+                            out.write('\n');
+                            written[0]++;
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.flush();
+
+            remaining -= written[0];
+            if (ranking.size() < pageSize) {
+                break;
+            }
+            after = ranking.get(ranking.size() - 1);
+        }
+    }
+
+    private ScoredDocument parseSearchAfter(String searchAfter) {
+        if (searchAfter == null) {
+            return null;
+        }
+        String[] parts = searchAfter.split(",");
+        try {
+            if (parts.length == 2) {
+                return new ScoredDocument(Long.parseLong(parts[1].trim()), Double.parseDouble(parts[0].trim()));
+            }
+        } catch (NumberFormatException e) {
+            log.debug("Invalid search after cursor: {}", searchAfter);
+        }
+        throw new BadRequestAlertException("The search after cursor must be a score and a document id separated by a comma",
+            ENTITY_NAME, "invalidsearchafter");
+    }
+
     /**
      * DELETE  /documents/:id : delete the "id" document.
      *
@@ -0,0 +1,133 @@
+package hu.ppke.yeast.web.rest;
+
+import com.codahale.metrics.annotation.Timed;
+import hu.ppke.yeast.service.IngestionService;
+import hu.ppke.yeast.service.dto.DocumentDTO;
+import hu.ppke.yeast.service.dto.IngestionJobDTO;
+import hu.ppke.yeast.service.dto.IngestionQueueDTO;
+import hu.ppke.yeast.web.rest.errors.BadRequestAlertException;
+import hu.ppke.yeast.web.rest.util.HeaderUtil;
+import io.github.jhipster.web.util.ResponseUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * REST controller for the asynchronous ingestion of the documents.
+ */
+@RestController
+@RequestMapping("/api")
+public class IngestionResource {
+
+    private final Logger log = LoggerFactory.getLogger(IngestionResource.class);
+
+    private static final String ENTITY_NAME = "ingestionJob";
+
+    private final IngestionService ingestionService;
+
+    @Autowired
+    public IngestionResource(IngestionService ingestionService) {
+        this.ingestionService = ingestionService;
+    }
+
+    /**
+     * POST  /ingestion/documents : Queue a new document for saving.
+     *
+     * @param documentDTO the documentDTO to save
+     * @return the ResponseEntity with status 202 (Accepted) and with body the job of the document,
+     * or with status 400 (Bad Request) if the document has already an ID,
+     * or with status 503 (Service Unavailable) if the queue is full
+     * @throws URISyntaxException if the Location URI syntax is incorrect
+     */
+    @PostMapping("/ingestion/documents")
+    @Timed
+    public ResponseEntity<IngestionJobDTO> enqueueDocument(@Valid @RequestBody DocumentDTO documentDTO) throws URISyntaxException {
+        log.debug("REST request to queue Document : {}", documentDTO);
+        validate(documentDTO);
+        Optional<List<IngestionJobDTO>> result = ingestionService.enqueue(Collections.singletonList(documentDTO));
+        if (!result.isPresent()) {
+            return queueFull();
+        }
+
+        IngestionJobDTO job = result.get().get(0);
+        return ResponseEntity.accepted()
+            .location(new URI("/api/ingestion/jobs/" + job.getId()))
+            .headers(HeaderUtil.createAlert("A document is queued", job.getId().toString()))
+            .body(job);
+    }
+
+    /**
+     * POST  /ingestion/documents/bulk : Queue multiple new documents for saving at once.
+     *
+     * @param documentDTOs the documentDTOs to save
+     * @return the ResponseEntity with status 202 (Accepted) and with body the jobs of the documents in their order,
+     * or with status 400 (Bad Request) if a document has already an ID or has no creation date,
+     * or with status 503 (Service Unavailable) if the queue has no room for all the documents
+     */
+    @PostMapping("/ingestion/documents/bulk")
+    @Timed
+    public ResponseEntity<List<IngestionJobDTO>> enqueueDocuments(@RequestBody List<DocumentDTO> documentDTOs) {
+        log.debug("REST request to queue a bulk of {} Documents", documentDTOs.size());
+        for (DocumentDTO documentDTO : documentDTOs) {
+            validate(documentDTO);
+        }
+        Optional<List<IngestionJobDTO>> result = ingestionService.enqueue(documentDTOs);
+        if (!result.isPresent()) {
+            return queueFull();
+        }
+
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+            .headers(HeaderUtil.createAlert("A bulk of " + result.get().size() + " documents is queued", String.valueOf(result.get().size())))
+            .body(result.get());
+    }
+
+    /**
+     * GET  /ingestion/jobs/:id : get the "id" ingestion job.
+     *
+     * @param id the id of the job to retrieve
+     * @return the ResponseEntity with status 200 (OK) and with body the job, or with status 404 (Not Found)
+     */
+    @GetMapping("/ingestion/jobs/{id}")
+    @Timed
+    public ResponseEntity<IngestionJobDTO> getJob(@PathVariable Long id) {
+        log.debug("REST request to get IngestionJob : {}", id);
+        return ResponseUtil.wrapOrNotFound(Optional.ofNullable(ingestionService.findOne(id)));
+    }
+
+    /**
+     * GET  /ingestion/status : get the state of the ingestion queue.
+     *
+     * @return the ResponseEntity with status 200 (OK) and with body the number of waiting documents and the indexing lag
+     */
+    @GetMapping("/ingestion/status")
+    @Timed
+    public ResponseEntity<IngestionQueueDTO> getStatus() {
+        log.debug("REST request to get the state of the ingestion queue");
+        return ResponseEntity.ok(ingestionService.getQueue());
+    }
+
+    private void validate(DocumentDTO documentDTO) {
+        if (documentDTO.getId() != null) {
+            throw new BadRequestAlertException("A new document cannot already have an ID", ENTITY_NAME, "idexists");
+        }
+        if (documentDTO.getCreation_date() == null) {
+            throw new BadRequestAlertException("A new document must have a creation date", ENTITY_NAME, "creationdatenull");
+        }
+    }
+
+    private <T> ResponseEntity<T> queueFull() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .headers(HeaderUtil.createFailureAlert(ENTITY_NAME, "queuefull", "The ingestion queue is full"))
+            .build();
+    }
+}
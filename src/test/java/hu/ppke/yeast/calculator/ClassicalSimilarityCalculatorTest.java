@@ -1,15 +1,20 @@
 package hu.ppke.yeast.calculator;
 
+import hu.ppke.yeast.enumeration.SimiliarityMeasure;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static hu.ppke.yeast.calculator.ClassicalSimilarityCalculator.calculateSimilarity;
-import static hu.ppke.yeast.enumeration.SimiliarityMeasure.DICE;
-import static hu.ppke.yeast.enumeration.SimiliarityMeasure.JACCARD;
+import static hu.ppke.yeast.calculator.HyperbolicSimilarityCalculator.calculateEuclideanDistance;
+import static hu.ppke.yeast.calculator.HyperbolicSimilarityCalculator.calculateEuclideanDistanceFromNorms;
+import static hu.ppke.yeast.enumeration.SimiliarityMeasure.*;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
 
 public class ClassicalSimilarityCalculatorTest {
 
@@ -37,4 +42,86 @@ public class ClassicalSimilarityCalculatorTest {
 
         assertThat(result).isEqualTo(20.809248554913296);
     }
+
+    @Test
+    public void testSparseVectors_missingCoordinatesAreZero() {
+        List<Double> denseQueryVec = Arrays.asList(3.0, 0.0, 1.0, 5.0, 0.0);
+        List<Double> denseDocVec = Arrays.asList(5.0, 9.0, 0.0, 1.0, 0.0);
+        SparseVector sparseQueryVec = new SparseVector(new long[]{1, 3, 4}, new double[]{3.0, 1.0, 5.0});
+        SparseVector sparseDocVec = new SparseVector(new long[]{1, 2, 4}, new double[]{5.0, 9.0, 1.0});
+
+        assertThat(calculateSimilarity(sparseQueryVec, sparseDocVec, COSINE))
+            .isEqualTo(calculateSimilarity(denseQueryVec, denseDocVec, COSINE));
+        assertThat(calculateSimilarity(sparseQueryVec, sparseDocVec, DOT_PRODUCT))
+            .isEqualTo(calculateSimilarity(denseQueryVec, denseDocVec, DOT_PRODUCT));
+        assertThat(calculateSimilarity(sparseQueryVec, sparseDocVec, DICE))
+            .isEqualTo(calculateSimilarity(denseQueryVec, denseDocVec, DICE));
+        assertThat(calculateEuclideanDistance(sparseQueryVec, sparseDocVec))
+            .isEqualTo(calculateEuclideanDistance(denseQueryVec, denseDocVec));
+    }
+
+    @Test
+    public void testSparseJaccard_isTheSameAsOnTheDenseVectors() {
+        SparseVector sparseQueryVec = new SparseVector(new long[]{1, 2, 3, 4}, new double[]{3.0, 2.0, 1.0, 5.0});
+        SparseVector sparseDocVec = new SparseVector(new long[]{1, 2, 3, 4}, new double[]{5.0, 9.0, 2.0, 1.0});
+        SparseVector otherSparseDocVec = new SparseVector(new long[]{1, 2, 4}, new double[]{5.0, 9.0, 1.0});
+
+        assertThat(calculateSimilarity(sparseQueryVec, sparseDocVec, JACCARD))
+            .isEqualTo(calculateSimilarity(queryVec, docVec, JACCARD));
+        assertThat(calculateSimilarity(sparseQueryVec, otherSparseDocVec, JACCARD))
+            .isEqualTo(calculateSimilarity(queryVec, Arrays.asList(5.0, 9.0, 0.0, 1.0), JACCARD))
+            .isEqualTo(0.0);
+    }
+
+    @Test
+    public void testPartialDocumentVector_similaritiesAreTheSameAsWithTheWholeVector() {
+        SparseVector sparseQueryVec = new SparseVector(new long[]{1, 4, 7}, new double[]{3.0, 1.0, 5.0});
+        SparseVector sparseDocVec = new SparseVector(new long[]{1, 2, 4, 5, 6}, new double[]{5.0, 9.0, 2.0, 1.0, 4.0});
+        Map<Long, Double> queryCoordinates = new HashMap<>();
+        queryCoordinates.put(1L, 5.0);
+        queryCoordinates.put(4L, 2.0);
+        SparseVector partialDocVec = SparseVector.of(queryCoordinates, sparseDocVec.getNorm(), sparseDocVec.getSum());
+
+        for (SimiliarityMeasure measure : new SimiliarityMeasure[]{COSINE, DOT_PRODUCT, DICE}) {
+            assertThat(calculateSimilarity(sparseQueryVec, partialDocVec, measure)).as(measure.toString())
+                .isEqualTo(calculateSimilarity(sparseQueryVec, sparseDocVec, measure));
+        }
+    }
+
+    @Test
+    public void testEuclideanDistanceFromNorms_isCloseToTheExactDistance() {
+        SparseVector sparseQueryVec = new SparseVector(new long[]{1, 4, 7}, new double[]{3.0, 1.0, 5.0});
+        SparseVector sparseDocVec = new SparseVector(new long[]{1, 2, 4, 5, 6}, new double[]{5.0, 9.0, 2.0, 1.0, 4.0});
+        Map<Long, Double> queryCoordinates = new HashMap<>();
+        queryCoordinates.put(1L, 5.0);
+        queryCoordinates.put(4L, 2.0);
+        SparseVector partialDocVec = SparseVector.of(queryCoordinates, sparseDocVec.getNorm(), sparseDocVec.getSum());
+
+        assertThat(calculateEuclideanDistanceFromNorms(sparseQueryVec, partialDocVec))
+            .isCloseTo(calculateEuclideanDistance(sparseQueryVec, sparseDocVec), within(1e-12));
+        assertThat(calculateEuclideanDistanceFromNorms(sparseQueryVec, sparseQueryVec)).isEqualTo(0.0);
+    }
+
+    @Test
+    public void testSparseVectors_shortQueryIsLookedUpInLongDocument() {
+        long[] indexIds = new long[40];
+        double[] weights = new double[40];
+        double[] denseDocVec = new double[81];
+        double[] denseQueryVec = new double[81];
+        for (int i = 0; i < indexIds.length; i++) {
+            indexIds[i] = 2 * i;
+            weights[i] = 0.1 * (i + 1);
+            denseDocVec[2 * i] = weights[i];
+        }
+        denseQueryVec[10] = 2.0;
+        denseQueryVec[11] = 1.0;
+        denseQueryVec[80] = 3.0;
+        SparseVector sparseQueryVec = new SparseVector(new long[]{10, 11, 80}, new double[]{2.0, 1.0, 3.0});
+        SparseVector sparseDocVec = new SparseVector(indexIds, weights);
+
+        assertThat(calculateSimilarity(sparseQueryVec, sparseDocVec, COSINE))
+            .isEqualTo(calculateSimilarity(denseQueryVec, denseDocVec, COSINE));
+        assertThat(calculateSimilarity(sparseQueryVec, sparseDocVec, DOT_PRODUCT))
+            .isEqualTo(calculateSimilarity(denseQueryVec, denseDocVec, DOT_PRODUCT));
+    }
 }
@@ -0,0 +1,85 @@
+package hu.ppke.yeast.config;
+
+import com.codahale.metrics.MetricRegistry;
+import hu.ppke.yeast.domain.Document;
+import hu.ppke.yeast.domain.Index;
+import io.github.jhipster.config.JHipsterProperties;
+import org.ehcache.core.config.DefaultConfiguration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for the CacheConfiguration class.
+ *
+ * @see CacheConfiguration
+ */
+public class CacheConfigurationTest {
+
+    private static final String DOCUMENT_INDEX_WEIGHTS = Document.class.getName() + ".documentIndexWeights";
+
+    private ApplicationProperties applicationProperties;
+    private MetricRegistry metricRegistry;
+    private CacheManager cacheManager;
+
+    @Before
+    public void setup() {
+        applicationProperties = new ApplicationProperties();
+        metricRegistry = new MetricRegistry();
+        EhcacheCachingProvider cachingProvider =
+            (EhcacheCachingProvider) Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        cacheManager = cachingProvider.getCacheManager(URI.create("urn:" + UUID.randomUUID()),
+            new DefaultConfiguration(getClass().getClassLoader()));
+    }
+
+    @After
+    public void destroy() {
+        cacheManager.close();
+    }
+
+    @Test
+    public void customize_createsTheCollectionRegions() {
+        customize();
+
+        assertThat(cacheManager.getCache(Document.class.getName() + ".documentIndices")).isNotNull();
+        assertThat(cacheManager.getCache(DOCUMENT_INDEX_WEIGHTS)).isNotNull();
+        assertThat(cacheManager.getCache(Index.class.getName() + ".documentIndices")).isNotNull();
+    }
+
+    @Test
+    public void regionWithOffHeapTier_entriesAreStoredAndCounted() {
+        applicationProperties.getCache().getDocumentDocumentIndexWeights().setHeapEntries(1);
+        applicationProperties.getCache().getDocumentDocumentIndexWeights().setOffHeapMegabytes(1);
+        customize();
+
+        Cache<Object, Object> region = cacheManager.getCache(DOCUMENT_INDEX_WEIGHTS);
+        region.put(1L, "first");
+        region.put(2L, "second");
+        assertThat(region.get(1L)).isEqualTo("first");
+        assertThat(region.get(2L)).isEqualTo("second");
+        assertThat(region.get(3L)).isNull();
+
+        assertThat(gauge(DOCUMENT_INDEX_WEIGHTS, "hits")).isEqualTo(2L);
+        assertThat(gauge(DOCUMENT_INDEX_WEIGHTS, "misses")).isEqualTo(1L);
+        assertThat(gauge(DOCUMENT_INDEX_WEIGHTS, "evictions")).isEqualTo(0L);
+    }
+
+    private void customize() {
+        new CacheConfiguration(new JHipsterProperties(), applicationProperties, metricRegistry)
+            .cacheManagerCustomizer().customize(cacheManager);
+    }
+
+    private Object gauge(String region, String statistic) {
+        return metricRegistry.getGauges()
+            .get(MetricRegistry.name(CacheConfiguration.REGION_METRICS_PREFIX, region, statistic)).getValue();
+    }
+}
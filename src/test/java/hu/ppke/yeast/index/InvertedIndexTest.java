@@ -0,0 +1,458 @@
+package hu.ppke.yeast.index;
+
+import hu.ppke.yeast.config.ApplicationProperties;
+import hu.ppke.yeast.enumeration.HyperbolicScoring;
+import hu.ppke.yeast.enumeration.SimiliarityMeasure;
+import hu.ppke.yeast.repository.DocumentIndexRepository;
+import hu.ppke.yeast.repository.DocumentRepository;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+
+import static hu.ppke.yeast.enumeration.SimiliarityMeasure.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.*;
+
+public class InvertedIndexTest {
+
+    private static final int NR_OF_DOCUMENTS = 500;
+    private static final int NR_OF_INDICES = 60;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private DocumentRepository documentRepository;
+    private DocumentIndexRepository documentIndexRepository;
+    private ApplicationProperties applicationProperties;
+    private InvertedIndex invertedIndex;
+
+    @Before
+    public void setup() {
+        documentRepository = mock(DocumentRepository.class);
+        documentIndexRepository = mock(DocumentIndexRepository.class);
+        applicationProperties = new ApplicationProperties();
+        when(documentRepository.findAllIds()).thenReturn(Collections.emptyList());
+        when(documentIndexRepository.findAllFrequencies()).thenReturn(Collections.emptyList());
+
+        invertedIndex = new InvertedIndex(documentRepository, documentIndexRepository, new CommittedReader(), applicationProperties, Runnable::run, new IndexGeneration());
+        addDocuments(invertedIndex);
+    }
+
+    @Test
+    public void searchWithLimit_givesBackTheBestDocumentsOfTheFullRanking() {
+        Random random = new Random(7);
+
+        for (int queryNr = 0; queryNr < 20; queryNr++) {
+            Map<Long, Long> queryFrequencies = new HashMap<>();
+            for (int i = 0; i < 1 + random.nextInt(6); i++) {
+                queryFrequencies.put(1L + random.nextInt(NR_OF_INDICES), 1L + random.nextInt(2));
+            }
+
+            for (SimiliarityMeasure measure : SimiliarityMeasure.values()) {
+                List<ScoredDocument> allDocuments = invertedIndex.search(queryFrequencies, measure, Integer.MAX_VALUE);
+
+                for (int limit : new int[]{1, 5, 10, 50}) {
+                    List<ScoredDocument> topDocuments = invertedIndex.search(queryFrequencies, measure, limit);
+
+                    assertThat(ids(topDocuments)).as(measure + " top " + limit)
+                        .isEqualTo(ids(allDocuments.subList(0, Math.min(limit, allDocuments.size()))));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void searchAfter_pagesGiveBackTheFullRanking() {
+        Random random = new Random(5);
+
+        for (int queryNr = 0; queryNr < 10; queryNr++) {
+            Map<Long, Long> queryFrequencies = new HashMap<>();
+            for (int i = 0; i < 1 + random.nextInt(6); i++) {
+                queryFrequencies.put(1L + random.nextInt(NR_OF_INDICES), 1L + random.nextInt(2));
+            }
+
+            for (SimiliarityMeasure measure : SimiliarityMeasure.values()) {
+                List<ScoredDocument> allDocuments = invertedIndex.search(queryFrequencies, measure, Integer.MAX_VALUE);
+
+                List<ScoredDocument> pagedDocuments = new ArrayList<>();
+                List<ScoredDocument> page = invertedIndex.search(queryFrequencies, measure, 7, null, 1, null);
+                while (!page.isEmpty()) {
+                    pagedDocuments.addAll(page);
+                    page = invertedIndex.search(queryFrequencies, measure, 7, null, 1, page.get(page.size() - 1));
+                }
+
+                assertThat(scores(pagedDocuments)).as(measure.toString()).isEqualTo(scores(allDocuments));
+            }
+        }
+    }
+
+    @Test
+    public void sparseHyperbolicScoring_scoresAreCloseToTheExactOnes() {
+        for (long documentId = 1; documentId <= NR_OF_DOCUMENTS; documentId += 9) {
+            invertedIndex.deleteDocument(documentId);
+        }
+        Random random = new Random(3);
+
+        for (int queryNr = 0; queryNr < 10; queryNr++) {
+            Map<Long, Long> queryFrequencies = new HashMap<>();
+            for (int i = 0; i < 1 + random.nextInt(6); i++) {
+                queryFrequencies.put(1L + random.nextInt(NR_OF_INDICES), 1L + random.nextInt(2));
+            }
+
+            for (int limit : new int[]{1, 10, Integer.MAX_VALUE}) {
+                applicationProperties.getSearch().setHyperbolicScoring(HyperbolicScoring.EXACT);
+                List<ScoredDocument> expected = invertedIndex.search(queryFrequencies, HYPERBOLIC, limit);
+                applicationProperties.getSearch().setHyperbolicScoring(HyperbolicScoring.SPARSE);
+                List<ScoredDocument> actual = invertedIndex.search(queryFrequencies, HYPERBOLIC, limit);
+
+                assertThat(actual).as("top " + limit).hasSameSizeAs(expected);
+                for (int i = 0; i < expected.size(); i++) {
+                    assertThat(actual.get(i).getScore()).as("top " + limit + " at " + i)
+                        .isCloseTo(expected.get(i).getScore(), within(1e-12));
+                }
+                if (limit == Integer.MAX_VALUE) {
+                    assertThat(ids(actual)).containsOnlyElementsOf(ids(expected));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void searchWithoutLimit_documentsAreOrderedBySimilarity() {
+        Map<Long, Long> queryFrequencies = new HashMap<>();
+        queryFrequencies.put(3L, 1L);
+        queryFrequencies.put(20L, 2L);
+
+        for (SimiliarityMeasure measure : Arrays.asList(COSINE, DOT_PRODUCT, DICE, HYPERBOLIC)) {
+            List<ScoredDocument> documents = invertedIndex.search(queryFrequencies, measure, Integer.MAX_VALUE);
+
+            assertThat(documents).isNotEmpty();
+            for (int i = 1; i < documents.size(); i++) {
+                ScoredDocument previous = documents.get(i - 1);
+                ScoredDocument current = documents.get(i);
+                assertThat(previous.getScore() > current.getScore() ||
+                    previous.getScore() == current.getScore() && previous.getDocumentId() < current.getDocumentId())
+                    .as(measure + " ordering at " + i).isTrue();
+            }
+        }
+    }
+
+    @Test
+    public void refreshInterval_changesAreSearchableAfterTheRefresh() {
+        applicationProperties.getIndex().setRefreshInterval(60_000);
+        IndexGeneration indexGeneration = new IndexGeneration();
+        InvertedIndex refreshedIndex = new InvertedIndex(documentRepository, documentIndexRepository, new CommittedReader(), applicationProperties, Runnable::run, indexGeneration);
+        refreshedIndex.addDocument(1L, Collections.singletonMap(1L, 1L));
+        refreshedIndex.addDocument(3L, Collections.singletonMap(2L, 1L));
+        IndexSnapshot snapshot = refreshedIndex.acquireSnapshot();
+        long generation = indexGeneration.get();
+
+        refreshedIndex.addDocument(2L, Collections.singletonMap(1L, 2L));
+        refreshedIndex.deleteDocument(1L);
+
+        // The changes are not searchable until the refresh interval elapses
+        assertThat(refreshedIndex.acquireSnapshot()).isSameAs(snapshot);
+        assertThat(ids(refreshedIndex.search(Collections.singletonMap(1L, 1L), COSINE, 10))).containsExactly(1L);
+        assertThat(indexGeneration.get()).isEqualTo(generation);
+
+        assertThat(refreshedIndex.refresh()).isNotSameAs(snapshot);
+        assertThat(ids(refreshedIndex.search(Collections.singletonMap(1L, 1L), COSINE, 10))).containsExactly(2L);
+        assertThat(indexGeneration.get()).isGreaterThan(generation);
+    }
+
+    @Test
+    public void restart_indexIsLoadedFromTheCommit() {
+        applicationProperties.getIndex().setDirectory(temporaryFolder.getRoot().getPath());
+        setCheckpoint(NR_OF_DOCUMENTS, 3000L, 3500L);
+        invertedIndex.close();
+
+        InvertedIndex restartedIndex = new InvertedIndex(documentRepository, documentIndexRepository, new CommittedReader(), applicationProperties, Runnable::run, new IndexGeneration());
+        assertThat(restartedIndex.getNumberOfDocuments()).isEqualTo(NR_OF_DOCUMENTS);
+
+        Map<Long, Long> queryFrequencies = new HashMap<>();
+        queryFrequencies.put(3L, 1L);
+        queryFrequencies.put(20L, 2L);
+        for (SimiliarityMeasure measure : SimiliarityMeasure.values()) {
+            assertThat(scores(restartedIndex.search(queryFrequencies, measure, Integer.MAX_VALUE)))
+                .as(measure.toString())
+                .isEqualTo(scores(invertedIndex.search(queryFrequencies, measure, Integer.MAX_VALUE)));
+        }
+
+        // Only the first index was loaded from the DB
+        verify(documentIndexRepository, times(1)).findAllFrequencies();
+    }
+
+    @Test
+    public void restartAfterTheDBChanged_indexIsLoadedFromTheDB() {
+        applicationProperties.getIndex().setDirectory(temporaryFolder.getRoot().getPath());
+        setCheckpoint(NR_OF_DOCUMENTS, 3000L, 3500L);
+        invertedIndex.close();
+
+        setCheckpoint(NR_OF_DOCUMENTS, 3001L, 3501L);
+        InvertedIndex restartedIndex = new InvertedIndex(documentRepository, documentIndexRepository, new CommittedReader(), applicationProperties, Runnable::run, new IndexGeneration());
+
+        assertThat(restartedIndex.getNumberOfDocuments()).isEqualTo(0);
+        verify(documentIndexRepository, times(2)).findAllFrequencies();
+    }
+
+    @Test
+    public void smallSegments_scoresAreTheSameAsWithASingleSegment() {
+        applicationProperties.getIndex().setFlushThreshold(7);
+        applicationProperties.getIndex().setMergeFactor(3);
+        InvertedIndex segmentedIndex = new InvertedIndex(documentRepository, documentIndexRepository, new CommittedReader(), applicationProperties, Runnable::run, new IndexGeneration());
+        addDocuments(segmentedIndex);
+
+        assertSameScores(segmentedIndex, invertedIndex);
+    }
+
+    @Test
+    public void replaceDocumentsInSmallSegments_scoresAreTheSameAsWithASingleSegment() {
+        applicationProperties.getIndex().setFlushThreshold(7);
+        applicationProperties.getIndex().setMergeFactor(3);
+        InvertedIndex segmentedIndex = new InvertedIndex(documentRepository, documentIndexRepository, new CommittedReader(), applicationProperties, Runnable::run, new IndexGeneration());
+        addDocuments(segmentedIndex);
+
+        for (long documentId = 1; documentId <= NR_OF_DOCUMENTS; documentId += 3) {
+            Map<Long, Long> indexFrequencies = Collections.singletonMap(documentId % NR_OF_INDICES + 1, 2L);
+            segmentedIndex.addDocument(documentId, indexFrequencies);
+            // The refresh freezes the buffer, so the replaced documents are spread across the segments
+            segmentedIndex.refresh();
+            invertedIndex.addDocument(documentId, indexFrequencies);
+        }
+
+        assertThat(segmentedIndex.getNumberOfDocuments()).isEqualTo(NR_OF_DOCUMENTS);
+        assertSameScores(segmentedIndex, invertedIndex);
+    }
+
+    @Test
+    public void deleteDocumentsInSmallSegments_scoresAreTheSameAsWithoutTheDocuments() {
+        applicationProperties.getIndex().setFlushThreshold(7);
+        applicationProperties.getIndex().setMergeFactor(3);
+        InvertedIndex segmentedIndex = new InvertedIndex(documentRepository, documentIndexRepository, new CommittedReader(), applicationProperties, Runnable::run, new IndexGeneration());
+        addDocuments(segmentedIndex);
+        // The documents are deleted from the buffer of this index, as if they had never been added
+        InvertedIndex expectedIndex = new InvertedIndex(documentRepository, documentIndexRepository, new CommittedReader(), new ApplicationProperties(), Runnable::run, new IndexGeneration());
+        addDocuments(expectedIndex);
+
+        int nrOfDeletedDocuments = 0;
+        for (long documentId = 1; documentId <= NR_OF_DOCUMENTS; documentId++) {
+            // Most documents of the first segments are deleted, so they are rewritten without them
+            if (documentId % 5 != 0 && (documentId < 100 || documentId % 3 == 0)) {
+                assertThat(segmentedIndex.deleteDocument(documentId)).isTrue();
+                expectedIndex.deleteDocument(documentId);
+                nrOfDeletedDocuments++;
+            }
+        }
+        assertThat(segmentedIndex.deleteDocument(1L)).isFalse();
+
+        assertThat(segmentedIndex.getNumberOfDocuments()).isEqualTo(NR_OF_DOCUMENTS - nrOfDeletedDocuments);
+        assertSameScores(segmentedIndex, expectedIndex);
+    }
+
+    @Test
+    public void searchInParallel_resultsAreTheSameAsOnASingleThread() {
+        applicationProperties.getIndex().setFlushThreshold(30);
+        applicationProperties.getIndex().setMergeFactor(3);
+        applicationProperties.getSearch().setMaxParallelism(4);
+        applicationProperties.getSearch().setMinDocumentsPerTask(1);
+        InvertedIndex segmentedIndex = new InvertedIndex(documentRepository, documentIndexRepository, new CommittedReader(), applicationProperties, Runnable::run, new IndexGeneration());
+        addDocuments(segmentedIndex);
+        for (long documentId = 1; documentId <= NR_OF_DOCUMENTS; documentId += 7) {
+            segmentedIndex.deleteDocument(documentId);
+        }
+        ScoringPool scoringPool = new ScoringPool(applicationProperties);
+        Random random = new Random(13);
+
+        try {
+            for (int queryNr = 0; queryNr < 10; queryNr++) {
+                Map<Long, Long> queryFrequencies = new HashMap<>();
+                for (int i = 0; i < 1 + random.nextInt(6); i++) {
+                    queryFrequencies.put(1L + random.nextInt(NR_OF_INDICES), 1L + random.nextInt(2));
+                }
+
+                for (SimiliarityMeasure measure : SimiliarityMeasure.values()) {
+                    for (int limit : new int[]{1, 10, Integer.MAX_VALUE}) {
+                        List<String> expected = scores(segmentedIndex.search(queryFrequencies, measure, limit));
+                        for (int parallelism : new int[]{2, 3, 4}) {
+                            assertThat(scores(segmentedIndex.search(queryFrequencies, measure, limit, scoringPool, parallelism)))
+                                .as(measure + " top " + limit + " on " + parallelism + " threads")
+                                .isEqualTo(expected);
+                        }
+                    }
+                }
+            }
+        } finally {
+            scoringPool.shutdown();
+        }
+    }
+
+    @Test
+    public void restartWithSegmentFiles_indexIsLoadedFromTheCommit() {
+        applicationProperties.getIndex().setDirectory(temporaryFolder.getRoot().getPath());
+        applicationProperties.getIndex().setFlushThreshold(20);
+        applicationProperties.getIndex().setMergeFactor(3);
+        setCheckpoint(0, 0L, 0L);
+        InvertedIndex segmentedIndex = new InvertedIndex(documentRepository, documentIndexRepository, new CommittedReader(), applicationProperties, Runnable::run, new IndexGeneration());
+        addDocuments(segmentedIndex);
+        segmentedIndex.addDocument(5L, Collections.singletonMap(3L, 1L));
+
+        setCheckpoint(NR_OF_DOCUMENTS, 3000L, 3500L);
+        segmentedIndex.close();
+        InvertedIndex restartedIndex = new InvertedIndex(documentRepository, documentIndexRepository, new CommittedReader(), applicationProperties, Runnable::run, new IndexGeneration());
+
+        assertThat(restartedIndex.getNumberOfDocuments()).isEqualTo(NR_OF_DOCUMENTS);
+        assertSameScores(restartedIndex, segmentedIndex);
+        // Only the first two indices were loaded from the DB
+        verify(documentIndexRepository, times(2)).findAllFrequencies();
+    }
+
+    @Test
+    public void rollback_theChangesAreOnlySeenByTheTransaction() throws Exception {
+        applicationProperties.getIndex().setFlushThreshold(7);
+        applicationProperties.getIndex().setMergeFactor(3);
+        InvertedIndex segmentedIndex = new InvertedIndex(documentRepository, documentIndexRepository, new CommittedReader(), applicationProperties, Runnable::run, new IndexGeneration());
+        addDocuments(segmentedIndex);
+        InvertedIndex expectedIndex = new InvertedIndex(documentRepository, documentIndexRepository, new CommittedReader(), new ApplicationProperties(), Runnable::run, new IndexGeneration());
+        addDocuments(expectedIndex);
+        int[] seenByConcurrentTransaction = new int[1];
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            changeDocuments(segmentedIndex);
+            assertThat(segmentedIndex.deleteDocument(4L)).isFalse();
+            assertThat(segmentedIndex.getNumberOfDocuments()).isEqualTo(NR_OF_DOCUMENTS - 1);
+            assertThat(ids(segmentedIndex.search(Collections.singletonMap(4L, 1L), DOT_PRODUCT, Integer.MAX_VALUE))).contains(3L);
+
+            // A concurrent transaction does not see the changes, its own changes are kept
+            Thread concurrentTransaction = new Thread(() -> {
+                seenByConcurrentTransaction[0] = segmentedIndex.getNumberOfDocuments();
+                segmentedIndex.addDocument(NR_OF_DOCUMENTS + 2, Collections.singletonMap(1L, 1L));
+                segmentedIndex.deleteDocument(5L);
+            });
+            concurrentTransaction.start();
+            concurrentTransaction.join();
+        } finally {
+            completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+        expectedIndex.addDocument(NR_OF_DOCUMENTS + 2, Collections.singletonMap(1L, 1L));
+        expectedIndex.deleteDocument(5L);
+
+        assertThat(seenByConcurrentTransaction[0]).isEqualTo(NR_OF_DOCUMENTS);
+        assertThat(segmentedIndex.getNumberOfDocuments()).isEqualTo(NR_OF_DOCUMENTS);
+        assertSameScores(segmentedIndex, expectedIndex);
+        // The index was not reloaded from the DB
+        verify(documentIndexRepository, times(3)).findAllFrequencies();
+    }
+
+    @Test
+    public void commit_theChangesAreApplied() {
+        applicationProperties.getIndex().setFlushThreshold(7);
+        applicationProperties.getIndex().setMergeFactor(3);
+        InvertedIndex segmentedIndex = new InvertedIndex(documentRepository, documentIndexRepository, new CommittedReader(), applicationProperties, Runnable::run, new IndexGeneration());
+        addDocuments(segmentedIndex);
+        InvertedIndex expectedIndex = new InvertedIndex(documentRepository, documentIndexRepository, new CommittedReader(), new ApplicationProperties(), Runnable::run, new IndexGeneration());
+        addDocuments(expectedIndex);
+        changeDocuments(expectedIndex);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            changeDocuments(segmentedIndex);
+        } finally {
+            completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+        }
+
+        assertThat(segmentedIndex.getNumberOfDocuments()).isEqualTo(NR_OF_DOCUMENTS - 1);
+        assertSameScores(segmentedIndex, expectedIndex);
+    }
+
+    @Test
+    public void rollbackAfterClear_theDocumentsAreKept() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            invertedIndex.clear();
+            assertThat(invertedIndex.getNumberOfDocuments()).isEqualTo(0);
+        } finally {
+            completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+
+        assertThat(invertedIndex.getNumberOfDocuments()).isEqualTo(NR_OF_DOCUMENTS);
+        verify(documentIndexRepository, times(1)).findAllFrequencies();
+    }
+
+    static void completeTransaction(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization synchronization : synchronizations) {
+            synchronization.afterCompletion(status);
+        }
+    }
+
+    private static void addDocuments(InvertedIndex index) {
+        Random random = new Random(42);
+        for (long documentId = 1; documentId <= NR_OF_DOCUMENTS; documentId++) {
+            Map<Long, Long> indexFrequencies = new HashMap<>();
+            int nrOfIndices = 1 + random.nextInt(15);
+            for (int i = 0; i < nrOfIndices; i++) {
+                // Skewed index distribution, so the indices have different document frequencies
+                long indexId = 1 + (long) (NR_OF_INDICES * Math.pow(random.nextDouble(), 2));
+                indexFrequencies.merge(indexId, 1L + random.nextInt(3), Long::sum);
+            }
+            index.addDocument(documentId, indexFrequencies);
+        }
+    }
+
+    private static void changeDocuments(InvertedIndex index) {
+        index.addDocument(NR_OF_DOCUMENTS + 1, Collections.singletonMap(1L, 3L));
+        index.addDocument(3L, Collections.singletonMap(2L, 1L));
+        index.addDocument(3L, Collections.singletonMap(4L, 2L));
+        index.deleteDocument(4L);
+        index.deleteDocument(6L);
+    }
+
+    private static void assertSameScores(InvertedIndex actual, InvertedIndex expected) {
+        Random random = new Random(11);
+
+        for (int queryNr = 0; queryNr < 10; queryNr++) {
+            Map<Long, Long> queryFrequencies = new HashMap<>();
+            for (int i = 0; i < 1 + random.nextInt(6); i++) {
+                queryFrequencies.put(1L + random.nextInt(NR_OF_INDICES), 1L + random.nextInt(2));
+            }
+
+            for (SimiliarityMeasure measure : SimiliarityMeasure.values()) {
+                for (int limit : new int[]{10, Integer.MAX_VALUE}) {
+                    assertThat(scores(actual.search(queryFrequencies, measure, limit)))
+                        .as(measure + " top " + limit)
+                        .isEqualTo(scores(expected.search(queryFrequencies, measure, limit)));
+                }
+            }
+        }
+    }
+
+    private void setCheckpoint(long nrOfDocuments, long nrOfDocumentIndices, long maxDocumentIndexId) {
+        when(documentRepository.count()).thenReturn(nrOfDocuments);
+        when(documentIndexRepository.findCountAndMaxId())
+            .thenReturn(Collections.singletonList(new Object[]{nrOfDocumentIndices, maxDocumentIndexId}));
+    }
+
+    private static List<String> scores(List<ScoredDocument> documents) {
+        List<String> scores = new ArrayList<>();
+        for (ScoredDocument document : documents) {
+            scores.add(document.getDocumentId() + ":" + document.getScore());
+        }
+        return scores;
+    }
+
+    private static List<Long> ids(List<ScoredDocument> documents) {
+        List<Long> ids = new ArrayList<>();
+        for (ScoredDocument document : documents) {
+            ids.add(document.getDocumentId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,123 @@
+package hu.ppke.yeast.index;
+
+import hu.ppke.yeast.calculator.SparseVector;
+import hu.ppke.yeast.enumeration.SimiliarityMeasure;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static hu.ppke.yeast.calculator.ClassicalSimilarityCalculator.calculateSimilarity;
+import static hu.ppke.yeast.calculator.HyperbolicSimilarityCalculator.calculateEuclideanDistance;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class OffHeapWeightMatrixTest {
+
+    @Test
+    public void addDocuments_viewsGiveBackTheWeights() {
+        SparseVector first = new SparseVector(new long[]{1L, 3L, 7L}, new double[]{0.5, 1.5, 2.0});
+        SparseVector partial = SparseVector.of(weights(2L, 0.25), 10.0, 20.0);
+
+        OffHeapWeightMatrix weightMatrix = new OffHeapWeightMatrix.Builder(2)
+            .add(5L, first)
+            .add(8L, SparseVector.of(new HashMap<>()))
+            .add(12L, partial)
+            .build();
+
+        assertThat(weightMatrix.getNumberOfDocuments()).isEqualTo(3);
+        assertThat(weightMatrix.getNumberOfWeights()).isEqualTo(4);
+        assertThat(weightMatrix.getDocumentId(0)).isEqualTo(5L);
+        assertThat(weightMatrix.getDocumentId(2)).isEqualTo(12L);
+
+        OffHeapWeightMatrix.DocumentVector vector = weightMatrix.newVector();
+        assertThat(vector.size()).isEqualTo(3);
+        assertThat(vector.getIndexId(2)).isEqualTo(7L);
+        assertThat(vector.getWeight(2)).isEqualTo(2.0);
+        assertThat(vector.getNorm()).isEqualTo(first.getNorm());
+        assertThat(vector.getSum()).isEqualTo(4.0);
+        assertThat(vector.indexOf(3L, 0)).isEqualTo(1);
+        assertThat(vector.indexOf(4L, 0)).isEqualTo(-3);
+
+        assertThat(vector.moveTo(1).size()).isZero();
+        assertThat(vector.getNorm()).isZero();
+
+        vector.moveTo(2);
+        assertThat(vector.size()).isEqualTo(1);
+        assertThat(vector.getIndexId(0)).isEqualTo(2L);
+        assertThat(vector.getWeight(0)).isEqualTo(0.25);
+        assertThat(vector.getNorm()).isEqualTo(10.0);
+        assertThat(vector.getSum()).isEqualTo(20.0);
+    }
+
+    @Test
+    public void calculators_giveTheSameResultsAsForTheHeapVectors() {
+        SparseVector query = new SparseVector(new long[]{2L, 5L}, new double[]{0.3, 1.2});
+        Map<Long, Double> weights = new HashMap<>();
+        for (long indexId = 0; indexId < 100; indexId++) {
+            weights.put(indexId, indexId % 3 == 0 ? 0.0 : 1.0 / (indexId + 1));
+        }
+        SparseVector document = SparseVector.of(weights);
+
+        OffHeapWeightMatrix weightMatrix = new OffHeapWeightMatrix.Builder(16).add(1L, document).build();
+        OffHeapWeightMatrix.DocumentVector vector = weightMatrix.newVector();
+
+        for (SimiliarityMeasure measure : SimiliarityMeasure.values()) {
+            if (!SimiliarityMeasure.HYPERBOLIC.equals(measure)) {
+                assertThat(calculateSimilarity(query, vector, measure)).as(measure.toString())
+                    .isEqualTo(calculateSimilarity(query, document, measure));
+            }
+        }
+        assertThat(calculateEuclideanDistance(query, vector)).isEqualTo(calculateEuclideanDistance(query, document));
+    }
+
+    @Test
+    public void addDocumentsOutOfOrder_isRejected() {
+        OffHeapWeightMatrix.Builder builder = new OffHeapWeightMatrix.Builder().add(2L, SparseVector.of(weights(1L, 1.0)));
+
+        assertThatThrownBy(() -> builder.add(2L, SparseVector.of(weights(1L, 1.0))))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void manyWeights_theHeapOnlyHoldsTheBlocks() {
+        OffHeapWeightMatrix.Builder builder = new OffHeapWeightMatrix.Builder();
+        long[] indexIds = new long[1000];
+        double[] weights = new double[1000];
+        for (int i = 0; i < indexIds.length; i++) {
+            indexIds[i] = i;
+            weights[i] = i + 1;
+        }
+        SparseVector document = new SparseVector(indexIds, weights);
+        for (long documentId = 0; documentId < 200; documentId++) {
+            builder.add(documentId, document);
+        }
+
+        OffHeapWeightMatrix weightMatrix = builder.build();
+
+        assertThat(weightMatrix.getNumberOfWeights()).isEqualTo(200_000);
+        assertThat(weightMatrix.sizeInBytes()).isGreaterThanOrEqualTo(200_000L * 16);
+        OffHeapWeightMatrix.DocumentVector vector = weightMatrix.newVector().moveTo(199);
+        assertThat(vector.getIndexId(999)).isEqualTo(999L);
+        assertThat(vector.getWeight(999)).isEqualTo(1000.0);
+        assertThat(vector.indexOf(500L, 0)).isEqualTo(500);
+    }
+
+    @Test
+    public void indexOf_givesBackThePositionOfTheDocument() {
+        OffHeapWeightMatrix weightMatrix = new OffHeapWeightMatrix.Builder()
+            .add(3L, SparseVector.of(weights(1L, 1.0)))
+            .add(9L, SparseVector.of(weights(2L, 2.0)))
+            .build();
+
+        assertThat(weightMatrix.indexOf(9L)).isEqualTo(1);
+        assertThat(weightMatrix.indexOf(5L)).isEqualTo(-1);
+        assertThat(weightMatrix.newVector().moveTo(1).getWeight(0)).isEqualTo(2.0);
+    }
+
+    private static Map<Long, Double> weights(long indexId, double weight) {
+        Map<Long, Double> weights = new HashMap<>();
+        weights.put(indexId, weight);
+        return weights;
+    }
+}
@@ -0,0 +1,94 @@
+package hu.ppke.yeast.index;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PostingListTest {
+
+    @Test
+    public void addPostingsInOrder_iteratorGivesBackThem() {
+        PostingList postingList = new PostingList();
+        postingList.add(3L, 1L);
+        postingList.add(130L, 2L);
+        postingList.add(100000L, 300L);
+
+        assertThat(postingList.size()).isEqualTo(3);
+        assertThat(getPostings(postingList)).containsExactly(3L, 1L, 130L, 2L, 100000L, 300L);
+    }
+
+    @Test
+    public void addPostingsOutOfOrder_postingsAreSorted() {
+        PostingList postingList = new PostingList();
+        postingList.add(10L, 1L);
+        postingList.add(30L, 3L);
+        postingList.add(20L, 2L);
+        postingList.add(5L, 5L);
+        postingList.add(30L, 4L);
+
+        assertThat(postingList.size()).isEqualTo(4);
+        assertThat(getPostings(postingList)).containsExactly(5L, 5L, 10L, 1L, 20L, 2L, 30L, 4L);
+    }
+
+    @Test
+    public void removePosting_remainingPostingsAreOK() {
+        PostingList postingList = new PostingList();
+        postingList.add(1L, 1L);
+        postingList.add(2L, 2L);
+        postingList.add(3L, 3L);
+
+        assertThat(postingList.remove(2L)).isTrue();
+        assertThat(postingList.remove(4L)).isFalse();
+
+        assertThat(postingList.size()).isEqualTo(2);
+        assertThat(getPostings(postingList)).containsExactly(1L, 1L, 3L, 3L);
+
+        postingList.add(4L, 4L);
+        assertThat(getPostings(postingList)).containsExactly(1L, 1L, 3L, 3L, 4L, 4L);
+    }
+
+    @Test
+    public void smallDeltas_areEncodedInOneByte() {
+        PostingList postingList = new PostingList();
+        for (long i = 1; i <= 100; i++) {
+            postingList.add(i, 1L);
+        }
+
+        assertThat(postingList.sizeInBytes()).isEqualTo(200);
+    }
+
+    @Test
+    public void iteratorFromDocument_startsAtTheSkipBeforeTheDocument() {
+        PostingList postingList = new PostingList();
+        for (long i = 0; i < 1000; i++) {
+            postingList.add(3 * i, i % 5 + 1);
+        }
+
+        PostingIterator iterator = postingList.iterator(1500L);
+        assertThat(iterator.next()).isTrue();
+        assertThat(iterator.documentId()).isEqualTo(3L * 384);
+        assertThat(iterator.frequency()).isEqualTo(384L % 5 + 1);
+
+        iterator = postingList.iterator(10L);
+        assertThat(iterator.next()).isTrue();
+        assertThat(iterator.documentId()).isEqualTo(0L);
+
+        int remaining = 0;
+        for (iterator = postingList.iterator(5000L); iterator.next(); ) {
+            remaining++;
+        }
+        assertThat(remaining).isEqualTo(1000 - 7 * PostingList.SKIP_INTERVAL);
+    }
+
+    private List<Long> getPostings(PostingList postingList) {
+        List<Long> postings = new ArrayList<>();
+        for (PostingIterator iterator = postingList.iterator(); iterator.next(); ) {
+            postings.add(iterator.documentId());
+            postings.add(iterator.frequency());
+        }
+        return postings;
+    }
+}
@@ -0,0 +1,71 @@
+package hu.ppke.yeast.index;
+
+import hu.ppke.yeast.config.ApplicationProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ScoringPoolTest {
+
+    private ApplicationProperties applicationProperties;
+    private ScoringPool scoringPool;
+
+    @Before
+    public void setup() {
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getSearch().setMaxParallelism(4);
+        applicationProperties.getSearch().setMinDocumentsPerTask(100);
+        scoringPool = new ScoringPool(applicationProperties);
+    }
+
+    @After
+    public void shutdown() {
+        scoringPool.shutdown();
+    }
+
+    @Test
+    public void getNumberOfTasks_isCappedByTheSizeOfThePoolAndTheNumberOfDocuments() {
+        assertThat(scoringPool.getNumberOfTasks(2, 10_000)).isEqualTo(2);
+        assertThat(scoringPool.getNumberOfTasks(16, 10_000)).isEqualTo(4);
+        assertThat(scoringPool.getNumberOfTasks(4, 250)).isEqualTo(2);
+        assertThat(scoringPool.getNumberOfTasks(4, 50)).isEqualTo(1);
+        assertThat(scoringPool.getNumberOfTasks(4, 0)).isEqualTo(1);
+    }
+
+    @Test
+    public void getNumberOfTasksWithoutRequestedParallelism_usesTheDefault() {
+        assertThat(scoringPool.getNumberOfTasks(0, 10_000)).isEqualTo(4);
+
+        applicationProperties.getSearch().setParallelism(3);
+        assertThat(scoringPool.getNumberOfTasks(0, 10_000)).isEqualTo(3);
+    }
+
+    @Test
+    public void invokeAll_resultsAreInTheOrderOfTheTasks() {
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            int value = i;
+            tasks.add(() -> value * value);
+        }
+
+        assertThat(scoringPool.invokeAll(tasks)).isEqualTo(Arrays.asList(0, 1, 4, 9, 16, 25, 36, 49));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invokeAllWithFailingTask_throwsTheException() {
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        tasks.add(() -> 1);
+        tasks.add(() -> {
+            throw new IllegalArgumentException("Failing task");
+        });
+
+        scoringPool.invokeAll(tasks);
+    }
+}
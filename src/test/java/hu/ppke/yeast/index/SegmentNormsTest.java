@@ -0,0 +1,44 @@
+package hu.ppke.yeast.index;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class SegmentNormsTest {
+
+    @Test
+    public void statisticsChangeSlightly_theNormsAreKept() {
+        SegmentNorms segmentNorms = new SegmentNorms(createSegment());
+        Map<Long, Integer> documentFrequencies = new HashMap<>();
+        documentFrequencies.put(1L, 1);
+        documentFrequencies.put(2L, 2);
+
+        SegmentNorms.Norms norms = segmentNorms.get(documentFrequencies, 100);
+        // 2 * log10(100 / 1) and log10(100 / 2)
+        assertThat(norms.getNorm(0)).isCloseTo(Math.sqrt(16 + Math.pow(Math.log10(50), 2)), within(1e-12));
+        assertThat(norms.getSum(0)).isCloseTo(4 + Math.log10(50), within(1e-12));
+        assertThat(norms.getNorm(1)).isCloseTo(Math.log10(50), within(1e-12));
+        assertThat(norms.getDocumentsByNorm()).containsExactly(1, 0);
+
+        assertThat(segmentNorms.get(documentFrequencies, 110)).isSameAs(norms);
+        assertThat(segmentNorms.get(documentFrequencies, 111)).isNotSameAs(norms);
+    }
+
+    private static IndexSegment createSegment() {
+        Map<Long, Long> first = new HashMap<>();
+        first.put(1L, 2L);
+        first.put(2L, 1L);
+        SortedMap<Long, TermVector> documents = new TreeMap<>();
+        documents.put(10L, new TermVector(first));
+        documents.put(20L, new TermVector(Collections.singletonMap(2L, 1L)));
+
+        return new MemorySegment(documents);
+    }
+}
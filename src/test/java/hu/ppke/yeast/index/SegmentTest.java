@@ -0,0 +1,113 @@
+package hu.ppke.yeast.index;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.assertj.core.api.Assertions.within;
+
+public class SegmentTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void writeAndOpen_segmentGivesBackTheDocuments() throws IOException {
+        SortedMap<Long, TermVector> documents = new TreeMap<>();
+        documents.put(7L, termVector(1L, 2L, 300L, 1L));
+        documents.put(12L, termVector(1L, 1L, 5L, 4L));
+        documents.put(1000L, termVector());
+
+        Path path = temporaryFolder.getRoot().toPath().resolve("test.seg");
+        SegmentWriter.write(path, documents, new long[]{3L, 42L});
+        Segment segment = Segment.open(path);
+
+        assertThat(segment.getCommitData()).containsExactly(3L, 42L);
+        assertThat(segment.getNumberOfDocuments()).isEqualTo(3);
+        assertThat(segment.getDocumentId(0)).isEqualTo(7L);
+        assertThat(segment.getDocumentId(1)).isEqualTo(12L);
+        assertThat(segment.getDocumentId(2)).isEqualTo(1000L);
+
+        TermVector termVector = segment.getTermVector(1);
+        assertThat(termVector.size()).isEqualTo(2);
+        assertThat(termVector.getIndexId(1)).isEqualTo(5L);
+        assertThat(termVector.getFrequency(1)).isEqualTo(4L);
+        assertThat(segment.getTermVector(2).size()).isEqualTo(0);
+
+        assertThat(segment.getNumberOfIndices()).isEqualTo(3);
+        int position = segment.findIndex(1L);
+        assertThat(segment.getIndexId(position)).isEqualTo(1L);
+        assertThat(segment.getDocumentFrequency(position)).isEqualTo(2);
+        assertThat(segment.getMaxFrequency(position)).isEqualTo(2L);
+        assertThat(getPostings(segment.getPostings(position))).containsExactly(0L, 2L, 1L, 1L);
+        assertThat(getPostings(segment.getPostings(segment.findIndex(300L)))).containsExactly(0L, 1L);
+        assertThat(segment.findIndex(2L)).isEqualTo(-1);
+
+        // "1" is in two of the three documents, "300" and "5" are in one
+        double idf1 = Math.log10(3.0 / 2);
+        double idf300 = Math.log10(3.0);
+        assertThat(segment.getNorm(0)).isCloseTo(Math.sqrt(Math.pow(2 * idf1, 2) + Math.pow(idf300, 2)), within(1e-12));
+        assertThat(segment.getNorm(2)).isEqualTo(0.0);
+    }
+
+    @Test
+    public void postingsFromDocument_areTheSameAsInTheMemorySegment() throws IOException {
+        SortedMap<Long, TermVector> documents = new TreeMap<>();
+        for (long documentId = 1; documentId <= 1000; documentId++) {
+            documents.put(documentId, documentId % 3 == 0 ? termVector(1L, documentId % 4 + 1, 2L, 1L) : termVector(2L, 2L));
+        }
+
+        Path path = temporaryFolder.getRoot().toPath().resolve("test.seg");
+        SegmentWriter.write(path, documents, new long[0]);
+        Segment segment = Segment.open(path);
+        MemorySegment memorySegment = new MemorySegment(documents);
+
+        for (int fromLocalId : new int[]{0, 200, 383, 384, 385, 999, 1000}) {
+            for (long indexId : new long[]{1L, 2L}) {
+                assertThat(getPostings(segment.getPostings(segment.findIndex(indexId), fromLocalId)))
+                    .as(indexId + " from " + fromLocalId)
+                    .isEqualTo(getPostings(memorySegment.getPostings(memorySegment.findIndex(indexId), fromLocalId)));
+            }
+        }
+        List<Long> postings = getPostings(segment.getPostings(segment.findIndex(2L), 999));
+        assertThat(postings.size()).isLessThan(2 * 1000);
+        assertThat(postings.subList(postings.size() - 2, postings.size())).containsExactly(999L, 2L);
+    }
+
+    @Test
+    public void open_otherFilesAreRejected() throws IOException {
+        Path path = temporaryFolder.newFile("other.seg").toPath();
+        Files.write(path, "not a segment file".getBytes());
+
+        try {
+            Segment.open(path);
+            fail("The file should have been rejected");
+        } catch (IOException e) {
+            assertThat(e.getMessage()).isEqualTo("Not an index segment");
+        }
+    }
+
+    private static TermVector termVector(long... indexFrequencyPairs) {
+        Map<Long, Long> indexFrequencies = new HashMap<>();
+        for (int i = 0; i < indexFrequencyPairs.length; i += 2) {
+            indexFrequencies.put(indexFrequencyPairs[i], indexFrequencyPairs[i + 1]);
+        }
+        return new TermVector(indexFrequencies);
+    }
+
+    private static List<Long> getPostings(PostingIterator iterator) {
+        List<Long> postings = new ArrayList<>();
+        while (iterator.next()) {
+            postings.add(iterator.documentId());
+            postings.add(iterator.frequency());
+        }
+        return postings;
+    }
+}
@@ -0,0 +1,162 @@
+package hu.ppke.yeast.index;
+
+import com.codahale.metrics.MetricRegistry;
+import hu.ppke.yeast.repository.IndexRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class TermDictionaryTest {
+
+    private static final String HITS = "hu.ppke.yeast.index.TermDictionary.hits";
+    private static final String MISSES = "hu.ppke.yeast.index.TermDictionary.misses";
+    private static final String SIZE = "hu.ppke.yeast.index.TermDictionary.size";
+
+    private IndexRepository indexRepository;
+    private MetricRegistry metricRegistry;
+    private TermDictionary termDictionary;
+
+    @Before
+    public void setup() {
+        indexRepository = mock(IndexRepository.class);
+        when(indexRepository.findAllTerms()).thenReturn(Arrays.asList(
+            new Object[]{"fox", 1L, 2L},
+            new Object[]{"dog", 2L, 1L}));
+
+        metricRegistry = new MetricRegistry();
+        termDictionary = new TermDictionary(indexRepository, new CommittedReader(), metricRegistry);
+    }
+
+    @Test
+    public void get_indicesAreLoadedOnce() {
+        assertThat(termDictionary.get("fox").getId()).isEqualTo(1L);
+        assertThat(termDictionary.get("fox").getDocumentCount()).isEqualTo(2L);
+        assertThat(termDictionary.get("rabbit")).isNull();
+
+        verify(indexRepository, times(1)).findAllTerms();
+        assertThat(metricRegistry.meter(HITS).getCount()).isEqualTo(2);
+        assertThat(metricRegistry.meter(MISSES).getCount()).isEqualTo(1);
+        assertThat(metricRegistry.getGauges().get(SIZE).getValue()).isEqualTo(2);
+    }
+
+    @Test
+    public void putAndIncrement_documentCountsAreUpdated() {
+        termDictionary.put("rabbit", 3L, 1L);
+        termDictionary.incrementDocumentCount("dog", 2L);
+        termDictionary.incrementDocumentCount("missing", 1L);
+
+        assertThat(termDictionary.get("rabbit").getDocumentCount()).isEqualTo(1L);
+        assertThat(termDictionary.get("dog").getDocumentCount()).isEqualTo(3L);
+        assertThat(termDictionary.get("missing")).isNull();
+        assertThat(termDictionary.size()).isEqualTo(3);
+    }
+
+    @Test
+    public void putIfAbsentAndConcurrentIncrements_noIncrementIsLost() throws Exception {
+        termDictionary.putIfAbsent("fox", 1L, 0L);
+        termDictionary.putIfAbsent("rabbit", 3L, 0L);
+
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    termDictionary.incrementDocumentCount("fox", 1L);
+                    termDictionary.incrementDocumentCount("rabbit", 1L);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(termDictionary.get("fox").getDocumentCount()).isEqualTo(4002L);
+        assertThat(termDictionary.get("rabbit").getDocumentCount()).isEqualTo(4000L);
+    }
+
+    @Test
+    public void clear_allIndicesAreRemoved() {
+        termDictionary.clear();
+
+        assertThat(termDictionary.get("fox")).isNull();
+        assertThat(termDictionary.size()).isEqualTo(0);
+        verify(indexRepository, never()).findAllTerms();
+    }
+
+    @Test
+    public void rollback_theChangesAreOnlySeenByTheTransaction() throws Exception {
+        termDictionary.get("fox");
+        Long[] seenByConcurrentTransaction = new Long[1];
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            termDictionary.put("rabbit", 3L, 1L);
+            termDictionary.incrementDocumentCount("fox", 2L);
+            termDictionary.incrementDocumentCount("rabbit", 1L);
+            assertThat(termDictionary.get("fox").getDocumentCount()).isEqualTo(4L);
+            assertThat(termDictionary.get("rabbit").getDocumentCount()).isEqualTo(2L);
+
+            // A concurrent transaction does not see the changes, its own changes are kept
+            Thread concurrentTransaction = new Thread(() -> {
+                seenByConcurrentTransaction[0] = termDictionary.get("fox").getDocumentCount();
+                termDictionary.incrementDocumentCount("fox", 1L);
+                termDictionary.put("wolf", 4L, 1L);
+            });
+            concurrentTransaction.start();
+            concurrentTransaction.join();
+        } finally {
+            InvertedIndexTest.completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+
+        assertThat(seenByConcurrentTransaction[0]).isEqualTo(2L);
+        assertThat(termDictionary.get("fox").getDocumentCount()).isEqualTo(3L);
+        assertThat(termDictionary.get("rabbit")).isNull();
+        assertThat(termDictionary.get("wolf").getDocumentCount()).isEqualTo(1L);
+        verify(indexRepository, times(1)).findAllTerms();
+    }
+
+    @Test
+    public void commit_theIncrementsOfConcurrentTransactionsAreKept() throws Exception {
+        termDictionary.get("fox");
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            termDictionary.putIfAbsent("rabbit", 3L, 0L);
+            termDictionary.incrementDocumentCount("rabbit", 1L);
+            termDictionary.incrementDocumentCount("fox", 2L);
+
+            // A concurrent transaction adding the same index is committed first
+            Thread concurrentTransaction = new Thread(() -> {
+                termDictionary.putIfAbsent("rabbit", 3L, 0L);
+                termDictionary.incrementDocumentCount("rabbit", 1L);
+            });
+            concurrentTransaction.start();
+            concurrentTransaction.join();
+        } finally {
+            InvertedIndexTest.completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+        }
+
+        assertThat(termDictionary.get("fox").getDocumentCount()).isEqualTo(4L);
+        assertThat(termDictionary.get("rabbit").getDocumentCount()).isEqualTo(2L);
+    }
+
+    @Test
+    public void rollbackAfterClear_theIndicesAreKept() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            termDictionary.clear();
+            assertThat(termDictionary.get("fox")).isNull();
+        } finally {
+            InvertedIndexTest.completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+
+        assertThat(termDictionary.get("fox").getId()).isEqualTo(1L);
+        verify(indexRepository, times(1)).findAllTerms();
+    }
+}
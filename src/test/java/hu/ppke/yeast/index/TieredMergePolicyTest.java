@@ -0,0 +1,40 @@
+package hu.ppke.yeast.index;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TieredMergePolicyTest {
+
+    @Test
+    public void findMerges_segmentsOfTheSameTierAreMergedSmallestFirst() {
+        TieredMergePolicy mergePolicy = new TieredMergePolicy(3);
+
+        assertThat(mergePolicy.findMerges(Arrays.asList(2, 1, 20, 2, 1, 10, 12), Collections.nCopies(7, 0)))
+            .containsExactly(Arrays.asList(1, 4, 0), Arrays.asList(5, 6, 2));
+    }
+
+    @Test
+    public void findMerges_tiersWithFewSegmentsAreNotMerged() {
+        TieredMergePolicy mergePolicy = new TieredMergePolicy(3);
+
+        assertThat(mergePolicy.findMerges(Arrays.asList(1, 2, 5, 8, 30), Collections.nCopies(5, 0))).isEmpty();
+        assertThat(mergePolicy.findMerges(Collections.emptyList(), Collections.emptyList())).isEmpty();
+    }
+
+    @Test
+    public void findMerges_segmentsWithMostlyDeletedDocumentsAreRewrittenAlone() {
+        TieredMergePolicy mergePolicy = new TieredMergePolicy(3);
+
+        assertThat(mergePolicy.findMerges(Arrays.asList(1, 2, 5, 8, 0), Arrays.asList(0, 3, 5, 1, 4)))
+            .containsExactly(Collections.singletonList(1), Collections.singletonList(4));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createWithMergeFactorOne_throwsException() {
+        new TieredMergePolicy(1);
+    }
+}
@@ -0,0 +1,60 @@
+package hu.ppke.yeast.index;
+
+import hu.ppke.yeast.calculator.SparseVector;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WeightMatrixSnapshotTest {
+
+    @Test
+    public void withChanges_theChangedAndDeletedDocumentsAreReplaced() {
+        WeightMatrixSnapshot snapshot = new WeightMatrixSnapshot(new OffHeapWeightMatrix.Builder()
+            .add(1L, SparseVector.of(weights(1L, 1.0)))
+            .add(2L, SparseVector.of(weights(1L, 2.0)))
+            .add(3L, SparseVector.of(weights(1L, 3.0)))
+            .build(), false);
+
+        Map<Long, SparseVector> changes = new HashMap<>();
+        changes.put(2L, SparseVector.of(weights(1L, 20.0)));
+        changes.put(3L, null);
+        changes.put(4L, SparseVector.of(weights(1L, 4.0)));
+        WeightMatrixSnapshot changed = snapshot.withChanges(changes);
+
+        assertThat(changed.getNumberOfDocuments()).isEqualTo(3);
+        assertThat(changed.getNumberOfChanges()).isEqualTo(4);
+        assertThat(changed.size()).isEqualTo(5);
+        assertThat(liveWeights(changed)).containsOnly(1.0, 20.0, 4.0);
+
+        Map<Long, SparseVector> moreChanges = new HashMap<>();
+        moreChanges.put(4L, null);
+        WeightMatrixSnapshot changedAgain = changed.withChanges(moreChanges);
+
+        assertThat(changedAgain.getNumberOfDocuments()).isEqualTo(2);
+        assertThat(liveWeights(changedAgain)).containsOnly(1.0, 20.0);
+        assertThat(snapshot.getNumberOfDocuments()).isEqualTo(3);
+        assertThat(liveWeights(snapshot)).containsOnly(1.0, 2.0, 3.0);
+    }
+
+    private static List<Double> liveWeights(WeightMatrixSnapshot snapshot) {
+        List<Double> weights = new ArrayList<>();
+        WeightMatrixSnapshot.Cursor cursor = snapshot.newCursor();
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (snapshot.isLive(i)) {
+                weights.add(cursor.moveTo(i).getWeight(0));
+            }
+        }
+        return weights;
+    }
+
+    private static Map<Long, Double> weights(long indexId, double weight) {
+        Map<Long, Double> weights = new HashMap<>();
+        weights.put(indexId, weight);
+        return weights;
+    }
+}
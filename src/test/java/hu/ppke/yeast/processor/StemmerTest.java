@@ -0,0 +1,66 @@
+package hu.ppke.yeast.processor;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import hu.ppke.yeast.config.ApplicationProperties;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StemmerTest {
+
+    private static final String HITS = "hu.ppke.yeast.processor.Stemmer.cache.hits";
+    private static final String MISSES = "hu.ppke.yeast.processor.Stemmer.cache.misses";
+    private static final String HIT_RATIO = "hu.ppke.yeast.processor.Stemmer.cache.hit-ratio";
+
+    @Test
+    public void stem_repeatedWordsAreServedFromTheCache() {
+        MetricRegistry metricRegistry = new MetricRegistry();
+        Stemmer stemmer = new Stemmer(new ApplicationProperties(), metricRegistry);
+
+        assertThat(stemmer.stem("jumped")).isEqualTo("jump");
+        assertThat(stemmer.stem("foxes")).isEqualTo("fox");
+        assertThat(stemmer.stem("jumped")).isEqualTo("jump");
+        assertThat(stemmer.stem("jumped")).isEqualTo("jump");
+
+        assertThat(metricRegistry.meter(HITS).getCount()).isEqualTo(2);
+        assertThat(metricRegistry.meter(MISSES).getCount()).isEqualTo(2);
+        assertThat(metricRegistry.getGauges().get(HIT_RATIO).getValue()).isEqualTo(0.5);
+    }
+
+    @Test
+    public void stem_cacheIsBounded_frequentWordsSurvive() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getStemming().setCacheSize(2);
+        MetricRegistry metricRegistry = new MetricRegistry();
+        Stemmer stemmer = new Stemmer(applicationProperties, metricRegistry);
+
+        stemmer.stem("jumped");
+        stemmer.stem("foxes");
+        stemmer.stem("rabbits");
+        stemmer.stem("jumped");
+        stemmer.stem("dogs");
+        stemmer.stem("eating");
+        assertThat(stemmer.stem("jumped")).isEqualTo("jump");
+        assertThat(metricRegistry.meter(HITS).getCount()).isEqualTo(2);
+
+        // "foxes" was dropped together with its generation
+        assertThat(stemmer.stem("foxes")).isEqualTo("fox");
+        assertThat(metricRegistry.meter(MISSES).getCount()).isEqualTo(6);
+    }
+
+    @Test
+    public void stem_withoutCache_everyWordIsStemmed() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getStemming().setCacheSize(0);
+        MetricRegistry metricRegistry = new MetricRegistry();
+        Stemmer stemmer = new Stemmer(applicationProperties, metricRegistry);
+
+        assertThat(stemmer.stem("lazy")).isEqualTo("lazi");
+        assertThat(stemmer.stem("lazy")).isEqualTo("lazi");
+
+        assertThat(metricRegistry.meter(MISSES).getCount()).isEqualTo(2);
+        Gauge hitRatio = metricRegistry.getGauges().get(HIT_RATIO);
+        assertThat(hitRatio.getValue()).isEqualTo(0.0);
+    }
+}
@@ -0,0 +1,47 @@
+package hu.ppke.yeast.processor;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TokenizerTest {
+
+    @Test
+    public void tokenize_nonLettersAreDroppedAndLettersAreLowercased() {
+        List<String> words = tokenize("The quick 8brown {fox} jumped over the lazy dog,999 then");
+
+        assertThat(words).containsExactly("the", "quick", "brown", "fox", "jumped", "over", "the", "lazy", "dog", "then");
+    }
+
+    @Test
+    public void tokenize_wordsAreSeparatedByAnyWhitespace() {
+        List<String> words = tokenize("  Foxes\tare\r\nred \u000B\fand-white dogs  ");
+
+        assertThat(words).containsExactly("foxes", "are", "red", "andwhite", "dogs");
+    }
+
+    @Test
+    public void tokenize_wordsWithoutLettersAreSkipped() {
+        assertThat(tokenize("42 , -- 1984")).isEmpty();
+        assertThat(tokenize("")).isEmpty();
+    }
+
+    @Test
+    public void tokenize_longWordsAreKept() {
+        StringBuilder longWord = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            longWord.append((char) ('a' + i % 26));
+        }
+
+        assertThat(tokenize("short " + longWord.toString().toUpperCase())).containsExactly("short", longWord.toString());
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        Tokenizer.tokenize(text, words::add);
+        return words;
+    }
+}
@@ -0,0 +1,64 @@
+package hu.ppke.yeast.repository;
+
+import hu.ppke.yeast.YeastApp;
+import hu.ppke.yeast.domain.Index;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the IndexBatchRepository
+ *
+ * @see IndexBatchRepository
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = YeastApp.class)
+@Transactional
+public class IndexBatchRepositoryIntTest {
+
+    @Autowired
+    IndexBatchRepository indexBatchRepository;
+
+    @Autowired
+    IndexRepository indexRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    @Transactional
+    public void insertDuplicateIndexName_isRejected() {
+        jdbcTemplate.update("insert into jhi_index (name, document_count) values ('fox', 1)");
+
+        assertThatThrownBy(() -> jdbcTemplate.update("insert into jhi_index (name, document_count) values ('fox', 1)"))
+            .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    @Transactional
+    public void insertIndicesAlreadyInsertedConcurrently_existingIndicesAreSkipped() {
+        indexRepository.saveAndFlush(new Index().setName("fox").setDocumentCount(3L));
+
+        indexBatchRepository.insertIndices(Arrays.asList("dog", "fox", "wolf"));
+
+        List<Index> indices = indexRepository.findLockedByNameIn(Arrays.asList("dog", "fox", "wolf"));
+        assertThat(indices.stream().map(Index::getName).collect(Collectors.toList()))
+            .containsExactlyInAnyOrder("dog", "fox", "wolf");
+        assertThat(indices.stream().filter(index -> index.getName().equals("fox")).findAny().get().getDocumentCount())
+            .isEqualTo(3L);
+        assertThat(indices.stream().filter(index -> index.getName().equals("dog")).findAny().get().getDocumentCount())
+            .isEqualTo(0L);
+    }
+}
@@ -0,0 +1,133 @@
+package hu.ppke.yeast.service;
+
+import com.codahale.metrics.MetricRegistry;
+import hu.ppke.yeast.config.ApplicationProperties;
+import hu.ppke.yeast.enumeration.SearchEngine;
+import hu.ppke.yeast.index.IndexGeneration;
+import hu.ppke.yeast.service.dto.DocumentSearchResultDTO;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static hu.ppke.yeast.enumeration.SimiliarityMeasure.COSINE;
+import static hu.ppke.yeast.enumeration.SimiliarityMeasure.DICE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SearchResultCacheTest {
+
+    private static final String HITS = "hu.ppke.yeast.service.SearchResultCache.hits";
+    private static final String MISSES = "hu.ppke.yeast.service.SearchResultCache.misses";
+    private static final String HIT_RATIO = "hu.ppke.yeast.service.SearchResultCache.hit-ratio";
+    private static final String VIEW = "results";
+
+    private IndexGeneration indexGeneration;
+    private ApplicationProperties applicationProperties;
+    private MetricRegistry metricRegistry;
+    private SearchResultCache searchResultCache;
+    private AtomicInteger nrOfSearches;
+
+    @Before
+    public void setup() {
+        indexGeneration = new IndexGeneration();
+        applicationProperties = new ApplicationProperties();
+        metricRegistry = new MetricRegistry();
+        searchResultCache = new SearchResultCache(new ConcurrentMapCacheManager(), indexGeneration, applicationProperties, metricRegistry);
+        nrOfSearches = new AtomicInteger();
+    }
+
+    @Test
+    public void getWithTheSameTerms_resultsAreCached() {
+        Map<String, Long> terms = new HashMap<>();
+        terms.put("fox", 2L);
+        terms.put("rabbit", 1L);
+        Map<String, Long> sameTermsInOtherOrder = new LinkedHashMap<>();
+        sameTermsInOtherOrder.put("rabbit", 1L);
+        sameTermsInOtherOrder.put("fox", 2L);
+
+        List<DocumentSearchResultDTO> results = get(terms);
+        assertThat(get(sameTermsInOtherOrder)).isEqualTo(results);
+
+        assertThat(nrOfSearches.get()).isEqualTo(1);
+        assertThat(metricRegistry.meter(HITS).getCount()).isEqualTo(1);
+        assertThat(metricRegistry.meter(MISSES).getCount()).isEqualTo(1);
+        assertThat(metricRegistry.getGauges().get(HIT_RATIO).getValue()).isEqualTo(0.5);
+    }
+
+    @Test
+    public void getWithOtherTermsOrSettings_resultsAreNotShared() {
+        Map<String, Long> terms = Collections.singletonMap("fox", 1L);
+
+        get(terms);
+        get(Collections.singletonMap("fox", 2L));
+        searchResultCache.get(terms, DICE, 10, VIEW, this::search);
+        searchResultCache.get(terms, COSINE, 5, VIEW, this::search);
+        searchResultCache.get(terms, COSINE, 10, "other view", this::search);
+        applicationProperties.getSearch().setEngine(SearchEngine.WEIGHT_MATRIX);
+        get(terms);
+
+        assertThat(nrOfSearches.get()).isEqualTo(6);
+    }
+
+    @Test
+    public void getAfterTheIndexChanged_resultsAreCalculatedAgain() {
+        Map<String, Long> terms = Collections.singletonMap("fox", 1L);
+
+        get(terms);
+        indexGeneration.increment();
+        get(terms);
+        get(terms);
+
+        assertThat(nrOfSearches.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void getInATransactionWhichChangedTheIndex_cacheIsBypassed() {
+        Map<String, Long> terms = Collections.singletonMap("fox", 1L);
+        get(terms);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            indexGeneration.increment();
+            get(terms);
+            get(terms);
+
+            assertThat(nrOfSearches.get()).isEqualTo(3);
+            assertThat(metricRegistry.meter(HITS).getCount()).isEqualTo(0);
+            assertThat(metricRegistry.meter(MISSES).getCount()).isEqualTo(1);
+        } finally {
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            TransactionSynchronizationManager.clearSynchronization();
+            synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        }
+
+        get(terms);
+        get(terms);
+
+        assertThat(nrOfSearches.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void getWithDisabledCache_resultsAreNotCached() {
+        applicationProperties.getSearch().setCacheSize(0);
+        Map<String, Long> terms = Collections.singletonMap("fox", 1L);
+
+        get(terms);
+        get(terms);
+
+        assertThat(nrOfSearches.get()).isEqualTo(2);
+    }
+
+    private List<DocumentSearchResultDTO> get(Map<String, Long> terms) {
+        return searchResultCache.get(terms, COSINE, 10, VIEW, this::search);
+    }
+
+    private List<DocumentSearchResultDTO> search() {
+        nrOfSearches.incrementAndGet();
+        return new ArrayList<>();
+    }
+}
@@ -1,18 +1,25 @@
 package hu.ppke.yeast.web.rest;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import hu.ppke.yeast.YeastApp;
+import hu.ppke.yeast.config.ApplicationProperties;
 import hu.ppke.yeast.domain.Document;
 import hu.ppke.yeast.domain.DocumentIndex;
 import hu.ppke.yeast.domain.DocumentIndexWeight;
 import hu.ppke.yeast.domain.Index;
+import hu.ppke.yeast.enumeration.SearchEngine;
+import hu.ppke.yeast.enumeration.SimiliarityMeasure;
 import hu.ppke.yeast.repository.DocumentIndexRepository;
 import hu.ppke.yeast.repository.DocumentIndexWeightRepository;
 import hu.ppke.yeast.repository.DocumentRepository;
 import hu.ppke.yeast.repository.IndexRepository;
 import hu.ppke.yeast.service.DocumentService;
 import hu.ppke.yeast.service.dto.DocumentDTO;
+import hu.ppke.yeast.service.dto.DocumentSearchResultDTO;
 import hu.ppke.yeast.service.mapper.DocumentMapper;
 import hu.ppke.yeast.web.rest.errors.ExceptionTranslator;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -25,7 +32,9 @@ import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -38,6 +47,7 @@ import java.util.stream.Collectors;
 import static hu.ppke.yeast.web.rest.TestUtil.createFormattingConversionService;
 import static hu.ppke.yeast.web.rest.util.RoundUtil.roundDouble;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
 import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasSize;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -83,8 +93,9 @@ public class DocumentResourceIntTest {
     private static final String WHITE = "white";
     private static final List<String> INDICES_FOR_CONTENT1 = Arrays.asList(QUICK, BROWN, FOX, JUMP, LAZI, DOG, EAT, RABBIT, OVER);
 
-    private static final List<Double> expectedWeightsForDoc1 = Arrays.asList(0.30103, 0.30103, 0.30103, 0.30103, 0.30103, 0.30103, 0.0, 0.0, 0.30103, 0.0, 0.0);
-    private static final List<Double> expectedWeightsForDoc2 = Arrays.asList(0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.30103, 0.30103);
+    // Only the non-zero weights are persisted, "fox" and "dog" are in both documents so their weights are zero
+    private static final List<Double> expectedWeightsForDoc1 = Arrays.asList(0.30103, 0.30103, 0.30103, 0.30103, 0.30103, 0.30103, 0.30103);
+    private static final List<Double> expectedWeightsForDoc2 = Arrays.asList(0.30103, 0.30103);
 
     @Autowired
     private DocumentRepository documentRepository;
@@ -104,6 +115,9 @@ public class DocumentResourceIntTest {
     @Autowired
     private DocumentService documentService;
 
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
     @Autowired
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -123,7 +137,7 @@ public class DocumentResourceIntTest {
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        final DocumentResource documentResource = new DocumentResource(documentService);
+        final DocumentResource documentResource = new DocumentResource(documentService, jacksonMessageConverter.getObjectMapper());
         this.restDocumentMockMvc = MockMvcBuilders.standaloneSetup(documentResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
             .setControllerAdvice(exceptionTranslator)
@@ -188,55 +202,141 @@ public class DocumentResourceIntTest {
     @Test
     @Transactional
     public void createDocuments_persistedIndicesAreOK() throws Exception {
+        // The weight matrix is only persisted when the weights are not incremental
+        applicationProperties.getWeights().setIncremental(false);
+        try {
+            // Create the Documents
+            DocumentDTO responseDocumentDTO1 = doPostRequestAndValidateResponse(new Document()
+                .setCreation_date(DEFAULT_CREATION_DATE)
+                .setContent(CONTENT1), HttpStatus.CREATED);
+
+            DocumentDTO responseDocumentDTO2 = doPostRequestAndValidateResponse(new Document()
+                .setCreation_date(DEFAULT_CREATION_DATE)
+                .setContent(CONTENT2), HttpStatus.CREATED);
+
+            // Validate the Document in the database
+            Document persistedDocument1 = documentRepository.getOne(responseDocumentDTO1.getId());
+            Document persistedDocument2 = documentRepository.getOne(responseDocumentDTO2.getId());
+
+            // Validate document indices for Document1
+            Set<DocumentIndex> documentIndices = persistedDocument1.getDocumentIndices();
+            assertThat(documentIndices).hasSize(9);
+            validateDocumentIndices(documentIndices, INDICES_FOR_CONTENT1);
+
+            validateDocumentIndexForIndex(documentIndices, DOG, 2L);
+            validateDocumentIndexForIndex(documentIndices, FOX, 2L);
+
+            // Validate document indices for Document2
+            documentIndices = persistedDocument2.getDocumentIndices();
+            assertThat(documentIndices).hasSize(4);
+            validateDocumentIndices(documentIndices, Arrays.asList(FOX, RED, DOG, WHITE));
+
+            validateDocumentIndexForIndex(documentIndices, DOG, 1L);
+            validateDocumentIndexForIndex(documentIndices, FOX, 1L);
+
+            // Validate all persisted indices
+            List<Index> allIndices = indexRepository.findAll();
+
+            Map<String, Long> indexNameToTotalCount = new HashMap<>();
+            indexNameToTotalCount.put(QUICK, 1L);
+            indexNameToTotalCount.put(BROWN, 1L);
+            indexNameToTotalCount.put(FOX, 2L);
+            indexNameToTotalCount.put(JUMP, 1L);
+            indexNameToTotalCount.put(OVER, 1L);
+            indexNameToTotalCount.put(LAZI, 1L);
+            indexNameToTotalCount.put(DOG, 2L);
+            indexNameToTotalCount.put(EAT, 1L);
+            indexNameToTotalCount.put(RABBIT, 1L);
+            indexNameToTotalCount.put(RED, 1L);
+            indexNameToTotalCount.put(WHITE, 1L);
+
+            validateAllIndices(allIndices, indexNameToTotalCount, 11);
+
+            validateWeightMatrix(responseDocumentDTO1, responseDocumentDTO2);
+        } finally {
+            applicationProperties.getWeights().setIncremental(true);
+        }
+    }
 
-        // Create the Documents
-        DocumentDTO responseDocumentDTO1 = doPostRequestAndValidateResponse(new Document()
-            .setCreation_date(DEFAULT_CREATION_DATE)
-            .setContent(CONTENT1), HttpStatus.CREATED);
-
-        DocumentDTO responseDocumentDTO2 = doPostRequestAndValidateResponse(new Document()
-            .setCreation_date(DEFAULT_CREATION_DATE)
-            .setContent(CONTENT2), HttpStatus.CREATED);
-
-        // Validate the Document in the database
-        Document persistedDocument1 = documentRepository.getOne(responseDocumentDTO1.getId());
-        Document persistedDocument2 = documentRepository.getOne(responseDocumentDTO2.getId());
-
-        // Validate document indices for Document1
-        Set<DocumentIndex> documentIndices = persistedDocument1.getDocumentIndices();
-        assertThat(documentIndices).hasSize(9);
-        validateDocumentIndices(documentIndices, INDICES_FOR_CONTENT1);
-
-        validateDocumentIndexForIndex(documentIndices, DOG, 2L);
-        validateDocumentIndexForIndex(documentIndices, FOX, 2L);
-
-        // Validate document indices for Document2
-        documentIndices = persistedDocument2.getDocumentIndices();
-        assertThat(documentIndices).hasSize(4);
-        validateDocumentIndices(documentIndices, Arrays.asList(FOX, RED, DOG, WHITE));
-
-        validateDocumentIndexForIndex(documentIndices, DOG, 1L);
-        validateDocumentIndexForIndex(documentIndices, FOX, 1L);
+    @Test
+    @Transactional
+    public void createDocumentsInBulk_persistedIndicesAreOK() throws Exception {
+        // The weight matrix is only persisted when the weights are not incremental
+        applicationProperties.getWeights().setIncremental(false);
+        try {
+            // Create the Documents with a single request
+            List<DocumentDTO> responseDocumentDTOs = doBulkPostRequestAndValidateResponse(Arrays.asList(
+                new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT1),
+                new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT2)), HttpStatus.CREATED);
+            assertThat(responseDocumentDTOs).hasSize(2);
+
+            em.clear();
+
+            // Validate document indices for Document1
+            Document persistedDocument1 = documentRepository.getOne(responseDocumentDTOs.get(0).getId());
+            Set<DocumentIndex> documentIndices = persistedDocument1.getDocumentIndices();
+            validateDocumentIndices(documentIndices, INDICES_FOR_CONTENT1);
+            validateDocumentIndexForIndex(documentIndices, DOG, 2L);
+            validateDocumentIndexForIndex(documentIndices, FOX, 2L);
+
+            // Validate document indices for Document2
+            Document persistedDocument2 = documentRepository.getOne(responseDocumentDTOs.get(1).getId());
+            documentIndices = persistedDocument2.getDocumentIndices();
+            validateDocumentIndices(documentIndices, Arrays.asList(FOX, RED, DOG, WHITE));
+            validateDocumentIndexForIndex(documentIndices, DOG, 1L);
+            validateDocumentIndexForIndex(documentIndices, FOX, 1L);
+
+            // Validate all persisted indices
+            Map<String, Long> indexNameToTotalCount = new HashMap<>();
+            indexNameToTotalCount.put(QUICK, 1L);
+            indexNameToTotalCount.put(BROWN, 1L);
+            indexNameToTotalCount.put(FOX, 2L);
+            indexNameToTotalCount.put(JUMP, 1L);
+            indexNameToTotalCount.put(OVER, 1L);
+            indexNameToTotalCount.put(LAZI, 1L);
+            indexNameToTotalCount.put(DOG, 2L);
+            indexNameToTotalCount.put(EAT, 1L);
+            indexNameToTotalCount.put(RABBIT, 1L);
+            indexNameToTotalCount.put(RED, 1L);
+            indexNameToTotalCount.put(WHITE, 1L);
+
+            validateAllIndices(indexRepository.findAll(), indexNameToTotalCount, 11);
+
+            validateWeightMatrix(responseDocumentDTOs.get(0), responseDocumentDTOs.get(1));
+        } finally {
+            applicationProperties.getWeights().setIncremental(true);
+        }
+    }
 
-        // Validate all persisted indices
-        List<Index> allIndices = indexRepository.findAll();
+    @Test
+    @Transactional
+    public void createDocumentsInBulk_resultsAreSearchable() throws Exception {
+        doBulkPostRequestAndValidateResponse(Arrays.asList(
+            new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT1).setEvaluationId(EVALUATION_ID_1),
+            new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT2).setEvaluationId(EVALUATION_ID_2),
+            new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT3).setEvaluationId(EVALUATION_ID_3)),
+            HttpStatus.CREATED);
+
+        ResultActions response = doSearchAndValidateResponse(QUERY2, 0, HttpStatus.OK);
+        response.andExpect(jsonPath("$.*    ", hasSize(2)));
+        response.andExpect(jsonPath("$.[0].content").value(CONTENT3));
+        response.andExpect(jsonPath("$.[0].similarityMeasure").value("0.7293023054525128"));
+        response.andExpect(jsonPath("$.[1].content").value(CONTENT2));
+        response.andExpect(jsonPath("$.[1].similarityMeasure").value("0.10766844446756353"));
+    }
 
-        Map<String, Long> indexNameToTotalCount = new HashMap<>();
-        indexNameToTotalCount.put(QUICK, 1L);
-        indexNameToTotalCount.put(BROWN, 1L);
-        indexNameToTotalCount.put(FOX, 2L);
-        indexNameToTotalCount.put(JUMP, 1L);
-        indexNameToTotalCount.put(OVER, 1L);
-        indexNameToTotalCount.put(LAZI, 1L);
-        indexNameToTotalCount.put(DOG, 2L);
-        indexNameToTotalCount.put(EAT, 1L);
-        indexNameToTotalCount.put(RABBIT, 1L);
-        indexNameToTotalCount.put(RED, 1L);
-        indexNameToTotalCount.put(WHITE, 1L);
+    @Test
+    @Transactional
+    public void createDocumentsInBulkWithExistingId() throws Exception {
+        int databaseSizeBeforeCreate = documentRepository.findAll().size();
 
-        validateAllIndices(allIndices, indexNameToTotalCount, 11);
+        // An entity with an existing ID cannot be created, so the whole bulk must be rejected
+        document.setId(1L);
+        doBulkPostRequestAndValidateResponse(Arrays.asList(
+            new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT1), document),
+            HttpStatus.BAD_REQUEST);
 
-        validateWeightMatrix(responseDocumentDTO1, responseDocumentDTO2, allIndices.size());
+        assertThat(documentRepository.findAll()).hasSize(databaseSizeBeforeCreate);
     }
 
     private void validateDocumentIndices(Set<DocumentIndex> documentIndices, List<String> expectedIndices) {
@@ -264,14 +364,14 @@ public class DocumentResourceIntTest {
         }
     }
 
-    private void validateWeightMatrix(DocumentDTO documentDTO1, DocumentDTO documentDTO2, int nrOfAllIndices) {
+    private void validateWeightMatrix(DocumentDTO documentDTO1, DocumentDTO documentDTO2) {
         List<Double> weightsForDoc1 = getWeightsForDoc(documentDTO1);
         assertThat(weightsForDoc1).isEqualTo(expectedWeightsForDoc1);
-        assertThat(weightsForDoc1).hasSize(nrOfAllIndices);
 
         List<Double> weightsForDoc2 = getWeightsForDoc(documentDTO2);
         assertThat(weightsForDoc2).isEqualTo(expectedWeightsForDoc2);
-        assertThat(weightsForDoc2).hasSize(nrOfAllIndices);
+
+        assertThat(documentIndexWeightRepository.findAll()).hasSize(expectedWeightsForDoc1.size() + expectedWeightsForDoc2.size());
     }
 
     private List<Double> getWeightsForDoc(DocumentDTO documentDTO) {
@@ -332,6 +432,348 @@ public class DocumentResourceIntTest {
         response.andExpect(jsonPath("$.*    ", hasSize(0)));
     }
 
+    @Test
+    @Transactional
+    public void createDocuments_weightStatisticsArePersisted() throws Exception {
+        // The weight statistics are only persisted when the weights are not incremental
+        applicationProperties.getWeights().setIncremental(false);
+        try {
+            doBulkPostRequestAndValidateResponse(Arrays.asList(
+                new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT1).setEvaluationId(EVALUATION_ID_1),
+                new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT2).setEvaluationId(EVALUATION_ID_2),
+                new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT3).setEvaluationId(EVALUATION_ID_3)),
+                HttpStatus.CREATED);
+            em.flush();
+            em.clear();
+
+            for (Document document : documentRepository.findAll()) {
+                double squares = 0;
+                double sum = 0;
+                for (DocumentIndexWeight weight : documentIndexWeightRepository.findByDocumentIdOrderByIndexIdAsc(document.getId())) {
+                    squares += weight.getWeight() * weight.getWeight();
+                    sum += weight.getWeight();
+                }
+
+                assertThat(document.getWeightNorm()).isCloseTo(Math.sqrt(squares), within(1e-12));
+                assertThat(document.getWeightSum()).isCloseTo(sum, within(1e-12));
+            }
+
+            // The classical measures of the weight matrix engine use the statistics instead of the whole weight vectors
+            for (int measure = 0; measure < SimiliarityMeasure.values().length; measure++) {
+                List<String> expected = searchScores(QUERY1, measure);
+                applicationProperties.getSearch().setEngine(SearchEngine.WEIGHT_MATRIX);
+                try {
+                    assertThat(searchScores(QUERY1, measure)).as("measure " + measure).isEqualTo(expected);
+                } finally {
+                    applicationProperties.getSearch().setEngine(SearchEngine.INVERTED_INDEX);
+                }
+            }
+        } finally {
+            applicationProperties.getWeights().setIncremental(true);
+        }
+    }
+
+    @Test
+    @Transactional
+    public void searchDocuments_withTheWeightMatrix_numberOfQueriesDoesNotGrowWithTheDocuments() throws Exception {
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        List<Document> documents = Arrays.asList(
+            new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT1),
+            new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT2),
+            new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT3));
+
+        applicationProperties.getSearch().setEngine(SearchEngine.WEIGHT_MATRIX);
+        try {
+            doBulkPostRequestAndValidateResponse(documents, HttpStatus.CREATED);
+            em.flush();
+            em.clear();
+            long statementsWithFewDocuments = countStatements(statistics, QUERY1, SimiliarityMeasure.HYPERBOLIC.ordinal());
+
+            doBulkPostRequestAndValidateResponse(documents, HttpStatus.CREATED);
+            em.flush();
+            em.clear();
+            long statementsWithMoreDocuments = countStatements(statistics, QUERY1, SimiliarityMeasure.HYPERBOLIC.ordinal());
+
+            // The weights of all documents are read together instead of through the lazy collections of the documents
+            assertThat(statementsWithMoreDocuments).isEqualTo(statementsWithFewDocuments);
+        } finally {
+            applicationProperties.getSearch().setEngine(SearchEngine.INVERTED_INDEX);
+        }
+    }
+
+    @Test
+    @Transactional
+    public void searchDocuments_withSparseHyperbolicScoring_resultsAreCloseToTheExactOnes() throws Exception {
+        doBulkPostRequestAndValidateResponse(Arrays.asList(
+            new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT1).setEvaluationId(EVALUATION_ID_1),
+            new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT2).setEvaluationId(EVALUATION_ID_2),
+            new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT3).setEvaluationId(EVALUATION_ID_3)),
+            HttpStatus.CREATED);
+        em.flush();
+        em.clear();
+
+        // SPARSE is the default hyperbolic scoring
+        try {
+            for (SearchEngine engine : SearchEngine.values()) {
+                applicationProperties.getSearch().setEngine(engine);
+
+                List<DocumentSearchResultDTO> searchResults = documentService.search(QUERY1, 1);
+                assertThat(searchResults).as(engine.toString()).hasSize(3);
+                assertThat(searchResults.get(0).getContent()).isEqualTo(CONTENT2);
+                assertThat(searchResults.get(0).getSimilarityMeasure()).isCloseTo(0.362175862184315, within(1e-12));
+                assertThat(searchResults.get(1).getContent()).isEqualTo(CONTENT3);
+                assertThat(searchResults.get(1).getSimilarityMeasure()).isCloseTo(0.3147792214690062, within(1e-12));
+                assertThat(searchResults.get(2).getContent()).isEqualTo(CONTENT1);
+                assertThat(searchResults.get(2).getSimilarityMeasure()).isCloseTo(0.24619088333668257, within(1e-12));
+            }
+        } finally {
+            applicationProperties.getSearch().setEngine(SearchEngine.INVERTED_INDEX);
+        }
+    }
+
+    @Test
+    @Transactional
+    public void searchDocuments_withIncrementalWeights_resultsAreOK() throws Exception {
+        // The weights are incremental by default
+        try {
+            // Create the documents
+            doPostRequestAndValidateResponse(new Document()
+                .setCreation_date(DEFAULT_CREATION_DATE)
+                .setContent(CONTENT1), HttpStatus.CREATED);
+
+            doPostRequestAndValidateResponse(new Document()
+                .setCreation_date(DEFAULT_CREATION_DATE)
+                .setContent(CONTENT2), HttpStatus.CREATED);
+
+            doPostRequestAndValidateResponse(new Document()
+                .setCreation_date(DEFAULT_CREATION_DATE)
+                .setContent(CONTENT3), HttpStatus.CREATED);
+
+            // The weight matrix is not maintained
+            assertThat(documentIndexWeightRepository.findAll()).isEmpty();
+
+            // Validate, both search engines calculate the weights at query time
+            for (SearchEngine engine : SearchEngine.values()) {
+                applicationProperties.getSearch().setEngine(engine);
+
+                ResultActions response = doSearchAndValidateResponse(QUERY1, 0, HttpStatus.OK);
+                response.andExpect(jsonPath("$.*    ", hasSize(2)));
+                response.andExpect(jsonPath("$.[0].content").value(CONTENT1));
+                response.andExpect(jsonPath("$.[0].similarityMeasure").value("0.5466396719850004"));
+                response.andExpect(jsonPath("$.[1].content").value(CONTENT2));
+                response.andExpect(jsonPath("$.[1].similarityMeasure").value("0.07852284477467994"));
+            }
+        } finally {
+            applicationProperties.getSearch().setEngine(SearchEngine.INVERTED_INDEX);
+        }
+    }
+
+    @Test
+    @Transactional
+    public void searchDocuments_inParallel_resultsAreOK() throws Exception {
+        applicationProperties.getSearch().setMinDocumentsPerTask(1);
+        try {
+            doBulkPostRequestAndValidateResponse(Arrays.asList(
+                new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT1).setEvaluationId(EVALUATION_ID_1),
+                new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT2).setEvaluationId(EVALUATION_ID_2),
+                new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT3).setEvaluationId(EVALUATION_ID_3)),
+                HttpStatus.CREATED);
+
+            for (SearchEngine engine : SearchEngine.values()) {
+                applicationProperties.getSearch().setEngine(engine);
+
+                ResultActions response = restDocumentMockMvc.perform(get("/api/documents/search")
+                    .param("query", QUERY1)
+                    .param("measure", "0")
+                    .param("parallelism", "3"))
+                    .andExpect(status().isOk());
+                response.andExpect(jsonPath("$.*    ", hasSize(2)));
+                response.andExpect(jsonPath("$.[0].content").value(CONTENT1));
+                response.andExpect(jsonPath("$.[0].similarityMeasure").value("0.5466396719850004"));
+                response.andExpect(jsonPath("$.[1].content").value(CONTENT2));
+                response.andExpect(jsonPath("$.[1].similarityMeasure").value("0.07852284477467994"));
+            }
+        } finally {
+            applicationProperties.getSearch().setMinDocumentsPerTask(10_000);
+            applicationProperties.getSearch().setEngine(SearchEngine.INVERTED_INDEX);
+        }
+    }
+
+    @Test
+    @Transactional
+    public void searchDocumentHits_resultsAreOK() throws Exception {
+        doBulkPostRequestAndValidateResponse(Arrays.asList(
+            new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT1).setEvaluationId(EVALUATION_ID_1),
+            new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT2).setEvaluationId(EVALUATION_ID_2),
+            new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT3).setEvaluationId(EVALUATION_ID_3)),
+            HttpStatus.CREATED);
+
+        try {
+            for (SearchEngine engine : SearchEngine.values()) {
+                applicationProperties.getSearch().setEngine(engine);
+
+                ResultActions response = restDocumentMockMvc.perform(get("/api/documents/search/hits")
+                    .param("query", QUERY1)
+                    .param("measure", "0"))
+                    .andExpect(status().isOk());
+                response.andExpect(jsonPath("$.*    ", hasSize(2)));
+                response.andExpect(jsonPath("$.[0].evaluationId").value(EVALUATION_ID_1.intValue()));
+                response.andExpect(jsonPath("$.[0].similarityMeasure").value("0.5466396719850004"));
+                response.andExpect(jsonPath("$.[0].snippet").doesNotExist());
+                response.andExpect(jsonPath("$.[0].content").doesNotExist());
+                response.andExpect(jsonPath("$.[1].evaluationId").value(EVALUATION_ID_2.intValue()));
+                response.andExpect(jsonPath("$.[1].similarityMeasure").value("0.07852284477467994"));
+            }
+        } finally {
+            applicationProperties.getSearch().setEngine(SearchEngine.INVERTED_INDEX);
+        }
+    }
+
+    @Test
+    @Transactional
+    public void searchDocumentHitsWithSnippets_snippetsAreTheBeginningOfTheContent() throws Exception {
+        doBulkPostRequestAndValidateResponse(Arrays.asList(
+            new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT1).setEvaluationId(EVALUATION_ID_1),
+            new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT2).setEvaluationId(EVALUATION_ID_2),
+            new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT3).setEvaluationId(EVALUATION_ID_3)),
+            HttpStatus.CREATED);
+
+        applicationProperties.getSearch().setSnippetLength(10);
+        try {
+            ResultActions response = restDocumentMockMvc.perform(get("/api/documents/search/hits")
+                .param("query", QUERY1)
+                .param("measure", "0")
+                .param("limit", "1")
+                .param("snippet", "true"))
+                .andExpect(status().isOk());
+            response.andExpect(jsonPath("$.*    ", hasSize(1)));
+            response.andExpect(jsonPath("$.[0].evaluationId").value(EVALUATION_ID_1.intValue()));
+            response.andExpect(jsonPath("$.[0].snippet").value(CONTENT1.substring(0, 10)));
+        } finally {
+            applicationProperties.getSearch().setSnippetLength(200);
+        }
+    }
+
+    @Test
+    @Transactional
+    public void searchDocumentHits_withInvalidLimit_badRequest() throws Exception {
+        restDocumentMockMvc.perform(get("/api/documents/search/hits")
+            .param("query", QUERY1)
+            .param("measure", "0")
+            .param("limit", "0"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    public void streamSearchResults_resultsAreWrittenAsLines() throws Exception {
+        doBulkPostRequestAndValidateResponse(Arrays.asList(
+            new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT1).setEvaluationId(EVALUATION_ID_1),
+            new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT2).setEvaluationId(EVALUATION_ID_2),
+            new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT3).setEvaluationId(EVALUATION_ID_3)),
+            HttpStatus.CREATED);
+
+        MvcResult result = restDocumentMockMvc.perform(get("/api/documents/search/stream")
+            .param("query", QUERY1)
+            .param("measure", "0"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(DocumentResource.NDJSON_CONTENT_TYPE))
+            .andReturn();
+
+        List<JsonNode> searchResults = readLines(result);
+        assertThat(searchResults).hasSize(2);
+        assertThat(searchResults.get(0).get("content").asText()).isEqualTo(CONTENT1);
+        assertThat(searchResults.get(0).get("similarityMeasure").asDouble()).isEqualTo(0.5466396719850004);
+        assertThat(searchResults.get(1).get("content").asText()).isEqualTo(CONTENT2);
+        assertThat(searchResults.get(1).get("similarityMeasure").asDouble()).isEqualTo(0.07852284477467994);
+    }
+
+    @Test
+    @Transactional
+    public void streamSearchResultsAfterACursor_pagesGiveBackAllResults() throws Exception {
+        doBulkPostRequestAndValidateResponse(Arrays.asList(
+            new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT1).setEvaluationId(EVALUATION_ID_1),
+            new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT2).setEvaluationId(EVALUATION_ID_2),
+            new Document().setCreation_date(DEFAULT_CREATION_DATE).setContent(CONTENT3).setEvaluationId(EVALUATION_ID_3)),
+            HttpStatus.CREATED);
+
+        try {
+            for (SearchEngine engine : SearchEngine.values()) {
+                applicationProperties.getSearch().setEngine(engine);
+
+                List<String> contents = new ArrayList<>();
+                String searchAfter = null;
+                do {
+                    MockHttpServletRequestBuilder request = get("/api/documents/search/stream")
+                        .param("query", QUERY1)
+                        .param("measure", "0")
+                        .param("limit", "1");
+                    if (searchAfter != null) {
+                        request.param("searchAfter", searchAfter);
+                    }
+                    MvcResult result = restDocumentMockMvc.perform(request).andExpect(status().isOk()).andReturn();
+
+                    List<JsonNode> searchResults = readLines(result);
+                    searchResults.forEach(searchResult -> contents.add(searchResult.get("content").asText()));
+                    // The cursor of the next page is made of the last result of a full page
+                    searchAfter = null;
+                    if (searchResults.size() == 1) {
+                        JsonNode last = searchResults.get(0);
+                        searchAfter = last.get("similarityMeasure").asText() + "," + last.get("id").asText();
+                    }
+                } while (searchAfter != null);
+
+                assertThat(contents).as(engine.toString()).containsExactly(CONTENT1, CONTENT2);
+            }
+        } finally {
+            applicationProperties.getSearch().setEngine(SearchEngine.INVERTED_INDEX);
+        }
+    }
+
+    @Test
+    @Transactional
+    public void streamSearchResults_withInvalidCursor_badRequest() throws Exception {
+        restDocumentMockMvc.perform(get("/api/documents/search/stream")
+            .param("query", QUERY1)
+            .param("measure", "0")
+            .param("searchAfter", "0.5"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    public void searchDocumentsAgainAfterCreatingADocument_resultsAreNotTakenFromTheCache() throws Exception {
+        doPostRequestAndValidateResponse(new Document()
+            .setCreation_date(DEFAULT_CREATION_DATE)
+            .setContent(CONTENT1), HttpStatus.CREATED);
+        doPostRequestAndValidateResponse(new Document()
+            .setCreation_date(DEFAULT_CREATION_DATE)
+            .setContent(CONTENT2), HttpStatus.CREATED);
+
+        ResultActions response = doSearchAndValidateResponse(QUERY2, 0, HttpStatus.OK);
+        response.andExpect(jsonPath("$.*    ", hasSize(1)));
+        response.andExpect(jsonPath("$.[0].content").value(CONTENT2));
+
+        doPostRequestAndValidateResponse(new Document()
+            .setCreation_date(DEFAULT_CREATION_DATE)
+            .setContent(CONTENT3), HttpStatus.CREATED);
+
+        response = doSearchAndValidateResponse(QUERY2, 0, HttpStatus.OK);
+        response.andExpect(jsonPath("$.*    ", hasSize(2)));
+        response.andExpect(jsonPath("$.[0].content").value(CONTENT3));
+        response.andExpect(jsonPath("$.[0].similarityMeasure").value("0.7293023054525128"));
+    }
+
+    @Test
+    @Transactional
+    public void searchDocuments_withInvalidParallelism_badRequest() throws Exception {
+        restDocumentMockMvc.perform(get("/api/documents/search")
+            .param("query", QUERY1)
+            .param("measure", "0")
+            .param("parallelism", "0"))
+            .andExpect(status().isBadRequest());
+    }
+
     @Test
     @Transactional
     public void searchDocuments_usingHyperbolicMeasure_resultsAreOK() throws Exception {
@@ -388,6 +830,55 @@ public class DocumentResourceIntTest {
         response.andExpect(jsonPath("$.[2].similarityMeasure").value("0.24619088333668263"));
     }
 
+    @Test
+    @Transactional
+    public void searchDocuments_withLimit_onlyTheBestResultsAreReturned() throws Exception {
+
+        // Create the documents
+        doPostRequestAndValidateResponse(new Document()
+            .setCreation_date(DEFAULT_CREATION_DATE)
+            .setContent(CONTENT1), HttpStatus.CREATED);
+
+        doPostRequestAndValidateResponse(new Document()
+            .setCreation_date(DEFAULT_CREATION_DATE)
+            .setContent(CONTENT2), HttpStatus.CREATED);
+
+        doPostRequestAndValidateResponse(new Document()
+            .setCreation_date(DEFAULT_CREATION_DATE)
+            .setContent(CONTENT3), HttpStatus.CREATED);
+
+        // Validate
+        ResultActions response = doSearchAndValidateResponse(QUERY1, 0, 1, HttpStatus.OK);
+        response.andExpect(jsonPath("$.*    ", hasSize(1)));
+        response.andExpect(jsonPath("$.[0].content").value(CONTENT1));
+        response.andExpect(jsonPath("$.[0].similarityMeasure").value("0.5466396719850004"));
+
+        response = doSearchAndValidateResponse(QUERY1, 1, 2, HttpStatus.OK);
+        response.andExpect(jsonPath("$.*    ", hasSize(2)));
+        response.andExpect(jsonPath("$.[0].content").value(CONTENT2));
+        response.andExpect(jsonPath("$.[0].similarityMeasure").value("0.362175862184315"));
+        response.andExpect(jsonPath("$.[1].content").value(CONTENT3));
+        response.andExpect(jsonPath("$.[1].similarityMeasure").value("0.3147792214690062"));
+
+        restDocumentMockMvc.perform(get("/api/documents/search")
+            .param("query", QUERY1)
+            .param("measure", "0")
+            .param("limit", "0"))
+            .andExpect(status().isBadRequest());
+    }
+
+    private ResultActions doSearchAndValidateResponse(String query, int measure, int limit,
+                                                      HttpStatus expectedStatus) throws Exception {
+        ResultActions response = restDocumentMockMvc.perform(get("/api/documents/search")
+            .param("query", query)
+            .param("measure", Integer.toString(measure))
+            .param("limit", Integer.toString(limit)))
+            .andExpect(status().is(expectedStatus.value()))
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE));
+
+        return response;
+    }
+
     private ResultActions doSearchAndValidateResponse(String query, int measure, HttpStatus expectedStatus) throws Exception {
         ResultActions response = restDocumentMockMvc.perform(get("/api/documents/search")
             .param("query", query)
@@ -534,6 +1025,136 @@ public class DocumentResourceIntTest {
         assertThat(documentList).hasSize(databaseSizeBeforeDelete - 1);
     }
 
+    @Test
+    @Transactional
+    public void deleteProcessedDocument_indicesAndSearchResultsAreUpdated() throws Exception {
+        DocumentDTO documentDTO1 = doPostRequestAndValidateResponse(new Document()
+            .setCreation_date(DEFAULT_CREATION_DATE)
+            .setContent(CONTENT1)
+            .setEvaluationId(EVALUATION_ID_1), HttpStatus.CREATED);
+        doPostRequestAndValidateResponse(new Document()
+            .setCreation_date(DEFAULT_CREATION_DATE)
+            .setContent(CONTENT2)
+            .setEvaluationId(EVALUATION_ID_2), HttpStatus.CREATED);
+        doPostRequestAndValidateResponse(new Document()
+            .setCreation_date(DEFAULT_CREATION_DATE)
+            .setContent(CONTENT3)
+            .setEvaluationId(EVALUATION_ID_3), HttpStatus.CREATED);
+
+        restDocumentMockMvc.perform(delete("/api/documents/{id}", documentDTO1.getId())
+            .accept(TestUtil.APPLICATION_JSON_UTF8))
+            .andExpect(status().isOk());
+
+        // The document-index pairs and the weights of the document are deleted, the document counts are decremented
+        assertThat(documentRepository.findAll()).hasSize(2);
+        assertThat(documentIndexRepository.findAll().stream()
+            .noneMatch(documentIndex -> documentIndex.getDocument().getId().equals(documentDTO1.getId()))).isTrue();
+        assertThat(documentIndexWeightRepository.findByDocumentIdOrderByIndexIdAsc(documentDTO1.getId())).isEmpty();
+        assertThat(indexRepository.findByName(FOX).getDocumentCount()).isEqualTo(1L);
+        assertThat(indexRepository.findByName(RABBIT).getDocumentCount()).isEqualTo(0L);
+
+        ResultActions response = doSearchAndValidateResponse(QUERY1, 0, HttpStatus.OK);
+        response.andExpect(jsonPath("$.*    ", hasSize(1)));
+        response.andExpect(jsonPath("$.[0].content").value(CONTENT2));
+    }
+
+    @Test
+    @Transactional
+    public void updateProcessedDocument_indicesAreReplaced() throws Exception {
+        DocumentDTO documentDTO1 = doPostRequestAndValidateResponse(new Document()
+            .setCreation_date(DEFAULT_CREATION_DATE)
+            .setContent(CONTENT1)
+            .setEvaluationId(EVALUATION_ID_1), HttpStatus.CREATED);
+        doPostRequestAndValidateResponse(new Document()
+            .setCreation_date(DEFAULT_CREATION_DATE)
+            .setContent(CONTENT2)
+            .setEvaluationId(EVALUATION_ID_2), HttpStatus.CREATED);
+
+        documentDTO1.setContent(CONTENT3);
+        restDocumentMockMvc.perform(put("/api/documents")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(documentDTO1)))
+            .andExpect(status().isOk());
+
+        // The previous document-index pairs are deleted, so every index of the document has a single pair
+        List<Long> indexIdsOfDocument1 = documentIndexRepository.findAll().stream()
+            .filter(documentIndex -> documentIndex.getDocument().getId().equals(documentDTO1.getId()))
+            .map(documentIndex -> documentIndex.getIndex().getId())
+            .collect(Collectors.toList());
+        assertThat(indexIdsOfDocument1).doesNotHaveDuplicates();
+        assertThat(indexIdsOfDocument1).doesNotContain(indexRepository.findByName(FOX).getId());
+        assertThat(indexRepository.findByName(FOX).getDocumentCount()).isEqualTo(1L);
+        assertThat(indexRepository.findByName(RABBIT).getDocumentCount()).isEqualTo(0L);
+        assertThat(indexRepository.findByName(RED).getDocumentCount()).isEqualTo(2L);
+
+        ResultActions response = doSearchAndValidateResponse(QUERY1, 0, HttpStatus.OK);
+        response.andExpect(jsonPath("$.*    ", hasSize(1)));
+        response.andExpect(jsonPath("$.[0].content").value(CONTENT2));
+    }
+
+    @Test
+    @Transactional
+    public void updateProcessedDocument_weightStatisticsAreRecalculated() throws Exception {
+        applicationProperties.getWeights().setIncremental(false);
+        try {
+            DocumentDTO documentDTO = doPostRequestAndValidateResponse(new Document()
+                .setCreation_date(DEFAULT_CREATION_DATE)
+                .setContent(CONTENT1)
+                .setEvaluationId(EVALUATION_ID_1), HttpStatus.CREATED);
+            doPostRequestAndValidateResponse(new Document()
+                .setCreation_date(DEFAULT_CREATION_DATE)
+                .setContent(CONTENT2)
+                .setEvaluationId(EVALUATION_ID_2), HttpStatus.CREATED);
+
+            documentDTO.setContent(CONTENT3);
+            restDocumentMockMvc.perform(put("/api/documents")
+                .contentType(TestUtil.APPLICATION_JSON_UTF8)
+                .content(TestUtil.convertObjectToJsonBytes(documentDTO)))
+                .andExpect(status().isOk());
+            em.flush();
+            em.clear();
+
+            double sum = 0;
+            for (DocumentIndexWeight weight : documentIndexWeightRepository.findByDocumentIdOrderByIndexIdAsc(documentDTO.getId())) {
+                sum += weight.getWeight();
+            }
+            assertThat(sum).isPositive();
+            assertThat(documentRepository.findOne(documentDTO.getId()).getWeightSum()).isCloseTo(sum, within(1e-12));
+        } finally {
+            applicationProperties.getWeights().setIncremental(true);
+        }
+    }
+
+    @Test
+    @Transactional
+    public void updateProcessedDocument_cachedIndicesAreEvicted() throws Exception {
+        DocumentDTO documentDTO = doPostRequestAndValidateResponse(new Document()
+            .setCreation_date(DEFAULT_CREATION_DATE)
+            .setContent(CONTENT1)
+            .setEvaluationId(EVALUATION_ID_1), HttpStatus.CREATED);
+        Index fox = indexRepository.findByName(FOX);
+        em.clear();
+        // The collections are loaded before the update, they are cached when the second level cache is enabled
+        assertThat(indexNames(documentRepository.findOne(documentDTO.getId()).getDocumentIndices())).contains(FOX);
+        assertThat(indexRepository.findOne(fox.getId()).getDocumentIndices()).hasSize(1);
+
+        documentDTO.setContent(CONTENT3);
+        restDocumentMockMvc.perform(put("/api/documents")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(documentDTO)))
+            .andExpect(status().isOk());
+
+        em.clear();
+        assertThat(indexNames(documentRepository.findOne(documentDTO.getId()).getDocumentIndices())).doesNotContain(FOX);
+        assertThat(indexRepository.findOne(fox.getId()).getDocumentIndices()).isEmpty();
+    }
+
+    private static List<String> indexNames(Collection<DocumentIndex> documentIndices) {
+        return documentIndices.stream()
+            .map(documentIndex -> documentIndex.getIndex().getName())
+            .collect(Collectors.toList());
+    }
+
     @Test
     @Transactional
     public void equalsVerifier() throws Exception {
@@ -580,4 +1201,41 @@ public class DocumentResourceIntTest {
 
         return TestUtil.convertJsonStringToObject(new DocumentDTO(), response);
     }
+
+    private List<DocumentDTO> doBulkPostRequestAndValidateResponse(List<Document> documents,
+                                                                   HttpStatus expectedStatus) throws Exception {
+        String response = restDocumentMockMvc.perform(post("/api/documents/bulk")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(documentMapper.toDto(documents))))
+            .andExpect(status().is(expectedStatus.value())).andReturn().getResponse().getContentAsString();
+
+        return expectedStatus.is2xxSuccessful()
+            ? Arrays.asList(TestUtil.convertJsonStringToObject(new DocumentDTO[0], response))
+            : Collections.emptyList();
+    }
+
+    private List<JsonNode> readLines(MvcResult result) throws Exception {
+        List<JsonNode> searchResults = new ArrayList<>();
+        for (String line : result.getResponse().getContentAsString().split("\n")) {
+            if (!line.isEmpty()) {
+                searchResults.add(jacksonMessageConverter.getObjectMapper().readTree(line));
+            }
+        }
+        return searchResults;
+    }
+
+    private long countStatements(Statistics statistics, String query, int measure) {
+        statistics.clear();
+        assertThat(documentService.search(query, measure)).isNotEmpty();
+        em.clear();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private List<String> searchScores(String query, int measure) throws Exception {
+        List<String> scores = new ArrayList<>();
+        for (DocumentSearchResultDTO searchResult : documentService.search(query, measure)) {
+            scores.add(searchResult.getId() + ":" + searchResult.getSimilarityMeasure());
+        }
+        return scores;
+    }
 }
@@ -0,0 +1,208 @@
+package hu.ppke.yeast.web.rest;
+
+import hu.ppke.yeast.YeastApp;
+import hu.ppke.yeast.config.ApplicationProperties;
+import hu.ppke.yeast.domain.Document;
+import hu.ppke.yeast.domain.IngestionJob;
+import hu.ppke.yeast.enumeration.IngestionStatus;
+import hu.ppke.yeast.repository.DocumentRepository;
+import hu.ppke.yeast.repository.IngestionJobRepository;
+import hu.ppke.yeast.service.IngestionService;
+import hu.ppke.yeast.service.IngestionWorkers;
+import hu.ppke.yeast.service.dto.DocumentDTO;
+import hu.ppke.yeast.web.rest.errors.ExceptionTranslator;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static hu.ppke.yeast.web.rest.TestUtil.createFormattingConversionService;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Test class for the IngestionResource REST controller.
+ *
+ * @see IngestionResource
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = YeastApp.class)
+public class IngestionResourceIntTest {
+
+    private static final LocalDate CREATION_DATE = LocalDate.ofEpochDay(0L);
+
+    private static final String CONTENT1 = "Foxes are red and dogs are white";
+    private static final String CONTENT2 = "Red grapes are tasty";
+
+    @Autowired
+    private IngestionJobRepository ingestionJobRepository;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private IngestionService ingestionService;
+
+    @Autowired
+    private IngestionWorkers ingestionWorkers;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    @Autowired
+    private ExceptionTranslator exceptionTranslator;
+
+    @Autowired
+    private EntityManager em;
+
+    private MockMvc restIngestionMockMvc;
+
+    @Before
+    public void setup() {
+        final IngestionResource ingestionResource = new IngestionResource(ingestionService);
+        this.restIngestionMockMvc = MockMvcBuilders.standaloneSetup(ingestionResource)
+            .setControllerAdvice(exceptionTranslator)
+            .setConversionService(createFormattingConversionService())
+            .setMessageConverters(jacksonMessageConverter).build();
+    }
+
+    @Test
+    @Transactional
+    public void enqueueDocument_isAcceptedAndSavedByTheWorkers() throws Exception {
+        int documentsBefore = documentRepository.findAll().size();
+
+        restIngestionMockMvc.perform(post("/api/ingestion/documents")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(new DocumentDTO(null, CREATION_DATE, CONTENT1, 7L))))
+            .andExpect(status().isAccepted())
+            .andExpect(header().string("Location", "/api/ingestion/jobs/" + lastJob().getId()))
+            .andExpect(jsonPath("$.status").value(IngestionStatus.QUEUED.toString()));
+
+        // Nothing is saved until the workers drain the queue
+        assertThat(documentRepository.findAll()).hasSize(documentsBefore);
+        restIngestionMockMvc.perform(get("/api/ingestion/status"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.queued").value(1))
+            .andExpect(jsonPath("$.processing").value(0));
+
+        assertThat(ingestionWorkers.drain()).isEqualTo(1);
+        em.flush();
+        em.clear();
+
+        IngestionJob job = lastJob();
+        assertThat(job.getStatus()).isEqualTo(IngestionStatus.DONE);
+        assertThat(job.getContent()).isNull();
+        assertThat(job.getFinishedAt()).isNotNull();
+
+        Document document = documentRepository.findOne(job.getDocumentId());
+        assertThat(document.getContent()).isEqualTo(CONTENT1);
+        assertThat(document.getEvaluationId()).isEqualTo(7L);
+        assertThat(document.getDocumentIndices()).hasSize(4);
+
+        restIngestionMockMvc.perform(get("/api/ingestion/jobs/{id}", job.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.status").value(IngestionStatus.DONE.toString()))
+            .andExpect(jsonPath("$.documentId").value(job.getDocumentId().intValue()));
+        restIngestionMockMvc.perform(get("/api/ingestion/status"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.queued").value(0))
+            .andExpect(jsonPath("$.lagMillis").value(0));
+    }
+
+    @Test
+    @Transactional
+    public void enqueueDocuments_areSavedInTheirOrder() throws Exception {
+        restIngestionMockMvc.perform(post("/api/ingestion/documents/bulk")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(Arrays.asList(
+                new DocumentDTO(null, CREATION_DATE, CONTENT1, null),
+                new DocumentDTO(null, CREATION_DATE, CONTENT2, null)))))
+            .andExpect(status().isAccepted())
+            .andExpect(jsonPath("$", hasSize(2)));
+
+        assertThat(ingestionWorkers.drain()).isEqualTo(2);
+        em.flush();
+        em.clear();
+
+        List<IngestionJob> jobs = ingestionJobRepository.findAll();
+        assertThat(jobs).hasSize(2);
+        assertThat(jobs).extracting(IngestionJob::getStatus).containsOnly(IngestionStatus.DONE);
+        assertThat(documentRepository.findOne(jobs.get(0).getDocumentId()).getContent()).isEqualTo(CONTENT1);
+        assertThat(documentRepository.findOne(jobs.get(1).getDocumentId()).getContent()).isEqualTo(CONTENT2);
+    }
+
+    @Test
+    @Transactional
+    public void enqueueDocuments_queueFull() throws Exception {
+        int queueCapacity = applicationProperties.getIngestion().getQueueCapacity();
+        applicationProperties.getIngestion().setQueueCapacity(1);
+        try {
+            restIngestionMockMvc.perform(post("/api/ingestion/documents/bulk")
+                .contentType(TestUtil.APPLICATION_JSON_UTF8)
+                .content(TestUtil.convertObjectToJsonBytes(Arrays.asList(
+                    new DocumentDTO(null, CREATION_DATE, CONTENT1, null),
+                    new DocumentDTO(null, CREATION_DATE, CONTENT2, null)))))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("X-yeastApp-error", "The ingestion queue is full"));
+
+            assertThat(ingestionJobRepository.findAll()).isEmpty();
+        } finally {
+            applicationProperties.getIngestion().setQueueCapacity(queueCapacity);
+        }
+    }
+
+    @Test
+    @Transactional
+    public void enqueueDocument_withId() throws Exception {
+        restIngestionMockMvc.perform(post("/api/ingestion/documents")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(new DocumentDTO(1L, CREATION_DATE, CONTENT1, null))))
+            .andExpect(status().isBadRequest());
+
+        assertThat(ingestionJobRepository.findAll()).isEmpty();
+    }
+
+    @Test
+    @Transactional
+    public void requeueClaimed_queuesTheInterruptedJobsAgain() throws Exception {
+        ingestionService.enqueue(Arrays.asList(
+            new DocumentDTO(null, CREATION_DATE, CONTENT1, null),
+            new DocumentDTO(null, CREATION_DATE, CONTENT2, null)));
+
+        assertThat(ingestionService.claim(1)).hasSize(1);
+        assertThat(ingestionService.getQueue().getProcessing()).isEqualTo(1);
+
+        assertThat(ingestionService.requeueClaimed()).isEqualTo(1);
+        em.clear();
+        assertThat(ingestionJobRepository.findAll()).extracting(IngestionJob::getStatus).containsOnly(IngestionStatus.QUEUED);
+    }
+
+    @Test
+    @Transactional
+    public void getNonExistingJob() throws Exception {
+        restIngestionMockMvc.perform(get("/api/ingestion/jobs/{id}", Long.MAX_VALUE))
+            .andExpect(status().isNotFound());
+    }
+
+    private IngestionJob lastJob() {
+        List<IngestionJob> jobs = ingestionJobRepository.findAll();
+        return jobs.get(jobs.size() - 1);
+    }
+}
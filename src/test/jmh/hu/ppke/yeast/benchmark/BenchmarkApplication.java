@@ -0,0 +1,66 @@
+package hu.ppke.yeast.benchmark;
+
+import hu.ppke.yeast.YeastApp;
+import hu.ppke.yeast.config.ApplicationProperties;
+import hu.ppke.yeast.domain.Document;
+import hu.ppke.yeast.service.DocumentIndexService;
+import hu.ppke.yeast.service.DocumentService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class is responsible for starting the application on the in-memory test database
+ * and for indexing a benchmark corpus in it
+ */
+public final class BenchmarkApplication {
+
+    private static final int BATCH_SIZE = 1_000;
+
+    private BenchmarkApplication() {
+    }
+
+    public static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(YeastApp.class)
+            .properties(
+                "server.port=0",
+                "logging.level.hu.ppke.yeast=WARN",
+                "spring.jpa.properties.hibernate.generate_statistics=false")
+            .run();
+    }
+
+    /**
+     * Replaces the content of the database with the documents of the corpus. The documents are saved in
+     * incremental mode, so the weight matrix is not recalculated after every batch.
+     */
+    public static void index(ConfigurableApplicationContext context, BenchmarkCorpus corpus) {
+        ApplicationProperties applicationProperties = context.getBean(ApplicationProperties.class);
+        DocumentService documentService = context.getBean(DocumentService.class);
+        boolean incremental = applicationProperties.getWeights().isIncremental();
+
+        applicationProperties.getWeights().setIncremental(true);
+        try {
+            context.getBean(DocumentIndexService.class).clearDB();
+
+            List<Document> batch = new ArrayList<>(BATCH_SIZE);
+            for (String content : corpus.getDocuments()) {
+                batch.add(new Document()
+                    .setCreation_date(LocalDate.now())
+                    .setContent(content));
+
+                if (batch.size() == BATCH_SIZE) {
+                    documentService.saveMultiple(batch);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) {
+                documentService.saveMultiple(batch);
+            }
+        } finally {
+            applicationProperties.getWeights().setIncremental(incremental);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package hu.ppke.yeast.benchmark;
+
+import org.apache.commons.io.IOUtils;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This class provides the documents and queries the benchmarks run on: either the bundled ADI test collection,
+ * or a synthetic collection of the given size whose words follow a Zipf distribution like natural text does.
+ */
+public class BenchmarkCorpus {
+
+    public static final String ADI = "adi";
+
+    private static final int VOCABULARY_SIZE = 50_000;
+    private static final int MIN_DOCUMENT_LENGTH = 20;
+    private static final int MAX_DOCUMENT_LENGTH = 150;
+    private static final int NR_OF_QUERIES = 100;
+    private static final int MIN_QUERY_LENGTH = 2;
+    private static final int MAX_QUERY_LENGTH = 8;
+    private static final long SEED = 20180506L;
+
+    private final List<String> documents;
+    private final List<String> queries;
+
+    private BenchmarkCorpus(List<String> documents, List<String> queries) {
+        this.documents = documents;
+        this.queries = queries;
+    }
+
+    /**
+     * @param name either "adi", or the size of a synthetic corpus like "10k", "100k" or "1m"
+     * @return the corpus
+     */
+    public static BenchmarkCorpus load(String name) throws IOException {
+        if (ADI.equals(name)) {
+            return loadAdi();
+        }
+
+        return generate(parseSize(name));
+    }
+
+    public List<String> getDocuments() {
+        return documents;
+    }
+
+    public List<String> getQueries() {
+        return queries;
+    }
+
+    private static int parseSize(String name) {
+        String lowerCaseName = name.toLowerCase();
+        if (lowerCaseName.endsWith("k")) {
+            return Integer.parseInt(lowerCaseName.substring(0, lowerCaseName.length() - 1)) * 1_000;
+        } else if (lowerCaseName.endsWith("m")) {
+            return Integer.parseInt(lowerCaseName.substring(0, lowerCaseName.length() - 1)) * 1_000_000;
+        }
+
+        return Integer.parseInt(lowerCaseName);
+    }
+
+    private static BenchmarkCorpus loadAdi() throws IOException {
+        List<String> documents = new ArrayList<>();
+        for (String article : read("similarity_eval/adi/ADI.ALL").split("\\.I")) {
+            String[] splitArticle = article.split("\\.T|\\.A|\\.W");
+            if (splitArticle.length > 1) {
+                documents.add(splitArticle[1] + " " + splitArticle[splitArticle.length - 1]);
+            }
+        }
+
+        List<String> queries = new ArrayList<>();
+        for (String query : read("similarity_eval/adi/ADI.QRY").split("\\.I")) {
+            String[] splitQuery = query.split("\\.W");
+            if (splitQuery.length > 1) {
+                queries.add(splitQuery[1]);
+            }
+        }
+
+        return new BenchmarkCorpus(documents, queries);
+    }
+
+    private static String read(String location) throws IOException {
+        Resource resource = new DefaultResourceLoader().getResource("classpath:" + location);
+        return IOUtils.toString(resource.getInputStream(), "UTF-8");
+    }
+
+    private static BenchmarkCorpus generate(int nrOfDocuments) {
+        Random random = new Random(SEED);
+        String[] vocabulary = generateVocabulary(random);
+        double[] cumulativeProbabilities = getZipfDistribution();
+
+        List<String> documents = new ArrayList<>(nrOfDocuments);
+        for (int i = 0; i < nrOfDocuments; i++) {
+            int length = MIN_DOCUMENT_LENGTH + random.nextInt(MAX_DOCUMENT_LENGTH - MIN_DOCUMENT_LENGTH + 1);
+            documents.add(generateText(random, vocabulary, cumulativeProbabilities, length));
+        }
+
+        List<String> queries = new ArrayList<>(NR_OF_QUERIES);
+        for (int i = 0; i < NR_OF_QUERIES; i++) {
+            int length = MIN_QUERY_LENGTH + random.nextInt(MAX_QUERY_LENGTH - MIN_QUERY_LENGTH + 1);
+            queries.add(generateText(random, vocabulary, cumulativeProbabilities, length));
+        }
+
+        return new BenchmarkCorpus(documents, queries);
+    }
+
+    /**
+     * The words are built from random syllables, so the stemmer has some work to do but rarely merges them
+     */
+    private static String[] generateVocabulary(Random random) {
+        String consonants = "bcdfghjklmnprstvz";
+        String vowels = "aeiou";
+        String[] vocabulary = new String[VOCABULARY_SIZE];
+
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            StringBuilder word = new StringBuilder();
+            int nrOfSyllables = 2 + random.nextInt(3);
+            for (int j = 0; j < nrOfSyllables; j++) {
+                word.append(consonants.charAt(random.nextInt(consonants.length())));
+                word.append(vowels.charAt(random.nextInt(vowels.length())));
+            }
+            word.append(consonants.charAt(random.nextInt(consonants.length())));
+            vocabulary[i] = word.toString();
+        }
+
+        return vocabulary;
+    }
+
+    private static double[] getZipfDistribution() {
+        double[] cumulativeProbabilities = new double[VOCABULARY_SIZE];
+        double sum = 0;
+
+        for (int rank = 1; rank <= VOCABULARY_SIZE; rank++) {
+            sum += 1.0 / rank;
+            cumulativeProbabilities[rank - 1] = sum;
+        }
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            cumulativeProbabilities[i] /= sum;
+        }
+
+        return cumulativeProbabilities;
+    }
+
+    private static String generateText(Random random, String[] vocabulary, double[] cumulativeProbabilities,
+                                       int length) {
+        StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < length; i++) {
+            int position = Arrays.binarySearch(cumulativeProbabilities, random.nextDouble());
+            int rank = Math.min(position < 0 ? -position - 1 : position, VOCABULARY_SIZE - 1);
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(vocabulary[rank]);
+        }
+
+        return text.toString();
+    }
+}
@@ -0,0 +1,85 @@
+package hu.ppke.yeast.benchmark;
+
+import hu.ppke.yeast.config.ApplicationProperties;
+import hu.ppke.yeast.enumeration.HyperbolicScoring;
+import hu.ppke.yeast.enumeration.SearchEngine;
+import hu.ppke.yeast.enumeration.SimiliarityMeasure;
+import hu.ppke.yeast.generator.WeightMatrixGenerator;
+import hu.ppke.yeast.processor.QueryProcessor;
+import hu.ppke.yeast.service.dto.DocumentSearchResultDTO;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static hu.ppke.yeast.enumeration.SearchEngine.WEIGHT_MATRIX;
+
+/**
+ * Measures a search end-to-end, from the query text to the result DTOs, cycling through the queries
+ * of the corpus. The weight matrix engine scores every document, so on the larger corpora it is
+ * worth restricting the run, e.g. -p engine=INVERTED_INDEX -p corpus=1m
+ * <p>
+ * The parallelism is the number of threads scoring a single query, 0 uses the number of processors.
+ * The hyperbolic scoring only matters for the HYPERBOLIC measure, e.g. -p measure=HYPERBOLIC
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({BenchmarkCorpus.ADI, "10k", "100k", "1m"})
+    private String corpus;
+
+    @Param({"INVERTED_INDEX", "WEIGHT_MATRIX"})
+    private SearchEngine engine;
+
+    @Param({"COSINE", "HYPERBOLIC", "DOT_PRODUCT", "DICE", "JACCARD"})
+    private SimiliarityMeasure measure;
+
+    @Param({"10", "2147483647"})
+    private int limit;
+
+    @Param({"1", "0"})
+    private int parallelism;
+
+    @Param({"EXACT", "SPARSE"})
+    private HyperbolicScoring hyperbolicScoring;
+
+    private ConfigurableApplicationContext context;
+    private QueryProcessor queryProcessor;
+    private List<String> queries;
+    private int nextQuery;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkCorpus benchmarkCorpus = BenchmarkCorpus.load(corpus);
+        queries = benchmarkCorpus.getQueries();
+
+        context = BenchmarkApplication.start();
+        BenchmarkApplication.index(context, benchmarkCorpus);
+
+        context.getBean(ApplicationProperties.class).getSearch().setEngine(engine);
+        context.getBean(ApplicationProperties.class).getSearch().setHyperbolicScoring(hyperbolicScoring);
+        if (WEIGHT_MATRIX.equals(engine)) {
+            context.getBean(WeightMatrixGenerator.class).calculateAndPersistWeights();
+        }
+        queryProcessor = context.getBean(QueryProcessor.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<DocumentSearchResultDTO> getRelevantDocuments() {
+        String query = queries.get(nextQuery);
+        nextQuery = (nextQuery + 1) % queries.size();
+
+        return queryProcessor.getRelevantDocuments(query, measure, limit, parallelism);
+    }
+}
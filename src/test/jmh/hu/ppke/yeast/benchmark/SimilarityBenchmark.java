@@ -0,0 +1,110 @@
+package hu.ppke.yeast.benchmark;
+
+import hu.ppke.yeast.calculator.SparseVector;
+import hu.ppke.yeast.enumeration.SimiliarityMeasure;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static hu.ppke.yeast.calculator.ClassicalSimilarityCalculator.calculateSimilarity;
+import static hu.ppke.yeast.calculator.HyperbolicSimilarityCalculator.calculateEuclideanDistance;
+import static hu.ppke.yeast.calculator.HyperbolicSimilarityCalculator.calculateHyperbolicMeasure;
+import static hu.ppke.yeast.enumeration.SimiliarityMeasure.HYPERBOLIC;
+
+/**
+ * Measures a single query-document similarity calculation of every measure. The dimension is the number
+ * of indices in the system, the query and the document only have a few non-zero weights, like real ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimilarityBenchmark {
+
+    private static final int QUERY_SIZE = 5;
+    private static final int DOCUMENT_SIZE = 60;
+
+    @Param({"COSINE", "HYPERBOLIC", "DOT_PRODUCT", "DICE", "JACCARD"})
+    private SimiliarityMeasure measure;
+
+    @Param({"1000", "100000"})
+    private int dimension;
+
+    private List<Double> queryList;
+    private List<Double> documentList;
+    private double[] queryArray;
+    private double[] documentArray;
+    private SparseVector queryVector;
+    private SparseVector documentVector;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(dimension);
+        queryArray = generateWeights(random, QUERY_SIZE);
+        documentArray = generateWeights(random, DOCUMENT_SIZE);
+        // Make the document match some of the query indices
+        for (int i = 0; i < dimension; i++) {
+            if (queryArray[i] != 0.0 && random.nextBoolean()) {
+                documentArray[i] = 0.1 + random.nextDouble() * 3;
+            }
+        }
+        queryList = toList(queryArray);
+        documentList = toList(documentArray);
+        queryVector = toSparseVector(queryArray);
+        documentVector = toSparseVector(documentArray);
+    }
+
+    @Benchmark
+    public double denseList() {
+        if (HYPERBOLIC.equals(measure)) {
+            return calculateHyperbolicMeasure(calculateEuclideanDistance(queryList, documentList), dimension);
+        }
+        return calculateSimilarity(queryList, documentList, measure);
+    }
+
+    @Benchmark
+    public double denseArray() {
+        if (HYPERBOLIC.equals(measure)) {
+            return calculateHyperbolicMeasure(calculateEuclideanDistance(queryArray, documentArray), dimension);
+        }
+        return calculateSimilarity(queryArray, documentArray, measure);
+    }
+
+    @Benchmark
+    public double sparse() {
+        if (HYPERBOLIC.equals(measure)) {
+            return calculateHyperbolicMeasure(calculateEuclideanDistance(queryVector, documentVector), dimension);
+        }
+        return calculateSimilarity(queryVector, documentVector, measure);
+    }
+
+    private double[] generateWeights(Random random, int nrOfNonZeroWeights) {
+        double[] weights = new double[dimension];
+        for (int i = 0; i < nrOfNonZeroWeights; i++) {
+            weights[random.nextInt(dimension)] = 0.1 + random.nextDouble() * 3;
+        }
+        return weights;
+    }
+
+    private static List<Double> toList(double[] weights) {
+        List<Double> list = new ArrayList<>(weights.length);
+        for (double weight : weights) {
+            list.add(weight);
+        }
+        return list;
+    }
+
+    private static SparseVector toSparseVector(double[] weights) {
+        TreeMap<Long, Double> nonZeroWeights = new TreeMap<>();
+        for (int i = 0; i < weights.length; i++) {
+            nonZeroWeights.put((long) i, weights[i]);
+        }
+        return SparseVector.of(nonZeroWeights);
+    }
+}
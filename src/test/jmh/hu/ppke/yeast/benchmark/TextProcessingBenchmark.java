@@ -0,0 +1,120 @@
+package hu.ppke.yeast.benchmark;
+
+import com.codahale.metrics.MetricRegistry;
+import hu.ppke.yeast.config.ApplicationProperties;
+import hu.ppke.yeast.processor.AbstractProcessor;
+import hu.ppke.yeast.processor.Stemmer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the text processing steps shared by the document and the query processor
+ * on a sample of the documents of the corpus
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextProcessingBenchmark {
+
+    private static final int SAMPLE_SIZE = 1_000;
+
+    @Param({BenchmarkCorpus.ADI, "10k"})
+    private String corpus;
+
+    private TextProcessor textProcessor;
+    private List<String> documents;
+    private List<List<String>> words;
+    private List<List<String>> filteredWords;
+
+    @Setup
+    public void setup() throws Exception {
+        textProcessor = new TextProcessor();
+        textProcessor.init();
+
+        List<String> allDocuments = BenchmarkCorpus.load(corpus).getDocuments();
+        documents = new ArrayList<>(allDocuments.subList(0, Math.min(SAMPLE_SIZE, allDocuments.size())));
+        words = new ArrayList<>();
+        filteredWords = new ArrayList<>();
+        for (String document : documents) {
+            List<String> documentWords = textProcessor.getWords(document);
+            words.add(documentWords);
+            filteredWords.add(textProcessor.filterWords(documentWords));
+        }
+    }
+
+    @Benchmark
+    public void getWords(Blackhole blackhole) {
+        for (String document : documents) {
+            blackhole.consume(textProcessor.getWords(document));
+        }
+    }
+
+    @Benchmark
+    public void filterWords(Blackhole blackhole) {
+        for (List<String> documentWords : words) {
+            blackhole.consume(textProcessor.filterWords(documentWords));
+        }
+    }
+
+    /**
+     * The stemmer replaces the words in place, so every invocation works on a copy
+     */
+    @Benchmark
+    public void stemWords(Blackhole blackhole) {
+        for (List<String> documentWords : filteredWords) {
+            blackhole.consume(textProcessor.stemWords(new ArrayList<>(documentWords)));
+        }
+    }
+
+    @Benchmark
+    public void processText(Blackhole blackhole) {
+        for (String document : documents) {
+            blackhole.consume(textProcessor.stemWords(textProcessor.filterWords(textProcessor.getWords(document))));
+        }
+    }
+
+    @Benchmark
+    public void getIndices(Blackhole blackhole) {
+        for (String document : documents) {
+            blackhole.consume(textProcessor.getIndices(document));
+        }
+    }
+
+    /**
+     * Exposes the text processing steps without the repositories needed by the real processors
+     */
+    private static class TextProcessor extends AbstractProcessor {
+
+        TextProcessor() {
+            super(new DefaultResourceLoader(), null, new Stemmer(new ApplicationProperties(), new MetricRegistry()));
+        }
+
+        @Override
+        protected List<String> getWords(String documentContent) {
+            return super.getWords(documentContent);
+        }
+
+        @Override
+        protected List<String> filterWords(List<String> words) {
+            return super.filterWords(words);
+        }
+
+        @Override
+        protected List<String> stemWords(List<String> words) {
+            return super.stemWords(words);
+        }
+
+        @Override
+        protected List<String> getIndices(String text) {
+            return super.getIndices(text);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package hu.ppke.yeast.benchmark;
+
+import hu.ppke.yeast.config.ApplicationProperties;
+import hu.ppke.yeast.enumeration.WeightStorage;
+import hu.ppke.yeast.generator.WeightMatrixGenerator;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the recalculation of the whole weight matrix. Dense storage persists a weight for every
+ * document-index pair, so it is only feasible on the ADI collection: -p corpus=adi -p storage=DENSE
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class WeightMatrixBenchmark {
+
+    @Param({BenchmarkCorpus.ADI, "10k", "100k", "1m"})
+    private String corpus;
+
+    @Param({"SPARSE"})
+    private WeightStorage storage;
+
+    private ConfigurableApplicationContext context;
+    private WeightMatrixGenerator weightMatrixGenerator;
+
+    @Setup
+    public void setup() throws Exception {
+        context = BenchmarkApplication.start();
+        BenchmarkApplication.index(context, BenchmarkCorpus.load(corpus));
+
+        context.getBean(ApplicationProperties.class).getWeights().setStorage(storage);
+        weightMatrixGenerator = context.getBean(WeightMatrixGenerator.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void calculateAndPersistWeights() {
+        weightMatrixGenerator.calculateAndPersistWeights();
+    }
+}